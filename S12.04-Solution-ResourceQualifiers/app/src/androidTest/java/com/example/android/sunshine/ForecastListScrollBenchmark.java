@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utils.PollingCheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Scrolls the forecast list up and down at a constant speed, once with the rows inflated from
+ * forecast_list_item.xml and once with the rows drawn by ForecastListItemView, and logs the
+ * distribution of frame times for each.
+ * <p>
+ * Frame times are the differences between consecutive Choreographer frame timestamps, so a frame
+ * that misses its vsync shows up as (roughly) a multiple of the display's refresh interval.
+ * Results are written to logcat under the ForecastListScrollBenchmark tag, for example:
+ * <pre>
+ * adb logcat -s ForecastListScrollBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+@SdkSuppress(minSdkVersion = 16)
+public class ForecastListScrollBenchmark {
+
+    private static final String TAG = ForecastListScrollBenchmark.class.getSimpleName();
+
+    /* Enough days that the list never runs out while we scroll */
+    private static final int DAYS_TO_INSERT = 365;
+
+    /* How far to scroll on each frame, in dp */
+    private static final int SCROLL_STEP_DP = 24;
+
+    /* Frames that are thrown away before each measurement, to let caches and the JIT settle */
+    private static final int WARM_UP_FRAMES = 120;
+
+    /* Frames that are measured for each kind of row */
+    private static final int MEASURED_FRAMES = 600;
+
+    /* The frame budget at 60Hz, in nanoseconds */
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private static final int[] WEATHER_IDS = {200, 300, 500, 600, 701, 800, 801, 803};
+
+    /* The activity is only launched once our test data is in the database */
+    @Rule
+    public final ActivityTestRule<MainActivity> mActivityRule =
+            new ActivityTestRule<>(MainActivity.class, true, false);
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private RecyclerView mRecyclerView;
+    private ForecastAdapter mForecastAdapter;
+
+    @Before
+    public void setUp() throws Exception {
+        deleteAllWeather();
+        insertDays(DAYS_TO_INSERT);
+
+        MainActivity activity = mActivityRule.launchActivity(null);
+        mRecyclerView = (RecyclerView) activity.findViewById(R.id.recyclerview_forecast);
+        mForecastAdapter = (ForecastAdapter) mRecyclerView.getAdapter();
+
+        PollingCheck.check("The forecast list never showed the inserted days", 10000,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return mForecastAdapter.getItemCount() == DAYS_TO_INSERT;
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        deleteAllWeather();
+    }
+
+    @Test
+    public void scrollXmlLayoutRows() throws Throwable {
+        long[] frameTimes = measureScroll(false);
+        report("xml layout", frameTimes);
+    }
+
+    @Test
+    public void scrollFlatViewRows() throws Throwable {
+        long[] frameTimes = measureScroll(true);
+        report("flat view", frameTimes);
+    }
+
+    /**
+     * Scrolls the list with the given kind of rows and returns the measured frame times.
+     *
+     * @param useFlatListItems Whether the rows are drawn by ForecastListItemView
+     * @return The time between each pair of consecutive measured frames, in nanoseconds
+     */
+    private long[] measureScroll(final boolean useFlatListItems) throws Throwable {
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mForecastAdapter.setUseFlatListItems(useFlatListItems);
+                mRecyclerView.scrollToPosition(0);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        final int scrollStepPx = (int) (SCROLL_STEP_DP
+                * mContext.getResources().getDisplayMetrics().density);
+        final long[] frameTimes = new long[MEASURED_FRAMES];
+        final CountDownLatch done = new CountDownLatch(1);
+
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private int mFrame = 0;
+                    private long mLastFrameTimeNanos;
+                    private int mDirection = 1;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        int measuredFrame = mFrame - WARM_UP_FRAMES;
+                        if (measuredFrame > 0) {
+                            frameTimes[measuredFrame - 1] = frameTimeNanos - mLastFrameTimeNanos;
+                        }
+                        mLastFrameTimeNanos = frameTimeNanos;
+
+                        if (measuredFrame == MEASURED_FRAMES) {
+                            done.countDown();
+                            return;
+                        }
+                        mFrame++;
+
+                        /* Bounce between the two ends of the list */
+                        if (!mRecyclerView.canScrollVertically(mDirection)) {
+                            mDirection = -mDirection;
+                        }
+                        mRecyclerView.scrollBy(0, mDirection * scrollStepPx);
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            }
+        });
+
+        assertTrue("Scrolling didn't finish in time", done.await(60, TimeUnit.SECONDS));
+        return frameTimes;
+    }
+
+    private static void report(String label, long[] frameTimes) {
+        assertEquals(MEASURED_FRAMES, frameTimes.length);
+
+        long[] sorted = frameTimes.clone();
+        Arrays.sort(sorted);
+
+        int janky = 0;
+        for (long frameTime : sorted) {
+            /* Allow a little slack for vsync jitter before calling a frame janky */
+            if (frameTime > FRAME_BUDGET_NANOS * 3 / 2) janky++;
+        }
+
+        Log.i(TAG, String.format("%s: %d frames, median %.2f ms, p90 %.2f ms, p99 %.2f ms, "
+                        + "max %.2f ms, janky %d (%.1f%%)",
+                label,
+                sorted.length,
+                toMillis(percentile(sorted, 50)),
+                toMillis(percentile(sorted, 90)),
+                toMillis(percentile(sorted, 99)),
+                toMillis(sorted[sorted.length - 1]),
+                janky,
+                100f * janky / sorted.length));
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private void insertDays(int days) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        ContentValues[] values = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            ContentValues day = new ContentValues();
+            day.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    today + i * SunshineDateUtils.DAY_IN_MILLIS);
+            day.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                    WEATHER_IDS[i % WEATHER_IDS.length]);
+            day.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 10 + i % 15);
+            day.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, i % 10);
+            day.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 50 + i % 40);
+            day.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1000 + i % 30);
+            day.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, i % 12);
+            day.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, (i * 37) % 360);
+            values[i] = day;
+        }
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, values);
+    }
+
+    private void deleteAllWeather() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+    }
+}
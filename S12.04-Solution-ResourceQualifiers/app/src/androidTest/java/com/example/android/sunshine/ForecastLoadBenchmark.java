@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
+import android.support.v7.widget.RecyclerView;
+import android.view.ContextThemeWrapper;
+
+import com.example.android.sunshine.data.DayForecast;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utils.BenchmarkData;
+import com.example.android.sunshine.utils.MicroBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures the two steps between the weather table and the forecast list: how long the
+ * CursorLoader MainActivity uses takes to deliver its Cursor, and how long ForecastAdapter takes
+ * to bind a row. Both are measured with as many rows as a sync writes and with far more.
+ * <p>
+ * Results are written to logcat under the ForecastLoadBenchmark tag, for example:
+ * <pre>
+ * adb logcat -s ForecastLoadBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class ForecastLoadBenchmark {
+
+    private static final String TAG = ForecastLoadBenchmark.class.getSimpleName();
+
+    private static final int LOADER_WARM_UP_ITERATIONS = 5;
+    private static final int LOADER_MEASURED_ITERATIONS = 30;
+
+    /* A single bind is fast, so it takes many more iterations for the JIT to settle */
+    private static final int BIND_WARM_UP_ITERATIONS = 200;
+    private static final int BIND_MEASURED_ITERATIONS = 2000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    @Before
+    public void setUp() {
+        deleteAllWeather();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAllWeather();
+    }
+
+    @Test
+    public void loaderDeliveryRealistic() throws Exception {
+        measureLoaderDelivery(BenchmarkData.REALISTIC_DAYS);
+    }
+
+    @Test
+    public void loaderDeliveryStress() throws Exception {
+        measureLoaderDelivery(BenchmarkData.STRESS_DAYS);
+    }
+
+    @Test
+    public void adapterBindRealistic() throws Throwable {
+        measureAdapterBind(BenchmarkData.REALISTIC_DAYS);
+    }
+
+    @Test
+    public void adapterBindStress() throws Throwable {
+        measureAdapterBind(BenchmarkData.STRESS_DAYS);
+    }
+
+    /**
+     * Times a CursorLoader, set up like the one in MainActivity#onCreateLoader, from the moment
+     * it's started until its Cursor is delivered on the main thread. That covers the hop to a
+     * background thread, the query, filling the Cursor's window and the hop back.
+     */
+    private void measureLoaderDelivery(final int days) throws Exception {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, BenchmarkData.createDays(days));
+
+        MicroBenchmark.measure(TAG, "CursorLoader delivery, " + days + " rows",
+                LOADER_WARM_UP_ITERATIONS, LOADER_MEASURED_ITERATIONS,
+                new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() throws Exception {
+                        Cursor cursor = loadForecast();
+                        assertEquals(days, cursor.getCount());
+                        cursor.close();
+                    }
+                });
+    }
+
+    /**
+     * Starts a new CursorLoader on the main thread and waits for its Cursor. Loaders must be
+     * started, and always deliver their results, on the main thread.
+     */
+    private Cursor loadForecast() throws InterruptedException {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final Cursor[] result = new Cursor[1];
+        final CursorLoader[] loader = new CursorLoader[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader[0] = new CursorLoader(mContext,
+                        WeatherEntry.CONTENT_URI,
+                        MainActivity.MAIN_FORECAST_PROJECTION,
+                        WeatherEntry.getSqlSelectForTodayOnwards(),
+                        null,
+                        WeatherEntry.COLUMN_DATE + " ASC");
+                loader[0].registerListener(0, new Loader.OnLoadCompleteListener<Cursor>() {
+                    @Override
+                    public void onLoadComplete(Loader<Cursor> completed, Cursor data) {
+                        /* Stop the loader so it lets go of the Cursor, which we now own */
+                        completed.unregisterListener(this);
+                        completed.stopLoading();
+                        result[0] = data;
+                        delivered.countDown();
+                    }
+                });
+                loader[0].startLoading();
+            }
+        });
+
+        assertTrue("The loader never delivered", delivered.await(30, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    /**
+     * Times ForecastAdapter binding one row at a time, going through every position in turn.
+     * Every view type gets a ViewHolder of its own, created before the clock starts, so only the
+     * bind itself is measured: moving the Cursor, reading the row, formatting it and setting the
+     * views. The rows are bound on the main thread, like they are in the list.
+     */
+    private void measureAdapterBind(final int days) throws Throwable {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, BenchmarkData.createDays(days));
+        final Cursor cursor = mResolver.query(WeatherEntry.CONTENT_URI,
+                MainActivity.MAIN_FORECAST_PROJECTION,
+                WeatherEntry.getSqlSelectForTodayOnwards(),
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(days, cursor.getCount());
+
+        final Throwable[] failure = new Throwable[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    bindEveryRow(days, cursor);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        });
+        cursor.close();
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private void bindEveryRow(int days, Cursor cursor) throws Exception {
+        Context themedContext = new ContextThemeWrapper(mContext, R.style.AppTheme_Forecast);
+        RecyclerView parent = new RecyclerView(themedContext);
+
+        final ForecastAdapter adapter = new ForecastAdapter(themedContext,
+                new ForecastAdapter.ForecastAdapterOnClickHandler() {
+                    @Override
+                    public void onClick(DayForecast dayForecast) {
+                    }
+                });
+        adapter.swapCursor(cursor);
+
+        /* One ViewHolder per view type, like a RecyclerView with a warm pool */
+        final ForecastAdapter.ForecastAdapterViewHolder[] holders =
+                new ForecastAdapter.ForecastAdapterViewHolder[days];
+        ForecastAdapter.ForecastAdapterViewHolder today =
+                adapter.onCreateViewHolder(parent, adapter.getItemViewType(0));
+        ForecastAdapter.ForecastAdapterViewHolder future = days > 1
+                ? adapter.onCreateViewHolder(parent, adapter.getItemViewType(1))
+                : today;
+        for (int position = 0; position < days; position++) {
+            holders[position] = adapter.getItemViewType(position) == adapter.getItemViewType(0)
+                    ? today : future;
+        }
+
+        final int[] position = new int[1];
+        MicroBenchmark.measure(TAG, "ForecastAdapter bind, " + days + " rows",
+                BIND_WARM_UP_ITERATIONS, BIND_MEASURED_ITERATIONS,
+                new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() {
+                        int next = position[0];
+                        adapter.onBindViewHolder(holders[next], next);
+                        position[0] = (next + 1) % holders.length;
+                    }
+                });
+    }
+
+    private void deleteAllWeather() {
+        mResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.core.DailyWeather;
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utils.BenchmarkData;
+import com.example.android.sunshine.utils.MicroBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures the archive table with as many rows as its retention policy keeps, and with ten times
+ * that, {@link BenchmarkData#ARCHIVED_DAYS_PER_LOCATION} days per location. For each size, it
+ * times:
+ * <p>
+ *   - A year of one location, oldest first, the way a screen showing past weather would ask
+ *     for it. The 99th percentile has to stay within {@link #YEAR_QUERY_BUDGET_MILLIS}, which
+ *     the (location, date) index makes possible however big the archive gets.
+ * <p>
+ *   - Compacting the archive down to its retention policy: deleting every day that is too old,
+ *     and then the oldest days until no more than ArchiveEntry#MAX_ROWS are left.
+ * <p>
+ * Every query goes through the ContentResolver, like it does in the app. Results are written to
+ * logcat under the ArchiveProviderBenchmark tag, for example:
+ * <pre>
+ * adb logcat -s ArchiveProviderBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class ArchiveProviderBenchmark {
+
+    private static final String TAG = ArchiveProviderBenchmark.class.getSimpleName();
+
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 50;
+
+    /* Compaction rewrites most of the table, so it's measured a few times only */
+    private static final int COMPACTION_ITERATIONS = 3;
+
+    private static final int QUERY_DAYS = 365;
+
+    /*
+     * The slowest a year of one location may be, at the 99th percentile. That's a few frames,
+     * which is about what a screen can spend loading before it feels slow.
+     */
+    private static final long YEAR_QUERY_BUDGET_MILLIS = 50;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    @Before
+    public void setUp() {
+        deleteArchive();
+    }
+
+    @After
+    public void tearDown() {
+        deleteArchive();
+    }
+
+    @Test
+    public void archiveRealistic() throws Exception {
+        measureArchive(BenchmarkData.REALISTIC_ARCHIVE_ROWS);
+    }
+
+    @Test
+    public void archiveStress() throws Exception {
+        measureArchive(BenchmarkData.STRESS_ARCHIVE_ROWS);
+    }
+
+    private void measureArchive(final int rows) throws Exception {
+        final int locations = rows / BenchmarkData.ARCHIVED_DAYS_PER_LOCATION;
+        final List<DailyWeather> days = BenchmarkData.createArchivedDays();
+        fillTable(mContext, locations, days);
+
+        /* The last year of a location in the middle of the index */
+        long endDate = days.get(days.size() - 1).getDate() + SunshineDateUtils.DAY_IN_MILLIS;
+        long startDate = endDate - QUERY_DAYS * SunshineDateUtils.DAY_IN_MILLIS;
+        final Uri queryUri = ArchiveEntry.buildArchiveUriWithLocationAndRange(
+                locationName(locations / 2), startDate, endDate);
+
+        MicroBenchmark.Result query = MicroBenchmark.measure(TAG,
+                "query a year of one location, " + rows + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() {
+                        Cursor cursor = mResolver.query(queryUri, null, null, null, null);
+                        int maxIndex = cursor.getColumnIndex(ArchiveEntry.COLUMN_MAX_TEMP);
+                        int count = 0;
+                        while (cursor.moveToNext()) {
+                            cursor.getDouble(maxIndex);
+                            count++;
+                        }
+                        cursor.close();
+                        assertEquals(QUERY_DAYS, count);
+                    }
+                });
+
+        assertTrue("A year of one location took " + query + ", over the budget of "
+                        + YEAR_QUERY_BUDGET_MILLIS + " ms",
+                query.p99Nanos <= TimeUnit.MILLISECONDS.toNanos(YEAR_QUERY_BUDGET_MILLIS));
+
+        MicroBenchmark.measure(TAG, "compact the archive, " + rows + " rows",
+                0, COMPACTION_ITERATIONS, new MicroBenchmark.Iteration() {
+                    @Override
+                    public void setUp() {
+                        deleteArchive();
+                        fillTable(mContext, locations, days);
+                    }
+
+                    @Override
+                    public void run() {
+                        WeatherProvider.compactArchive(mContext);
+                    }
+                });
+
+        Cursor count = mResolver.query(ArchiveEntry.CONTENT_URI,
+                new String[]{"COUNT(*)"}, null, null, null);
+        assertTrue(count.moveToFirst());
+        assertTrue("Compaction left more than the retention policy allows",
+                count.getInt(0) <= ArchiveEntry.MAX_ROWS);
+        count.close();
+    }
+
+    /*
+     * Gives every location the same history. This isn't what's being measured, so it's done in
+     * a single transaction straight on the database. ArchiveStorageBenchmark fills the archive
+     * the same way, so the two measure the same days.
+     */
+    static void fillTable(Context context, int locations, List<DailyWeather> days) {
+        WeatherDbHelper helper = new WeatherDbHelper(context);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + ArchiveEntry.TABLE_NAME
+                + " (" + ArchiveEntry.COLUMN_LOCATION
+                + ", " + ArchiveEntry.COLUMN_DATE
+                + ", " + ArchiveEntry.COLUMN_WEATHER_ID
+                + ", " + ArchiveEntry.COLUMN_MAX_TEMP
+                + ", " + ArchiveEntry.COLUMN_MIN_TEMP
+                + ", " + ArchiveEntry.COLUMN_HUMIDITY
+                + ", " + ArchiveEntry.COLUMN_PRESSURE
+                + ", " + ArchiveEntry.COLUMN_WIND_SPEED
+                + ", " + ArchiveEntry.COLUMN_DEGREES
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < locations; i++) {
+                insert.bindString(1, locationName(i));
+                for (DailyWeather day : days) {
+                    insert.bindLong(2, day.getDate());
+                    insert.bindLong(3, day.getWeatherId());
+                    insert.bindDouble(4, day.getHigh());
+                    insert.bindDouble(5, day.getLow());
+                    insert.bindLong(6, day.getHumidity());
+                    insert.bindDouble(7, day.getPressure());
+                    insert.bindDouble(8, day.getWindSpeed());
+                    insert.bindDouble(9, day.getWindDirection());
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+            helper.close();
+        }
+    }
+
+    /* Zero padded, so the locations sort in the index in the order they're numbered */
+    static String locationName(int index) {
+        return String.format(Locale.US, "Location %06d", index);
+    }
+
+    private void deleteArchive() {
+        mResolver.delete(ArchiveEntry.CONTENT_URI, null, null);
+    }
+}
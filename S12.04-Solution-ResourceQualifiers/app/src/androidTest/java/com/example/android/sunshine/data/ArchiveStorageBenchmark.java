@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.core.DailySeriesCodec;
+import com.example.android.sunshine.core.DailyWeather;
+import com.example.android.sunshine.data.WeatherContract.ArchiveBlockEntry;
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utils.BenchmarkData;
+import com.example.android.sunshine.utils.MicroBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Compares the archive stored as plain rows of the archive table with the same days packed into
+ * the archive block table, one blob per location and month. It fills the archive with
+ * {@link BenchmarkData#REALISTIC_ARCHIVE_ROWS} days, and reports, first unpacked and then packed:
+ * <p>
+ *   - Bytes per day: the growth of the database file, after a VACUUM, divided by the number of
+ *     days. For the packed archive, the bytes per day of the blobs alone are reported as well.
+ * <p>
+ *   - A year of one location, oldest first, through the ContentResolver, the same query
+ *     ArchiveProviderBenchmark times.
+ * <p>
+ * Finally it times decoding every month of one location, without SQLite, and reports how many
+ * days a second that is. Results are written to logcat under the ArchiveStorageBenchmark tag,
+ * for example:
+ * <pre>
+ * adb logcat -s ArchiveStorageBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class ArchiveStorageBenchmark {
+
+    private static final String TAG = ArchiveStorageBenchmark.class.getSimpleName();
+
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 50;
+
+    private static final int QUERY_DAYS = 365;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    @Before
+    public void setUp() {
+        deleteArchive();
+    }
+
+    @After
+    public void tearDown() {
+        deleteArchive();
+    }
+
+    @Test
+    public void archiveStorage() throws Exception {
+        int rows = BenchmarkData.REALISTIC_ARCHIVE_ROWS;
+        int locations = rows / BenchmarkData.ARCHIVED_DAYS_PER_LOCATION;
+        List<DailyWeather> days = BenchmarkData.createArchivedDays();
+
+        long emptyBytes = vacuumAndMeasure();
+        ArchiveProviderBenchmark.fillTable(mContext, locations, days);
+        long plainBytes = vacuumAndMeasure() - emptyBytes;
+
+        /* The last year of a location in the middle of the index */
+        String location = ArchiveProviderBenchmark.locationName(locations / 2);
+        long endDate = days.get(days.size() - 1).getDate() + SunshineDateUtils.DAY_IN_MILLIS;
+        long startDate = endDate - QUERY_DAYS * SunshineDateUtils.DAY_IN_MILLIS;
+        Uri queryUri = ArchiveEntry.buildArchiveUriWithLocationAndRange(location, startDate,
+                endDate);
+
+        MicroBenchmark.Result plainQuery = measureQuery(queryUri, "plain");
+
+        /* Everything before the current month, which is almost all of it */
+        long packStart = System.nanoTime();
+        int packedDays = WeatherProvider.packArchive(mContext, System.currentTimeMillis());
+        long packMillis = (System.nanoTime() - packStart) / 1000000;
+        long packedBytes = vacuumAndMeasure() - emptyBytes;
+
+        MicroBenchmark.Result packedQuery = measureQuery(queryUri, "packed");
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = helper.getReadableDatabase();
+        long blobBytes = DatabaseUtils.longForQuery(db, "SELECT SUM(LENGTH("
+                + ArchiveBlockEntry.COLUMN_DATA + ")) FROM " + ArchiveBlockEntry.TABLE_NAME,
+                null);
+        final List<byte[]> blobs = new ArrayList<>();
+        int locationDays = 0;
+        Cursor blocks = db.query(ArchiveBlockEntry.TABLE_NAME,
+                new String[]{ArchiveBlockEntry.COLUMN_DATA, ArchiveBlockEntry.COLUMN_DAY_COUNT},
+                ArchiveBlockEntry.COLUMN_LOCATION + " = ?", new String[]{location},
+                null, null, ArchiveBlockEntry.COLUMN_MONTH);
+        while (blocks.moveToNext()) {
+            blobs.add(blocks.getBlob(0));
+            locationDays += blocks.getInt(1);
+        }
+        blocks.close();
+        helper.close();
+
+        final int expectedDays = locationDays;
+        MicroBenchmark.Result decode = MicroBenchmark.measure(TAG,
+                "decode every month of one location, " + locationDays + " days",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() {
+                        int count = 0;
+                        for (byte[] blob : blobs) {
+                            count += DailySeriesCodec.decode(blob).size();
+                        }
+                        assertEquals(expectedDays, count);
+                    }
+                });
+
+        double plainBytesPerDay = (double) plainBytes / rows;
+        double packedBytesPerDay = (double) packedBytes / rows;
+        Log.i(TAG, String.format(Locale.US, "plain: %.1f bytes/day, year query median %.2f ms",
+                plainBytesPerDay, plainQuery.medianNanos / 1e6));
+        Log.i(TAG, String.format(Locale.US, "packed: %.1f bytes/day (blobs alone %.1f), "
+                        + "year query median %.2f ms, %d days packed in %d ms",
+                packedBytesPerDay, (double) blobBytes / packedDays,
+                packedQuery.medianNanos / 1e6, packedDays, packMillis));
+        Log.i(TAG, String.format(Locale.US, "decode: %.0f days/s",
+                expectedDays / (decode.medianNanos / 1e9)));
+
+        assertTrue("Packing didn't make the archive smaller: " + packedBytesPerDay
+                + " bytes/day packed, " + plainBytesPerDay + " plain",
+                packedBytesPerDay < plainBytesPerDay);
+    }
+
+    /* Times a year of one location, which has to be the same whether it's packed or not */
+    private MicroBenchmark.Result measureQuery(final Uri queryUri, String storage)
+            throws Exception {
+        return MicroBenchmark.measure(TAG, "query a year of one location, " + storage,
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() {
+                        Cursor cursor = mResolver.query(queryUri, null, null, null, null);
+                        int maxIndex = cursor.getColumnIndex(ArchiveEntry.COLUMN_MAX_TEMP);
+                        int count = 0;
+                        while (cursor.moveToNext()) {
+                            cursor.getDouble(maxIndex);
+                            count++;
+                        }
+                        cursor.close();
+                        assertEquals(QUERY_DAYS, count);
+                    }
+                });
+    }
+
+    /*
+     * The size of the database file once VACUUM has dropped its free pages, so that it only
+     * counts the pages the data actually needs.
+     */
+    private long vacuumAndMeasure() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try {
+            db.execSQL("VACUUM");
+            return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                    * DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        } finally {
+            helper.close();
+        }
+    }
+
+    /* Without a selection, this empties both the archive table and the archive block table */
+    private void deleteArchive() {
+        mResolver.delete(ArchiveEntry.CONTENT_URI, null, null);
+    }
+}
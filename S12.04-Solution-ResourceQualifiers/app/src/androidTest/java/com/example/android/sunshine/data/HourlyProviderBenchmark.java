@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.core.HourlyWeather;
+import com.example.android.sunshine.data.WeatherContract.HourlyEntry;
+import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
+import com.example.android.sunshine.utils.BenchmarkData;
+import com.example.android.sunshine.utils.MicroBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures the hourly table with a thousand rows and with a hundred thousand, 40 rows per
+ * location. For each size, it times:
+ * <p>
+ *   - The query a screen showing the next day of hours runs: one location, 24 hours, in order.
+ * <p>
+ *   - Refreshing one location the way a sync does: parsing a downloaded hourly forecast
+ *     straight into an {@link HourlyWriter}, which replaces that location's hours.
+ * <p>
+ *   - The same query again, while another thread refreshes a location over and over, to show
+ *     what a sync running in the background costs the UI.
+ * <p>
+ * Every query goes through the ContentResolver, like it does in the app. Working with one
+ * location goes through the (location, time) index, so none of these should get much slower
+ * when the table gets a hundred times bigger.
+ * <p>
+ * Results are written to logcat under the HourlyProviderBenchmark tag, for example:
+ * <pre>
+ * adb logcat -s HourlyProviderBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class HourlyProviderBenchmark {
+
+    private static final String TAG = HourlyProviderBenchmark.class.getSimpleName();
+
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 50;
+
+    /* A screen of hours: the next 24 of them, which is 8 entries */
+    private static final long QUERY_RANGE_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final int QUERY_ROWS = 8;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    @Before
+    public void setUp() {
+        deleteAllHours();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAllHours();
+    }
+
+    @Test
+    public void hourlyRealistic() throws Exception {
+        measureHourly(BenchmarkData.REALISTIC_HOURLY_ROWS);
+    }
+
+    @Test
+    public void hourlyStress() throws Exception {
+        measureHourly(BenchmarkData.STRESS_HOURLY_ROWS);
+    }
+
+    private void measureHourly(int rows) throws Exception {
+        final int locations = rows / BenchmarkData.HOURS_PER_LOCATION;
+        fillTable(locations);
+
+        /* Query a location in the middle of the index, and refresh another one */
+        final String queriedLocation = locationName(locations / 2);
+        final String refreshedLocation = locationName(locations / 2 + 1);
+
+        long firstHour = BenchmarkData.getFirstHour();
+        final Uri queryUri = HourlyEntry.buildHourlyUriWithLocationAndRange(queriedLocation,
+                firstHour, firstHour + QUERY_RANGE_MILLIS);
+        final byte[] json = BenchmarkData.createHourlyForecastJson();
+
+        MicroBenchmark.Iteration query = new MicroBenchmark.SimpleIteration() {
+            @Override
+            public void run() {
+                Cursor cursor = mResolver.query(queryUri, null, null, null, null);
+                int timeIndex = cursor.getColumnIndex(HourlyEntry.COLUMN_TIME);
+                int count = 0;
+                while (cursor.moveToNext()) {
+                    cursor.getLong(timeIndex);
+                    count++;
+                }
+                cursor.close();
+                assertEquals(QUERY_ROWS, count);
+            }
+        };
+
+        MicroBenchmark.measure(TAG, "query 24 hours of one location, " + rows + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, query);
+
+        MicroBenchmark.measure(TAG, "refresh one location, " + rows + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() throws IOException {
+                        refresh(refreshedLocation, json);
+                    }
+                });
+
+        /* The same query, with a sync refreshing a location in the background all the while */
+        final AtomicBoolean refreshing = new AtomicBoolean(true);
+        final AtomicInteger refreshes = new AtomicInteger();
+        Thread sync = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (refreshing.get()) {
+                        refresh(refreshedLocation, json);
+                        refreshes.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, "HourlyRefresh");
+        sync.start();
+        try {
+            MicroBenchmark.measure(TAG, "query 24 hours of one location during refreshes, "
+                    + rows + " rows", WARM_UP_ITERATIONS, MEASURED_ITERATIONS, query);
+        } finally {
+            refreshing.set(false);
+            sync.join();
+        }
+        Log.i(TAG, "Refreshes during the queries, " + rows + " rows: " + refreshes.get());
+
+        /* Refreshing only ever replaced one location's hours with as many new ones */
+        Cursor count = mResolver.query(HourlyEntry.CONTENT_URI,
+                new String[]{"COUNT(*)"}, null, null, null);
+        assertTrue(count.moveToFirst());
+        assertEquals(rows, count.getInt(0));
+        count.close();
+    }
+
+    /* Replaces a location's hours, the way SunshineSyncTask does */
+    private void refresh(String location, byte[] json) throws IOException {
+        HourlyWriter writer = WeatherProvider.openHourlyWriter(mContext, location);
+        try {
+            assertTrue(OpenWeatherJsonUtils.parseHourlyForecast(
+                    new ByteArrayInputStream(json), writer));
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+        assertEquals(BenchmarkData.HOURS_PER_LOCATION, writer.getRowCount());
+    }
+
+    /*
+     * Gives every location the same hours. This isn't what's being measured, so it's done in a
+     * single transaction straight on the database, which is far quicker than a writer per
+     * location.
+     */
+    private void fillTable(int locations) {
+        List<HourlyWeather> hours = BenchmarkData.createHours();
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + HourlyEntry.TABLE_NAME
+                + " (" + HourlyEntry.COLUMN_LOCATION
+                + ", " + HourlyEntry.COLUMN_TIME
+                + ", " + HourlyEntry.COLUMN_WEATHER_ID
+                + ", " + HourlyEntry.COLUMN_TEMPERATURE
+                + ", " + HourlyEntry.COLUMN_HUMIDITY
+                + ", " + HourlyEntry.COLUMN_PRESSURE
+                + ", " + HourlyEntry.COLUMN_WIND_SPEED
+                + ", " + HourlyEntry.COLUMN_DEGREES
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < locations; i++) {
+                insert.bindString(1, locationName(i));
+                for (HourlyWeather hour : hours) {
+                    insert.bindLong(2, hour.getTime());
+                    insert.bindLong(3, hour.getWeatherId());
+                    insert.bindDouble(4, hour.getTemperature());
+                    insert.bindLong(5, hour.getHumidity());
+                    insert.bindDouble(6, hour.getPressure());
+                    insert.bindDouble(7, hour.getWindSpeed());
+                    insert.bindDouble(8, hour.getWindDirection());
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+            helper.close();
+        }
+    }
+
+    /* Zero padded, so the locations sort in the index in the order they're numbered */
+    private static String locationName(int index) {
+        return String.format(Locale.US, "Location %06d", index);
+    }
+
+    private void deleteAllHours() {
+        mResolver.delete(HourlyEntry.CONTENT_URI, null, null);
+    }
+}
@@ -57,6 +57,7 @@ import static junit.framework.Assert.fail;
  * 4) Verify that NON NULL constraints are working properly on record inserts
  * 5) Verify auto increment is working with the ID
  * 6) Test the onUpgrade functionality of the WeatherDbHelper
+ * 7) Verify that upgrading from version 9 keeps the archive
  */
 @RunWith(AndroidJUnit4.class)
 public class TestSunshineDatabase {
@@ -193,7 +194,7 @@ public class TestSunshineDatabase {
 
     @Test
     public void testDatabaseVersionWasIncremented() {
-        int expectedDatabaseVersion = 3;
+        int expectedDatabaseVersion = 10;
         String databaseVersionShouldBe1 = "Database version should be "
                 + expectedDatabaseVersion + " but isn't."
                 + "\n Database version: ";
@@ -436,6 +437,38 @@ public class TestSunshineDatabase {
         database.close();
     }
 
+    /**
+     * Upgrading a version 9 database must only add the archive block table, and keep the days
+     * that are already archived, since they can't be downloaded again.
+     */
+    @Test
+    public void testOnUpgradeFromVersion9KeepsArchive() {
+        ContentValues archivedDay = TestUtilities.createTestWeatherContentValues();
+        archivedDay.put(WeatherContract.ArchiveEntry.COLUMN_LOCATION, "94043");
+        database.insert(WeatherContract.ArchiveEntry.TABLE_NAME, null, archivedDay);
+
+        /* This is what a version 9 database looks like */
+        database.execSQL("DROP TABLE " + WeatherContract.ArchiveBlockEntry.TABLE_NAME);
+
+        dbHelper.onUpgrade(database, 9, 10);
+
+        Cursor tableNameCursor = database.rawQuery(
+                "SELECT name FROM sqlite_master WHERE type='table' AND name='"
+                        + WeatherContract.ArchiveBlockEntry.TABLE_NAME + "'",
+                null);
+        assertEquals("The archive block table wasn't created by the upgrade",
+                1, tableNameCursor.getCount());
+        tableNameCursor.close();
+
+        Cursor archiveCursor = database.query(WeatherContract.ArchiveEntry.TABLE_NAME,
+                null, null, null, null, null, null);
+        assertEquals("The archive should have survived the upgrade",
+                1, archiveCursor.getCount());
+        archiveCursor.close();
+
+        database.close();
+    }
+
     /**
      * This method tests that our database contains all of the tables that we think it should
      * contain. Although in our case, we just have one table that we expect should be added
@@ -454,8 +487,13 @@ public class TestSunshineDatabase {
          */
         final HashSet<String> tableNameHashSet = new HashSet<>();
 
-        /* Here, we add the name of our only table in this particular database */
+        /* Here, we add the names of the weather table, the sync tables and the other tables */
         tableNameHashSet.add(REFLECTED_TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.SyncMetadataEntry.TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.SyncLogEntry.TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.HourlyEntry.TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.ArchiveEntry.TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.ArchiveBlockEntry.TABLE_NAME);
         /* Students, here is where you would add any other table names if you had them */
 //        tableNameHashSet.add(MyAwesomeSuperCoolTableName);
 //        tableNameHashSet.add(MyOtherCoolTableNameThatContainsOtherCoolData);
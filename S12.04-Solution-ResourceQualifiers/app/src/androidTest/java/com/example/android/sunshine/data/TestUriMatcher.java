@@ -101,5 +101,27 @@ public class TestUriMatcher {
         assertEquals(weatherWithDateUriCodeDoesNotMatch,
                 expectedWeatherWithDateCode,
                 actualWeatherWithDateCode);
+
+        /* The hourly forecast, for every location and for one location, with or without a range */
+        assertEquals("Error: The CODE_HOURLY URI was matched incorrectly.",
+                WeatherProvider.CODE_HOURLY,
+                testMatcher.match(WeatherContract.HourlyEntry.CONTENT_URI));
+        assertEquals("Error: The CODE_HOURLY_WITH_LOCATION URI was matched incorrectly.",
+                WeatherProvider.CODE_HOURLY_WITH_LOCATION,
+                testMatcher.match(WeatherContract.HourlyEntry
+                        .buildHourlyUriWithLocation("Mountain View, CA 94043")));
+        assertEquals("Error: A CODE_HOURLY_WITH_LOCATION URI with a range was matched incorrectly.",
+                WeatherProvider.CODE_HOURLY_WITH_LOCATION,
+                testMatcher.match(WeatherContract.HourlyEntry
+                        .buildHourlyUriWithLocationAndRange("94043", 0, 1000)));
+
+        /* The archive works the same way */
+        assertEquals("Error: The CODE_ARCHIVE URI was matched incorrectly.",
+                WeatherProvider.CODE_ARCHIVE,
+                testMatcher.match(WeatherContract.ArchiveEntry.CONTENT_URI));
+        assertEquals("Error: The CODE_ARCHIVE_WITH_LOCATION URI was matched incorrectly.",
+                WeatherProvider.CODE_ARCHIVE_WITH_LOCATION,
+                testMatcher.match(WeatherContract.ArchiveEntry
+                        .buildArchiveUriWithLocationAndRange("94043", 0, 1000)));
     }
 }
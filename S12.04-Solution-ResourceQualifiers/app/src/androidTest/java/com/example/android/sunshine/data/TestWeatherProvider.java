@@ -27,10 +27,15 @@ import android.net.Uri;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.example.android.sunshine.core.DailySeriesCodec;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.concurrent.TimeUnit;
+
 import static com.example.android.sunshine.data.TestUtilities.BULK_INSERT_RECORDS_TO_INSERT;
 import static com.example.android.sunshine.data.TestUtilities.createBulkInsertTestWeatherValues;
 import static junit.framework.Assert.assertEquals;
@@ -57,6 +62,22 @@ import static junit.framework.Assert.fail;
  *   4) A test to determine if you've implemented the delete functionality of your
  *    ContentProvider properly.
  * <p>
+ *   5) A test to ensure that the sync log stays bounded and that its statistics are correct
+ * <p>
+ *   6) Tests to ensure that a WeatherWriter replaces the forecast when it's committed, and
+ *    leaves the old forecast alone when it isn't
+ * <p>
+ *   7) Tests to ensure that the hourly forecast is queried by location and time through its
+ *    index, that an HourlyWriter only ever replaces the hours of its own location, and that it
+ *    deletes the hours that are over
+ * <p>
+ *   8) Tests to ensure that a WeatherWriter archives the past days it replaces, that the
+ *    archive is queried by location and date through its index, and that compaction enforces
+ *    its retention policy
+ * <p>
+ *   9) A test to ensure that packing the archive into blocks changes nothing a location URI
+ *    returns, and that those URIs still delete exactly the days they cover
+ * <p>
  * If any of these tests fail, you should see useful error messages in the testing console's
  * output window.
  * <p>
@@ -79,6 +100,9 @@ public class TestWeatherProvider {
     @Before
     public void setUp() {
         deleteAllRecordsFromWeatherTable();
+        deleteAllRecordsFromSyncLogTable();
+        deleteAllRecordsFromHourlyTable();
+        deleteAllRecordsFromArchiveTable();
     }
 
     /**
@@ -423,6 +447,641 @@ public class TestWeatherProvider {
         shouldBeEmptyCursor.close();
     }
 
+    /**
+     * This test replaces a forecast with a shorter one through a {@link WeatherWriter}, and checks
+     * that only the new forecast is left once the writer commits, and that observers are told.
+     */
+    @Test
+    public void testWeatherWriterReplacesForecast() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createBulkInsertTestWeatherValues());
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        long firstDate = TestUtilities.DATE_NORMALIZED;
+        WeatherWriter writer = WeatherProvider.openWeatherWriter(mContext);
+        try {
+            for (int i = 0; i < 3; i++) {
+                writer.onDay(firstDate + i * SunshineDateUtils.DAY_IN_MILLIS, 800 + i,
+                        20 + i, 10 - i, 50, 1013.5, 3.5, 270);
+            }
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+
+        weatherObserver.waitForNotificationOrFail();
+        contentResolver.unregisterContentObserver(weatherObserver);
+
+        assertEquals("Writer reported the wrong number of rows", 3, writer.getRowCount());
+
+        Cursor cursor = contentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null, null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Old forecast wasn't replaced", 3, cursor.getCount());
+
+        cursor.moveToFirst();
+        assertEquals(firstDate, cursor.getLong(
+                cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE)));
+        assertEquals(800, cursor.getInt(
+                cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID)));
+        assertEquals(20.0, cursor.getDouble(
+                cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)), 0);
+        assertEquals(1013.5, cursor.getDouble(
+                cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_PRESSURE)), 0);
+        cursor.close();
+    }
+
+    /**
+     * This test closes a {@link WeatherWriter} half way through a forecast without committing,
+     * the way a failed sync does, and checks that the old forecast is still there, untouched.
+     */
+    @Test
+    public void testUncommittedWeatherWriterRollsBack() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createBulkInsertTestWeatherValues());
+
+        WeatherWriter writer = WeatherProvider.openWeatherWriter(mContext);
+        try {
+            writer.onDay(TestUtilities.DATE_NORMALIZED, 800, 20, 10, 50, 1013.5, 3.5, 270);
+        } finally {
+            writer.close();
+        }
+
+        Cursor cursor = contentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Old forecast didn't survive an uncommitted writer",
+                BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.close();
+    }
+
+    /**
+     * This test inserts more sync runs than the sync log keeps, and then checks that only the
+     * most recent runs are left and that the statistics computed from them are correct.
+     * <p>
+     * Run i (counting from 1) takes i milliseconds on the network and downloads i * 1000 bytes.
+     * Every third run fails before parsing, so it never records a parse time.
+     */
+    @Test
+    public void testSyncLogIsBoundedAndSummarized() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        int maxRows = WeatherContract.SyncLogEntry.MAX_ROWS;
+        int runsToInsert = maxRows + 20;
+
+        for (int i = 1; i <= runsToInsert; i++) {
+            ContentValues run = new ContentValues();
+            run.put(WeatherContract.SyncLogEntry.COLUMN_START_TIME, i);
+            run.put(WeatherContract.SyncLogEntry.COLUMN_NETWORK_MILLIS, i);
+            if (i % 3 != 0) {
+                run.put(WeatherContract.SyncLogEntry.COLUMN_PARSE_MILLIS, 1);
+            }
+            run.put(WeatherContract.SyncLogEntry.COLUMN_TOTAL_MILLIS, i + 1);
+            run.put(WeatherContract.SyncLogEntry.COLUMN_PAYLOAD_BYTES, i * 1000);
+            run.put(WeatherContract.SyncLogEntry.COLUMN_OUTCOME, i % 3 == 0
+                    ? WeatherContract.SyncLogEntry.OUTCOME_ERROR
+                    : WeatherContract.SyncLogEntry.OUTCOME_SUCCESS);
+            assertNotNull("Inserting a sync run failed",
+                    contentResolver.insert(WeatherContract.SyncLogEntry.CONTENT_URI, run));
+        }
+
+        /* Only the newest MAX_ROWS runs are kept, and they are returned newest first */
+        Cursor runs = contentResolver.query(
+                WeatherContract.SyncLogEntry.CONTENT_URI,
+                new String[]{WeatherContract.SyncLogEntry.COLUMN_START_TIME},
+                null,
+                null,
+                null);
+        assertNotNull("Cursor was null.", runs);
+        assertEquals("The sync log wasn't bounded", maxRows, runs.getCount());
+        assertTrue(runs.moveToFirst());
+        assertEquals("The newest run should come first", runsToInsert, runs.getLong(0));
+        assertTrue(runs.moveToLast());
+        assertEquals("The oldest runs should have been dropped",
+                runsToInsert - maxRows + 1, runs.getLong(0));
+        runs.close();
+
+        /* Summarize the last 10 runs: 111 to 120 */
+        Uri statsUri = WeatherContract.SyncLogEntry
+                .buildUriWithLimit(WeatherContract.SyncLogEntry.STATS_URI, 10);
+        Cursor stats = contentResolver.query(statsUri, null, null, null, null);
+        assertNotNull("Cursor was null.", stats);
+        assertEquals(WeatherContract.SyncLogEntry.MEASURED_COLUMNS.length, stats.getCount());
+
+        int metricIndex = stats.getColumnIndex(WeatherContract.SyncLogEntry.STATS_COLUMN_METRIC);
+        int countIndex = stats.getColumnIndex(WeatherContract.SyncLogEntry.STATS_COLUMN_COUNT);
+        int medianIndex = stats.getColumnIndex(WeatherContract.SyncLogEntry.STATS_COLUMN_MEDIAN);
+        int p90Index = stats.getColumnIndex(WeatherContract.SyncLogEntry.STATS_COLUMN_P90);
+        int maxIndex = stats.getColumnIndex(WeatherContract.SyncLogEntry.STATS_COLUMN_MAX);
+
+        boolean sawNetwork = false;
+        boolean sawParse = false;
+        boolean sawWrite = false;
+        while (stats.moveToNext()) {
+            String metric = stats.getString(metricIndex);
+            if (WeatherContract.SyncLogEntry.COLUMN_NETWORK_MILLIS.equals(metric)) {
+                sawNetwork = true;
+                assertEquals(10, stats.getInt(countIndex));
+                assertEquals(115, stats.getLong(medianIndex));
+                assertEquals(119, stats.getLong(p90Index));
+                assertEquals(120, stats.getLong(maxIndex));
+            } else if (WeatherContract.SyncLogEntry.COLUMN_PARSE_MILLIS.equals(metric)) {
+                /* Runs 111, 114, 117 and 120 failed before parsing */
+                sawParse = true;
+                assertEquals(6, stats.getInt(countIndex));
+            } else if (WeatherContract.SyncLogEntry.COLUMN_WRITE_MILLIS.equals(metric)) {
+                /* No run recorded a write, so there is nothing to summarize */
+                sawWrite = true;
+                assertEquals(0, stats.getInt(countIndex));
+                assertTrue(stats.isNull(medianIndex));
+            }
+        }
+        stats.close();
+
+        assertTrue("The stats didn't include every measured column",
+                sawNetwork && sawParse && sawWrite);
+    }
+
+    /**
+     * This test inserts two days of hours for two locations, and checks that a query for one
+     * location within a range of time returns exactly the hours in that range, in order, and
+     * that SQLite answers it from the (location, time) index without sorting anything.
+     */
+    @Test
+    public void testHourlyQueryByLocationAndRange() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long start = TestUtilities.DATE_NORMALIZED;
+        long step = TimeUnit.HOURS.toMillis(3);
+
+        /* Insert the hours backwards, to make sure the order comes from the query */
+        for (String location : new String[]{"94043", "London"}) {
+            ContentValues[] hours = new ContentValues[16];
+            for (int i = 0; i < hours.length; i++) {
+                hours[i] = createHourValues(start + (hours.length - 1 - i) * step, 20 + i);
+            }
+            assertEquals(hours.length, contentResolver.bulkInsert(
+                    WeatherContract.HourlyEntry.buildHourlyUriWithLocation(location), hours));
+        }
+
+        /* From the 3rd entry to the 10th: [start + 2 * step, start + 10 * step) */
+        Uri rangeUri = WeatherContract.HourlyEntry.buildHourlyUriWithLocationAndRange("94043",
+                start + 2 * step, start + 10 * step);
+        Cursor cursor = contentResolver.query(rangeUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Wrong number of hours in the range", 8, cursor.getCount());
+
+        int timeIndex = cursor.getColumnIndex(WeatherContract.HourlyEntry.COLUMN_TIME);
+        int locationIndex = cursor.getColumnIndex(WeatherContract.HourlyEntry.COLUMN_LOCATION);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            assertEquals("Hours weren't in order", start + (2 + i) * step,
+                    cursor.getLong(timeIndex));
+            assertEquals("94043", cursor.getString(locationIndex));
+        }
+        cursor.close();
+
+        /* The plan must search the index, and must not need a separate sort for the order */
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        Cursor plan = helper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN SELECT * FROM "
+                + WeatherContract.HourlyEntry.TABLE_NAME + " WHERE "
+                + WeatherContract.HourlyEntry.COLUMN_LOCATION + " = ? AND "
+                + WeatherContract.HourlyEntry.COLUMN_TIME + " >= ? AND "
+                + WeatherContract.HourlyEntry.COLUMN_TIME + " < ? ORDER BY "
+                + WeatherContract.HourlyEntry.COLUMN_TIME + " ASC",
+                new String[]{"94043", "0", "1"});
+        StringBuilder details = new StringBuilder();
+        while (plan.moveToNext()) {
+            details.append(plan.getString(plan.getColumnIndex("detail"))).append('\n');
+        }
+        plan.close();
+        helper.close();
+
+        assertTrue("The query didn't use the index: " + details,
+                details.toString().contains("USING INDEX"));
+        assertTrue("The query needed a sort: " + details,
+                !details.toString().contains("TEMP B-TREE"));
+    }
+
+    /**
+     * This test replaces the hours of one location through an {@link HourlyWriter}, and checks
+     * that its old hours are gone, the other location's hours are untouched, and observers of
+     * the location are told. It then checks that an uncommitted writer changes nothing.
+     */
+    @Test
+    public void testHourlyWriterOnlyReplacesItsOwnLocation() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long start = TestUtilities.DATE_NORMALIZED;
+        long step = TimeUnit.HOURS.toMillis(3);
+
+        for (String location : new String[]{"94043", "London"}) {
+            ContentValues[] hours = new ContentValues[8];
+            for (int i = 0; i < hours.length; i++) {
+                hours[i] = createHourValues(start + i * step, 15);
+            }
+            contentResolver.bulkInsert(
+                    WeatherContract.HourlyEntry.buildHourlyUriWithLocation(location), hours);
+        }
+
+        Uri mountainViewUri = WeatherContract.HourlyEntry.buildHourlyUriWithLocation("94043");
+        Uri londonUri = WeatherContract.HourlyEntry.buildHourlyUriWithLocation("London");
+
+        TestUtilities.TestContentObserver hourlyObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(mountainViewUri, true, hourlyObserver);
+
+        /* A new forecast that starts a day later */
+        HourlyWriter writer = WeatherProvider.openHourlyWriter(mContext, "94043", start);
+        try {
+            for (int i = 0; i < 3; i++) {
+                writer.onHour(start + SunshineDateUtils.DAY_IN_MILLIS + i * step, 500,
+                        10 + i, 90, 1000.5, 7.5, 180);
+            }
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+
+        hourlyObserver.waitForNotificationOrFail();
+        contentResolver.unregisterContentObserver(hourlyObserver);
+
+        Cursor cursor = contentResolver.query(mountainViewUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Old hours weren't replaced", 3, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(start + SunshineDateUtils.DAY_IN_MILLIS, cursor.getLong(
+                cursor.getColumnIndex(WeatherContract.HourlyEntry.COLUMN_TIME)));
+        assertEquals(10.0, cursor.getDouble(
+                cursor.getColumnIndex(WeatherContract.HourlyEntry.COLUMN_TEMPERATURE)), 0);
+        cursor.close();
+
+        cursor = contentResolver.query(londonUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Another location's hours were touched", 8, cursor.getCount());
+        cursor.close();
+
+        /* Closing without committing leaves everything as it was */
+        writer = WeatherProvider.openHourlyWriter(mContext, "London", start);
+        try {
+            writer.onHour(start, 800, 30, 10, 1020, 0, 0);
+        } finally {
+            writer.close();
+        }
+
+        cursor = contentResolver.query(londonUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Old hours didn't survive an uncommitted writer", 8, cursor.getCount());
+        cursor.close();
+    }
+
+    /**
+     * This test gives a location hours from two days ago up to now, then writes another
+     * location's hours through an {@link HourlyWriter}, and checks that the first location only
+     * kept the hour that's still in progress.
+     */
+    @Test
+    public void testHourlyWriterDeletesHoursThatAreOver() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long now = TestUtilities.DATE_NORMALIZED + TimeUnit.MINUTES.toMillis(90);
+        long step = TimeUnit.HOURS.toMillis(3);
+
+        /* Every 3 hours from two days ago up to the step that began at midnight */
+        ContentValues[] hours = new ContentValues[17];
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = createHourValues(TestUtilities.DATE_NORMALIZED - i * step, 15);
+        }
+        Uri londonUri = WeatherContract.HourlyEntry.buildHourlyUriWithLocation("London");
+        contentResolver.bulkInsert(londonUri, hours);
+
+        HourlyWriter writer = WeatherProvider.openHourlyWriter(mContext, "94043", now);
+        try {
+            writer.onHour(TestUtilities.DATE_NORMALIZED, 500, 10, 90, 1000.5, 7.5, 180);
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+
+        Cursor cursor = contentResolver.query(londonUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Hours that are over weren't deleted", 1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(TestUtilities.DATE_NORMALIZED, cursor.getLong(
+                cursor.getColumnIndex(WeatherContract.HourlyEntry.COLUMN_TIME)));
+        cursor.close();
+    }
+
+    /**
+     * This test writes a forecast for one location that includes three past days, then replaces
+     * it with a forecast for another location, and checks that exactly the past days were
+     * archived, under the location they were written for, and that observers of the archive are
+     * told. Days inserted through bulkInsert don't say which location they're for, so replacing
+     * them must archive nothing.
+     */
+    @Test
+    public void testWeatherWriterArchivesPastDays() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        long day = SunshineDateUtils.DAY_IN_MILLIS;
+
+        WeatherWriter writer = WeatherProvider.openWeatherWriter(mContext, "94043");
+        try {
+            for (int i = -3; i <= 2; i++) {
+                writer.onDay(today + i * day, 800 + i, 20 + i, 10 + i, 50, 1013.5, 3.5, 270);
+            }
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+
+        TestUtilities.TestContentObserver archiveObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.ArchiveEntry.CONTENT_URI, true, archiveObserver);
+
+        writer = WeatherProvider.openWeatherWriter(mContext, "London");
+        try {
+            writer.onDay(today, 500, 15, 5, 80, 1000, 6, 180);
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+
+        archiveObserver.waitForNotificationOrFail();
+        contentResolver.unregisterContentObserver(archiveObserver);
+
+        assertEquals("Writer reported the wrong number of archived days",
+                3, writer.getArchivedRowCount());
+
+        Cursor cursor = contentResolver.query(
+                WeatherContract.ArchiveEntry.buildArchiveUriWithLocation("94043"),
+                null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Only the past days should have been archived", 3, cursor.getCount());
+        int dateIndex = cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_DATE);
+        int maxIndex = cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_MAX_TEMP);
+        for (int i = -3; cursor.moveToNext(); i++) {
+            assertEquals("Archived days weren't in order", today + i * day,
+                    cursor.getLong(dateIndex));
+            assertEquals(20.0 + i, cursor.getDouble(maxIndex), 0);
+        }
+        cursor.close();
+
+        cursor = contentResolver.query(
+                WeatherContract.ArchiveEntry.buildArchiveUriWithLocation("London"),
+                null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Nothing of the new location should be archived yet", 0, cursor.getCount());
+        cursor.close();
+
+        /* Replacing weather of an unknown location archives nothing */
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createBulkInsertTestWeatherValues());
+        writer = WeatherProvider.openWeatherWriter(mContext, "London");
+        try {
+            writer.onDay(today, 500, 15, 5, 80, 1000, 6, 180);
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+        assertEquals("Days of an unknown location were archived",
+                0, writer.getArchivedRowCount());
+    }
+
+    /**
+     * This test archives a little over two years of days for two locations, and checks that a
+     * query for one location within a year returns exactly the days of that year, in order,
+     * and that SQLite answers it from the (location, date) index without sorting anything.
+     */
+    @Test
+    public void testArchiveQueryByLocationAndRange() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long firstDate = TestUtilities.DATE_NORMALIZED;
+        long day = SunshineDateUtils.DAY_IN_MILLIS;
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        insertArchivedDays(database, "94043", firstDate, 800);
+        insertArchivedDays(database, "London", firstDate, 800);
+
+        /* The second year: [firstDate + 365 days, firstDate + 730 days) */
+        Uri rangeUri = WeatherContract.ArchiveEntry.buildArchiveUriWithLocationAndRange("94043",
+                firstDate + 365 * day, firstDate + 730 * day);
+        Cursor cursor = contentResolver.query(rangeUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Wrong number of days in the range", 365, cursor.getCount());
+
+        int dateIndex = cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_DATE);
+        int locationIndex = cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_LOCATION);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            assertEquals("Days weren't in order", firstDate + (365 + i) * day,
+                    cursor.getLong(dateIndex));
+            assertEquals("94043", cursor.getString(locationIndex));
+        }
+        cursor.close();
+
+        /* The plan must search the index, and must not need a separate sort for the order */
+        Cursor plan = database.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM "
+                + WeatherContract.ArchiveEntry.TABLE_NAME + " WHERE "
+                + WeatherContract.ArchiveEntry.COLUMN_LOCATION + " = ? AND "
+                + WeatherContract.ArchiveEntry.COLUMN_DATE + " >= ? AND "
+                + WeatherContract.ArchiveEntry.COLUMN_DATE + " < ? ORDER BY "
+                + WeatherContract.ArchiveEntry.COLUMN_DATE + " ASC",
+                new String[]{"94043", "0", "1"});
+        StringBuilder details = new StringBuilder();
+        while (plan.moveToNext()) {
+            details.append(plan.getString(plan.getColumnIndex("detail"))).append('\n');
+        }
+        plan.close();
+        helper.close();
+
+        assertTrue("The query didn't use the index: " + details,
+                details.toString().contains("USING INDEX"));
+        assertTrue("The query needed a sort: " + details,
+                !details.toString().contains("TEMP B-TREE"));
+    }
+
+    /**
+     * This test archives the last 100 days for two locations, then compacts the archive with a
+     * maximum age of 60 days and a maximum of 50 rows. The 40 oldest days of each location are
+     * too old, which leaves 120 rows, and the oldest 70 of those have to go as well, which
+     * leaves the newest 25 days of each location. The time of the compaction must be recorded.
+     */
+    @Test
+    public void testArchiveCompactionEnforcesRetention() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long now = System.currentTimeMillis();
+        long today = SunshineDateUtils.normalizeDate(now);
+        long day = SunshineDateUtils.DAY_IN_MILLIS;
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        insertArchivedDays(database, "94043", today - 100 * day, 100);
+        insertArchivedDays(database, "London", today - 100 * day, 100);
+        helper.close();
+
+        int numRowsDeleted = WeatherProvider.compactArchive(mContext, now, 60, 50);
+        assertEquals("Wrong number of archived days deleted", 150, numRowsDeleted);
+
+        for (String location : new String[]{"94043", "London"}) {
+            Cursor cursor = contentResolver.query(
+                    WeatherContract.ArchiveEntry.buildArchiveUriWithLocation(location),
+                    null, null, null, null);
+            assertNotNull("Cursor was null.", cursor);
+            assertEquals("Wrong number of days left for " + location, 25, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("The oldest days weren't the ones deleted", today - 25 * day,
+                    cursor.getLong(
+                            cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_DATE)));
+            cursor.close();
+        }
+
+        Cursor metadata = contentResolver.query(WeatherContract.SyncMetadataEntry.CONTENT_URI,
+                new String[]{WeatherContract.SyncMetadataEntry.COLUMN_LAST_COMPACTION},
+                null, null, null);
+        assertNotNull("Cursor was null.", metadata);
+        assertTrue(metadata.moveToFirst());
+        assertEquals("The compaction time wasn't recorded", now, metadata.getLong(0));
+        metadata.close();
+
+        /* Nothing more to do the second time around */
+        assertEquals(0, WeatherProvider.compactArchive(mContext, now, 60, 50));
+    }
+
+    /**
+     * This test archives the 90 days before the current month and the days of the current month
+     * so far, for two locations, and packs the archive. Only the current month must be left in
+     * the archive table, and a location URI must still return every day, in order and with the
+     * values that were archived, also for a range of packed days that cuts a month part way
+     * through a month. Deleting that range must delete exactly its days, and nothing of the other
+     * location. A selection can't be applied to packed days, so it must be refused.
+     */
+    @Test
+    public void testArchivePackingKeepsEveryDay() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long now = System.currentTimeMillis();
+        long day = SunshineDateUtils.DAY_IN_MILLIS;
+        long today = SunshineDateUtils.normalizeDate(now);
+        long currentMonth = DailySeriesCodec.getMonthStart(today);
+
+        long firstDate = currentMonth - 90 * day;
+        int days = (int) ((today - firstDate) / day);
+        int daysOfCurrentMonth = days - 90;
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        insertArchivedDays(database, "94043", firstDate, days);
+        insertArchivedDays(database, "London", firstDate, days);
+        helper.close();
+
+        assertEquals("Wrong number of days packed", 2 * 90,
+                WeatherProvider.packArchive(mContext, now));
+
+        Cursor unpacked = contentResolver.query(WeatherContract.ArchiveEntry.CONTENT_URI,
+                null, null, null, null);
+        assertNotNull("Cursor was null.", unpacked);
+        assertEquals("Only the current month should be left unpacked",
+                2 * daysOfCurrentMonth, unpacked.getCount());
+        unpacked.close();
+
+        Uri locationUri = WeatherContract.ArchiveEntry.buildArchiveUriWithLocation("94043");
+        Cursor cursor = contentResolver.query(locationUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Packing lost or added days", days, cursor.getCount());
+        for (int i = 0; cursor.moveToNext(); i++) {
+            assertEquals("Days weren't in order", firstDate + i * day, cursor.getLong(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_DATE)));
+            assertEquals("94043", cursor.getString(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_LOCATION)));
+            assertEquals(800, cursor.getInt(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_WEATHER_ID)));
+            assertEquals(20.0, cursor.getDouble(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_MAX_TEMP)), 0.001);
+            assertEquals(10.0, cursor.getDouble(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_MIN_TEMP)), 0.001);
+            assertEquals(50.0, cursor.getDouble(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_HUMIDITY)), 0.001);
+            assertEquals(1013.0, cursor.getDouble(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_PRESSURE)), 0.001);
+            assertEquals(2.5, cursor.getDouble(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_WIND_SPEED)), 0.001);
+            assertEquals(90.0, cursor.getDouble(
+                    cursor.getColumnIndex(WeatherContract.ArchiveEntry.COLUMN_DEGREES)), 0.001);
+        }
+        cursor.close();
+
+        /* 40 packed days, which can never be whole months, so at least one month is cut */
+        Uri rangeUri = WeatherContract.ArchiveEntry.buildArchiveUriWithLocationAndRange("94043",
+                firstDate + 15 * day, firstDate + 55 * day);
+        cursor = contentResolver.query(rangeUri,
+                new String[]{WeatherContract.ArchiveEntry.COLUMN_DATE}, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Wrong number of days in the range", 40, cursor.getCount());
+        for (int i = 0; cursor.moveToNext(); i++) {
+            assertEquals("Days weren't in order", firstDate + (15 + i) * day, cursor.getLong(0));
+        }
+        cursor.close();
+
+        try {
+            contentResolver.query(rangeUri, null,
+                    WeatherContract.ArchiveEntry.COLUMN_WEATHER_ID + " = 800", null, null);
+            fail("A selection was applied to packed days");
+        } catch (IllegalArgumentException expected) {
+            /* Packed days can't be filtered with SQL */
+        }
+
+        assertEquals("Wrong number of days deleted", 40,
+                contentResolver.delete(rangeUri, null, null));
+
+        cursor = contentResolver.query(locationUri, null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Deleting the range deleted the wrong days", days - 40, cursor.getCount());
+        cursor.close();
+
+        cursor = contentResolver.query(
+                WeatherContract.ArchiveEntry.buildArchiveUriWithLocation("London"),
+                null, null, null, null);
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Days of the other location were deleted", days, cursor.getCount());
+        cursor.close();
+    }
+
+    /* Archives one row a day for a location, starting at firstDate */
+    private static void insertArchivedDays(SQLiteDatabase database, String location,
+                                           long firstDate, int days) {
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < days; i++) {
+                ContentValues values = new ContentValues();
+                values.put(WeatherContract.ArchiveEntry.COLUMN_LOCATION, location);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_DATE,
+                        firstDate + i * SunshineDateUtils.DAY_IN_MILLIS);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_WEATHER_ID, 800);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_MAX_TEMP, 20);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_MIN_TEMP, 10);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_HUMIDITY, 50);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_PRESSURE, 1013);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_WIND_SPEED, 2.5);
+                values.put(WeatherContract.ArchiveEntry.COLUMN_DEGREES, 90);
+                database.insert(WeatherContract.ArchiveEntry.TABLE_NAME, null, values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static ContentValues createHourValues(long time, double temperature) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.HourlyEntry.COLUMN_TIME, time);
+        values.put(WeatherContract.HourlyEntry.COLUMN_WEATHER_ID, 800);
+        values.put(WeatherContract.HourlyEntry.COLUMN_TEMPERATURE, temperature);
+        values.put(WeatherContract.HourlyEntry.COLUMN_HUMIDITY, 50);
+        values.put(WeatherContract.HourlyEntry.COLUMN_PRESSURE, 1013);
+        values.put(WeatherContract.HourlyEntry.COLUMN_WIND_SPEED, 2.5);
+        values.put(WeatherContract.HourlyEntry.COLUMN_DEGREES, 90);
+        return values;
+    }
+
     /**
      * This method will clear all rows from the weather table in our database.
      * <p>
@@ -446,4 +1105,38 @@ public class TestWeatherProvider {
         /* Always close the database when you're through with it */
         database.close();
     }
-}
\ No newline at end of file
+
+    /**
+     * This method will clear all rows from the sync log table in our database, for the same
+     * reasons as {@link #deleteAllRecordsFromWeatherTable()}.
+     */
+    private void deleteAllRecordsFromSyncLogTable() {
+        WeatherDbHelper helper = new WeatherDbHelper(InstrumentationRegistry.getTargetContext());
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherContract.SyncLogEntry.TABLE_NAME, null, null);
+        database.close();
+    }
+
+    /**
+     * This method will clear all rows from the hourly table in our database, for the same
+     * reasons as {@link #deleteAllRecordsFromWeatherTable()}.
+     */
+    private void deleteAllRecordsFromHourlyTable() {
+        WeatherDbHelper helper = new WeatherDbHelper(InstrumentationRegistry.getTargetContext());
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherContract.HourlyEntry.TABLE_NAME, null, null);
+        database.close();
+    }
+
+    /**
+     * This method will clear all rows from the archive table, and all the blocks it was packed
+     * into, in our database, for the same reasons as {@link #deleteAllRecordsFromWeatherTable()}.
+     */
+    private void deleteAllRecordsFromArchiveTable() {
+        WeatherDbHelper helper = new WeatherDbHelper(InstrumentationRegistry.getTargetContext());
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherContract.ArchiveEntry.TABLE_NAME, null, null);
+        database.delete(WeatherContract.ArchiveBlockEntry.TABLE_NAME, null, null);
+        database.close();
+    }
+}
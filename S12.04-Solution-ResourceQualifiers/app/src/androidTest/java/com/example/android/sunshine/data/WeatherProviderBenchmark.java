@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
+import com.example.android.sunshine.utils.BenchmarkData;
+import com.example.android.sunshine.utils.MicroBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures how long WeatherProvider takes to query, bulk insert and delete the weather table,
+ * with as many rows as a sync actually writes and with far more than that. Every operation goes
+ * through the ContentResolver, like it does in the app, so the numbers include the cost of
+ * crossing into the provider and of notifying observers.
+ * <p>
+ * It also compares the two ways a sync can replace the forecast with a freshly downloaded one:
+ * parsing it into ContentValues and bulk inserting them, and parsing it straight into a
+ * {@link WeatherWriter}. Both are timed, and both have the objects they allocate per row
+ * counted.
+ * <p>
+ * Results are written to logcat under the WeatherProviderBenchmark tag, for example:
+ * <pre>
+ * adb logcat -s WeatherProviderBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class WeatherProviderBenchmark {
+
+    private static final String TAG = WeatherProviderBenchmark.class.getSimpleName();
+
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 30;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    @Before
+    public void setUp() {
+        deleteAllWeather();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAllWeather();
+    }
+
+    @Test
+    public void queryRealistic() throws Exception {
+        measureQuery(BenchmarkData.REALISTIC_DAYS);
+    }
+
+    @Test
+    public void queryStress() throws Exception {
+        measureQuery(BenchmarkData.STRESS_DAYS);
+    }
+
+    @Test
+    public void bulkInsertRealistic() throws Exception {
+        measureBulkInsert(BenchmarkData.REALISTIC_DAYS);
+    }
+
+    @Test
+    public void bulkInsertStress() throws Exception {
+        measureBulkInsert(BenchmarkData.STRESS_DAYS);
+    }
+
+    @Test
+    public void deleteRealistic() throws Exception {
+        measureDelete(BenchmarkData.REALISTIC_DAYS);
+    }
+
+    @Test
+    public void deleteStress() throws Exception {
+        measureDelete(BenchmarkData.STRESS_DAYS);
+    }
+
+    @Test
+    public void replaceForecastRealistic() throws Exception {
+        measureReplaceForecast(BenchmarkData.REALISTIC_DAYS);
+    }
+
+    @Test
+    public void replaceForecastStress() throws Exception {
+        measureReplaceForecast(BenchmarkData.STRESS_DAYS);
+    }
+
+    /**
+     * Runs the query the forecast list runs, and reads every row of the result. A Cursor doesn't
+     * actually run its query until it's first moved, so reading the rows is part of the cost.
+     */
+    private void measureQuery(final int days) throws Exception {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, BenchmarkData.createDays(days));
+
+        final String selection = WeatherEntry.getSqlSelectForTodayOnwards();
+        final String sortOrder = WeatherEntry.COLUMN_DATE + " ASC";
+
+        MicroBenchmark.measure(TAG, "query, " + days + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() {
+                        Cursor cursor = mResolver.query(WeatherEntry.CONTENT_URI,
+                                MainActivity.MAIN_FORECAST_PROJECTION, selection, null, sortOrder);
+                        int rows = 0;
+                        while (cursor.moveToNext()) {
+                            cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+                            rows++;
+                        }
+                        cursor.close();
+                        assertEquals(days, rows);
+                    }
+                });
+    }
+
+    /**
+     * Inserts the given number of days into an empty table, the way a sync does.
+     */
+    private void measureBulkInsert(final int days) throws Exception {
+        final ContentValues[] values = BenchmarkData.createDays(days);
+
+        MicroBenchmark.measure(TAG, "bulkInsert, " + days + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, new MicroBenchmark.Iteration() {
+                    @Override
+                    public void setUp() {
+                        deleteAllWeather();
+                    }
+
+                    @Override
+                    public void run() {
+                        int inserted = mResolver.bulkInsert(WeatherEntry.CONTENT_URI, values);
+                        assertEquals(days, inserted);
+                    }
+                });
+    }
+
+    /**
+     * Deletes all weather from a table holding the given number of days, the way a sync does
+     * before it inserts the new forecast.
+     */
+    private void measureDelete(final int days) throws Exception {
+        final ContentValues[] values = BenchmarkData.createDays(days);
+
+        MicroBenchmark.measure(TAG, "delete, " + days + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, new MicroBenchmark.Iteration() {
+                    @Override
+                    public void setUp() {
+                        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, values);
+                    }
+
+                    @Override
+                    public void run() {
+                        int deleted = mResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+                        assertEquals(days, deleted);
+                    }
+                });
+    }
+
+    /**
+     * Replaces a table holding the given number of days with a downloaded forecast of as many
+     * days, both the old way, through ContentValues and bulkInsert, and through a WeatherWriter.
+     * The allocations per row are what matter most here: a WeatherWriter shouldn't allocate
+     * anything per row, so whatever it does allocate is the fixed cost of a sync, spread over
+     * the rows.
+     */
+    private void measureReplaceForecast(final int days) throws Exception {
+        final byte[] json = BenchmarkData.createForecastJson(days);
+
+        MicroBenchmark.Iteration viaContentValues = new MicroBenchmark.SimpleIteration() {
+            @Override
+            public void run() throws IOException {
+                ContentValues[] values = OpenWeatherJsonUtils.getWeatherContentValuesFromJson(
+                        mContext, new ByteArrayInputStream(json));
+                mResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+                assertEquals(days, mResolver.bulkInsert(WeatherEntry.CONTENT_URI, values));
+            }
+        };
+
+        MicroBenchmark.Iteration viaWriter = new MicroBenchmark.SimpleIteration() {
+            @Override
+            public void run() throws IOException {
+                WeatherWriter writer = WeatherProvider.openWeatherWriter(mContext);
+                try {
+                    assertTrue(OpenWeatherJsonUtils.parseForecast(
+                            mContext, new ByteArrayInputStream(json), writer));
+                    writer.commit();
+                } finally {
+                    writer.close();
+                }
+                assertEquals(days, writer.getRowCount());
+            }
+        };
+
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, BenchmarkData.createDays(days));
+
+        MicroBenchmark.measure(TAG, "replace via ContentValues, " + days + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, viaContentValues);
+        MicroBenchmark.measure(TAG, "replace via WeatherWriter, " + days + " rows",
+                WARM_UP_ITERATIONS, MEASURED_ITERATIONS, viaWriter);
+
+        double contentValuesPerRow = MicroBenchmark.countAllocations(TAG,
+                "replace via ContentValues, " + days + " rows", days, viaContentValues);
+        double writerPerRow = MicroBenchmark.countAllocations(TAG,
+                "replace via WeatherWriter, " + days + " rows", days, viaWriter);
+        assertTrue("WeatherWriter allocated more than ContentValues",
+                writerPerRow < contentValuesPerRow);
+    }
+
+    private void deleteAllWeather() {
+        mResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.core.DailyWeather;
+import com.example.android.sunshine.core.HourlyWeather;
+import com.example.android.sunshine.core.SyntheticWeather;
+import com.example.android.sunshine.core.net.EndpointSelector;
+import com.example.android.sunshine.core.net.FailureKind;
+import com.example.android.sunshine.core.net.HttpResponse;
+import com.example.android.sunshine.core.net.NetworkConditions;
+import com.example.android.sunshine.core.net.ResponseRecordings;
+import com.example.android.sunshine.core.net.StandInServer;
+import com.example.android.sunshine.utilities.NetworkUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utils.MicroBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Runs whole syncs, from the request to the last row written, hourly forecast included,
+ * against a {@link StandInServer} instead of the weather server. The responses are generated
+ * from a fixed seed and served under fixed network conditions, so the results only change when
+ * Sunshine does, and the benchmark runs the same on a device with no network at all.
+ * <p>
+ * Results are written to logcat under the SyncBenchmark tag, for example:
+ * <pre>
+ * adb logcat -s SyncBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class SyncBenchmark {
+
+    private static final String TAG = SyncBenchmark.class.getSimpleName();
+
+    private static final int WARM_UP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 20;
+
+    /* How many days the weather server sends */
+    private static final int FORECAST_DAYS = 14;
+
+    /*
+     * A forecast long enough that, on a slow network, downloading it takes seconds, so there's
+     * plenty of download for parsing and writing to overlap with. Each sync takes that long, so
+     * it's measured fewer times.
+     */
+    private static final int LARGE_FORECAST_DAYS = 1000;
+    private static final int LARGE_WARM_UP_ITERATIONS = 1;
+    private static final int LARGE_MEASURED_ITERATIONS = 5;
+
+    private static final long SEED = 42;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private ResponseRecordings mRecordings;
+    private StandInServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mRecordings = new ResponseRecordings(new File(mContext.getCacheDir(), "sync-benchmark"));
+
+        /* The stand-in server has an hourly forecast, even if the real one may not */
+        NetworkUtils.setHourlyForecastEnabled(true);
+        recordForecast(FORECAST_DAYS);
+    }
+
+    private void recordForecast(int days) throws IOException {
+        /*
+         * Record a forecast for exactly the URL the sync is going to ask for, at every endpoint
+         * it might be sent to
+         */
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        List<DailyWeather> forecast = generator.generateForecast(location, today, days);
+        byte[] body = SyntheticWeather.toOwmJson(location, forecast).getBytes("UTF-8");
+        record(NetworkUtils.getUrl(mContext), body);
+
+        /* And the hourly forecast that follows it, 5 days at 3 hour steps */
+        List<HourlyWeather> hours = generator.generateHourlyForecast(location, today, 40);
+        record(NetworkUtils.getHourlyUrl(mContext),
+                SyntheticWeather.toOwmHourlyJson(location, hours).getBytes("UTF-8"));
+    }
+
+    private void record(URL url, byte[] body) throws IOException {
+        EndpointSelector selector = NetworkUtils.getEndpointSelector();
+        for (EndpointSelector.Endpoint endpoint : selector.getEndpoints()) {
+            mRecordings.save(ResponseRecordings.keyFor(selector.rewrite(url, endpoint)),
+                    new HttpResponse(200, body));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        NetworkUtils.setTransport(null);
+        NetworkUtils.setHourlyForecastEnabled(false);
+        if (mServer != null) {
+            mServer.close();
+        }
+    }
+
+    @Test
+    public void syncOnFastNetwork() throws Exception {
+        measureSync("fast network", new NetworkConditions.Builder()
+                .setConnectLatencyMillis(60)
+                .setLatencyMillis(20)
+                .setBytesPerSecond(1024 * 1024)
+                .build());
+    }
+
+    @Test
+    public void syncOnSlowUnreliableNetwork() throws Exception {
+        measureSync("slow, unreliable network", new NetworkConditions.Builder()
+                .setConnectLatencyMillis(900)
+                .setLatencyMillis(300)
+                .setBytesPerSecond(40 * 1024)
+                .setFailureRate(0.05)
+                .setServerErrorRate(0.05)
+                .setLatencySpikes(0.05, 2000)
+                .build());
+    }
+
+    /**
+     * Compares a sync that downloads the whole forecast before parsing it with one that parses
+     * and writes it while it downloads. Both go through the same slow network, without failures,
+     * so the only difference is how much of the parsing and writing hides behind the download.
+     * The sync log splits each run into stages, so the difference shows there too.
+     */
+    @Test
+    public void syncLargeForecastBufferedVersusPipelined() throws Exception {
+        recordForecast(LARGE_FORECAST_DAYS);
+        NetworkConditions conditions = new NetworkConditions.Builder()
+                .setConnectLatencyMillis(900)
+                .setLatencyMillis(300)
+                .setBytesPerSecond(40 * 1024)
+                .build();
+
+        String label = LARGE_FORECAST_DAYS + " days on a slow network";
+        startServer(conditions);
+        measureSync("buffered, " + label, LARGE_WARM_UP_ITERATIONS, LARGE_MEASURED_ITERATIONS,
+                false);
+        measureSync("pipelined, " + label, LARGE_WARM_UP_ITERATIONS, LARGE_MEASURED_ITERATIONS,
+                true);
+    }
+
+    private void measureSync(String label, NetworkConditions conditions) throws Exception {
+        startServer(conditions);
+        measureSync(label, WARM_UP_ITERATIONS, MEASURED_ITERATIONS, NetworkUtils.canStream());
+    }
+
+    private void startServer(NetworkConditions conditions) throws IOException {
+        mServer = new StandInServer(mRecordings, conditions);
+        mServer.start();
+        NetworkUtils.setTransport(mServer.transport());
+    }
+
+    private void measureSync(String label, int warmUpIterations, int measuredIterations,
+                             final boolean pipelined) {
+        MicroBenchmark.measure(TAG, "sync, " + label, warmUpIterations, measuredIterations,
+                new MicroBenchmark.SimpleIteration() {
+                    @Override
+                    public void run() {
+                        SunshineSyncTask.syncWeather(mContext, pipelined);
+                    }
+                });
+
+        /* Retries are part of the timings, so say how many there were */
+        StringBuilder failures = new StringBuilder("Failed attempts, " + label + ":");
+        for (FailureKind kind : FailureKind.values()) {
+            failures.append(' ').append(kind.getLogName())
+                    .append('=').append(NetworkUtils.getFailureCount(kind));
+        }
+        Log.i(TAG, failures.toString());
+
+        /* As are hedged requests, and where they ended up */
+        StringBuilder endpoints = new StringBuilder("Hedged requests, " + label + ": "
+                + NetworkUtils.getHedgeCount());
+        EndpointSelector selector = NetworkUtils.getEndpointSelector();
+        for (EndpointSelector.Endpoint endpoint : selector.getEndpoints()) {
+            endpoints.append(", ").append(endpoint.getBaseUrl())
+                    .append(" p50=").append(endpoint.getLatencyPercentileMillis(50))
+                    .append("ms p95=").append(endpoint.getLatencyPercentileMillis(95))
+                    .append("ms p99=").append(endpoint.getLatencyPercentileMillis(99))
+                    .append("ms errors=").append(endpoint.getErrorRate());
+        }
+        Log.i(TAG, endpoints.toString());
+    }
+}
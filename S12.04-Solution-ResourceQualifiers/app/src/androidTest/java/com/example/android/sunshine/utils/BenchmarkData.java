@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utils;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.core.DailyWeather;
+import com.example.android.sunshine.core.HourlyWeather;
+import com.example.android.sunshine.core.OwmHourlyParser;
+import com.example.android.sunshine.core.SyntheticWeather;
+import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Weather rows for the benchmarks, starting today so that every row passes the "today onwards"
+ * selection the forecast list uses. The rows come from {@link SyntheticWeather} with a fixed
+ * seed, so every run works with the same weather.
+ */
+public final class BenchmarkData {
+
+    /* What Sunshine actually stores after a sync */
+    public static final int REALISTIC_DAYS = 14;
+
+    /* Far more than Sunshine ever stores, to show how each operation scales */
+    public static final int STRESS_DAYS = 10000;
+
+    /* What one sync of the hourly forecast stores for a location: 5 days, every 3 hours */
+    public static final int HOURS_PER_LOCATION = 40;
+
+    /*
+     * Rows in the hourly table: a handful of locations' worth, and far more than anyone will
+     * ever have, to show that the cost of working with one location doesn't grow with the table
+     */
+    public static final int REALISTIC_HOURLY_ROWS = 1000;
+    public static final int STRESS_HOURLY_ROWS = 100000;
+
+    /*
+     * Days of history per location in the archive, a little under three years, and rows in the
+     * archive: as many as its retention policy keeps, and ten times that
+     */
+    public static final int ARCHIVED_DAYS_PER_LOCATION = 1000;
+    public static final int REALISTIC_ARCHIVE_ROWS = 10000;
+    public static final int STRESS_ARCHIVE_ROWS = 100000;
+
+    private static final long SEED = 42;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* This class only has static methods and should never be instantiated */
+    private BenchmarkData() {
+    }
+
+    public static ContentValues[] createDays(int days) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        List<DailyWeather> forecast = generator.generateForecast(location, today, days);
+        return OpenWeatherJsonUtils.getWeatherContentValues(forecast);
+    }
+
+    /**
+     * @return The same days as {@link #createDays(int)}, as the weather server would send them
+     */
+    public static byte[] createForecastJson(int days) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        List<DailyWeather> forecast = generator.generateForecast(location, today, days);
+        return SyntheticWeather.toOwmJson(location, forecast).getBytes(UTF_8);
+    }
+
+    /**
+     * @return The time of the first hour in the hourly forecast: the last 3 hour step that has
+     * already begun, the way OpenWeatherMap starts its forecast
+     */
+    public static long getFirstHour() {
+        long now = System.currentTimeMillis();
+        return now - now % OwmHourlyParser.STEP_MILLIS;
+    }
+
+    /**
+     * @return An hourly forecast of {@link #HOURS_PER_LOCATION} entries, starting at
+     * {@link #getFirstHour()}
+     */
+    public static List<HourlyWeather> createHours() {
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        return generator.generateHourlyForecast(location, getFirstHour(), HOURS_PER_LOCATION);
+    }
+
+    /**
+     * @return The same hours as {@link #createHours()}, as the weather server would send them
+     */
+    public static byte[] createHourlyForecastJson() {
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        return SyntheticWeather.toOwmHourlyJson(location, createHours()).getBytes(UTF_8);
+    }
+
+    /**
+     * @return {@link #ARCHIVED_DAYS_PER_LOCATION} days of weather, ending yesterday, the way the
+     * archive would hold them after that many days of syncing
+     */
+    public static List<DailyWeather> createArchivedDays() {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        return generator.generateForecast(location,
+                today - ARCHIVED_DAYS_PER_LOCATION * SunshineDateUtils.DAY_IN_MILLIS,
+                ARCHIVED_DAYS_PER_LOCATION);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utils;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times an operation over many iterations and reports the distribution, rather than a single
+ * number that depends on whatever else the device happened to be doing.
+ * <p>
+ * Each iteration has an untimed {@link Iteration#setUp()}, to put things back the way the timed
+ * part expects them (an empty table before an insert, for example), and a timed
+ * {@link Iteration#run()}. The first iterations are thrown away, so the results aren't skewed by
+ * class loading, the JIT or cold caches. Results are logged under the tag passed to
+ * {@link #measure}, and returned so the caller can check them.
+ * <p>
+ * {@link #countAllocations} counts the objects an operation allocates instead of timing it, for
+ * code that's meant to run without creating garbage for the collector to clean up.
+ */
+public final class MicroBenchmark {
+
+    /**
+     * One run of the operation being measured.
+     */
+    public interface Iteration {
+
+        /**
+         * Called before each run, and not timed.
+         */
+        void setUp() throws Exception;
+
+        /**
+         * The operation being measured.
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * An Iteration that doesn't need any setting up.
+     */
+    public abstract static class SimpleIteration implements Iteration {
+        @Override
+        public void setUp() {
+        }
+    }
+
+    /**
+     * The measured times of a benchmark, in nanoseconds.
+     */
+    public static final class Result {
+        public final long medianNanos;
+        public final long p99Nanos;
+        public final long minNanos;
+        public final long maxNanos;
+        public final int iterations;
+
+        Result(long[] sortedNanos) {
+            medianNanos = percentile(sortedNanos, 50);
+            p99Nanos = percentile(sortedNanos, 99);
+            minNanos = sortedNanos[0];
+            maxNanos = sortedNanos[sortedNanos.length - 1];
+            iterations = sortedNanos.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d iterations, median %.3f ms, p99 %.3f ms, min %.3f ms, max %.3f ms",
+                    iterations, toMillis(medianNanos), toMillis(p99Nanos),
+                    toMillis(minNanos), toMillis(maxNanos));
+        }
+    }
+
+    /* This class only has static methods and should never be instantiated */
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Runs an operation warmUpIterations times without timing it, then measuredIterations times
+     * while timing it, and logs the result.
+     *
+     * @param tag                Log tag to report the result under
+     * @param label              What was measured, for example "query, 14 rows"
+     * @param warmUpIterations   Runs that are thrown away
+     * @param measuredIterations Runs that are timed
+     * @param iteration          The operation
+     * @return The distribution of the measured runs
+     */
+    public static Result measure(String tag, String label, int warmUpIterations,
+                                 int measuredIterations, Iteration iteration) throws Exception {
+        for (int i = 0; i < warmUpIterations; i++) {
+            iteration.setUp();
+            iteration.run();
+        }
+
+        long[] nanos = new long[measuredIterations];
+        for (int i = 0; i < measuredIterations; i++) {
+            iteration.setUp();
+            long start = System.nanoTime();
+            iteration.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(nanos);
+        Result result = new Result(nanos);
+        Log.i(tag, label + ": " + result);
+        return result;
+    }
+
+    /**
+     * Runs an operation once to warm it up, then once more while counting the objects the
+     * current thread allocates, and logs how many that was per unit of work, for example per
+     * row written. Allocation counting slows everything down, which is why this is separate from
+     * {@link #measure}.
+     *
+     * @param tag       Log tag to report the result under
+     * @param label     What was measured, for example "bulkInsert, 14 rows"
+     * @param units     How many units of work one run does
+     * @param iteration The operation
+     * @return The number of objects allocated per unit
+     */
+    @SuppressWarnings("deprecation")
+    public static double countAllocations(String tag, String label, int units,
+                                          Iteration iteration) throws Exception {
+        iteration.setUp();
+        iteration.run();
+
+        iteration.setUp();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            iteration.run();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        int allocations = Debug.getThreadAllocCount();
+
+        double perUnit = (double) allocations / units;
+        Log.i(tag, String.format(Locale.US, "%s: %d allocations, %.2f per unit",
+                label, allocations, perUnit));
+        return perUnit;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+}
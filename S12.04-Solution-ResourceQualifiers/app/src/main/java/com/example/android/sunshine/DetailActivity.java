@@ -19,24 +19,50 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.databinding.DataBindingUtil;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
+import com.example.android.sunshine.data.DayForecast;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.databinding.ActivityDetailBinding;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
-import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class DetailActivity extends AppCompatActivity implements
         LoaderManager.LoaderCallbacks<Cursor> {
 
+    private static final String TAG = DetailActivity.class.getSimpleName();
+
+    /*
+     * Optional extra holding a DayForecast for the day being displayed. When the forecast list
+     * already has the row in memory, it passes it along so we can display it before our loader
+     * has had a chance to query the database.
+     */
+    public static final String EXTRA_DAY_FORECAST =
+            "com.example.android.sunshine.extra.DAY_FORECAST";
+
+    /*
+     * Optional extra holding the SystemClock#uptimeMillis at which the user clicked the day that
+     * launched this Activity. It is used to measure the time to first content.
+     */
+    public static final String EXTRA_CLICK_UPTIME_MILLIS =
+            "com.example.android.sunshine.extra.CLICK_UPTIME_MILLIS";
+
     /*
      * In this Activity, you can share the selected day's forecast. No social sharing is complete
      * without using a hashtag. #BeTogetherNotTheSame
@@ -74,19 +100,31 @@ public class DetailActivity extends AppCompatActivity implements
 
     /*
      * This ID will be used to identify the Loader responsible for loading the weather details
-     * for a particular day. In some cases, one Activity can deal with many Loaders. However, in
-     * our case, there is only one. We will still use this ID to initialize the loader and create
-     * the loader for best practice. Please note that 353 was chosen arbitrarily. You can use
-     * whatever number you like, so long as it is unique and consistent.
+     * for every day in the pager. In some cases, one Activity can deal with many Loaders.
+     * However, in our case, there is only one. We will still use this ID to initialize the loader
+     * and create the loader for best practice. Please note that 353 was chosen arbitrarily. You
+     * can use whatever number you like, so long as it is unique and consistent.
      */
     private static final int ID_DETAIL_LOADER = 353;
 
-    /* A summary of the forecast that can be shared by clicking the share button in the ActionBar */
-    private String mForecastSummary;
-
-    /* The URI that is used to access the chosen day's weather details */
+    /* The URI of the day the user chose; that day's page is the one we open on */
     private Uri mUri;
 
+    /* The date the user chose, as stored in the weather table */
+    private long mChosenDate;
+
+    /* Supplies one page of weather details per day to our ViewPager */
+    private DetailPagerAdapter mPagerAdapter;
+
+    /* Whether the loader has delivered its first cursor yet */
+    private boolean mHasLoadedAllDays;
+
+    /*
+     * The moment we start measuring the time to first content from: the click in the forecast
+     * list if we know it, otherwise the creation of this Activity.
+     */
+    private long mStartUptimeMillis;
+
 
     /*
      * This field is used for data binding. Normally, we would have to call findViewById many
@@ -102,10 +140,35 @@ public class DetailActivity extends AppCompatActivity implements
         super.onCreate(savedInstanceState);
 
 
+        Intent intent = getIntent();
+        mStartUptimeMillis = intent.getLongExtra(EXTRA_CLICK_UPTIME_MILLIS,
+                SystemClock.uptimeMillis());
+
         mDetailBinding = DataBindingUtil.setContentView(this, R.layout.activity_detail);
 
-        mUri = getIntent().getData();
+        mUri = intent.getData();
         if (mUri == null) throw new NullPointerException("URI for DetailActivity cannot be null");
+        mChosenDate = Long.parseLong(mUri.getLastPathSegment());
+
+        mPagerAdapter = new DetailPagerAdapter(this);
+        mDetailBinding.pager.setAdapter(mPagerAdapter);
+
+        /*
+         * Keep the pages on either side of the current one inflated and bound, so that by the
+         * time the user swipes to the next (or previous) day, it is already on screen.
+         */
+        mDetailBinding.pager.setOffscreenPageLimit(1);
+
+        /*
+         * If the forecast list handed us the row it already had in memory, display it right
+         * away as the only page. Once the loader below has delivered every day, the pager fills
+         * in around it.
+         */
+        DayForecast dayForecast = intent.getParcelableExtra(EXTRA_DAY_FORECAST);
+        if (dayForecast != null) {
+            mPagerAdapter.swapForecasts(Collections.singletonList(dayForecast));
+            logTimeToFirstContent("intent");
+        }
 
         /* This connects our Activity into the loader lifecycle. */
         getSupportLoaderManager().initLoader(ID_DETAIL_LOADER, null, this);
@@ -170,16 +233,25 @@ public class DetailActivity extends AppCompatActivity implements
      * @return the Intent to use to share our weather forecast
      */
     private Intent createShareForecastIntent() {
+        String forecastSummary = "";
+        if (mPagerAdapter.getCount() > 0) {
+            /* Share whichever day the user is currently looking at */
+            DayForecast currentForecast = mPagerAdapter
+                    .getForecast(mDetailBinding.pager.getCurrentItem());
+            forecastSummary = WeatherDetailBinder.getForecastSummary(this, currentForecast);
+        }
+
         Intent shareIntent = ShareCompat.IntentBuilder.from(this)
                 .setType("text/plain")
-                .setText(mForecastSummary + FORECAST_SHARE_HASHTAG)
+                .setText(forecastSummary + FORECAST_SHARE_HASHTAG)
                 .getIntent();
         shareIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_DOCUMENT);
         return shareIntent;
     }
 
     /**
-     * Creates and returns a CursorLoader that loads the data for our URI and stores it in a Cursor.
+     * Creates and returns a CursorLoader that loads every day we can page through with a single
+     * query. Swiping between days never needs to go back to the ContentProvider.
      *
      * @param loaderId The loader ID for which we need to create a loader
      * @param loaderArgs Any arguments supplied by the caller
@@ -192,13 +264,24 @@ public class DetailActivity extends AppCompatActivity implements
         switch (loaderId) {
 
             case ID_DETAIL_LOADER:
+                /* Sort order: Ascending by date, the same order as the forecast list */
+                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+                /*
+                 * We page through the same days as the forecast list, from today onwards. If the
+                 * chosen day is somehow older than today, we start from there instead so that it
+                 * still has a page of its own.
+                 */
+                long normalizedUtcToday =
+                        SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+                long firstDate = Math.min(normalizedUtcToday, mChosenDate);
+                String selection = WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + firstDate;
 
                 return new CursorLoader(this,
-                        mUri,
+                        WeatherContract.WeatherEntry.CONTENT_URI,
                         WEATHER_DETAIL_PROJECTION,
+                        selection,
                         null,
-                        null,
-                        null);
+                        sortOrder);
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
@@ -208,9 +291,11 @@ public class DetailActivity extends AppCompatActivity implements
     /**
      * Runs on the main thread when a load is complete. If initLoader is called (we call it from
      * onCreate in DetailActivity) and the LoaderManager already has completed a previous load
-     * for this Loader, onLoadFinished will be called immediately. Within onLoadFinished, we bind
-     * the data to our views so the user can see the details of the weather on the date they
-     * selected from the forecast.
+     * for this Loader, onLoadFinished will be called immediately. Within onLoadFinished, we copy
+     * every day out of the cursor and hand them to our pager, so the user can see the details of
+     * the weather on the date they selected and swipe to the days around it.
+     * <p>
+     * Pages that are already showing what the database has to say are left untouched.
      *
      * @param loader The cursor loader that finished.
      * @param data   The cursor that is being returned.
@@ -239,144 +324,74 @@ public class DetailActivity extends AppCompatActivity implements
             return;
         }
 
-        /****************
-         * Weather Icon *
-         ****************/
-        /* Read weather condition ID from the cursor (ID provided by Open Weather Map) */
-        int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
-        /* Use our utility method to determine the resource ID for the proper art */
-        int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
-
-        /* Set the resource ID on the icon to display the art */
-        mDetailBinding.primaryInfo.weatherIcon.setImageResource(weatherImageId);
-
-        /****************
-         * Weather Date *
-         ****************/
         /*
-         * Read the date from the cursor. It is important to note that the date from the cursor
-         * is the same date from the weather SQL table. The date that is stored is a GMT
-         * representation at midnight of the date when the weather information was loaded for.
-         *
-         * When displaying this date, one must add the GMT offset (in milliseconds) to acquire
-         * the date representation for the local date in local time.
-         * SunshineDateUtils#getFriendlyDateString takes care of this for us.
+         * Copy every row out of the cursor once. From here on, the pager only ever binds these
+         * in-memory values.
          */
-        long localDateMidnightGmt = data.getLong(INDEX_WEATHER_DATE);
-        String dateText = SunshineDateUtils.getFriendlyDateString(this, localDateMidnightGmt, true);
+        List<DayForecast> forecasts = new ArrayList<>(data.getCount());
+        do {
+            forecasts.add(new DayForecast(
+                    data.getLong(INDEX_WEATHER_DATE),
+                    data.getInt(INDEX_WEATHER_CONDITION_ID),
+                    data.getDouble(INDEX_WEATHER_MAX_TEMP),
+                    data.getDouble(INDEX_WEATHER_MIN_TEMP),
+                    data.getFloat(INDEX_WEATHER_HUMIDITY),
+                    data.getFloat(INDEX_WEATHER_PRESSURE),
+                    data.getFloat(INDEX_WEATHER_WIND_SPEED),
+                    data.getFloat(INDEX_WEATHER_DEGREES)));
+        } while (data.moveToNext());
 
-        mDetailBinding.primaryInfo.date.setText(dateText);
-
-        /***********************
-         * Weather Description *
-         ***********************/
-        /* Use the weatherId to obtain the proper description */
-        String description = SunshineWeatherUtils.getStringForWeatherCondition(this, weatherId);
-
-        /* Create the accessibility (a11y) String from the weather description */
-        String descriptionA11y = getString(R.string.a11y_forecast, description);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.weatherDescription.setText(description);
-        mDetailBinding.primaryInfo.weatherDescription.setContentDescription(descriptionA11y);
-
-        /* Set the content description on the weather image (for accessibility purposes) */
-        mDetailBinding.primaryInfo.weatherIcon.setContentDescription(descriptionA11y);
-
-        /**************************
-         * High (max) temperature *
-         **************************/
-        /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = data.getDouble(INDEX_WEATHER_MAX_TEMP);
         /*
-         * If the user's preference for weather is fahrenheit, formatTemperature will convert
-         * the temperature. This method will also append either °C or °F to the temperature
-         * String.
+         * The first time, we open on the day the user chose. After that (for example, when a
+         * sync brings in new data), we stay on whichever day the user has swiped to.
          */
-        String highString = SunshineWeatherUtils.formatTemperature(this, highInCelsius);
-
-        /* Create the accessibility (a11y) String from the weather description */
-        String highA11y = getString(R.string.a11y_high_temp, highString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.highTemperature.setText(highString);
-        mDetailBinding.primaryInfo.highTemperature.setContentDescription(highA11y);
-
-        /*************************
-         * Low (min) temperature *
-         *************************/
-        /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = data.getDouble(INDEX_WEATHER_MIN_TEMP);
-        /*
-         * If the user's preference for weather is fahrenheit, formatTemperature will convert
-         * the temperature. This method will also append either °C or °F to the temperature
-         * String.
-         */
-        String lowString = SunshineWeatherUtils.formatTemperature(this, lowInCelsius);
-
-        String lowA11y = getString(R.string.a11y_low_temp, lowString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.lowTemperature.setText(lowString);
-        mDetailBinding.primaryInfo.lowTemperature.setContentDescription(lowA11y);
-
-        /************
-         * Humidity *
-         ************/
-        /* Read humidity from the cursor */
-        float humidity = data.getFloat(INDEX_WEATHER_HUMIDITY);
-        String humidityString = getString(R.string.format_humidity, humidity);
-
-        String humidityA11y = getString(R.string.a11y_humidity, humidityString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.humidity.setText(humidityString);
-        mDetailBinding.extraDetails.humidity.setContentDescription(humidityA11y);
-
-        mDetailBinding.extraDetails.humidityLabel.setContentDescription(humidityA11y);
-
-        /****************************
-         * Wind speed and direction *
-         ****************************/
-        /* Read wind speed (in MPH) and direction (in compass degrees) from the cursor  */
-        float windSpeed = data.getFloat(INDEX_WEATHER_WIND_SPEED);
-        float windDirection = data.getFloat(INDEX_WEATHER_DEGREES);
-        String windString = SunshineWeatherUtils.getFormattedWind(this, windSpeed, windDirection);
-
-        String windA11y = getString(R.string.a11y_wind, windString);
+        boolean isFirstContent = mPagerAdapter.getCount() == 0;
+        long dateToShow = mChosenDate;
+        if (mHasLoadedAllDays) {
+            int currentItem = mDetailBinding.pager.getCurrentItem();
+            dateToShow = mPagerAdapter.getForecast(currentItem).getDate();
+        }
+        mHasLoadedAllDays = true;
 
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.windMeasurement.setText(windString);
-        mDetailBinding.extraDetails.windMeasurement.setContentDescription(windA11y);
+        mPagerAdapter.swapForecasts(forecasts);
 
-        mDetailBinding.extraDetails.windLabel.setContentDescription(windA11y);
+        int position = mPagerAdapter.getPositionForDate(dateToShow);
+        if (position != -1) {
+            mDetailBinding.pager.setCurrentItem(position, false);
+        }
 
-        /************
-         * Pressure *
-         ************/
-        /* Read pressure from the cursor */
-        float pressure = data.getFloat(INDEX_WEATHER_PRESSURE);
+        if (isFirstContent) {
+            logTimeToFirstContent("loader");
+        }
 
         /*
-         * Format the pressure text using string resources. The reason we directly access
-         * resources using getString rather than using a method from SunshineWeatherUtils as
-         * we have for other data displayed in this Activity is because there is no
-         * additional logic that needs to be considered in order to properly display the
-         * pressure.
+         * At this point, what's on screen matches the database. Let the system know the
+         * Activity is fully drawn so the "Fully drawn" time shows up in logcat as well.
          */
-        String pressureString = getString(R.string.format_pressure, pressure);
-
-        String pressureA11y = getString(R.string.a11y_pressure, pressureString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.pressure.setText(pressureString);
-        mDetailBinding.extraDetails.pressure.setContentDescription(pressureA11y);
-
-        mDetailBinding.extraDetails.pressureLabel.setContentDescription(pressureA11y);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            reportFullyDrawn();
+        }
+    }
 
-        /* Store the forecast summary String in our forecast summary field to share later */
-        mForecastSummary = String.format("%s - %s - %s/%s",
-                dateText, description, highString, lowString);
+    /**
+     * Logs the time from the click in the forecast list (or from onCreate, if we weren't
+     * launched from the list) until the frame containing the first weather details is about to
+     * be drawn. Comparing the "intent" and "loader" sources shows what handing the row over
+     * from the list saves.
+     *
+     * @param source Where the first displayed data came from
+     */
+    private void logTimeToFirstContent(final String source) {
+        final View root = mDetailBinding.getRoot();
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                long elapsed = SystemClock.uptimeMillis() - mStartUptimeMillis;
+                Log.d(TAG, "Time to first content: " + elapsed + " ms (from " + source + ")");
+                return true;
+            }
+        });
     }
 
     /**
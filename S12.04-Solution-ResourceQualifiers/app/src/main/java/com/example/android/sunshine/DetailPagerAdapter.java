@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.databinding.DataBindingUtil;
+import android.support.v4.view.PagerAdapter;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.android.sunshine.data.DayForecast;
+import com.example.android.sunshine.databinding.PageWeatherDetailBinding;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link DetailPagerAdapter} exposes a list of days' weather details to a
+ * {@link android.support.v4.view.ViewPager}, one page per day.
+ * <p>
+ * The adapter never touches the database. It is handed every day at once, already copied out of
+ * a single cursor, so swiping from one page to the next only binds values that are in memory.
+ */
+class DetailPagerAdapter extends PagerAdapter {
+
+    /* The context we use to inflate pages and to access resources while binding */
+    private final Context mContext;
+
+    /* The days we are displaying, in the order they appear in the pager */
+    private List<DayForecast> mForecasts = Collections.emptyList();
+
+    /* The pages the ViewPager currently holds on to, keyed by their position */
+    private final SparseArray<PageWeatherDetailBinding> mLivePages = new SparseArray<>();
+
+    /**
+     * Creates a DetailPagerAdapter.
+     *
+     * @param context Used to inflate the pages and access resources while binding them
+     */
+    DetailPagerAdapter(Context context) {
+        mContext = context;
+    }
+
+    @Override
+    public int getCount() {
+        return mForecasts.size();
+    }
+
+    /**
+     * Returns the day displayed at the given position.
+     *
+     * @param position The position of the page
+     * @return The weather details displayed on that page
+     */
+    DayForecast getForecast(int position) {
+        return mForecasts.get(position);
+    }
+
+    /**
+     * Finds the position of the page displaying a given date.
+     *
+     * @param normalizedUtcDate The date to look for, as stored in the weather table
+     * @return The position of that date, or -1 if we aren't displaying it
+     */
+    int getPositionForDate(long normalizedUtcDate) {
+        for (int i = 0; i < mForecasts.size(); i++) {
+            if (mForecasts.get(i).getDate() == normalizedUtcDate) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the days we display. Pages the ViewPager is still holding on to are rebound in
+     * place, but only when the day they now display actually differs from the one they show, so
+     * a reload that brings nothing new doesn't touch a single view.
+     *
+     * @param forecasts The new days to display, in pager order
+     */
+    void swapForecasts(List<DayForecast> forecasts) {
+        List<DayForecast> oldForecasts = mForecasts;
+        mForecasts = forecasts;
+
+        for (int i = 0; i < mLivePages.size(); i++) {
+            int position = mLivePages.keyAt(i);
+            if (position >= forecasts.size()) {
+                continue;
+            }
+            DayForecast newForecast = forecasts.get(position);
+            if (position >= oldForecasts.size()
+                    || !newForecast.equals(oldForecasts.get(position))) {
+                WeatherDetailBinder.bind(mContext, mLivePages.valueAt(i), newForecast);
+            }
+        }
+
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Creates the page for the given position. The ViewPager calls this for the current page and
+     * for the pages just off screen (see ViewPager#setOffscreenPageLimit), so the neighbouring
+     * days are already bound by the time the user swipes to them.
+     */
+    @Override
+    public Object instantiateItem(ViewGroup container, int position) {
+        PageWeatherDetailBinding binding = DataBindingUtil.inflate(
+                LayoutInflater.from(mContext), R.layout.page_weather_detail, container, false);
+        WeatherDetailBinder.bind(mContext, binding, mForecasts.get(position));
+
+        container.addView(binding.getRoot());
+        mLivePages.put(position, binding);
+        return binding;
+    }
+
+    @Override
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        PageWeatherDetailBinding binding = (PageWeatherDetailBinding) object;
+        container.removeView(binding.getRoot());
+        if (mLivePages.get(position) == binding) {
+            mLivePages.remove(position);
+        }
+    }
+
+    @Override
+    public boolean isViewFromObject(View view, Object object) {
+        return view == ((PageWeatherDetailBinding) object).getRoot();
+    }
+
+    /**
+     * Pages that are still within range keep their position, since swapForecasts has already
+     * rebound them. Any other page is dropped so the ViewPager destroys it.
+     */
+    @Override
+    public int getItemPosition(Object object) {
+        for (int i = 0; i < mLivePages.size(); i++) {
+            if (mLivePages.valueAt(i) == object) {
+                return mLivePages.keyAt(i) < mForecasts.size() ? POSITION_UNCHANGED : POSITION_NONE;
+            }
+        }
+        return POSITION_NONE;
+    }
+}
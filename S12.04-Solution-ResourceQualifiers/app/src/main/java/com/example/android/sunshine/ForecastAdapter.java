@@ -25,8 +25,10 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.example.android.sunshine.data.DayForecast;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+import com.example.android.sunshine.utilities.WeatherArtCache;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
@@ -36,6 +38,10 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
 
     private static final int VIEW_TYPE_TODAY = 0;
     private static final int VIEW_TYPE_FUTURE_DAY = 1;
+    private static final int VIEW_TYPE_FUTURE_DAY_FLAT = 2;
+
+    /* Used as the selected date when no day in the list is selected */
+    static final long NO_SELECTED_DATE = -1;
 
     /* The context we use to utility methods, app resources and layout inflaters */
     private final Context mContext;
@@ -52,7 +58,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      * The interface that receives onClick messages.
      */
     public interface ForecastAdapterOnClickHandler {
-        void onClick(long date);
+        void onClick(DayForecast dayForecast);
     }
 
     /*
@@ -63,8 +69,21 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     private boolean mUseTodayLayout;
 
+    /*
+     * Flag to determine if we draw the future days with a single ForecastListItemView instead of
+     * inflating forecast_list_item.xml. It is read from a boolean resource as well, and can be
+     * flipped at runtime with setUseFlatListItems to compare the two.
+     */
+    private boolean mUseFlatListItems;
+
     private Cursor mCursor;
 
+    /*
+     * The date of the day that is shown in the detail pane, in two-pane mode. Its list item is
+     * drawn in the activated state so the user can tell which day they're looking at.
+     */
+    private long mSelectedDate = NO_SELECTED_DATE;
+
     /**
      * Creates a ForecastAdapter.
      *
@@ -76,6 +95,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         mContext = context;
         mClickHandler = clickHandler;
         mUseTodayLayout = mContext.getResources().getBoolean(R.bool.use_today_layout);
+        mUseFlatListItems = mContext.getResources().getBoolean(R.bool.use_flat_list_items);
     }
 
     /**
@@ -92,6 +112,14 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
     @Override
     public ForecastAdapterViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
 
+        if (viewType == VIEW_TYPE_FUTURE_DAY_FLAT) {
+            ForecastListItemView flatView = new ForecastListItemView(mContext);
+            flatView.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            flatView.setFocusable(true);
+            return new ForecastAdapterViewHolder(flatView);
+        }
+
         int layoutId;
 
         switch (viewType) {
@@ -147,6 +175,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
                 break;
 
             case VIEW_TYPE_FUTURE_DAY:
+            case VIEW_TYPE_FUTURE_DAY_FLAT:
                 weatherImageId = SunshineWeatherUtils
                         .getSmallArtResourceIdForWeatherCondition(weatherId);
                 break;
@@ -155,8 +184,6 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
                 throw new IllegalArgumentException("Invalid view type, value of " + viewType);
         }
 
-        forecastAdapterViewHolder.iconView.setImageResource(weatherImageId);
-
         /****************
          * Weather Date *
          ****************/
@@ -165,9 +192,6 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          /* Get human readable string using our utility method */
         String dateString = SunshineDateUtils.getFriendlyDateString(mContext, dateInMillis, false);
 
-         /* Display friendly date string */
-        forecastAdapterViewHolder.dateView.setText(dateString);
-
         /***********************
          * Weather Description *
          ***********************/
@@ -175,10 +199,6 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          /* Create the accessibility (a11y) String from the weather description */
         String descriptionA11y = mContext.getString(R.string.a11y_forecast, description);
 
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.descriptionView.setText(description);
-        forecastAdapterViewHolder.descriptionView.setContentDescription(descriptionA11y);
-
         /**************************
          * High (max) temperature *
          **************************/
@@ -193,10 +213,6 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          /* Create the accessibility (a11y) String from the weather description */
         String highA11y = mContext.getString(R.string.a11y_high_temp, highString);
 
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.highTempView.setText(highString);
-        forecastAdapterViewHolder.highTempView.setContentDescription(highA11y);
-
         /*************************
          * Low (min) temperature *
          *************************/
@@ -210,9 +226,34 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         String lowString = SunshineWeatherUtils.formatTemperature(mContext, lowInCelsius);
         String lowA11y = mContext.getString(R.string.a11y_low_temp, lowString);
 
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.lowTempView.setText(lowString);
-        forecastAdapterViewHolder.lowTempView.setContentDescription(lowA11y);
+        if (forecastAdapterViewHolder.flatView != null) {
+            /*
+             * The flat view draws everything itself. Since it is a single View, it gets a single
+             * content description (for accessibility purposes) covering the whole day.
+             */
+            forecastAdapterViewHolder.flatView.setForecast(weatherImageId, dateString,
+                    description, highString, lowString);
+            forecastAdapterViewHolder.flatView.setContentDescription(dateString + ", "
+                    + descriptionA11y + ", " + highA11y + ", " + lowA11y);
+        } else {
+            WeatherArtCache.setWeatherArt(forecastAdapterViewHolder.iconView, weatherImageId);
+
+            /* Display friendly date string */
+            forecastAdapterViewHolder.dateView.setText(dateString);
+
+            /* Set the text and content description (for accessibility purposes) */
+            forecastAdapterViewHolder.descriptionView.setText(description);
+            forecastAdapterViewHolder.descriptionView.setContentDescription(descriptionA11y);
+
+            forecastAdapterViewHolder.highTempView.setText(highString);
+            forecastAdapterViewHolder.highTempView.setContentDescription(highA11y);
+
+            forecastAdapterViewHolder.lowTempView.setText(lowString);
+            forecastAdapterViewHolder.lowTempView.setContentDescription(lowA11y);
+        }
+
+        /* Highlight the day that is currently shown in the detail pane, if there is one */
+        forecastAdapterViewHolder.itemView.setActivated(dateInMillis == mSelectedDate);
     }
 
     /**
@@ -241,11 +282,28 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
     public int getItemViewType(int position) {
         if (mUseTodayLayout && position == 0) {
             return VIEW_TYPE_TODAY;
+        } else if (mUseFlatListItems) {
+            return VIEW_TYPE_FUTURE_DAY_FLAT;
         } else {
             return VIEW_TYPE_FUTURE_DAY;
         }
     }
 
+    /**
+     * Switches the future days between the XML layout and ForecastListItemView. The two use
+     * different view types, so the RecyclerView never recycles a row of one kind into the other.
+     * This is mostly useful to compare the two, see ForecastListScrollBenchmark.
+     *
+     * @param useFlatListItems true to draw future days with ForecastListItemView
+     */
+    void setUseFlatListItems(boolean useFlatListItems) {
+        if (useFlatListItems == mUseFlatListItems) {
+            return;
+        }
+        mUseFlatListItems = useFlatListItems;
+        notifyDataSetChanged();
+    }
+
     /**
      * Swaps the cursor used by the ForecastAdapter for its weather data. This method is called by
      * MainActivity after a load has finished, as well as when the Loader responsible for loading
@@ -259,6 +317,61 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         notifyDataSetChanged();
     }
 
+    /**
+     * Copies the row at the given position out of our cursor.
+     *
+     * @param position The position of the row within our cursor
+     * @return The weather data of that row
+     */
+    DayForecast getForecast(int position) {
+        mCursor.moveToPosition(position);
+        return new DayForecast(
+                mCursor.getLong(MainActivity.INDEX_WEATHER_DATE),
+                mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID),
+                mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP),
+                mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP),
+                mCursor.getFloat(MainActivity.INDEX_WEATHER_HUMIDITY),
+                mCursor.getFloat(MainActivity.INDEX_WEATHER_PRESSURE),
+                mCursor.getFloat(MainActivity.INDEX_WEATHER_WIND_SPEED),
+                mCursor.getFloat(MainActivity.INDEX_WEATHER_DEGREES));
+    }
+
+    /**
+     * Finds the position of the row for a given date.
+     *
+     * @param normalizedUtcDate The date to look for, as stored in the weather table
+     * @return The position of that date, or RecyclerView.NO_POSITION if it isn't in our cursor
+     */
+    int getPositionForDate(long normalizedUtcDate) {
+        int count = getItemCount();
+        for (int position = 0; position < count; position++) {
+            mCursor.moveToPosition(position);
+            if (mCursor.getLong(MainActivity.INDEX_WEATHER_DATE) == normalizedUtcDate) {
+                return position;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Marks the day with the given date as the one shown in the detail pane. Only the items whose
+     * highlight actually changes are rebound.
+     *
+     * @param normalizedUtcDate The selected date, or NO_SELECTED_DATE to clear the selection
+     */
+    void setSelectedDate(long normalizedUtcDate) {
+        if (normalizedUtcDate == mSelectedDate) {
+            return;
+        }
+
+        int oldPosition = getPositionForDate(mSelectedDate);
+        mSelectedDate = normalizedUtcDate;
+        int newPosition = getPositionForDate(normalizedUtcDate);
+
+        if (oldPosition != RecyclerView.NO_POSITION) notifyItemChanged(oldPosition);
+        if (newPosition != RecyclerView.NO_POSITION) notifyItemChanged(newPosition);
+    }
+
     /**
      * A ViewHolder is a required part of the pattern for RecyclerViews. It mostly behaves as
      * a cache of the child views for a forecast item. It's also a convenient place to set an
@@ -272,9 +385,13 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         final TextView highTempView;
         final TextView lowTempView;
 
+        /* Only set when this row is drawn by a ForecastListItemView; the views above are null */
+        final ForecastListItemView flatView;
+
         ForecastAdapterViewHolder(View view) {
             super(view);
 
+            flatView = view instanceof ForecastListItemView ? (ForecastListItemView) view : null;
             iconView = (ImageView) view.findViewById(R.id.weather_icon);
             dateView = (TextView) view.findViewById(R.id.date);
             descriptionView = (TextView) view.findViewById(R.id.weather_description);
@@ -285,18 +402,16 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         }
 
         /**
-         * This gets called by the child views during a click. We fetch the date that has been
-         * selected, and then call the onClick handler registered with this adapter, passing that
-         * date.
+         * This gets called by the child views during a click. We copy the row that has been
+         * selected out of the cursor, and then call the onClick handler registered with this
+         * adapter, passing that row.
          *
          * @param v the View that was clicked
          */
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
-            mClickHandler.onClick(dateInMillis);
+            mClickHandler.onClick(getForecast(adapterPosition));
         }
     }
 }
\ No newline at end of file
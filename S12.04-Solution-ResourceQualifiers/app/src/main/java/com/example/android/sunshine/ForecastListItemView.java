@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.View;
+
+import com.example.android.sunshine.utilities.WeatherArtCache;
+
+/**
+ * A single, flat View that draws one row of the forecast list: the weather icon, the date, the
+ * weather description and the high and low temperatures. It looks the same as
+ * forecast_list_item.xml, but replaces a ConstraintLayout with five children by one View.
+ * <p>
+ * Every Paint is created once per View, and the text of each row is laid out into a StaticLayout
+ * that is only rebuilt when the text actually changes. The description is the exception: it's
+ * cut short with an ellipsis to fit beside the temperatures, so its layout is also rebuilt when
+ * the space it has changes, which only happens when the width of the View or the high
+ * temperature does. The height of a row doesn't depend on its content, so binding new data only
+ * ever invalidates the View. It never requests a new layout pass.
+ */
+class ForecastListItemView extends View {
+
+    private final TextPaint mDatePaint;
+    private final TextPaint mDescriptionPaint;
+    private final TextPaint mHighTemperaturePaint;
+    private final TextPaint mLowTemperaturePaint;
+
+    private final int mIconSize;
+    private final int mDateMarginLeft;
+    private final int mTemperatureSpace;
+    private final int mLowTemperatureWidth;
+    private final int mMinHeight;
+
+    /* The text we currently display and the layouts we've built for it */
+    private String mDate;
+    private String mDescription;
+    private String mHighTemperature;
+    private String mLowTemperature;
+
+    private StaticLayout mDateLayout;
+    private StaticLayout mDescriptionLayout;
+    /* The width mDescriptionLayout was ellipsized to */
+    private int mDescriptionWidth;
+    private StaticLayout mHighTemperatureLayout;
+    private StaticLayout mLowTemperatureLayout;
+
+    private int mIconResId;
+    private Bitmap mIcon;
+
+    ForecastListItemView(Context context) {
+        super(context);
+
+        Resources resources = context.getResources();
+
+        mDatePaint = createTextPaintFromAppearance(context,
+                R.style.TextAppearance_AppCompat_Subhead);
+
+        mDescriptionPaint = createTextPaintFromAppearance(context,
+                R.style.TextAppearance_AppCompat_Body1);
+        mDescriptionPaint.setColor(ContextCompat.getColor(context, R.color.secondary_text));
+
+        Typeface light = Typeface.create("sans-serif-light", Typeface.NORMAL);
+        float temperatureTextSize = resources.getDimension(R.dimen.forecast_text_size);
+
+        mHighTemperaturePaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        mHighTemperaturePaint.setTypeface(light);
+        mHighTemperaturePaint.setTextSize(temperatureTextSize);
+        mHighTemperaturePaint.setColor(ContextCompat.getColor(context, R.color.primary_text));
+
+        mLowTemperaturePaint = new TextPaint(mHighTemperaturePaint);
+        mLowTemperaturePaint.setColor(resolveColorAttribute(context,
+                android.R.attr.textColorSecondary));
+
+        mIconSize = resources.getDimensionPixelSize(R.dimen.list_icon);
+        mDateMarginLeft = resources.getDimensionPixelSize(R.dimen.list_item_date_left_margin);
+        mTemperatureSpace = resources.getDimensionPixelSize(R.dimen.forecast_temperature_space);
+        mLowTemperatureWidth = resources
+                .getDimensionPixelSize(R.dimen.list_item_flat_low_temperature_width);
+
+        TypedArray a = context.obtainStyledAttributes(
+                new int[]{android.R.attr.listPreferredItemHeight});
+        mMinHeight = a.getDimensionPixelSize(0, 0);
+        a.recycle();
+
+        int paddingHorizontal = resources
+                .getDimensionPixelSize(R.dimen.list_item_padding_horizontal);
+        int paddingVertical = resources.getDimensionPixelSize(R.dimen.list_item_padding_vertical);
+        setPadding(paddingHorizontal, paddingVertical, paddingHorizontal, paddingVertical);
+
+        setBackgroundResource(R.drawable.touch_selector);
+    }
+
+    /**
+     * Displays one day's forecast. Text that hasn't changed since the last call keeps its
+     * existing StaticLayout.
+     *
+     * @param iconResId       Resource ID of the weather art
+     * @param date            Friendly date string
+     * @param description     Weather description
+     * @param highTemperature Formatted high temperature
+     * @param lowTemperature  Formatted low temperature
+     */
+    void setForecast(int iconResId, String date, String description,
+                     String highTemperature, String lowTemperature) {
+
+        if (iconResId != mIconResId) {
+            mIconResId = iconResId;
+            mIcon = WeatherArtCache.getBitmap(getContext(), iconResId, mIconSize, mIconSize);
+        }
+
+        if (!date.equals(mDate)) {
+            mDate = date;
+            mDateLayout = createSingleLineLayout(date, mDatePaint, Layout.Alignment.ALIGN_NORMAL);
+        }
+
+        if (!description.equals(mDescription)) {
+            mDescription = description;
+            /* Laid out in onDraw, once we know how much space it has */
+            mDescriptionLayout = null;
+        }
+
+        if (!highTemperature.equals(mHighTemperature)) {
+            mHighTemperature = highTemperature;
+            mHighTemperatureLayout = createSingleLineLayout(highTemperature,
+                    mHighTemperaturePaint, Layout.Alignment.ALIGN_NORMAL);
+        }
+
+        if (!lowTemperature.equals(mLowTemperature)) {
+            mLowTemperature = lowTemperature;
+            /* The low temperature is right aligned within a fixed width, like in the XML layout */
+            mLowTemperatureLayout = new StaticLayout(lowTemperature, mLowTemperaturePaint,
+                    mLowTemperatureWidth, Layout.Alignment.ALIGN_OPPOSITE, 1f, 0f, false);
+        }
+
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+
+        /*
+         * The date sits just above the middle of the row and the description just below it, so
+         * the row has to fit twice the taller of the two. None of this depends on the text
+         * itself, only on the font metrics, which is why new data never needs a new layout pass.
+         */
+        int dateHeight = lineHeight(mDatePaint);
+        int descriptionHeight = lineHeight(mDescriptionPaint);
+        int temperatureHeight = lineHeight(mHighTemperaturePaint);
+
+        int contentHeight = Math.max(mIconSize, 2 * Math.max(dateHeight, descriptionHeight));
+        contentHeight = Math.max(contentHeight, temperatureHeight);
+
+        int height = Math.max(mMinHeight, contentHeight + getPaddingTop() + getPaddingBottom());
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mDateLayout == null) {
+            return;
+        }
+
+        int left = getPaddingLeft();
+        int right = getWidth() - getPaddingRight();
+        int centerY = getPaddingTop() + (getHeight() - getPaddingTop() - getPaddingBottom()) / 2;
+
+        /* Icon, vertically centered on the left */
+        if (mIcon != null) {
+            canvas.drawBitmap(mIcon, left, centerY - mIconSize / 2, null);
+        }
+
+        /* Low temperature against the right edge, high temperature to the left of it */
+        int lowLeft = right - mLowTemperatureWidth;
+        drawLayout(canvas, mLowTemperatureLayout, lowLeft,
+                centerY - mLowTemperatureLayout.getHeight() / 2);
+
+        int highLeft = lowLeft - mTemperatureSpace - mHighTemperatureLayout.getWidth();
+        drawLayout(canvas, mHighTemperatureLayout, highLeft,
+                centerY - mHighTemperatureLayout.getHeight() / 2);
+
+        /*
+         * Date just above the middle, description just below it. The description gets whatever
+         * is left beside the temperatures, and no more, however long or well translated it is.
+         */
+        int textLeft = left + mIconSize + mDateMarginLeft;
+        drawLayout(canvas, mDateLayout, textLeft, centerY - mDateLayout.getHeight());
+
+        int descriptionWidth = Math.max(0, highLeft - mTemperatureSpace - textLeft);
+        if (mDescriptionLayout == null || descriptionWidth != mDescriptionWidth) {
+            mDescriptionWidth = descriptionWidth;
+            mDescriptionLayout = createEllipsizedLayout(mDescription, mDescriptionPaint,
+                    descriptionWidth);
+        }
+        drawLayout(canvas, mDescriptionLayout, textLeft, centerY);
+    }
+
+    private static void drawLayout(Canvas canvas, Layout layout, int left, int top) {
+        canvas.save();
+        canvas.translate(left, top);
+        layout.draw(canvas);
+        canvas.restore();
+    }
+
+    private static StaticLayout createSingleLineLayout(String text, TextPaint paint,
+                                                       Layout.Alignment alignment) {
+        int width = (int) Math.ceil(Layout.getDesiredWidth(text, paint));
+        return new StaticLayout(text, paint, width, alignment, 1f, 0f, false);
+    }
+
+    /**
+     * Lays out a single line of text, cut short with an ellipsis at the end if it's any wider
+     * than maxWidth.
+     */
+    private static StaticLayout createEllipsizedLayout(String text, TextPaint paint,
+                                                       int maxWidth) {
+        int width = Math.min(maxWidth, (int) Math.ceil(Layout.getDesiredWidth(text, paint)));
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return StaticLayout.Builder.obtain(text, 0, text.length(), paint, width)
+                    .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                    .setIncludePad(false)
+                    .setEllipsize(TextUtils.TruncateAt.END)
+                    .setEllipsizedWidth(width)
+                    .setMaxLines(1)
+                    .build();
+        }
+
+        /*
+         * Before Marshmallow, StaticLayout only ellipsizes the last of its maximum number of
+         * lines, which its constructor has no way to set, so a long description would still wrap.
+         * Shortening the text to one line's width first leaves nothing to wrap.
+         */
+        CharSequence line = TextUtils.ellipsize(text, paint, width, TextUtils.TruncateAt.END);
+        return new StaticLayout(line, 0, line.length(), paint, width,
+                Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false, TextUtils.TruncateAt.END, width);
+    }
+
+    private static int lineHeight(TextPaint paint) {
+        return paint.getFontMetricsInt(null);
+    }
+
+    /**
+     * Creates a TextPaint with the text size and color of a TextAppearance style, so that the
+     * flat row matches the TextViews of the XML layout.
+     */
+    private static TextPaint createTextPaintFromAppearance(Context context, int appearance) {
+        /* The attributes must be in ascending order for obtainStyledAttributes */
+        TypedArray a = context.obtainStyledAttributes(appearance,
+                new int[]{android.R.attr.textSize, android.R.attr.textColor});
+        TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(a.getDimension(0, 0));
+        paint.setColor(a.getColor(1, 0));
+        a.recycle();
+        return paint;
+    }
+
+    private static int resolveColorAttribute(Context context, int attribute) {
+        TypedArray a = context.obtainStyledAttributes(new int[]{attribute});
+        int color = a.getColor(0, 0);
+        a.recycle();
+        return color;
+    }
+}
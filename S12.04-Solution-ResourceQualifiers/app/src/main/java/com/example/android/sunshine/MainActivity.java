@@ -17,8 +17,11 @@ package com.example.android.sunshine;
 
 import android.content.Intent;
 import android.database.Cursor;
+import android.databinding.DataBindingUtil;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
@@ -32,8 +35,10 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 
+import com.example.android.sunshine.data.DayForecast;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.databinding.PageWeatherDetailBinding;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
 
 public class MainActivity extends AppCompatActivity implements
@@ -44,13 +49,20 @@ public class MainActivity extends AppCompatActivity implements
 
     /*
      * The columns of data that we are interested in displaying within our MainActivity's list of
-     * weather data.
+     * weather data. The list itself only displays the first four columns. We also load the
+     * remaining detail columns so that a clicked row can be handed to DetailActivity as-is,
+     * letting it draw its first frame without waiting on a query of its own. In two-pane mode,
+     * the same columns feed the detail pane.
      */
     public static final String[] MAIN_FORECAST_PROJECTION = {
             WeatherContract.WeatherEntry.COLUMN_DATE,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES,
     };
 
     /*
@@ -62,6 +74,10 @@ public class MainActivity extends AppCompatActivity implements
     public static final int INDEX_WEATHER_MAX_TEMP = 1;
     public static final int INDEX_WEATHER_MIN_TEMP = 2;
     public static final int INDEX_WEATHER_CONDITION_ID = 3;
+    public static final int INDEX_WEATHER_HUMIDITY = 4;
+    public static final int INDEX_WEATHER_PRESSURE = 5;
+    public static final int INDEX_WEATHER_WIND_SPEED = 6;
+    public static final int INDEX_WEATHER_DEGREES = 7;
 
 
     /*
@@ -73,16 +89,45 @@ public class MainActivity extends AppCompatActivity implements
      */
     private static final int ID_FORECAST_LOADER = 44;
 
+    /* The key we use to remember the day shown in the detail pane across configuration changes */
+    private static final String KEY_SELECTED_DATE = "selected_date";
+
     private ForecastAdapter mForecastAdapter;
     private RecyclerView mRecyclerView;
     private int mPosition = RecyclerView.NO_POSITION;
 
     private ProgressBar mLoadingIndicator;
 
+    /*
+     * On devices whose smallest width is at least 600dp, the details of the selected day are
+     * shown in a pane next to the list instead of in a DetailActivity. That pane is bound from
+     * the same cursor the list is, so selecting a day never needs a query of its own.
+     */
+    private boolean mTwoPane;
+    private PageWeatherDetailBinding mDetailPaneBinding;
+
+    /* The day bound to the detail pane, or null if nothing has been bound to it yet */
+    private DayForecast mDetailPaneForecast;
+
+    /* The date of the day the user selected for the detail pane */
+    private long mSelectedDate = ForecastAdapter.NO_SELECTED_DATE;
+
+    /* Whether we've already told the system that the first forecast is on screen */
+    private boolean mHasReportedFullyDrawn;
+
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long onCreateStartMillis = SystemClock.uptimeMillis();
         super.onCreate(savedInstanceState);
+
+        /*
+         * Start loading the user's preferences in the background right away. By the time the
+         * first rows of the forecast are bound, the values they need are usually already in
+         * memory.
+         */
+        SunshinePreferences.initialize(this);
+
         setContentView(R.layout.activity_forecast);
         getSupportActionBar().setElevation(0f);
 
@@ -101,6 +146,19 @@ public class MainActivity extends AppCompatActivity implements
          */
         mLoadingIndicator = (ProgressBar) findViewById(R.id.pb_loading_indicator);
 
+        /*
+         * The use_two_pane_layout resource is only true on devices whose smallest width is at
+         * least 600dp, which is exactly when activity_forecast contains a detail pane.
+         */
+        mTwoPane = getResources().getBoolean(R.bool.use_two_pane_layout);
+        if (mTwoPane) {
+            mDetailPaneBinding = DataBindingUtil.bind(findViewById(R.id.detail_pane));
+            if (savedInstanceState != null) {
+                mSelectedDate = savedInstanceState
+                        .getLong(KEY_SELECTED_DATE, ForecastAdapter.NO_SELECTED_DATE);
+            }
+        }
+
         /*
          * A LinearLayoutManager is responsible for measuring and positioning item views within a
          * RecyclerView into a linear list. This means that it can produce either a horizontal or
@@ -152,8 +210,16 @@ public class MainActivity extends AppCompatActivity implements
          */
         getSupportLoaderManager().initLoader(ID_FORECAST_LOADER, null, this);
 
+        /* This returns right away. The actual work happens on a background thread. */
         SunshineSyncUtils.initialize(this);
 
+        Log.d(TAG, "onCreate took " + (SystemClock.uptimeMillis() - onCreateStartMillis) + " ms");
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(KEY_SELECTED_DATE, mSelectedDate);
     }
 
     /**
@@ -239,7 +305,39 @@ public class MainActivity extends AppCompatActivity implements
         mForecastAdapter.swapCursor(data);
         if (mPosition == RecyclerView.NO_POSITION) mPosition = 0;
         mRecyclerView.smoothScrollToPosition(mPosition);
-        if (data.getCount() != 0) showWeatherDataView();
+        if (data.getCount() != 0) {
+            showWeatherDataView();
+            reportFullyDrawnOnce();
+        }
+
+        /*
+         * In two-pane mode, the detail pane is fed from this very cursor. We keep showing the
+         * day the user selected, or today if they haven't selected one (or it has aged out).
+         */
+        if (mTwoPane && data.getCount() != 0) {
+            int selectedPosition = mForecastAdapter.getPositionForDate(mSelectedDate);
+            if (selectedPosition == RecyclerView.NO_POSITION) selectedPosition = 0;
+            showInDetailPane(mForecastAdapter.getForecast(selectedPosition));
+        }
+    }
+
+    /**
+     * Lets the system know that the forecast is on screen, the first time it is. The time from
+     * launch until then is logged as "Fully drawn" by the ActivityManager, and is the number to
+     * compare when measuring cold start, for example with:
+     * <pre>
+     * adb shell am force-stop com.example.android.sunshine
+     * adb shell am start -W com.example.android.sunshine/.MainActivity
+     * adb logcat -s ActivityManager | grep "Fully drawn"
+     * </pre>
+     */
+    private void reportFullyDrawnOnce() {
+        if (mHasReportedFullyDrawn) return;
+        mHasReportedFullyDrawn = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            reportFullyDrawn();
+        }
     }
 
     /**
@@ -258,19 +356,50 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * This method is for responding to clicks from our list.
+     * This method is for responding to clicks from our list. In two-pane mode, we simply bind the
+     * clicked row to the detail pane.
+     * <p>
+     * Otherwise, along with the URI for the clicked date, we pass the row we already have in
+     * memory so DetailActivity can display it immediately, and the time of the click so
+     * DetailActivity can measure how long it took to show its first content.
      *
-     * @param date Normalized UTC time that represents the local date of the weather in GMT time.
+     * @param dayForecast The weather data of the row that was clicked
      * @see WeatherContract.WeatherEntry#COLUMN_DATE
      */
     @Override
-    public void onClick(long date) {
+    public void onClick(DayForecast dayForecast) {
+        if (mTwoPane) {
+            showInDetailPane(dayForecast);
+            return;
+        }
+
         Intent weatherDetailIntent = new Intent(MainActivity.this, DetailActivity.class);
-        Uri uriForDateClicked = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
+        Uri uriForDateClicked = WeatherContract.WeatherEntry
+                .buildWeatherUriWithDate(dayForecast.getDate());
         weatherDetailIntent.setData(uriForDateClicked);
+        weatherDetailIntent.putExtra(DetailActivity.EXTRA_DAY_FORECAST, dayForecast);
+        weatherDetailIntent.putExtra(DetailActivity.EXTRA_CLICK_UPTIME_MILLIS,
+                SystemClock.uptimeMillis());
         startActivity(weatherDetailIntent);
     }
 
+    /**
+     * Displays a day in the detail pane and highlights it in the list. The pane is only rebound
+     * if it isn't already showing exactly this data.
+     *
+     * @param dayForecast The weather data of the day to display
+     */
+    private void showInDetailPane(DayForecast dayForecast) {
+        if (!dayForecast.equals(mDetailPaneForecast)) {
+            WeatherDetailBinder.bind(this, mDetailPaneBinding, dayForecast);
+            mDetailPaneForecast = dayForecast;
+        }
+        mDetailPaneBinding.getRoot().setVisibility(View.VISIBLE);
+
+        mSelectedDate = dayForecast.getDate();
+        mForecastAdapter.setSelectedDate(mSelectedDate);
+    }
+
     /**
      * This method will make the View for the weather data visible and hide the error message and
      * loading indicator.
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+
+import com.example.android.sunshine.data.DayForecast;
+import com.example.android.sunshine.databinding.PageWeatherDetailBinding;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+import com.example.android.sunshine.utilities.WeatherArtCache;
+
+/**
+ * Binds the details of a single day's weather to a page_weather_detail layout. Every page of
+ * the DetailActivity's pager is bound through here, so the pages all look the same no matter
+ * whether their data came from the forecast list or from our own query.
+ */
+final class WeatherDetailBinder {
+
+    /* This class only has static methods and should never be instantiated */
+    private WeatherDetailBinder() {
+    }
+
+    /**
+     * Binds the weather details for a single day to the views of one detail page.
+     *
+     * @param context     Used to access resources and the user's preferences
+     * @param binding     The data binding of the page to bind to
+     * @param dayForecast The weather details to display
+     */
+    static void bind(Context context, PageWeatherDetailBinding binding, DayForecast dayForecast) {
+
+        /****************
+         * Weather Icon *
+         ****************/
+        /* Read weather condition ID (ID provided by Open Weather Map) */
+        int weatherId = dayForecast.getWeatherId();
+        /* Use our utility method to determine the resource ID for the proper art */
+        int weatherImageId =
+                SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
+
+        /* Display the art, decoded at the size of the icon and shared through the cache */
+        WeatherArtCache.setWeatherArt(binding.primaryInfo.weatherIcon, weatherImageId);
+
+        /****************
+         * Weather Date *
+         ****************/
+        /*
+         * It is important to note that this date is the same date from the weather SQL table.
+         * The date that is stored is a GMT representation at midnight of the date when the
+         * weather information was loaded for.
+         *
+         * When displaying this date, one must add the GMT offset (in milliseconds) to acquire
+         * the date representation for the local date in local time.
+         * SunshineDateUtils#getFriendlyDateString takes care of this for us.
+         */
+        long localDateMidnightGmt = dayForecast.getDate();
+        String dateText = SunshineDateUtils
+                .getFriendlyDateString(context, localDateMidnightGmt, true);
+
+        binding.primaryInfo.date.setText(dateText);
+
+        /***********************
+         * Weather Description *
+         ***********************/
+        /* Use the weatherId to obtain the proper description */
+        String description = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+
+        /* Create the accessibility (a11y) String from the weather description */
+        String descriptionA11y = context.getString(R.string.a11y_forecast, description);
+
+        /* Set the text and content description (for accessibility purposes) */
+        binding.primaryInfo.weatherDescription.setText(description);
+        binding.primaryInfo.weatherDescription.setContentDescription(descriptionA11y);
+
+        /* Set the content description on the weather image (for accessibility purposes) */
+        binding.primaryInfo.weatherIcon.setContentDescription(descriptionA11y);
+
+        /**************************
+         * High (max) temperature *
+         **************************/
+        /* Read high temperature (in degrees celsius) */
+        double highInCelsius = dayForecast.getMaxTemp();
+        /*
+         * If the user's preference for weather is fahrenheit, formatTemperature will convert
+         * the temperature. This method will also append either °C or °F to the temperature
+         * String.
+         */
+        String highString = SunshineWeatherUtils.formatTemperature(context, highInCelsius);
+
+        /* Create the accessibility (a11y) String from the weather description */
+        String highA11y = context.getString(R.string.a11y_high_temp, highString);
+
+        /* Set the text and content description (for accessibility purposes) */
+        binding.primaryInfo.highTemperature.setText(highString);
+        binding.primaryInfo.highTemperature.setContentDescription(highA11y);
+
+        /*************************
+         * Low (min) temperature *
+         *************************/
+        /* Read low temperature (in degrees celsius) */
+        double lowInCelsius = dayForecast.getMinTemp();
+        /*
+         * If the user's preference for weather is fahrenheit, formatTemperature will convert
+         * the temperature. This method will also append either °C or °F to the temperature
+         * String.
+         */
+        String lowString = SunshineWeatherUtils.formatTemperature(context, lowInCelsius);
+
+        String lowA11y = context.getString(R.string.a11y_low_temp, lowString);
+
+        /* Set the text and content description (for accessibility purposes) */
+        binding.primaryInfo.lowTemperature.setText(lowString);
+        binding.primaryInfo.lowTemperature.setContentDescription(lowA11y);
+
+        /************
+         * Humidity *
+         ************/
+        float humidity = dayForecast.getHumidity();
+        String humidityString = context.getString(R.string.format_humidity, humidity);
+
+        String humidityA11y = context.getString(R.string.a11y_humidity, humidityString);
+
+        /* Set the text and content description (for accessibility purposes) */
+        binding.extraDetails.humidity.setText(humidityString);
+        binding.extraDetails.humidity.setContentDescription(humidityA11y);
+
+        binding.extraDetails.humidityLabel.setContentDescription(humidityA11y);
+
+        /****************************
+         * Wind speed and direction *
+         ****************************/
+        /* Read wind speed (in MPH) and direction (in compass degrees) */
+        float windSpeed = dayForecast.getWindSpeed();
+        float windDirection = dayForecast.getDegrees();
+        String windString = SunshineWeatherUtils
+                .getFormattedWind(context, windSpeed, windDirection);
+
+        String windA11y = context.getString(R.string.a11y_wind, windString);
+
+        /* Set the text and content description (for accessibility purposes) */
+        binding.extraDetails.windMeasurement.setText(windString);
+        binding.extraDetails.windMeasurement.setContentDescription(windA11y);
+
+        binding.extraDetails.windLabel.setContentDescription(windA11y);
+
+        /************
+         * Pressure *
+         ************/
+        float pressure = dayForecast.getPressure();
+
+        /*
+         * Format the pressure text using string resources. The reason we directly access
+         * resources using getString rather than using a method from SunshineWeatherUtils as
+         * we have for other data displayed on this screen is because there is no
+         * additional logic that needs to be considered in order to properly display the
+         * pressure.
+         */
+        String pressureString = context.getString(R.string.format_pressure, pressure);
+
+        String pressureA11y = context.getString(R.string.a11y_pressure, pressureString);
+
+        /* Set the text and content description (for accessibility purposes) */
+        binding.extraDetails.pressure.setText(pressureString);
+        binding.extraDetails.pressure.setContentDescription(pressureA11y);
+
+        binding.extraDetails.pressureLabel.setContentDescription(pressureA11y);
+    }
+
+    /**
+     * Builds the one line summary of a day's forecast that we share from the DetailActivity,
+     * using the same formatting as the detail page itself.
+     *
+     * @param context     Used to access resources and the user's preferences
+     * @param dayForecast The weather details to summarize
+     * @return A summary such as "Today, June 24 - Clear - 21°C/12°C"
+     */
+    static String getForecastSummary(Context context, DayForecast dayForecast) {
+        int weatherId = dayForecast.getWeatherId();
+        String dateText = SunshineDateUtils
+                .getFriendlyDateString(context, dayForecast.getDate(), true);
+        String description = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+        String highString = SunshineWeatherUtils
+                .formatTemperature(context, dayForecast.getMaxTemp());
+        String lowString = SunshineWeatherUtils
+                .formatTemperature(context, dayForecast.getMinTemp());
+
+        return String.format("%s - %s - %s/%s", dateText, description, highString, lowString);
+    }
+}
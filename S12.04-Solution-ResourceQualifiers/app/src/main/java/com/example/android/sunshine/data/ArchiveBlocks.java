@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.core.DailySeries;
+import com.example.android.sunshine.core.DailySeriesCodec;
+import com.example.android.sunshine.data.WeatherContract.ArchiveBlockEntry;
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Everything WeatherProvider does with the archive block table: packing past months of the
+ * archive table into it, reading them back through an {@link ArchiveCursor}, and deleting days
+ * from it, for a delete through the provider or for the archive's retention policy.
+ * <p>
+ * A block can't be changed in place. Deleting some of its days means decoding it, cutting the
+ * days out and encoding what's left, which is still cheap, as a block is never more than a
+ * month. Every method here must be called inside a transaction that also covers whatever the
+ * caller does to the archive table, so the two tables never disagree about a day.
+ */
+final class ArchiveBlocks {
+
+    /* The columns every query of blocks here reads, in this order */
+    private static final String[] BLOCK_COLUMNS = {
+            ArchiveBlockEntry.COLUMN_LOCATION,
+            ArchiveBlockEntry.COLUMN_MONTH,
+            ArchiveBlockEntry.COLUMN_FIRST_DATE,
+            ArchiveBlockEntry.COLUMN_LAST_DATE,
+            ArchiveBlockEntry.COLUMN_DAY_COUNT,
+            ArchiveBlockEntry.COLUMN_DATA
+    };
+
+    private static final int INDEX_LOCATION = 0;
+    private static final int INDEX_MONTH = 1;
+    private static final int INDEX_FIRST_DATE = 2;
+    private static final int INDEX_LAST_DATE = 3;
+    private static final int INDEX_DAY_COUNT = 4;
+    private static final int INDEX_DATA = 5;
+
+    /* The columns of the archive table that are packed, in the order DailySeries#add takes them */
+    private static final String[] DAY_COLUMNS = {
+            ArchiveEntry.COLUMN_DATE,
+            ArchiveEntry.COLUMN_WEATHER_ID,
+            ArchiveEntry.COLUMN_MAX_TEMP,
+            ArchiveEntry.COLUMN_MIN_TEMP,
+            ArchiveEntry.COLUMN_HUMIDITY,
+            ArchiveEntry.COLUMN_PRESSURE,
+            ArchiveEntry.COLUMN_WIND_SPEED,
+            ArchiveEntry.COLUMN_DEGREES
+    };
+
+    /* Blocks of one location that hold at least one day of a range, oldest first */
+    private static final String SELECTION_LOCATION_RANGE =
+            ArchiveBlockEntry.COLUMN_LOCATION + " = ? AND "
+                    + ArchiveBlockEntry.COLUMN_LAST_DATE + " >= ? AND "
+                    + ArchiveBlockEntry.COLUMN_FIRST_DATE + " < ?";
+
+    /* This class only has static methods and should never be instantiated */
+    private ArchiveBlocks() {
+    }
+
+    /**
+     * Packs every day of the archive table before the current month into the block table, one
+     * block per location and month, and deletes them from the archive table. Where a block of
+     * that month already exists, the days are merged into it, and where both have the same day,
+     * the one from the archive table wins, since it was written last.
+     *
+     * @return The number of days packed
+     */
+    static int pack(SQLiteDatabase db, long nowMillis) {
+        long currentMonth = DailySeriesCodec.getMonthStart(
+                SunshineDateUtils.normalizeDate(nowMillis));
+        String[] selectionArgs = {Long.toString(currentMonth)};
+
+        /* Sorted the way the UNIQUE (location, date) index already is, so nothing is sorted */
+        Cursor days = db.query(ArchiveEntry.TABLE_NAME,
+                concat(ArchiveEntry.COLUMN_LOCATION, DAY_COLUMNS),
+                ArchiveEntry.COLUMN_DATE + " < ?",
+                selectionArgs,
+                null,
+                null,
+                ArchiveEntry.COLUMN_LOCATION + ", " + ArchiveEntry.COLUMN_DATE);
+        try {
+            String location = null;
+            long month = 0;
+            DailySeries series = null;
+
+            while (days.moveToNext()) {
+                String dayLocation = days.getString(0);
+                long dayMonth = DailySeriesCodec.getMonthStart(days.getLong(1));
+                if (series == null || !dayLocation.equals(location) || dayMonth != month) {
+                    if (series != null) {
+                        mergeIntoBlock(db, location, month, series);
+                    }
+                    location = dayLocation;
+                    month = dayMonth;
+                    series = new DailySeries();
+                }
+                addDay(series, days, 1);
+            }
+            if (series != null) {
+                mergeIntoBlock(db, location, month, series);
+            }
+        } finally {
+            days.close();
+        }
+
+        return db.delete(ArchiveEntry.TABLE_NAME, ArchiveEntry.COLUMN_DATE + " < ?",
+                selectionArgs);
+    }
+
+    /**
+     * @return Whether any day of the location within the range is packed
+     */
+    static boolean hasDays(SQLiteDatabase db, String location, long startDate, long endDate) {
+        return DatabaseUtils.queryNumEntries(db, ArchiveBlockEntry.TABLE_NAME,
+                SELECTION_LOCATION_RANGE, rangeArgs(location, startDate, endDate)) > 0;
+    }
+
+    /**
+     * @return How many days are packed, over all locations together
+     */
+    static long countDays(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "SELECT IFNULL(SUM("
+                + ArchiveBlockEntry.COLUMN_DAY_COUNT + "), 0) FROM "
+                + ArchiveBlockEntry.TABLE_NAME, null);
+    }
+
+    /**
+     * Reads the days of one location within a range, packed or not, as one list, oldest first.
+     * Whole months of packed days are left packed until the cursor reaches them. The months the
+     * range only partly covers, and those that also have days in the archive table, are decoded
+     * right away, so the cursor knows how many days they add up to.
+     *
+     * @param projection The columns to return, or null for all of them
+     * @param startDate  The first date to include
+     * @param endDate    The first date not to include
+     */
+    static Cursor query(SQLiteDatabase db, String[] projection, String location,
+                        long startDate, long endDate) {
+        String[] selectionArgs = rangeArgs(location, startDate, endDate);
+
+        /* The unpacked days come first, grouped by month */
+        Map<Long, DailySeries> unpacked = new TreeMap<Long, DailySeries>();
+        Cursor days = db.query(ArchiveEntry.TABLE_NAME,
+                DAY_COLUMNS,
+                ArchiveEntry.COLUMN_LOCATION + " = ? AND "
+                        + ArchiveEntry.COLUMN_DATE + " >= ? AND "
+                        + ArchiveEntry.COLUMN_DATE + " < ?",
+                selectionArgs,
+                null,
+                null,
+                ArchiveEntry.COLUMN_DATE + " ASC");
+        try {
+            while (days.moveToNext()) {
+                long month = DailySeriesCodec.getMonthStart(days.getLong(0));
+                DailySeries series = unpacked.get(month);
+                if (series == null) {
+                    series = new DailySeries();
+                    unpacked.put(month, series);
+                }
+                addDay(series, days, 0);
+            }
+        } finally {
+            days.close();
+        }
+
+        Map<Long, ArchiveCursor.Segment> segments = new TreeMap<Long, ArchiveCursor.Segment>();
+        Cursor blocks = queryBlocks(db, SELECTION_LOCATION_RANGE, selectionArgs);
+        try {
+            while (blocks.moveToNext()) {
+                long month = blocks.getLong(INDEX_MONTH);
+                DailySeries newer = unpacked.remove(month);
+                boolean partial = blocks.getLong(INDEX_FIRST_DATE) < startDate
+                        || blocks.getLong(INDEX_LAST_DATE) >= endDate;
+
+                if (newer == null && !partial) {
+                    segments.put(month, new ArchiveCursor.Segment(month,
+                            blocks.getBlob(INDEX_DATA), blocks.getInt(INDEX_DAY_COUNT)));
+                    continue;
+                }
+
+                DailySeries series = DailySeriesCodec.decode(blocks.getBlob(INDEX_DATA))
+                        .slice(startDate, endDate);
+                if (newer != null) {
+                    series = DailySeries.merge(series, newer);
+                }
+                if (series.size() > 0) {
+                    segments.put(month, new ArchiveCursor.Segment(month, series));
+                }
+            }
+        } finally {
+            blocks.close();
+        }
+
+        /* Whatever is left are months that have nothing packed */
+        for (Map.Entry<Long, DailySeries> month : unpacked.entrySet()) {
+            segments.put(month.getKey(), new ArchiveCursor.Segment(month.getKey(),
+                    month.getValue()));
+        }
+
+        return new ArchiveCursor(projection, location,
+                new ArrayList<ArchiveCursor.Segment>(segments.values()));
+    }
+
+    /**
+     * Deletes the packed days of one location within a range.
+     *
+     * @return The number of days deleted
+     */
+    static int delete(SQLiteDatabase db, String location, long startDate, long endDate) {
+        return delete(db, queryBlocks(db, SELECTION_LOCATION_RANGE,
+                rangeArgs(location, startDate, endDate)), startDate, endDate);
+    }
+
+    /**
+     * Deletes every packed day of every location.
+     *
+     * @return The number of days deleted
+     */
+    static int deleteAll(SQLiteDatabase db) {
+        int numDaysDeleted = (int) countDays(db);
+        db.delete(ArchiveBlockEntry.TABLE_NAME, null, null);
+        return numDaysDeleted;
+    }
+
+    /**
+     * Deletes the packed days before a date, of every location.
+     *
+     * @return The number of days deleted
+     */
+    static int deleteBefore(SQLiteDatabase db, long oldestDate) {
+        String date = Long.toString(oldestDate);
+
+        /* A block can only start before the date if its month does, which the index finds */
+        return delete(db, queryBlocks(db,
+                ArchiveBlockEntry.COLUMN_MONTH + " < ? AND "
+                        + ArchiveBlockEntry.COLUMN_FIRST_DATE + " < ?",
+                new String[]{date, date}), Long.MIN_VALUE, oldestDate);
+    }
+
+    /**
+     * Deletes packed days, oldest month first, until the given number of days are gone or
+     * nothing is packed anymore. Months of different locations are taken in turn, so that the
+     * days that are deleted are the oldest of all, give or take a month.
+     *
+     * @return The number of days deleted
+     */
+    static int deleteOldest(SQLiteDatabase db, long maxDays) {
+        int numDaysDeleted = 0;
+        Cursor blocks = db.query(ArchiveBlockEntry.TABLE_NAME, BLOCK_COLUMNS, null, null,
+                null, null, ArchiveBlockEntry.COLUMN_MONTH + ", " + ArchiveBlockEntry._ID);
+        try {
+            while (numDaysDeleted < maxDays && blocks.moveToNext()) {
+                String location = blocks.getString(INDEX_LOCATION);
+                long month = blocks.getLong(INDEX_MONTH);
+                int count = blocks.getInt(INDEX_DAY_COUNT);
+
+                long excess = maxDays - numDaysDeleted;
+                if (count <= excess) {
+                    deleteBlock(db, location, month);
+                    numDaysDeleted += count;
+                } else {
+                    DailySeries series = DailySeriesCodec.decode(blocks.getBlob(INDEX_DATA));
+                    writeBlock(db, location, month,
+                            series.slice(series.getDate((int) excess), Long.MAX_VALUE));
+                    numDaysDeleted += excess;
+                }
+            }
+        } finally {
+            blocks.close();
+        }
+        return numDaysDeleted;
+    }
+
+    /* Deletes the days within the range from each of the blocks, and closes the cursor */
+    private static int delete(SQLiteDatabase db, Cursor blocks, long startDate, long endDate) {
+        int numDaysDeleted = 0;
+        try {
+            while (blocks.moveToNext()) {
+                String location = blocks.getString(INDEX_LOCATION);
+                long month = blocks.getLong(INDEX_MONTH);
+                int count = blocks.getInt(INDEX_DAY_COUNT);
+
+                /* A block entirely within the range doesn't need decoding */
+                if (blocks.getLong(INDEX_FIRST_DATE) >= startDate
+                        && blocks.getLong(INDEX_LAST_DATE) < endDate) {
+                    deleteBlock(db, location, month);
+                    numDaysDeleted += count;
+                    continue;
+                }
+
+                DailySeries series = DailySeriesCodec.decode(blocks.getBlob(INDEX_DATA));
+                DailySeries kept = DailySeries.merge(series.slice(Long.MIN_VALUE, startDate),
+                        series.slice(endDate, Long.MAX_VALUE));
+                writeBlock(db, location, month, kept);
+                numDaysDeleted += count - kept.size();
+            }
+        } finally {
+            blocks.close();
+        }
+        return numDaysDeleted;
+    }
+
+    private static void mergeIntoBlock(SQLiteDatabase db, String location, long month,
+                                       DailySeries newer) {
+        Cursor block = queryBlocks(db,
+                ArchiveBlockEntry.COLUMN_LOCATION + " = ? AND "
+                        + ArchiveBlockEntry.COLUMN_MONTH + " = ?",
+                new String[]{location, Long.toString(month)});
+        try {
+            if (block.moveToFirst()) {
+                newer = DailySeries.merge(DailySeriesCodec.decode(block.getBlob(INDEX_DATA)),
+                        newer);
+            }
+        } finally {
+            block.close();
+        }
+        writeBlock(db, location, month, newer);
+    }
+
+    /* Replaces the block of the location and month, or deletes it if there are no days left */
+    private static void writeBlock(SQLiteDatabase db, String location, long month,
+                                   DailySeries series) {
+        if (series.size() == 0) {
+            deleteBlock(db, location, month);
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(ArchiveBlockEntry.COLUMN_LOCATION, location);
+        values.put(ArchiveBlockEntry.COLUMN_MONTH, month);
+        values.put(ArchiveBlockEntry.COLUMN_FIRST_DATE, series.getDate(0));
+        values.put(ArchiveBlockEntry.COLUMN_LAST_DATE, series.getDate(series.size() - 1));
+        values.put(ArchiveBlockEntry.COLUMN_DAY_COUNT, series.size());
+        values.put(ArchiveBlockEntry.COLUMN_DATA, DailySeriesCodec.encode(series));
+
+        /* The UNIQUE (location, month) constraint replaces the block that was there */
+        db.insertOrThrow(ArchiveBlockEntry.TABLE_NAME, null, values);
+    }
+
+    private static void deleteBlock(SQLiteDatabase db, String location, long month) {
+        db.delete(ArchiveBlockEntry.TABLE_NAME,
+                ArchiveBlockEntry.COLUMN_LOCATION + " = ? AND "
+                        + ArchiveBlockEntry.COLUMN_MONTH + " = ?",
+                new String[]{location, Long.toString(month)});
+    }
+
+    private static Cursor queryBlocks(SQLiteDatabase db, String selection,
+                                      String[] selectionArgs) {
+        return db.query(ArchiveBlockEntry.TABLE_NAME, BLOCK_COLUMNS, selection, selectionArgs,
+                null, null, ArchiveBlockEntry.COLUMN_MONTH + " ASC");
+    }
+
+    /* Adds the day the cursor is on, whose DAY_COLUMNS start at the given column */
+    private static void addDay(DailySeries series, Cursor day, int first) {
+        series.add(day.getLong(first),
+                day.getInt(first + 1),
+                day.getDouble(first + 2),
+                day.getDouble(first + 3),
+                (int) Math.round(day.getDouble(first + 4)),
+                day.getDouble(first + 5),
+                day.getDouble(first + 6),
+                day.getDouble(first + 7));
+    }
+
+    private static String[] rangeArgs(String location, long startDate, long endDate) {
+        return new String[]{location, Long.toString(startDate), Long.toString(endDate)};
+    }
+
+    private static String[] concat(String first, String[] rest) {
+        String[] all = new String[rest.length + 1];
+        all[0] = first;
+        System.arraycopy(rest, 0, all, 1, rest.length);
+        return all;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import com.example.android.sunshine.core.DailySeries;
+import com.example.android.sunshine.core.DailySeriesCodec;
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Cursor WeatherProvider returns for the archived days of one location once some of them are
+ * packed into the archive block table. It reads like a query of the archive table would: one row
+ * a day, oldest first, with the columns of {@link ArchiveEntry}.
+ * <p>
+ * The days come in segments, one per month. A segment is either a blob, exactly as
+ * {@link DailySeriesCodec} packed it, or days that are already decoded, because they came from
+ * the archive table or because only part of the month was asked for. A blob is only decoded
+ * when the cursor first moves onto one of its days, and only the blob the cursor is in is kept
+ * decoded, so scrolling through years of archive never holds more than a month of it unpacked.
+ * <p>
+ * The days have no row ID of their own once they're packed, so the _id column holds the date,
+ * which is just as unique within one location.
+ */
+final class ArchiveCursor extends AbstractCursor {
+
+    /* The columns returned when the projection is null, in the order the archive table has them */
+    static final String[] ALL_COLUMNS = {
+            ArchiveEntry._ID,
+            ArchiveEntry.COLUMN_LOCATION,
+            ArchiveEntry.COLUMN_DATE,
+            ArchiveEntry.COLUMN_WEATHER_ID,
+            ArchiveEntry.COLUMN_MIN_TEMP,
+            ArchiveEntry.COLUMN_MAX_TEMP,
+            ArchiveEntry.COLUMN_HUMIDITY,
+            ArchiveEntry.COLUMN_PRESSURE,
+            ArchiveEntry.COLUMN_WIND_SPEED,
+            ArchiveEntry.COLUMN_DEGREES
+    };
+
+    /* Indexes into ALL_COLUMNS, which is what each column of the projection is mapped to */
+    private static final int FIELD_ID = 0;
+    private static final int FIELD_LOCATION = 1;
+    private static final int FIELD_DATE = 2;
+    private static final int FIELD_WEATHER_ID = 3;
+    private static final int FIELD_MIN_TEMP = 4;
+    private static final int FIELD_MAX_TEMP = 5;
+    private static final int FIELD_HUMIDITY = 6;
+    private static final int FIELD_PRESSURE = 7;
+    private static final int FIELD_WIND_SPEED = 8;
+    private static final int FIELD_DEGREES = 9;
+
+    /**
+     * A month of days, either still packed or already decoded.
+     */
+    static final class Segment {
+
+        final long month;
+        final int count;
+
+        /* Exactly one of these is set */
+        final byte[] blob;
+        final DailySeries days;
+
+        /**
+         * @param month The first day of the month the blob holds
+         * @param blob  The month, as written by DailySeriesCodec#encode
+         * @param count How many days the blob holds, as recorded next to it
+         */
+        Segment(long month, byte[] blob, int count) {
+            this.month = month;
+            this.count = count;
+            this.blob = blob;
+            this.days = null;
+        }
+
+        Segment(long month, DailySeries days) {
+            this.month = month;
+            this.count = days.size();
+            this.blob = null;
+            this.days = days;
+        }
+    }
+
+    private final String mLocation;
+    private final String[] mColumnNames;
+    private final int[] mFields;
+
+    private final Segment[] mSegments;
+
+    /* mStarts[i] is the position of the first day of mSegments[i] */
+    private final int[] mStarts;
+    private final int mCount;
+
+    /* The only blob kept decoded, and which segment it belongs to */
+    private Segment mDecodedSegment;
+    private DailySeries mDecoded;
+
+    /* Where the cursor is: the days of the current segment, and the index among them */
+    private DailySeries mCurrent;
+    private int mIndex;
+
+    /**
+     * @param projection The columns to return, any of {@link #ALL_COLUMNS}, or null for all
+     * @param location   The location all the days belong to
+     * @param segments   The months, oldest first, none of them empty
+     * @throws IllegalArgumentException If the projection names a column the archive doesn't have
+     */
+    ArchiveCursor(String[] projection, String location, List<Segment> segments) {
+        mLocation = location;
+        mColumnNames = projection != null ? projection : ALL_COLUMNS;
+        mFields = new int[mColumnNames.length];
+        for (int i = 0; i < mColumnNames.length; i++) {
+            mFields[i] = Arrays.asList(ALL_COLUMNS).indexOf(mColumnNames[i]);
+            if (mFields[i] < 0) {
+                throw new IllegalArgumentException("Unknown archive column: " + mColumnNames[i]);
+            }
+        }
+
+        mSegments = segments.toArray(new Segment[segments.size()]);
+        mStarts = new int[mSegments.length];
+        int count = 0;
+        for (int i = 0; i < mSegments.length; i++) {
+            mStarts[i] = count;
+            count += mSegments[i].count;
+        }
+        mCount = count;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    /*
+     * Finds the segment the new position is in, and decodes it if it's still packed. Moving
+     * within a segment costs no more than the binary search.
+     */
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        int segmentIndex = Arrays.binarySearch(mStarts, newPosition);
+        if (segmentIndex < 0) {
+            segmentIndex = -segmentIndex - 2;
+        }
+        Segment segment = mSegments[segmentIndex];
+
+        if (segment.days != null) {
+            mCurrent = segment.days;
+        } else {
+            if (mDecodedSegment != segment) {
+                DailySeries decoded = DailySeriesCodec.decode(segment.blob);
+                if (decoded.size() != segment.count) {
+                    throw new IllegalStateException("Archive block of " + segment.month
+                            + " holds " + decoded.size() + " days, not " + segment.count);
+                }
+                mDecoded = decoded;
+                mDecodedSegment = segment;
+            }
+            mCurrent = mDecoded;
+        }
+        mIndex = newPosition - mStarts[segmentIndex];
+        return true;
+    }
+
+    @Override
+    public int getType(int column) {
+        switch (mFields[column]) {
+            case FIELD_LOCATION:
+                return Cursor.FIELD_TYPE_STRING;
+            case FIELD_ID:
+            case FIELD_DATE:
+            case FIELD_WEATHER_ID:
+                return Cursor.FIELD_TYPE_INTEGER;
+            default:
+                return Cursor.FIELD_TYPE_FLOAT;
+        }
+    }
+
+    @Override
+    public String getString(int column) {
+        switch (getType(column)) {
+            case Cursor.FIELD_TYPE_STRING:
+                return mLocation;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return Long.toString(getLong(column));
+            default:
+                return Double.toString(getDouble(column));
+        }
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        checkPosition();
+        switch (mFields[column]) {
+            case FIELD_ID:
+            case FIELD_DATE:
+                return mCurrent.getDate(mIndex);
+            case FIELD_WEATHER_ID:
+                return mCurrent.getWeatherId(mIndex);
+            case FIELD_LOCATION:
+                return parseLong(mLocation);
+            default:
+                /* The same as SQLite does with a REAL column */
+                return (long) getDouble(column);
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        checkPosition();
+        switch (mFields[column]) {
+            case FIELD_MIN_TEMP:
+                return mCurrent.getLow(mIndex);
+            case FIELD_MAX_TEMP:
+                return mCurrent.getHigh(mIndex);
+            case FIELD_HUMIDITY:
+                return mCurrent.getHumidity(mIndex);
+            case FIELD_PRESSURE:
+                return mCurrent.getPressure(mIndex);
+            case FIELD_WIND_SPEED:
+                return mCurrent.getWindSpeed(mIndex);
+            case FIELD_DEGREES:
+                return mCurrent.getWindDirection(mIndex);
+            default:
+                return getLong(column);
+        }
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return false;
+    }
+
+    /* SQLite turns text that isn't a number into 0, rather than failing */
+    private static long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * An immutable, in-memory copy of a single row of the weather table. The forecast list already
+ * has every value the detail screen needs, so it hands one of these over when a day is clicked.
+ * That lets the detail screen draw its first frame without waiting on a database query.
+ */
+public final class DayForecast implements Parcelable {
+
+    private final long mDate;
+    private final int mWeatherId;
+    private final double mMaxTemp;
+    private final double mMinTemp;
+    private final float mHumidity;
+    private final float mPressure;
+    private final float mWindSpeed;
+    private final float mDegrees;
+
+    /**
+     * Creates a DayForecast. Temperatures are in degrees Celsius, exactly as they are stored in
+     * the weather table.
+     *
+     * @param date      Normalized UTC date, see {@link WeatherContract.WeatherEntry#COLUMN_DATE}
+     * @param weatherId Weather condition ID as returned by OpenWeatherMap
+     * @param maxTemp   High temperature for the day
+     * @param minTemp   Low temperature for the day
+     * @param humidity  Humidity as a percentage
+     * @param pressure  Barometric pressure in hPa
+     * @param windSpeed Wind speed in km/h
+     * @param degrees   Meteorological wind direction in degrees
+     */
+    public DayForecast(long date, int weatherId, double maxTemp, double minTemp,
+                       float humidity, float pressure, float windSpeed, float degrees) {
+        mDate = date;
+        mWeatherId = weatherId;
+        mMaxTemp = maxTemp;
+        mMinTemp = minTemp;
+        mHumidity = humidity;
+        mPressure = pressure;
+        mWindSpeed = windSpeed;
+        mDegrees = degrees;
+    }
+
+    private DayForecast(Parcel in) {
+        mDate = in.readLong();
+        mWeatherId = in.readInt();
+        mMaxTemp = in.readDouble();
+        mMinTemp = in.readDouble();
+        mHumidity = in.readFloat();
+        mPressure = in.readFloat();
+        mWindSpeed = in.readFloat();
+        mDegrees = in.readFloat();
+    }
+
+    public long getDate() {
+        return mDate;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public double getMaxTemp() {
+        return mMaxTemp;
+    }
+
+    public double getMinTemp() {
+        return mMinTemp;
+    }
+
+    public float getHumidity() {
+        return mHumidity;
+    }
+
+    public float getPressure() {
+        return mPressure;
+    }
+
+    public float getWindSpeed() {
+        return mWindSpeed;
+    }
+
+    public float getDegrees() {
+        return mDegrees;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DayForecast)) return false;
+
+        DayForecast that = (DayForecast) o;
+        return mDate == that.mDate
+                && mWeatherId == that.mWeatherId
+                && Double.compare(that.mMaxTemp, mMaxTemp) == 0
+                && Double.compare(that.mMinTemp, mMinTemp) == 0
+                && Float.compare(that.mHumidity, mHumidity) == 0
+                && Float.compare(that.mPressure, mPressure) == 0
+                && Float.compare(that.mWindSpeed, mWindSpeed) == 0
+                && Float.compare(that.mDegrees, mDegrees) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (mDate ^ (mDate >>> 32));
+        result = 31 * result + mWeatherId;
+        long temp = Double.doubleToLongBits(mMaxTemp);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(mMinTemp);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + Float.floatToIntBits(mHumidity);
+        result = 31 * result + Float.floatToIntBits(mPressure);
+        result = 31 * result + Float.floatToIntBits(mWindSpeed);
+        result = 31 * result + Float.floatToIntBits(mDegrees);
+        return result;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(mDate);
+        dest.writeInt(mWeatherId);
+        dest.writeDouble(mMaxTemp);
+        dest.writeDouble(mMinTemp);
+        dest.writeFloat(mHumidity);
+        dest.writeFloat(mPressure);
+        dest.writeFloat(mWindSpeed);
+        dest.writeFloat(mDegrees);
+    }
+
+    public static final Creator<DayForecast> CREATOR = new Creator<DayForecast>() {
+        @Override
+        public DayForecast createFromParcel(Parcel in) {
+            return new DayForecast(in);
+        }
+
+        @Override
+        public DayForecast[] newArray(int size) {
+            return new DayForecast[size];
+        }
+    };
+}
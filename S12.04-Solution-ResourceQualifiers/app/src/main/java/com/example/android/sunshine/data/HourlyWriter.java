@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.core.OwmHourlyParser;
+import com.example.android.sunshine.data.WeatherContract.HourlyEntry;
+
+import java.io.Closeable;
+
+/**
+ * Replaces the hourly forecast of one location, an entry at a time, straight from the parser.
+ * Get one from {@link WeatherProvider#openHourlyWriter}. It works like {@link WeatherWriter}:
+ * the INSERT is compiled once, each entry is bound to it as primitives, and everything happens
+ * in one transaction that starts by deleting the location's old hours, and is rolled back if
+ * the writer is closed without committing.
+ * <p>
+ * Only the location's own rows are replaced. Both that delete and every insert go through the
+ * (location, time) index, so refreshing a location costs the same whether the table holds a
+ * thousand rows or a hundred thousand. The transaction also deletes the hours that are over, of
+ * every location, so the hours of a location the user has moved away from don't stay forever:
+ * the table only ever holds the locations synced within the last forecast's five days. That
+ * delete can't use the index, but there are never many rows left for it to scan.
+ * <p>
+ * The database uses write-ahead logging, so queries from the UI keep reading the old hours until
+ * the new ones are committed, instead of waiting.
+ * <p>
+ * A writer must only be used from the thread that opened it, since SQLite transactions belong
+ * to a thread.
+ */
+public final class HourlyWriter implements OwmHourlyParser.Sink, Closeable {
+
+    /* The order in which the columns are bound, starting at 1 */
+    private static final String SQL_INSERT_HOURLY = "INSERT INTO " + HourlyEntry.TABLE_NAME
+            + " (" + HourlyEntry.COLUMN_LOCATION
+            + ", " + HourlyEntry.COLUMN_TIME
+            + ", " + HourlyEntry.COLUMN_WEATHER_ID
+            + ", " + HourlyEntry.COLUMN_TEMPERATURE
+            + ", " + HourlyEntry.COLUMN_HUMIDITY
+            + ", " + HourlyEntry.COLUMN_PRESSURE
+            + ", " + HourlyEntry.COLUMN_WIND_SPEED
+            + ", " + HourlyEntry.COLUMN_DEGREES
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final SQLiteDatabase mDb;
+    private final ContentResolver mResolver;
+    private final String mLocation;
+    private final SQLiteStatement mInsert;
+
+    private boolean mFinished;
+    private boolean mCommitted;
+    private int mRowCount;
+
+    HourlyWriter(SQLiteDatabase db, ContentResolver resolver, String location, long nowMillis) {
+        mDb = db;
+        mResolver = resolver;
+        mLocation = location;
+
+        db.beginTransaction();
+        try {
+            db.delete(HourlyEntry.TABLE_NAME, HourlyEntry.COLUMN_LOCATION + " = ?",
+                    new String[]{location});
+
+            /* An hour is over once its whole step has passed, so the current one is kept */
+            db.delete(HourlyEntry.TABLE_NAME, HourlyEntry.COLUMN_TIME + " < ?",
+                    new String[]{Long.toString(nowMillis - OwmHourlyParser.STEP_MILLIS)});
+            mInsert = db.compileStatement(SQL_INSERT_HOURLY);
+        } catch (RuntimeException e) {
+            db.endTransaction();
+            throw e;
+        }
+
+        /* The location is the same for every row, so it's only bound once */
+        mInsert.bindString(1, location);
+    }
+
+    /**
+     * Inserts one entry of the new hourly forecast.
+     */
+    @Override
+    public void onHour(long time, int weatherId, double temperature, int humidity,
+                       double pressure, double windSpeed, double windDirection) {
+        if (mFinished) {
+            throw new IllegalStateException("The writer has already been closed");
+        }
+
+        mInsert.bindLong(2, time);
+        mInsert.bindLong(3, weatherId);
+        mInsert.bindDouble(4, temperature);
+        mInsert.bindLong(5, humidity);
+        mInsert.bindDouble(6, pressure);
+        mInsert.bindDouble(7, windSpeed);
+        mInsert.bindDouble(8, windDirection);
+        if (mInsert.executeInsert() != -1) {
+            mRowCount++;
+        }
+    }
+
+    /**
+     * Makes the new hours visible, and tells anyone observing the location's hours that they
+     * changed. The writer can't be used afterwards.
+     */
+    public void commit() {
+        if (mFinished) {
+            throw new IllegalStateException("The writer has already been closed");
+        }
+        try {
+            mDb.setTransactionSuccessful();
+            mCommitted = true;
+        } finally {
+            finish();
+        }
+        mResolver.notifyChange(HourlyEntry.buildHourlyUriWithLocation(mLocation), null);
+    }
+
+    /**
+     * Rolls back everything written so far, unless {@link #commit()} has already been called, in
+     * which case it does nothing. It's always safe to call this in a finally block.
+     */
+    @Override
+    public void close() {
+        if (!mFinished) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        mFinished = true;
+        try {
+            mInsert.close();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    /**
+     * @return Whether {@link #commit()} made the new hours visible
+     */
+    public boolean isCommitted() {
+        return mCommitted;
+    }
+
+    /**
+     * @return How many entries have been written
+     */
+    public int getRowCount() {
+        return mRowCount;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.android.sunshine.R;
+
+/**
+ * An immutable copy of every preference value that Sunshine reads while it is running. A
+ * snapshot is built once from SharedPreferences and then replaced as a whole whenever a
+ * preference changes, so readers never see a half-updated set of values and never have to touch
+ * SharedPreferences or resources themselves.
+ */
+final class PreferencesSnapshot {
+
+    final String preferredLocation;
+    final boolean isMetric;
+
+    final boolean isLocationLatLonAvailable;
+    final double latitude;
+    final double longitude;
+
+    final boolean areNotificationsEnabled;
+    final long lastNotificationTimeMillis;
+
+    private PreferencesSnapshot(String preferredLocation,
+                                boolean isMetric,
+                                boolean isLocationLatLonAvailable,
+                                double latitude,
+                                double longitude,
+                                boolean areNotificationsEnabled,
+                                long lastNotificationTimeMillis) {
+        this.preferredLocation = preferredLocation;
+        this.isMetric = isMetric;
+        this.isLocationLatLonAvailable = isLocationLatLonAvailable;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.areNotificationsEnabled = areNotificationsEnabled;
+        this.lastNotificationTimeMillis = lastNotificationTimeMillis;
+    }
+
+    /**
+     * Reads every value Sunshine cares about out of SharedPreferences. The keys and defaults are
+     * resolved from resources here, once per snapshot, instead of once per accessor call.
+     *
+     * @param context Context used to resolve preference keys and default values
+     * @param sp      The SharedPreferences to read from
+     * @return A new snapshot of the current preference values
+     */
+    static PreferencesSnapshot load(Context context, SharedPreferences sp) {
+        String keyForLocation = context.getString(R.string.pref_location_key);
+        String defaultLocation = context.getString(R.string.pref_location_default);
+        String preferredLocation = sp.getString(keyForLocation, defaultLocation);
+
+        String keyForUnits = context.getString(R.string.pref_units_key);
+        String metric = context.getString(R.string.pref_units_metric);
+        String preferredUnits = sp.getString(keyForUnits, metric);
+        boolean isMetric = metric.equals(preferredUnits);
+
+        /*
+         * Coordinates are stored as the raw long bits of a double, since SharedPreferences can't
+         * store doubles. See SunshinePreferences#setLocationDetails.
+         */
+        boolean isLocationLatLonAvailable = sp.contains(SunshinePreferences.PREF_COORD_LAT)
+                && sp.contains(SunshinePreferences.PREF_COORD_LONG);
+        double latitude = Double.longBitsToDouble(
+                sp.getLong(SunshinePreferences.PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
+        double longitude = Double.longBitsToDouble(
+                sp.getLong(SunshinePreferences.PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+
+        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
+        boolean shouldDisplayNotificationsByDefault = context
+                .getResources()
+                .getBoolean(R.bool.show_notifications_by_default);
+        boolean areNotificationsEnabled = sp
+                .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
+
+        String lastNotificationKey = context.getString(R.string.pref_last_notification);
+        long lastNotificationTimeMillis = sp.getLong(lastNotificationKey, 0);
+
+        return new PreferencesSnapshot(
+                preferredLocation,
+                isMetric,
+                isLocationLatLonAvailable,
+                latitude,
+                longitude,
+                areNotificationsEnabled,
+                lastNotificationTimeMillis);
+    }
+}
@@ -17,6 +17,7 @@ package com.example.android.sunshine.data;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.AsyncTask;
 import android.preference.PreferenceManager;
 
 import com.example.android.sunshine.R;
@@ -31,6 +32,92 @@ public final class SunshinePreferences {
     public static final String PREF_COORD_LAT = "coord_lat";
     public static final String PREF_COORD_LONG = "coord_long";
 
+    /*
+     * Every accessor below used to look up the default SharedPreferences and resolve its key
+     * from resources on every call. isMetric alone runs twice for every row bound in the
+     * forecast list. Instead, we read all of the values once into an immutable
+     * PreferencesSnapshot and swap in a new snapshot whenever a preference changes. Readers only
+     * ever do a single volatile read.
+     */
+    private static volatile PreferencesSnapshot sSnapshot;
+
+    private static final Object sSnapshotLock = new Object();
+
+    /*
+     * SharedPreferences only keeps weak references to its listeners, so we need to hold on to
+     * ours for as long as the process is alive.
+     */
+    private static SharedPreferences.OnSharedPreferenceChangeListener sSnapshotUpdater;
+
+    /**
+     * Starts loading the preferences snapshot on a background thread. Loading the default
+     * SharedPreferences for the first time reads its backing file from disk, which we don't want
+     * to do on the main thread. Calling this method more than once is harmless.
+     *
+     * @param context Context used to access SharedPreferences and resources
+     */
+    public static void initialize(Context context) {
+        if (sSnapshot != null) return;
+
+        final Context appContext = context.getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                getSnapshot(appContext);
+            }
+        });
+    }
+
+    /**
+     * Returns the current preferences snapshot. If {@link #initialize(Context)} hasn't finished
+     * loading it yet, the snapshot is loaded synchronously on the calling thread.
+     *
+     * @param context Context used to access SharedPreferences and resources
+     * @return The current, immutable preferences snapshot
+     */
+    private static PreferencesSnapshot getSnapshot(Context context) {
+        PreferencesSnapshot snapshot = sSnapshot;
+        if (snapshot != null) return snapshot;
+
+        synchronized (sSnapshotLock) {
+            if (sSnapshot == null) {
+                final Context appContext = context.getApplicationContext();
+                SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(appContext);
+
+                sSnapshotUpdater = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                          String key) {
+                        reloadSnapshot(appContext, sharedPreferences);
+                    }
+                };
+                sp.registerOnSharedPreferenceChangeListener(sSnapshotUpdater);
+
+                sSnapshot = PreferencesSnapshot.load(appContext, sp);
+            }
+            return sSnapshot;
+        }
+    }
+
+    /**
+     * Builds a new snapshot from the current contents of SharedPreferences and atomically swaps
+     * it in. Reloading under the lock guarantees an older snapshot can never overwrite a newer
+     * one.
+     *
+     * @param context Context used to resolve preference keys and default values
+     * @param sp      The default SharedPreferences
+     */
+    private static void reloadSnapshot(Context context, SharedPreferences sp) {
+        synchronized (sSnapshotLock) {
+            /* The first load also registers the change listener, so let getSnapshot do it */
+            if (sSnapshot == null) {
+                getSnapshot(context);
+                return;
+            }
+            sSnapshot = PreferencesSnapshot.load(context.getApplicationContext(), sp);
+        }
+    }
+
     /**
      * Helper method to handle setting location details in Preferences (city name, latitude,
      * longitude)
@@ -48,6 +135,12 @@ public final class SunshinePreferences {
         editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
         editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
         editor.apply();
+
+        /*
+         * The change listener runs on the main thread. Reload right away so that the thread that
+         * wrote the values (usually the sync thread) reads its own writes.
+         */
+        reloadSnapshot(context, sp);
     }
 
     /**
@@ -62,6 +155,8 @@ public final class SunshinePreferences {
         editor.remove(PREF_COORD_LAT);
         editor.remove(PREF_COORD_LONG);
         editor.apply();
+
+        reloadSnapshot(context, sp);
     }
 
     /**
@@ -74,12 +169,7 @@ public final class SunshinePreferences {
      * "94043,USA" if SharedPreferences have not been implemented yet.
      */
     public static String getPreferredWeatherLocation(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForLocation = context.getString(R.string.pref_location_key);
-        String defaultLocation = context.getString(R.string.pref_location_default);
-
-        return sp.getString(keyForLocation, defaultLocation);
+        return getSnapshot(context).preferredLocation;
     }
 
     /**
@@ -89,19 +179,7 @@ public final class SunshinePreferences {
      * @return true if metric display should be used, false if imperial display should be used
      */
     public static boolean isMetric(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForUnits = context.getString(R.string.pref_units_key);
-        String defaultUnits = context.getString(R.string.pref_units_metric);
-        String preferredUnits = sp.getString(keyForUnits, defaultUnits);
-        String metric = context.getString(R.string.pref_units_metric);
-
-        boolean userPrefersMetric = false;
-        if (metric.equals(preferredUnits)) {
-            userPrefersMetric = true;
-        }
-
-        return userPrefersMetric;
+        return getSnapshot(context).isMetric;
     }
 
     /**
@@ -113,23 +191,12 @@ public final class SunshinePreferences {
      * @return an array containing the two coordinate values for the user's preferred location
      */
     public static double[] getLocationCoordinates(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        PreferencesSnapshot snapshot = getSnapshot(context);
 
+        /* Hand out a new array each time, as callers are free to modify the one they get */
         double[] preferredCoordinates = new double[2];
-
-        /*
-         * This is a hack we have to resort to since you can't store doubles in SharedPreferences.
-         *
-         * Double.doubleToLongBits returns an integer corresponding to the bits of the given
-         * IEEE 754 double precision value.
-         *
-         * Double.longBitsToDouble does the opposite, converting a long (that represents a double)
-         * into the double itself.
-         */
-        preferredCoordinates[0] = Double
-                 .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
-        preferredCoordinates[1] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+        preferredCoordinates[0] = snapshot.latitude;
+        preferredCoordinates[1] = snapshot.longitude;
 
         return preferredCoordinates;
     }
@@ -142,17 +209,7 @@ public final class SunshinePreferences {
      * @return true if lat/long are saved in SharedPreferences
      */
     public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
-        boolean spContainLongitude = sp.contains(PREF_COORD_LONG);
-
-        boolean spContainBothLatitudeAndLongitude = false;
-        if (spContainLatitude && spContainLongitude) {
-            spContainBothLatitudeAndLongitude = true;
-        }
-
-        return spContainBothLatitudeAndLongitude;
+        return getSnapshot(context).isLocationLatLonAvailable;
     }
 
     /**
@@ -163,26 +220,12 @@ public final class SunshinePreferences {
      * @return true if the user prefers to see notifications, false otherwise
      */
     public static boolean areNotificationsEnabled(Context context) {
-        /* Key for accessing the preference for showing notifications */
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-
         /*
          * In Sunshine, the user has the ability to say whether she would like notifications
-         * enabled or not. If no preference has been chosen, we want to be able to determine
-         * whether or not to show them. To do this, we reference a bool stored in bools.xml.
+         * enabled or not. If no preference has been chosen, the snapshot falls back to the
+         * default stored in bools.xml.
          */
-        boolean shouldDisplayNotificationsByDefault = context
-                .getResources()
-                .getBoolean(R.bool.show_notifications_by_default);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        /* If a value is stored with the key, we extract it here. If not, use a default. */
-        boolean shouldDisplayNotifications = sp
-                .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
-
-        return shouldDisplayNotifications;
+        return getSnapshot(context).areNotificationsEnabled;
     }
 
     /**
@@ -192,25 +235,14 @@ public final class SunshinePreferences {
      * @return UNIX time of when the last notification was shown
      */
     public static long getLastNotificationTimeInMillis(Context context) {
-        /* Key for accessing the time at which Sunshine last displayed a notification */
-        String lastNotificationKey = context.getString(R.string.pref_last_notification);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
         /*
-         * Here, we retrieve the time in milliseconds when the last notification was shown. If
-         * SharedPreferences doesn't have a value for lastNotificationKey, we return 0. The reason
-         * we return 0 is because we compare the value returned from this method to the current
-         * system time. If the difference between the last notification time and the current time
-         * is greater than one day, we will show a notification again. When we compare the two
-         * values, we subtract the last notification time from the current system time. If the
-         * time of the last notification was 0, the difference will always be greater than the
-         * number of milliseconds in a day and we will show another notification.
+         * If SharedPreferences doesn't have a value for the last notification time, the snapshot
+         * holds 0. The reason we use 0 is because we compare the value returned from this method
+         * to the current system time. If the time of the last notification was 0, the difference
+         * will always be greater than the number of milliseconds in a day and we will show
+         * another notification.
          */
-        long lastNotificationTime = sp.getLong(lastNotificationKey, 0);
-
-        return lastNotificationTime;
+        return getSnapshot(context).lastNotificationTimeMillis;
     }
 
     /**
@@ -241,5 +273,7 @@ public final class SunshinePreferences {
         String lastNotificationKey = context.getString(R.string.pref_last_notification);
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
+
+        reloadSnapshot(context, sp);
     }
 }
\ No newline at end of file
@@ -56,6 +56,19 @@ public class WeatherContract {
      */
     public static final String PATH_WEATHER = "weather";
 
+    /* Path for the single row of metadata that describes what the weather table contains */
+    public static final String PATH_SYNC_METADATA = "sync_metadata";
+
+    /* Path for the log of recent sync runs, and for the statistics computed from it */
+    public static final String PATH_SYNC_LOG = "sync_log";
+    public static final String PATH_STATS = "stats";
+
+    /* Path for the hourly forecast, which has an entry every 3 hours for each location */
+    public static final String PATH_HOURLY = "hourly";
+
+    /* Path for the archive of past days, kept after they drop out of the forecast */
+    public static final String PATH_ARCHIVE = "archive";
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -135,4 +148,360 @@ public class WeatherContract {
             return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
         }
     }
-}
\ No newline at end of file
+
+    /*
+     * Inner class that defines the contents of the hourly table. Unlike the weather table, which
+     * only ever holds the forecast for the current location, this one keeps the hourly forecast
+     * of every location it has been synced for, one row per location and time. Each sync
+     * replaces the hours of its own location, and leaves every other location alone.
+     *
+     * The UNIQUE (location, time) constraint gives the table an index in that order, so the
+     * hours of one location, in order, over any range of time, are a single range of the index,
+     * however many locations the table holds.
+     */
+    public static final class HourlyEntry implements BaseColumns {
+
+        /* The base CONTENT_URI used to query the hourly table from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_HOURLY)
+                .build();
+
+        /* Used internally as the name of our hourly table. */
+        public static final String TABLE_NAME = "hourly";
+
+        /*
+         * Query parameters that limit a query for one location to a range of time. The start is
+         * included and the end isn't, both in milliseconds since the epoch.
+         */
+        public static final String QUERY_PARAMETER_START = "start";
+        public static final String QUERY_PARAMETER_END = "end";
+
+        /*
+         * The location the hours are for: the location setting they were synced for, as
+         * returned by SunshinePreferences#getPreferredWeatherLocation.
+         */
+        public static final String COLUMN_LOCATION = "location";
+
+        /*
+         * The UTC time the row is for, in milliseconds since the epoch. Unlike the date of the
+         * weather table, this is an exact moment, not a normalized date.
+         */
+        public static final String COLUMN_TIME = "time";
+
+        /* Weather ID as returned by API, used to identify the icon to be used */
+        public static final String COLUMN_WEATHER_ID = "weather_id";
+
+        /* Temperature in °C at that time (stored as a float in the database) */
+        public static final String COLUMN_TEMPERATURE = "temp";
+
+        /* Humidity, pressure, wind speed and direction, as in the weather table */
+        public static final String COLUMN_HUMIDITY = "humidity";
+        public static final String COLUMN_PRESSURE = "pressure";
+        public static final String COLUMN_WIND_SPEED = "wind";
+        public static final String COLUMN_DEGREES = "degrees";
+
+        /**
+         * Builds a URI for the hours of a single location, in order.
+         *
+         * @param location The location, as stored in COLUMN_LOCATION
+         * @return Uri to query or replace the hours of that location
+         */
+        public static Uri buildHourlyUriWithLocation(String location) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(location)
+                    .build();
+        }
+
+        /**
+         * Builds a URI for the hours of a single location within a range of time, in order. This
+         * is what a screen showing the next day or so of weather asks for.
+         *
+         * @param location        The location, as stored in COLUMN_LOCATION
+         * @param startTimeMillis The first time to include
+         * @param endTimeMillis   The first time not to include
+         * @return Uri to query the hours of that location within the range
+         */
+        public static Uri buildHourlyUriWithLocationAndRange(String location,
+                                                             long startTimeMillis,
+                                                             long endTimeMillis) {
+            return buildHourlyUriWithLocation(location).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_START, Long.toString(startTimeMillis))
+                    .appendQueryParameter(QUERY_PARAMETER_END, Long.toString(endTimeMillis))
+                    .build();
+        }
+    }
+
+    /*
+     * Inner class that defines the contents of the archive table. The weather table only ever
+     * holds the current forecast, and every sync throws away the days before today. Before it
+     * does, WeatherWriter copies them in here, together with the location they were synced for,
+     * so the weather of past days is kept rather than lost.
+     *
+     * The archive is bounded by a retention policy. An ArchiveCompactionIntentService, started
+     * after a sync at most once every COMPACTION_INTERVAL_MILLIS, deletes days older than
+     * MAX_AGE_DAYS, and then the oldest days of all until no more than MAX_ROWS are left.
+     *
+     * Like the hourly table, the UNIQUE (location, date) constraint gives the table an index in
+     * that order, so a year of one location is a single range of the index. A second index on
+     * date alone lets compaction find the oldest days without reading the whole table.
+     *
+     * Unless the archive_compact_storage resource is false, compaction also packs every month
+     * before the current one into the archive block table, see ArchiveBlockEntry, and deletes
+     * its rows here. The location URIs read packed and unpacked days alike, as one list, oldest
+     * first. Packed days can't be filtered with SQL, though, so as soon as any of the days a
+     * location URI covers are packed, its queries take no selection or sort order, and its
+     * deletes no selection. CONTENT_URI itself, which can't know what a caller's selection
+     * means, only ever reads and deletes the unpacked days, unless a delete has no selection,
+     * in which case it empties the whole archive.
+     */
+    public static final class ArchiveEntry implements BaseColumns {
+
+        /* The base CONTENT_URI used to query the archive table from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_ARCHIVE)
+                .build();
+
+        /* Used internally as the name of our archive table. */
+        public static final String TABLE_NAME = "archive";
+
+        /* Days older than this many days are deleted by compaction */
+        public static final int MAX_AGE_DAYS = 2 * 365;
+
+        /* The most days compaction leaves in the archive, over all locations together */
+        public static final int MAX_ROWS = 10000;
+
+        /* Compaction runs at most this often */
+        public static final long COMPACTION_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+
+        /*
+         * Query parameters that limit a query for one location to a range of dates, the same
+         * ones the hourly table uses. The start is included and the end isn't, both normalized
+         * dates in milliseconds.
+         */
+        public static final String QUERY_PARAMETER_START = HourlyEntry.QUERY_PARAMETER_START;
+        public static final String QUERY_PARAMETER_END = HourlyEntry.QUERY_PARAMETER_END;
+
+        /* The location setting the day was synced for, as in the hourly table */
+        public static final String COLUMN_LOCATION = "location";
+
+        /* The rest of the columns are the same as in the weather table */
+        public static final String COLUMN_DATE = WeatherEntry.COLUMN_DATE;
+        public static final String COLUMN_WEATHER_ID = WeatherEntry.COLUMN_WEATHER_ID;
+        public static final String COLUMN_MIN_TEMP = WeatherEntry.COLUMN_MIN_TEMP;
+        public static final String COLUMN_MAX_TEMP = WeatherEntry.COLUMN_MAX_TEMP;
+        public static final String COLUMN_HUMIDITY = WeatherEntry.COLUMN_HUMIDITY;
+        public static final String COLUMN_PRESSURE = WeatherEntry.COLUMN_PRESSURE;
+        public static final String COLUMN_WIND_SPEED = WeatherEntry.COLUMN_WIND_SPEED;
+        public static final String COLUMN_DEGREES = WeatherEntry.COLUMN_DEGREES;
+
+        /**
+         * Builds a URI for the archived days of a single location, oldest first.
+         *
+         * @param location The location, as stored in COLUMN_LOCATION
+         * @return Uri to query or delete the archived days of that location
+         */
+        public static Uri buildArchiveUriWithLocation(String location) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(location)
+                    .build();
+        }
+
+        /**
+         * Builds a URI for the archived days of a single location within a range of dates,
+         * oldest first. This is what a screen showing, say, the last year of weather asks for.
+         *
+         * @param location  The location, as stored in COLUMN_LOCATION
+         * @param startDate The first normalized date to include
+         * @param endDate   The first normalized date not to include
+         * @return Uri to query the archived days of that location within the range
+         */
+        public static Uri buildArchiveUriWithLocationAndRange(String location, long startDate,
+                                                              long endDate) {
+            return buildArchiveUriWithLocation(location).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_START, Long.toString(startDate))
+                    .appendQueryParameter(QUERY_PARAMETER_END, Long.toString(endDate))
+                    .build();
+        }
+    }
+
+    /*
+     * Inner class that defines the contents of the archive block table, where the archive keeps
+     * past months in packed form. Each row is one month of one location, encoded by
+     * DailySeriesCodec into a single blob of about a dozen bytes a day, rather than the 60 or so
+     * a day costs as a row of the archive table. The blob is only decoded when a query actually
+     * reaches that month.
+     *
+     * The table has no URI of its own. It's read and written through ArchiveEntry's location
+     * URIs, which is why it only defines the names WeatherProvider and WeatherDbHelper use.
+     */
+    public static final class ArchiveBlockEntry implements BaseColumns {
+
+        /* Used internally as the name of our archive block table. */
+        public static final String TABLE_NAME = "archive_block";
+
+        /* The location setting the days were synced for, as in the archive table */
+        public static final String COLUMN_LOCATION = ArchiveEntry.COLUMN_LOCATION;
+
+        /* The first day of the month, normalized like every other date, in milliseconds */
+        public static final String COLUMN_MONTH = "month";
+
+        /*
+         * The first and last day actually in the blob, and how many days it holds. A month with
+         * gaps holds fewer days than the month has. These let a query skip or count a month
+         * without decoding it.
+         */
+        public static final String COLUMN_FIRST_DATE = "first_date";
+        public static final String COLUMN_LAST_DATE = "last_date";
+        public static final String COLUMN_DAY_COUNT = "days";
+
+        /* The days themselves, as written by DailySeriesCodec#encode */
+        public static final String COLUMN_DATA = "data";
+    }
+
+    /*
+     * Inner class that defines the contents of the sync metadata table. This table only ever has
+     * a single row. WeatherProvider keeps it up to date in the same transaction as every change
+     * to the weather table, so that questions like "do we have any weather to show?" can be
+     * answered without looking at the weather table itself.
+     */
+    public static final class SyncMetadataEntry implements BaseColumns {
+
+        /* The CONTENT_URI used to query the sync metadata from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SYNC_METADATA)
+                .build();
+
+        /* Used internally as the name of our sync metadata table. */
+        public static final String TABLE_NAME = "sync_metadata";
+
+        /* The _ID of the one and only row in the sync metadata table */
+        public static final long ROW_ID = 1;
+
+        /* Time, in milliseconds since the epoch, of the last time weather was inserted */
+        public static final String COLUMN_LAST_SYNC = "last_sync";
+
+        /* Number of rows in the weather table */
+        public static final String COLUMN_ROW_COUNT = "row_count";
+
+        /* The latest normalized date in the weather table, or 0 if the table is empty */
+        public static final String COLUMN_MAX_DATE = "max_date";
+
+        /*
+         * The location the weather table was last synced for, or NULL if it isn't known, for
+         * example because the weather was inserted through bulkInsert. WeatherWriter archives
+         * the past days of the weather table under this location.
+         */
+        public static final String COLUMN_LOCATION = "location";
+
+        /* Time, in milliseconds since the epoch, the archive was last compacted, or 0 if never */
+        public static final String COLUMN_LAST_COMPACTION = "last_compaction";
+    }
+
+    /*
+     * Inner class that defines the contents of the sync log table. Every time SunshineSyncTask
+     * runs, it adds one row describing where the time went and how the run ended. The table is
+     * bounded: WeatherProvider drops the oldest runs once there are more than MAX_ROWS of them.
+     */
+    public static final class SyncLogEntry implements BaseColumns {
+
+        /* The CONTENT_URI used to insert and query individual sync runs */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SYNC_LOG)
+                .build();
+
+        /* The URI used to query statistics about recent sync runs */
+        public static final Uri STATS_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_STATS)
+                .build();
+
+        /* Used internally as the name of our sync log table. */
+        public static final String TABLE_NAME = "sync_log";
+
+        /* The most runs we keep in the sync log table */
+        public static final int MAX_ROWS = 100;
+
+        /* Query parameter that limits a query to the most recent runs */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        /* Time, in milliseconds since the epoch, at which the run started */
+        public static final String COLUMN_START_TIME = "start_time";
+
+        /*
+         * How long each stage of the run took, in milliseconds. A stage that was never reached
+         * (because an earlier one failed, for example) is NULL.
+         */
+        public static final String COLUMN_NETWORK_MILLIS = "network_millis";
+        public static final String COLUMN_PARSE_MILLIS = "parse_millis";
+        public static final String COLUMN_WRITE_MILLIS = "write_millis";
+        public static final String COLUMN_NOTIFY_MILLIS = "notify_millis";
+        public static final String COLUMN_TOTAL_MILLIS = "total_millis";
+
+        /* Size of the response we downloaded, in bytes, once decompressed */
+        public static final String COLUMN_PAYLOAD_BYTES = "payload_bytes";
+
+        /* Size of the response as it came over the network, in bytes, before decompression */
+        public static final String COLUMN_WIRE_BYTES = "wire_bytes";
+
+        /*
+         * Time spent decompressing the response while it was parsed, in milliseconds. This is
+         * part of the parse stage, not in addition to it.
+         */
+        public static final String COLUMN_DECODE_MILLIS = "decode_millis";
+
+        /* Number of rows written to the weather table */
+        public static final String COLUMN_ROWS_WRITTEN = "rows_written";
+
+        /* How the run ended. One of the OUTCOME_ constants below. */
+        public static final String COLUMN_OUTCOME = "outcome";
+
+        public static final String OUTCOME_SUCCESS = "success";
+        public static final String OUTCOME_NO_DATA = "no_data";
+        public static final String OUTCOME_ERROR = "error";
+
+        /*
+         * Why a run ended in OUTCOME_ERROR, or NULL if it didn't: "timeout", "connection",
+         * "client_error" (a 4xx), "server_error" (a 5xx), "parse_error", "circuit_open" (the
+         * server had been failing, so it wasn't asked) or "other". See FailureKind in the core
+         * module.
+         */
+        public static final String COLUMN_FAILURE = "failure";
+
+        /*
+         * The columns of a cursor returned from STATS_URI. There is one row per measured column
+         * of the sync log (for example network_millis), named in STATS_COLUMN_METRIC.
+         */
+        public static final String STATS_COLUMN_METRIC = "metric";
+        public static final String STATS_COLUMN_COUNT = "count";
+        public static final String STATS_COLUMN_MEDIAN = "median";
+        public static final String STATS_COLUMN_P90 = "p90";
+        public static final String STATS_COLUMN_P99 = "p99";
+        public static final String STATS_COLUMN_MAX = "max";
+
+        /* The columns of the sync log that STATS_URI summarizes, in the order it returns them */
+        public static final String[] MEASURED_COLUMNS = {
+                COLUMN_NETWORK_MILLIS,
+                COLUMN_PARSE_MILLIS,
+                COLUMN_WRITE_MILLIS,
+                COLUMN_NOTIFY_MILLIS,
+                COLUMN_TOTAL_MILLIS,
+                COLUMN_DECODE_MILLIS,
+                COLUMN_PAYLOAD_BYTES,
+                COLUMN_WIRE_BYTES,
+                COLUMN_ROWS_WRITTEN
+        };
+
+        /**
+         * Builds a URI that returns only the most recent runs, newest first. This works for both
+         * CONTENT_URI and STATS_URI.
+         *
+         * @param uri   Either CONTENT_URI or STATS_URI
+         * @param limit The number of most recent runs to include
+         * @return The URI with the limit appended as a query parameter
+         */
+        public static Uri buildUriWithLimit(Uri uri, int limit) {
+            return uri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(limit))
+                    .build();
+        }
+    }
+}
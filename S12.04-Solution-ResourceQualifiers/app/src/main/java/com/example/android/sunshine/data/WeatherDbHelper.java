@@ -18,7 +18,13 @@ package com.example.android.sunshine.data;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
+import com.example.android.sunshine.data.WeatherContract.ArchiveBlockEntry;
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.HourlyEntry;
+import com.example.android.sunshine.data.WeatherContract.SyncLogEntry;
+import com.example.android.sunshine.data.WeatherContract.SyncMetadataEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
 /**
@@ -42,11 +48,26 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      * versions of Sunshine could cause everything to break. Although that is certainly a rare
      * use-case, we wanted to watch out for it and warn you what could happen if you mistakenly
      * version your databases.
+     *
+     * Version 4 added the sync metadata table. Version 5 added the sync log table. Version 6
+     * added the compressed size and decompression time of each download to the sync log, and
+     * version 7 the reason each failed run failed. Version 8 added the hourly table, and
+     * version 9 the archive table, with the location and compaction time in the sync metadata.
+     * Version 10 added the archive block table, which holds the archive in packed form.
      */
-    private static final int DATABASE_VERSION = 3;
+    private static final int DATABASE_VERSION = 10;
 
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        /*
+         * With write-ahead logging, queries don't wait for a sync that's writing: they read the
+         * database as it was when the write began, from a connection of their own, until the
+         * write commits. Without it, a list of hours waits for every row of a refresh.
+         */
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
     }
 
     /**
@@ -99,15 +120,167 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
          * that SQL with the execSQL method of our SQLite database object.
          */
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+
+        /*
+         * The sync metadata table holds exactly one row, which we create right away with the
+         * values that describe an empty weather table. The CHECK constraint makes sure no
+         * second row can ever sneak in.
+         */
+        final String SQL_CREATE_SYNC_METADATA_TABLE =
+
+                "CREATE TABLE " + SyncMetadataEntry.TABLE_NAME + " (" +
+
+                SyncMetadataEntry._ID              + " INTEGER PRIMARY KEY CHECK ("
+                        + SyncMetadataEntry._ID + " = " + SyncMetadataEntry.ROW_ID + "), " +
+
+                SyncMetadataEntry.COLUMN_LAST_SYNC + " INTEGER NOT NULL, "        +
+                SyncMetadataEntry.COLUMN_ROW_COUNT + " INTEGER NOT NULL, "        +
+                SyncMetadataEntry.COLUMN_MAX_DATE  + " INTEGER NOT NULL, "        +
+                SyncMetadataEntry.COLUMN_LOCATION  + " TEXT, "                    +
+                SyncMetadataEntry.COLUMN_LAST_COMPACTION + " INTEGER NOT NULL);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_SYNC_METADATA_TABLE);
+
+        sqLiteDatabase.execSQL("INSERT INTO " + SyncMetadataEntry.TABLE_NAME + " VALUES ("
+                + SyncMetadataEntry.ROW_ID + ", 0, 0, 0, NULL, 0);");
+
+        /*
+         * One row per sync run. The stage columns may be NULL, since a run that fails never
+         * reaches its later stages.
+         */
+        final String SQL_CREATE_SYNC_LOG_TABLE =
+
+                "CREATE TABLE " + SyncLogEntry.TABLE_NAME + " (" +
+
+                SyncLogEntry._ID                   + " INTEGER PRIMARY KEY, "   +
+
+                SyncLogEntry.COLUMN_START_TIME     + " INTEGER NOT NULL, "      +
+                SyncLogEntry.COLUMN_NETWORK_MILLIS + " INTEGER, "               +
+                SyncLogEntry.COLUMN_PARSE_MILLIS   + " INTEGER, "               +
+                SyncLogEntry.COLUMN_WRITE_MILLIS   + " INTEGER, "               +
+                SyncLogEntry.COLUMN_NOTIFY_MILLIS  + " INTEGER, "               +
+                SyncLogEntry.COLUMN_TOTAL_MILLIS   + " INTEGER NOT NULL, "      +
+                SyncLogEntry.COLUMN_DECODE_MILLIS  + " INTEGER, "               +
+                SyncLogEntry.COLUMN_PAYLOAD_BYTES  + " INTEGER, "               +
+                SyncLogEntry.COLUMN_WIRE_BYTES     + " INTEGER, "               +
+                SyncLogEntry.COLUMN_ROWS_WRITTEN   + " INTEGER, "               +
+                SyncLogEntry.COLUMN_OUTCOME        + " TEXT NOT NULL, "         +
+                SyncLogEntry.COLUMN_FAILURE        + " TEXT);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_SYNC_LOG_TABLE);
+
+        /*
+         * One row per location and time. The UNIQUE constraint is also the index every query
+         * and every refresh of a location goes through, so its columns are in that order.
+         */
+        final String SQL_CREATE_HOURLY_TABLE =
+
+                "CREATE TABLE " + HourlyEntry.TABLE_NAME + " (" +
+
+                HourlyEntry._ID                + " INTEGER PRIMARY KEY, "      +
+
+                HourlyEntry.COLUMN_LOCATION    + " TEXT NOT NULL, "            +
+                HourlyEntry.COLUMN_TIME        + " INTEGER NOT NULL, "         +
+
+                HourlyEntry.COLUMN_WEATHER_ID  + " INTEGER NOT NULL, "         +
+                HourlyEntry.COLUMN_TEMPERATURE + " REAL NOT NULL, "            +
+
+                HourlyEntry.COLUMN_HUMIDITY    + " REAL NOT NULL, "            +
+                HourlyEntry.COLUMN_PRESSURE    + " REAL NOT NULL, "            +
+
+                HourlyEntry.COLUMN_WIND_SPEED  + " REAL NOT NULL, "            +
+                HourlyEntry.COLUMN_DEGREES     + " REAL NOT NULL, "            +
+
+                " UNIQUE (" + HourlyEntry.COLUMN_LOCATION + ", " + HourlyEntry.COLUMN_TIME
+                        + ") ON CONFLICT REPLACE);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_HOURLY_TABLE);
+
+        /*
+         * One row per location and past day. As in the hourly table, the UNIQUE constraint is
+         * the index range queries go through, and ON CONFLICT REPLACE means a day archived twice
+         * keeps the forecast that was made for it last, which is the closest to what happened.
+         */
+        final String SQL_CREATE_ARCHIVE_TABLE =
+
+                "CREATE TABLE " + ArchiveEntry.TABLE_NAME + " (" +
+
+                ArchiveEntry._ID               + " INTEGER PRIMARY KEY, "      +
+
+                ArchiveEntry.COLUMN_LOCATION   + " TEXT NOT NULL, "            +
+                ArchiveEntry.COLUMN_DATE       + " INTEGER NOT NULL, "         +
+
+                ArchiveEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, "         +
+
+                ArchiveEntry.COLUMN_MIN_TEMP   + " REAL NOT NULL, "            +
+                ArchiveEntry.COLUMN_MAX_TEMP   + " REAL NOT NULL, "            +
+
+                ArchiveEntry.COLUMN_HUMIDITY   + " REAL NOT NULL, "            +
+                ArchiveEntry.COLUMN_PRESSURE   + " REAL NOT NULL, "            +
+
+                ArchiveEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, "            +
+                ArchiveEntry.COLUMN_DEGREES    + " REAL NOT NULL, "            +
+
+                " UNIQUE (" + ArchiveEntry.COLUMN_LOCATION + ", " + ArchiveEntry.COLUMN_DATE
+                        + ") ON CONFLICT REPLACE);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_ARCHIVE_TABLE);
+
+        /*
+         * Compaction deletes by age and then oldest first, over every location at once, which
+         * the (location, date) index can't help with.
+         */
+        sqLiteDatabase.execSQL("CREATE INDEX " + ArchiveEntry.TABLE_NAME + "_"
+                + ArchiveEntry.COLUMN_DATE + " ON " + ArchiveEntry.TABLE_NAME
+                + " (" + ArchiveEntry.COLUMN_DATE + ");");
+
+        createArchiveBlockTable(sqLiteDatabase);
+    }
+
+    /*
+     * One row per location and month of packed days. As with the archive table, the UNIQUE
+     * constraint is the index a location's months are read through, in order, and a second
+     * index on the month lets compaction find the oldest months of every location.
+     */
+    private static void createArchiveBlockTable(SQLiteDatabase sqLiteDatabase) {
+        final String SQL_CREATE_ARCHIVE_BLOCK_TABLE =
+
+                "CREATE TABLE " + ArchiveBlockEntry.TABLE_NAME + " (" +
+
+                ArchiveBlockEntry._ID               + " INTEGER PRIMARY KEY, "      +
+
+                ArchiveBlockEntry.COLUMN_LOCATION   + " TEXT NOT NULL, "            +
+                ArchiveBlockEntry.COLUMN_MONTH      + " INTEGER NOT NULL, "         +
+
+                ArchiveBlockEntry.COLUMN_FIRST_DATE + " INTEGER NOT NULL, "         +
+                ArchiveBlockEntry.COLUMN_LAST_DATE  + " INTEGER NOT NULL, "         +
+                ArchiveBlockEntry.COLUMN_DAY_COUNT  + " INTEGER NOT NULL, "         +
+
+                ArchiveBlockEntry.COLUMN_DATA       + " BLOB NOT NULL, "            +
+
+                " UNIQUE (" + ArchiveBlockEntry.COLUMN_LOCATION + ", "
+                        + ArchiveBlockEntry.COLUMN_MONTH + ") ON CONFLICT REPLACE);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_ARCHIVE_BLOCK_TABLE);
+
+        sqLiteDatabase.execSQL("CREATE INDEX " + ArchiveBlockEntry.TABLE_NAME + "_"
+                + ArchiveBlockEntry.COLUMN_MONTH + " ON " + ArchiveBlockEntry.TABLE_NAME
+                + " (" + ArchiveBlockEntry.COLUMN_MONTH + ");");
     }
 
     /**
      * This database is only a cache for online data, so its upgrade policy is simply to discard
-     * the data and call through to onCreate to recreate the table. Note that this only fires if
+     * the data and call through to onCreate to recreate the tables. Note that this only fires if
      * you change the version number for your database (in our case, DATABASE_VERSION). It does NOT
      * depend on the version number for your application found in your app/build.gradle file. If
      * you want to update the schema without wiping data, commenting out the current body of this
      * method should be your top priority before modifying this method.
+     * <p>
+     * The archive is the exception: it holds past days that can't be downloaded again, so from
+     * version 9 on, upgrades keep it. Version 10 only added the archive block table, so a version
+     * 9 database just gets that table, and keeps everything else as it is. Databases older than
+     * version 9 have no archive, so they can still be discarded. Every future schema change must
+     * add its own step here, rather than drop the archive.
      *
      * @param sqLiteDatabase Database that is being upgraded
      * @param oldVersion     The old database version
@@ -115,7 +288,17 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        if (oldVersion == 9) {
+            createArchiveBlockTable(sqLiteDatabase);
+            return;
+        }
+
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + SyncMetadataEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + SyncLogEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + HourlyEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + ArchiveEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + ArchiveBlockEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
\ No newline at end of file
@@ -17,15 +17,25 @@ package com.example.android.sunshine.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderClient;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
+import com.example.android.sunshine.R;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 
+import java.util.Arrays;
+
 /**
  * This class serves as the ContentProvider for all of Sunshine's data. This class allows us to
  * bulkInsert data, query data, and delete data.
@@ -38,6 +48,8 @@ import com.example.android.sunshine.utilities.SunshineDateUtils;
  */
 public class WeatherProvider extends ContentProvider {
 
+    private static final String TAG = WeatherProvider.class.getSimpleName();
+
     /*
      * These constant will be used to match URIs with the data they are looking for. We will take
      * advantage of the UriMatcher class to make that matching MUCH easier than doing something
@@ -46,6 +58,17 @@ public class WeatherProvider extends ContentProvider {
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
 
+    public static final int CODE_SYNC_METADATA = 200;
+
+    public static final int CODE_SYNC_LOG = 300;
+    public static final int CODE_SYNC_LOG_STATS = 301;
+
+    public static final int CODE_HOURLY = 400;
+    public static final int CODE_HOURLY_WITH_LOCATION = 401;
+
+    public static final int CODE_ARCHIVE = 500;
+    public static final int CODE_ARCHIVE_WITH_LOCATION = 501;
+
     /*
      * The URI Matcher used by this content provider. The leading "s" in this variable name
      * signifies that this UriMatcher is a static member variable of WeatherProvider and is a
@@ -96,6 +119,35 @@ public class WeatherProvider extends ContentProvider {
          */
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
 
+        /* This URI is content://com.example.android.sunshine/sync_metadata/ */
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_METADATA, CODE_SYNC_METADATA);
+
+        /* This URI is content://com.example.android.sunshine/sync_log/ */
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_LOG, CODE_SYNC_LOG);
+
+        /* This URI is content://com.example.android.sunshine/sync_log/stats */
+        matcher.addURI(authority,
+                WeatherContract.PATH_SYNC_LOG + "/" + WeatherContract.PATH_STATS,
+                CODE_SYNC_LOG_STATS);
+
+        /* This URI is content://com.example.android.sunshine/hourly/ */
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY, CODE_HOURLY);
+
+        /*
+         * This URI would look something like content://com.example.android.sunshine/hourly/94043
+         * The "/*" matches any text, since a location can be anything the user typed in.
+         */
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY + "/*", CODE_HOURLY_WITH_LOCATION);
+
+        /* This URI is content://com.example.android.sunshine/archive/ */
+        matcher.addURI(authority, WeatherContract.PATH_ARCHIVE, CODE_ARCHIVE);
+
+        /*
+         * This URI would look something like content://com.example.android.sunshine/archive/94043
+         * Like the hourly URIs, "/*" matches any location.
+         */
+        matcher.addURI(authority, WeatherContract.PATH_ARCHIVE + "/*", CODE_ARCHIVE_WITH_LOCATION);
+
         return matcher;
     }
 
@@ -160,6 +212,10 @@ public class WeatherProvider extends ContentProvider {
                             rowsInserted++;
                         }
                     }
+                    updateSyncMetadata(db, true);
+
+                    /* Nothing says which location these days are for, so they're never archived */
+                    updateSyncedLocation(db, null);
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
@@ -171,11 +227,253 @@ public class WeatherProvider extends ContentProvider {
 
                 return rowsInserted;
 
+            /*
+             * Hours are always inserted for the location in the URI, whatever the values say.
+             * ON CONFLICT REPLACE takes care of hours the location already has.
+             */
+            case CODE_HOURLY_WITH_LOCATION: {
+                String location = uri.getLastPathSegment();
+                int hoursInserted = 0;
+                db.beginTransaction();
+                try {
+                    for (ContentValues value : values) {
+                        value.put(WeatherContract.HourlyEntry.COLUMN_LOCATION, location);
+                        long _id = db.insert(WeatherContract.HourlyEntry.TABLE_NAME, null, value);
+                        if (_id != -1) {
+                            hoursInserted++;
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                if (hoursInserted > 0) {
+                    getContext().getContentResolver().notifyChange(uri, null);
+                }
+
+                return hoursInserted;
+            }
+
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Opens a {@link WeatherWriter}, which replaces the forecast a day at a time, straight from
+     * the parser, in a single transaction. This is what a sync uses instead of deleting the old
+     * weather and calling {@link #bulkInsert(Uri, ContentValues[])}. The new forecast is recorded
+     * as being for the location currently in SunshinePreferences.
+     * <p>
+     * A SQLiteStatement can't be handed across processes, so this only works from the process the
+     * provider runs in, which in Sunshine is the only one there is.
+     *
+     * @param context Used to find the provider
+     * @return A writer, which must be closed
+     * @throws IllegalStateException If the provider runs in another process
+     */
+    public static WeatherWriter openWeatherWriter(Context context) {
+        return openWeatherWriter(context, SunshinePreferences.getPreferredWeatherLocation(context));
+    }
+
+    /**
+     * Opens a {@link WeatherWriter} like {@link #openWeatherWriter(Context)} does, for a forecast
+     * of the given location. When the next forecast replaces this one, its past days are
+     * archived under that location.
+     *
+     * @param context  Used to find the provider
+     * @param location The location the new forecast is for
+     * @return A writer, which must be closed
+     * @throws IllegalStateException If the provider runs in another process
+     */
+    public static WeatherWriter openWeatherWriter(Context context, String location) {
+        return getLocalProvider(context).openWeatherWriter(location);
+    }
+
+    private WeatherWriter openWeatherWriter(String location) {
+        return new WeatherWriter(mOpenHelper.getWritableDatabase(),
+                getContext().getContentResolver(), location);
+    }
+
+    /**
+     * Opens a {@link HourlyWriter}, which replaces the hourly forecast of one location straight
+     * from the parser, in a single transaction, the same way {@link #openWeatherWriter(Context)}
+     * does for the daily forecast. The same transaction deletes the hours that are over, of every
+     * location.
+     *
+     * @param context  Used to find the provider
+     * @param location The location whose hours are replaced
+     * @return A writer, which must be closed
+     * @throws IllegalStateException If the provider runs in another process
+     */
+    public static HourlyWriter openHourlyWriter(Context context, String location) {
+        return openHourlyWriter(context, location, System.currentTimeMillis());
+    }
+
+    /*
+     * The same as openHourlyWriter(Context, String), with the time given, so that tests decide
+     * which of their hours are over.
+     */
+    static HourlyWriter openHourlyWriter(Context context, String location, long nowMillis) {
+        return getLocalProvider(context).openHourlyWriter(location, nowMillis);
+    }
+
+    private HourlyWriter openHourlyWriter(String location, long nowMillis) {
+        return new HourlyWriter(mOpenHelper.getWritableDatabase(),
+                getContext().getContentResolver(), location, nowMillis);
+    }
+
+    /**
+     * Enforces the retention policy of the archive table: deletes the days older than
+     * ArchiveEntry#MAX_AGE_DAYS, and then the oldest days of all locations until no more than
+     * ArchiveEntry#MAX_ROWS are left. Once it's done, the time is recorded in the sync metadata,
+     * so {@link com.example.android.sunshine.sync.SunshineSyncUtils} knows when it's due again.
+     * <p>
+     * Unless the archive_compact_storage resource is false, it then packs the months before the
+     * current one into the archive block table, see {@link ArchiveBlocks#pack}.
+     * <p>
+     * This reads and writes the database, and may even rebuild it, so it must only ever be
+     * called in the background. ArchiveCompactionIntentService is what calls it.
+     *
+     * @param context Used to find the provider
+     * @return The number of archived days that were deleted
+     * @throws IllegalStateException If the provider runs in another process
+     */
+    public static int compactArchive(Context context) {
+        return compactArchive(context, System.currentTimeMillis(),
+                WeatherContract.ArchiveEntry.MAX_AGE_DAYS, WeatherContract.ArchiveEntry.MAX_ROWS);
+    }
+
+    /*
+     * The same as compactArchive(Context), with the time and the policy given, so that tests
+     * don't need two years or ten thousand rows to see it work.
+     */
+    static int compactArchive(Context context, long nowMillis, int maxAgeDays, int maxRows) {
+        return getLocalProvider(context).compactArchive(nowMillis, maxAgeDays, maxRows,
+                context.getResources().getBoolean(R.bool.archive_compact_storage));
+    }
+
+    /*
+     * Packs the archive without enforcing the retention policy, whatever the resource says, so
+     * that tests and benchmarks can compare the same days packed and unpacked.
+     */
+    static int packArchive(Context context, long nowMillis) {
+        return getLocalProvider(context).packArchive(nowMillis);
+    }
+
+    private int packArchive(long nowMillis) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        int numDaysPacked;
+        db.beginTransaction();
+        try {
+            numDaysPacked = ArchiveBlocks.pack(db, nowMillis);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (numDaysPacked > 0) {
+            getContext().getContentResolver()
+                    .notifyChange(WeatherContract.ArchiveEntry.CONTENT_URI, null);
+        }
+        return numDaysPacked;
+    }
+
+    private int compactArchive(long nowMillis, int maxAgeDays, int maxRows, boolean pack) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        String archiveTable = WeatherContract.ArchiveEntry.TABLE_NAME;
+        String date = WeatherContract.ArchiveEntry.COLUMN_DATE;
+
+        long oldestDate = SunshineDateUtils.normalizeDate(nowMillis)
+                - maxAgeDays * SunshineDateUtils.DAY_IN_MILLIS;
+
+        int numRowsDeleted;
+        int numDaysPacked = 0;
+        db.beginTransaction();
+        try {
+            /* Both deletes find their rows at the start of the date index */
+            numRowsDeleted = db.delete(archiveTable, date + " < ?",
+                    new String[]{Long.toString(oldestDate)});
+            numRowsDeleted += ArchiveBlocks.deleteBefore(db, oldestDate);
+
+            long excess = DatabaseUtils.queryNumEntries(db, archiveTable)
+                    + ArchiveBlocks.countDays(db) - maxRows;
+
+            /* Packed days are almost always older than the unpacked ones, so they go first */
+            if (excess > 0) {
+                int numPackedDeleted = ArchiveBlocks.deleteOldest(db, excess);
+                numRowsDeleted += numPackedDeleted;
+                excess -= numPackedDeleted;
+            }
+            if (excess > 0) {
+                numRowsDeleted += db.delete(archiveTable,
+                        WeatherContract.ArchiveEntry._ID + " IN (SELECT "
+                                + WeatherContract.ArchiveEntry._ID + " FROM " + archiveTable
+                                + " ORDER BY " + date + " LIMIT " + excess + ")",
+                        null);
+            }
+
+            if (pack) {
+                numDaysPacked = ArchiveBlocks.pack(db, nowMillis);
+            }
+
+            ContentValues compacted = new ContentValues(1);
+            compacted.put(WeatherContract.SyncMetadataEntry.COLUMN_LAST_COMPACTION, nowMillis);
+            db.update(WeatherContract.SyncMetadataEntry.TABLE_NAME, compacted, null, null);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        /* Packing deletes rows from the archive table too, and frees their pages */
+        if (numRowsDeleted > 0 || numDaysPacked > 0) {
+            getContext().getContentResolver()
+                    .notifyChange(WeatherContract.ArchiveEntry.CONTENT_URI, null);
+            vacuumIfMostlyFree(db);
+        }
+        return numRowsDeleted;
+    }
+
+    /*
+     * Deleted rows leave empty pages behind, which SQLite reuses but never hands back to the file
+     * system. Once more than a quarter of the file is empty pages, VACUUM rebuilds the database
+     * without them. That rewrites the whole file, which is why it only ever happens here, in the
+     * background, and only when it's worth it. It can't run while another connection is in the
+     * middle of a write, in which case it's simply left for the next compaction.
+     */
+    private static void vacuumIfMostlyFree(SQLiteDatabase db) {
+        long freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        if (freePages * 4 <= pages) {
+            return;
+        }
+        try {
+            db.execSQL("VACUUM");
+            Log.d(TAG, "Vacuumed " + freePages + " free pages out of " + pages);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Couldn't vacuum the database", e);
+        }
+    }
+
+    private static WeatherProvider getLocalProvider(Context context) {
+        ContentProviderClient client = context.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        if (client == null) {
+            throw new IllegalStateException("WeatherProvider isn't registered");
+        }
+        try {
+            ContentProvider provider = client.getLocalContentProvider();
+            if (!(provider instanceof WeatherProvider)) {
+                throw new IllegalStateException("WeatherProvider runs in another process");
+            }
+            return (WeatherProvider) provider;
+        } finally {
+            client.release();
+        }
+    }
+
     /**
      * Handles query requests from clients. We will use this method in Sunshine to query for all
      * of our weather data as well as to query for the weather on a particular day.
@@ -285,6 +583,135 @@ public class WeatherProvider extends ContentProvider {
                 break;
             }
 
+            /*
+             * The sync metadata table only has a single row, so there is nothing to select or
+             * sort. We return that row with whichever columns were asked for.
+             */
+            case CODE_SYNC_METADATA: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncMetadataEntry.TABLE_NAME,
+                        projection,
+                        null,
+                        null,
+                        null,
+                        null,
+                        null);
+
+                break;
+            }
+
+            /*
+             * Sync runs are returned newest first, unless the caller asks for another order. The
+             * limit query parameter, if present, restricts the result to the most recent runs.
+             */
+            case CODE_SYNC_LOG: {
+                if (sortOrder == null) {
+                    sortOrder = WeatherContract.SyncLogEntry._ID + " DESC";
+                }
+
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncLogEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder,
+                        getSyncLogLimit(uri));
+
+                break;
+            }
+
+            case CODE_SYNC_LOG_STATS: {
+                cursor = querySyncLogStats(getSyncLogLimit(uri));
+                break;
+            }
+
+            case CODE_HOURLY: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.HourlyEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            /*
+             * The hours of one location, in order, optionally within the range of time given by
+             * the start and end query parameters. Any selection the caller passes is added to
+             * ours. The location and the range come first in the WHERE clause, so SQLite reads
+             * them straight off the (location, time) index, in order, without a sort.
+             */
+            case CODE_HOURLY_WITH_LOCATION: {
+                if (sortOrder == null) {
+                    sortOrder = WeatherContract.HourlyEntry.COLUMN_TIME + " ASC";
+                }
+
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.HourlyEntry.TABLE_NAME,
+                        projection,
+                        buildRangeSelection(uri, selection,
+                                WeatherContract.HourlyEntry.COLUMN_LOCATION,
+                                WeatherContract.HourlyEntry.COLUMN_TIME),
+                        buildRangeSelectionArgs(uri, selectionArgs),
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            case CODE_ARCHIVE: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.ArchiveEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            /*
+             * The archived days of one location, oldest first, optionally within the range of
+             * dates given by the start and end query parameters. Just like the hourly table, the
+             * rows come straight off the (location, date) index, so a year of one location costs
+             * the same however many other locations and years the archive holds.
+             *
+             * Once some of those days are packed, they can't be filtered or sorted with SQL, so
+             * the days come from ArchiveBlocks instead, in an ArchiveCursor that only unpacks
+             * each month when it gets there.
+             */
+            case CODE_ARCHIVE_WITH_LOCATION: {
+                cursor = queryPackedArchive(uri, projection, selection, sortOrder);
+                if (cursor != null) {
+                    break;
+                }
+
+                if (sortOrder == null) {
+                    sortOrder = WeatherContract.ArchiveEntry.COLUMN_DATE + " ASC";
+                }
+
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.ArchiveEntry.TABLE_NAME,
+                        projection,
+                        buildRangeSelection(uri, selection,
+                                WeatherContract.ArchiveEntry.COLUMN_LOCATION,
+                                WeatherContract.ArchiveEntry.COLUMN_DATE),
+                        buildRangeSelectionArgs(uri, selectionArgs),
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -293,6 +720,40 @@ public class WeatherProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Reads the archived days of the location in a CODE_ARCHIVE_WITH_LOCATION URI through
+     * ArchiveBlocks, if any of them are packed. Both tables are read in one transaction, so that
+     * a compaction can't move days from one to the other in between.
+     *
+     * @return An ArchiveCursor, or null if none of the days are packed, and the archive table
+     * has all of them
+     * @throws IllegalArgumentException If there is a selection or sort order, and some of the
+     *                                  days are packed
+     */
+    private Cursor queryPackedArchive(Uri uri, String[] projection, String selection,
+                                      String sortOrder) {
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        String location = uri.getLastPathSegment();
+        long startDate = getRangeStart(uri);
+        long endDate = getRangeEnd(uri);
+
+        db.beginTransactionNonExclusive();
+        try {
+            Cursor cursor = null;
+            if (ArchiveBlocks.hasDays(db, location, startDate, endDate)) {
+                if (selection != null || sortOrder != null) {
+                    throw new IllegalArgumentException("Packed archived days can't be queried "
+                            + "with a selection or sort order: " + uri);
+                }
+                cursor = ArchiveBlocks.query(db, projection, location, startDate, endDate);
+            }
+            db.setTransactionSuccessful();
+            return cursor;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     /**
      * Deletes data at a given URI with optional arguments for more fine tuned deletions.
      *
@@ -318,13 +779,58 @@ public class WeatherProvider extends ContentProvider {
 
         switch (sUriMatcher.match(uri)) {
 
-            case CODE_WEATHER:
+            case CODE_WEATHER: {
+                /* The sync metadata has to reflect the delete, so both happen in one transaction */
+                final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    numRowsDeleted = db.delete(
+                            WeatherContract.WeatherEntry.TABLE_NAME,
+                            selection,
+                            selectionArgs);
+                    updateSyncMetadata(db, false);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                break;
+            }
+
+            /* Deletes hours of every location, or only those of the location in the URI */
+            case CODE_HOURLY:
+            case CODE_HOURLY_WITH_LOCATION: {
+                if (sUriMatcher.match(uri) == CODE_HOURLY_WITH_LOCATION) {
+                    selectionArgs = buildRangeSelectionArgs(uri, selectionArgs);
+                    selection = buildRangeSelection(uri, selection,
+                            WeatherContract.HourlyEntry.COLUMN_LOCATION,
+                            WeatherContract.HourlyEntry.COLUMN_TIME);
+                }
                 numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
-                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        WeatherContract.HourlyEntry.TABLE_NAME,
                         selection,
                         selectionArgs);
 
                 break;
+            }
+
+            /*
+             * Deletes archived days of every location, or only those of the location in the URI,
+             * packed or not. The two tables change in one transaction.
+             */
+            case CODE_ARCHIVE:
+            case CODE_ARCHIVE_WITH_LOCATION: {
+                final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    numRowsDeleted = deleteArchive(db, uri, selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -338,6 +844,257 @@ public class WeatherProvider extends ContentProvider {
         return numRowsDeleted;
     }
 
+    /**
+     * Deletes archived days for a URI matching CODE_ARCHIVE or CODE_ARCHIVE_WITH_LOCATION. A
+     * selection can only ever apply to the archive table, so CODE_ARCHIVE with a selection leaves
+     * packed days alone, and a location URI with a selection is refused if any of the days it
+     * covers are packed, rather than quietly deleting too much or too little.
+     *
+     * @param selection The caller's selection, or "1" if there was none
+     * @return The number of days deleted, packed and unpacked together
+     */
+    private static int deleteArchive(SQLiteDatabase db, Uri uri, String selection,
+                                     String[] selectionArgs) {
+        boolean everything = "1".equals(selection);
+
+        if (sUriMatcher.match(uri) == CODE_ARCHIVE) {
+            int numRowsDeleted = db.delete(
+                    WeatherContract.ArchiveEntry.TABLE_NAME,
+                    selection,
+                    selectionArgs);
+            if (everything) {
+                numRowsDeleted += ArchiveBlocks.deleteAll(db);
+            }
+            return numRowsDeleted;
+        }
+
+        String location = uri.getLastPathSegment();
+        long startDate = getRangeStart(uri);
+        long endDate = getRangeEnd(uri);
+
+        int numRowsDeleted = 0;
+        if (ArchiveBlocks.hasDays(db, location, startDate, endDate)) {
+            if (!everything) {
+                throw new IllegalArgumentException(
+                        "Packed archived days can't be deleted with a selection: " + uri);
+            }
+            numRowsDeleted = ArchiveBlocks.delete(db, location, startDate, endDate);
+        }
+        return numRowsDeleted + db.delete(
+                WeatherContract.ArchiveEntry.TABLE_NAME,
+                buildRangeSelection(uri, selection,
+                        WeatherContract.ArchiveEntry.COLUMN_LOCATION,
+                        WeatherContract.ArchiveEntry.COLUMN_DATE),
+                buildRangeSelectionArgs(uri, selectionArgs));
+    }
+
+    /* The start query parameter of a URI, or the earliest possible date if it has none */
+    private static long getRangeStart(Uri uri) {
+        String start = uri.getQueryParameter(WeatherContract.HourlyEntry.QUERY_PARAMETER_START);
+        return start != null ? Long.parseLong(parseTime(uri, start)) : Long.MIN_VALUE;
+    }
+
+    /* The end query parameter of a URI, or the latest possible date if it has none */
+    private static long getRangeEnd(Uri uri) {
+        String end = uri.getQueryParameter(WeatherContract.HourlyEntry.QUERY_PARAMETER_END);
+        return end != null ? Long.parseLong(parseTime(uri, end)) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Builds the selection for a URI matching CODE_HOURLY_WITH_LOCATION or
+     * CODE_ARCHIVE_WITH_LOCATION: its location, the range of time in its query parameters, if
+     * any, and the caller's own selection, if any. The arguments come from
+     * {@link #buildRangeSelectionArgs(Uri, String[])}, in the same order.
+     *
+     * @param locationColumn The column the location in the URI is compared with
+     * @param timeColumn     The column the start and end query parameters are compared with
+     */
+    private static String buildRangeSelection(Uri uri, String selection, String locationColumn,
+                                              String timeColumn) {
+        StringBuilder where = new StringBuilder(locationColumn).append(" = ?");
+        if (uri.getQueryParameter(WeatherContract.HourlyEntry.QUERY_PARAMETER_START) != null) {
+            where.append(" AND ").append(timeColumn).append(" >= ?");
+        }
+        if (uri.getQueryParameter(WeatherContract.HourlyEntry.QUERY_PARAMETER_END) != null) {
+            where.append(" AND ").append(timeColumn).append(" < ?");
+        }
+        /* "1" is what delete passes to mean everything, so there's nothing to add */
+        if (selection != null && !selection.equals("1")) {
+            where.append(" AND (").append(selection).append(')');
+        }
+        return where.toString();
+    }
+
+    private static String[] buildRangeSelectionArgs(Uri uri, String[] selectionArgs) {
+        String start = uri.getQueryParameter(WeatherContract.HourlyEntry.QUERY_PARAMETER_START);
+        String end = uri.getQueryParameter(WeatherContract.HourlyEntry.QUERY_PARAMETER_END);
+
+        String[] ours = new String[1 + (start != null ? 1 : 0) + (end != null ? 1 : 0)];
+        int count = 0;
+        ours[count++] = uri.getLastPathSegment();
+        if (start != null) {
+            ours[count++] = parseTime(uri, start);
+        }
+        if (end != null) {
+            ours[count++] = parseTime(uri, end);
+        }
+
+        if (selectionArgs == null || selectionArgs.length == 0) {
+            return ours;
+        }
+        String[] all = Arrays.copyOf(ours, ours.length + selectionArgs.length);
+        System.arraycopy(selectionArgs, 0, all, ours.length, selectionArgs.length);
+        return all;
+    }
+
+    /*
+     * Selection arguments are always bound as text. SQLite turns them back into numbers to
+     * compare them with an INTEGER time or date column, so the index still works, but only if
+     * they are numbers, so anything else is rejected here rather than compared as text.
+     */
+    private static String parseTime(Uri uri, String time) {
+        try {
+            return Long.toString(Long.parseLong(time));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time in uri: " + uri, e);
+        }
+    }
+
+    /**
+     * Reads the limit query parameter of a sync log URI.
+     *
+     * @param uri A sync log URI, possibly built with SyncLogEntry#buildUriWithLimit
+     * @return The limit as a String for SQLiteDatabase#query, or null if there is none
+     */
+    private static String getSyncLogLimit(Uri uri) {
+        String limit = uri.getQueryParameter(WeatherContract.SyncLogEntry.QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            return null;
+        }
+        try {
+            return Integer.toString(Math.max(0, Integer.parseInt(limit)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit in uri: " + uri, e);
+        }
+    }
+
+    /**
+     * Summarizes the most recent sync runs. For each measured column of the sync log, we return
+     * one row with the number of runs that recorded it and its median, 90th and 99th percentile
+     * and maximum. Percentiles use the nearest-rank method, so they are always values that were
+     * actually recorded. The sync log is bounded, so sorting it in memory is cheap.
+     *
+     * @param limit The number of most recent runs to summarize, or null for all of them
+     * @return A cursor with one row per measured column
+     */
+    private Cursor querySyncLogStats(String limit) {
+        String[] measuredColumns = WeatherContract.SyncLogEntry.MEASURED_COLUMNS;
+
+        Cursor runs = mOpenHelper.getReadableDatabase().query(
+                WeatherContract.SyncLogEntry.TABLE_NAME,
+                measuredColumns,
+                null,
+                null,
+                null,
+                null,
+                WeatherContract.SyncLogEntry._ID + " DESC",
+                limit);
+
+        long[][] values = new long[measuredColumns.length][runs.getCount()];
+        int[] counts = new int[measuredColumns.length];
+        try {
+            while (runs.moveToNext()) {
+                for (int column = 0; column < measuredColumns.length; column++) {
+                    /* Stages that a run never reached are NULL and aren't counted */
+                    if (!runs.isNull(column)) {
+                        values[column][counts[column]++] = runs.getLong(column);
+                    }
+                }
+            }
+        } finally {
+            runs.close();
+        }
+
+        MatrixCursor stats = new MatrixCursor(new String[]{
+                WeatherContract.SyncLogEntry.STATS_COLUMN_METRIC,
+                WeatherContract.SyncLogEntry.STATS_COLUMN_COUNT,
+                WeatherContract.SyncLogEntry.STATS_COLUMN_MEDIAN,
+                WeatherContract.SyncLogEntry.STATS_COLUMN_P90,
+                WeatherContract.SyncLogEntry.STATS_COLUMN_P99,
+                WeatherContract.SyncLogEntry.STATS_COLUMN_MAX
+        }, measuredColumns.length);
+
+        for (int column = 0; column < measuredColumns.length; column++) {
+            int count = counts[column];
+            long[] sorted = Arrays.copyOf(values[column], count);
+            Arrays.sort(sorted);
+
+            if (count == 0) {
+                stats.addRow(new Object[]{measuredColumns[column], 0, null, null, null, null});
+            } else {
+                stats.addRow(new Object[]{
+                        measuredColumns[column],
+                        count,
+                        percentile(sorted, 50),
+                        percentile(sorted, 90),
+                        percentile(sorted, 99),
+                        sorted[count - 1]});
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the nearest-rank percentile of a sorted, non-empty array.
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Brings the sync metadata row up to date with the weather table. This must be called from
+     * within the same transaction that changed the weather table, so that the two can never
+     * disagree. Finding the latest date only needs to look at the end of the index SQLite keeps
+     * for the UNIQUE date column.
+     *
+     * @param db            The database, with a transaction in progress
+     * @param weatherSynced Whether new weather was just inserted, in which case the time of the
+     *                      last sync is updated as well
+     */
+    static void updateSyncMetadata(SQLiteDatabase db, boolean weatherSynced) {
+        String weatherTable = WeatherContract.WeatherEntry.TABLE_NAME;
+        String date = WeatherContract.WeatherEntry.COLUMN_DATE;
+
+        String sql = "UPDATE " + WeatherContract.SyncMetadataEntry.TABLE_NAME + " SET "
+                + WeatherContract.SyncMetadataEntry.COLUMN_ROW_COUNT
+                + " = (SELECT COUNT(*) FROM " + weatherTable + "), "
+                + WeatherContract.SyncMetadataEntry.COLUMN_MAX_DATE
+                + " = (SELECT IFNULL(MAX(" + date + "), 0) FROM " + weatherTable + ")";
+
+        if (weatherSynced) {
+            sql += ", " + WeatherContract.SyncMetadataEntry.COLUMN_LAST_SYNC
+                    + " = " + System.currentTimeMillis();
+        }
+
+        db.execSQL(sql);
+    }
+
+    /**
+     * Records which location the weather table now holds the forecast for, so that when the next
+     * {@link WeatherWriter} replaces it, it knows what to archive the past days under. Like
+     * {@link #updateSyncMetadata(SQLiteDatabase, boolean)}, this must be called from within the
+     * transaction that changed the weather table.
+     *
+     * @param db       The database, with a transaction in progress
+     * @param location The location, or null if it isn't known
+     */
+    static void updateSyncedLocation(SQLiteDatabase db, String location) {
+        ContentValues values = new ContentValues(1);
+        values.put(WeatherContract.SyncMetadataEntry.COLUMN_LOCATION, location);
+        db.update(WeatherContract.SyncMetadataEntry.TABLE_NAME, values, null, null);
+    }
+
     /**
      * In Sunshine, we aren't going to do anything with this method. However, we are required to
      * override it as WeatherProvider extends ContentProvider and getType is an abstract method in
@@ -354,20 +1111,50 @@ public class WeatherProvider extends ContentProvider {
     }
 
     /**
-     * In Sunshine, we aren't going to do anything with this method. However, we are required to
-     * override it as WeatherProvider extends ContentProvider and insert is an abstract method in
-     * ContentProvider. Rather than the single insert method, we are only going to implement
-     * {@link WeatherProvider#bulkInsert}.
+     * Weather is only ever inserted a whole forecast at a time, through
+     * {@link WeatherProvider#bulkInsert} or a {@link WeatherWriter}. The only thing inserted one
+     * row at a time is the record of a sync run. Once the sync log grows past
+     * SyncLogEntry#MAX_ROWS, the oldest runs are dropped in the same transaction, so the table
+     * never grows without bound.
      *
      * @param uri    The URI of the insertion request. This must not be null.
      * @param values A set of column_name/value pairs to add to the database.
      *               This must not be null
-     * @return nothing in Sunshine, but normally the URI for the newly inserted item.
+     * @return The URI of the newly inserted sync run
      */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
-        throw new RuntimeException(
-                "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        if (sUriMatcher.match(uri) != CODE_SYNC_LOG) {
+            throw new RuntimeException(
+                    "We are only implementing insert for the sync log. Use bulkInsert instead");
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        long _id;
+        db.beginTransaction();
+        try {
+            _id = db.insert(WeatherContract.SyncLogEntry.TABLE_NAME, null, values);
+
+            /*
+             * Row IDs only ever grow, since we always delete the smallest ones, so everything
+             * more than MAX_ROWS below the newest ID is older than the runs we keep.
+             */
+            if (_id != -1) {
+                db.delete(WeatherContract.SyncLogEntry.TABLE_NAME,
+                        WeatherContract.SyncLogEntry._ID + " <= ?",
+                        new String[]{Long.toString(_id - WeatherContract.SyncLogEntry.MAX_ROWS)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (_id == -1) {
+            return null;
+        }
+
+        getContext().getContentResolver().notifyChange(uri, null);
+        return ContentUris.withAppendedId(uri, _id);
     }
 
     @Override
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.core.OwmForecastParser;
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.SyncMetadataEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.io.Closeable;
+
+/**
+ * Replaces the forecast in the weather table with a new one, a day at a time, as fast as the
+ * parser can hand the days over. Get one from {@link WeatherProvider#openWeatherWriter}.
+ * <p>
+ * Going through {@link WeatherProvider#bulkInsert} means building a ContentValues, which is a
+ * HashMap, for every day, boxing its eight numbers into it, and having SQLiteDatabase#insert
+ * take them out again and build the INSERT statement anew for every row. This class compiles
+ * the INSERT once and binds each day's values to it as the primitives the parser produced, so a
+ * row costs no allocations of its own at all.
+ * <p>
+ * Everything happens in one transaction, which starts by deleting the old forecast. Until
+ * {@link #commit()} is called, nobody else sees any of it, and if the writer is closed without
+ * committing, for example because the download or the parse failed half way, the transaction
+ * is rolled back and the old forecast is left exactly as it was.
+ * <p>
+ * Before the old forecast is deleted, its days before today are copied into the archive table,
+ * under the location the sync metadata says they were synced for. That happens in the same
+ * transaction, so the past days are either both archived and replaced, or neither.
+ * <p>
+ * A writer must only be used from the thread that opened it, since SQLite transactions belong
+ * to a thread.
+ */
+public final class WeatherWriter implements OwmForecastParser.Sink, Closeable {
+
+    /* The order in which the columns are bound, starting at 1 */
+    private static final String SQL_INSERT_WEATHER = "INSERT INTO " + WeatherEntry.TABLE_NAME
+            + " (" + WeatherEntry.COLUMN_DATE
+            + ", " + WeatherEntry.COLUMN_WEATHER_ID
+            + ", " + WeatherEntry.COLUMN_MAX_TEMP
+            + ", " + WeatherEntry.COLUMN_MIN_TEMP
+            + ", " + WeatherEntry.COLUMN_HUMIDITY
+            + ", " + WeatherEntry.COLUMN_PRESSURE
+            + ", " + WeatherEntry.COLUMN_WIND_SPEED
+            + ", " + WeatherEntry.COLUMN_DEGREES
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /*
+     * Copies the days before today from the weather table into the archive, under the location
+     * in the sync metadata. If that isn't known, nothing is copied, since a day without a
+     * location could never be found in the archive anyway.
+     */
+    private static final String SQL_ARCHIVE_PAST_DAYS = "INSERT INTO " + ArchiveEntry.TABLE_NAME
+            + " (" + ArchiveEntry.COLUMN_LOCATION
+            + ", " + ArchiveEntry.COLUMN_DATE
+            + ", " + ArchiveEntry.COLUMN_WEATHER_ID
+            + ", " + ArchiveEntry.COLUMN_MAX_TEMP
+            + ", " + ArchiveEntry.COLUMN_MIN_TEMP
+            + ", " + ArchiveEntry.COLUMN_HUMIDITY
+            + ", " + ArchiveEntry.COLUMN_PRESSURE
+            + ", " + ArchiveEntry.COLUMN_WIND_SPEED
+            + ", " + ArchiveEntry.COLUMN_DEGREES
+            + ") SELECT metadata." + SyncMetadataEntry.COLUMN_LOCATION
+            + ", weather." + WeatherEntry.COLUMN_DATE
+            + ", weather." + WeatherEntry.COLUMN_WEATHER_ID
+            + ", weather." + WeatherEntry.COLUMN_MAX_TEMP
+            + ", weather." + WeatherEntry.COLUMN_MIN_TEMP
+            + ", weather." + WeatherEntry.COLUMN_HUMIDITY
+            + ", weather." + WeatherEntry.COLUMN_PRESSURE
+            + ", weather." + WeatherEntry.COLUMN_WIND_SPEED
+            + ", weather." + WeatherEntry.COLUMN_DEGREES
+            + " FROM " + WeatherEntry.TABLE_NAME + " AS weather, "
+            + SyncMetadataEntry.TABLE_NAME + " AS metadata"
+            + " WHERE metadata." + SyncMetadataEntry.COLUMN_LOCATION + " IS NOT NULL"
+            + " AND weather." + WeatherEntry.COLUMN_DATE + " < ?";
+
+    private final SQLiteDatabase mDb;
+    private final ContentResolver mResolver;
+    private final SQLiteStatement mInsert;
+    private final long mNormalizedUtcToday;
+    private final String mLocation;
+
+    private boolean mFinished;
+    private boolean mCommitted;
+    private int mRowCount;
+    private int mArchivedRowCount;
+    private int mForecastHash = 1;
+
+    /* Today's weather, if the forecast included today, for the notification */
+    private boolean mHasToday;
+    private int mTodayWeatherId;
+    private double mTodayHigh;
+    private double mTodayLow;
+
+    WeatherWriter(SQLiteDatabase db, ContentResolver resolver, String location) {
+        mDb = db;
+        mResolver = resolver;
+        mLocation = location;
+        mNormalizedUtcToday = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        db.beginTransaction();
+        try {
+            mArchivedRowCount = archivePastDays(db, mNormalizedUtcToday);
+            db.delete(WeatherEntry.TABLE_NAME, null, null);
+            mInsert = db.compileStatement(SQL_INSERT_WEATHER);
+        } catch (RuntimeException e) {
+            db.endTransaction();
+            throw e;
+        }
+    }
+
+    /**
+     * The location the writer was opened for is what's recorded, not its coordinates, so they're
+     * ignored here.
+     */
+    @Override
+    public void onLocation(double latitude, double longitude) {
+    }
+
+    /**
+     * Inserts one day of the new forecast.
+     *
+     * @throws IllegalArgumentException If the date isn't normalized, like
+     *                                  {@link WeatherProvider#bulkInsert} does
+     */
+    @Override
+    public void onDay(long date, int weatherId, double high, double low, int humidity,
+                      double pressure, double windSpeed, double windDirection) {
+        if (mFinished) {
+            throw new IllegalStateException("The writer has already been closed");
+        }
+        if (!SunshineDateUtils.isDateNormalized(date)) {
+            throw new IllegalArgumentException("Date must be normalized to insert");
+        }
+
+        /* Binding primitives doesn't box them, and the statement keeps no references to them */
+        mInsert.bindLong(1, date);
+        mInsert.bindLong(2, weatherId);
+        mInsert.bindDouble(3, high);
+        mInsert.bindDouble(4, low);
+        mInsert.bindLong(5, humidity);
+        mInsert.bindDouble(6, pressure);
+        mInsert.bindDouble(7, windSpeed);
+        mInsert.bindDouble(8, windDirection);
+        if (mInsert.executeInsert() != -1) {
+            mRowCount++;
+        }
+
+        /* The same way Arrays.hashCode would combine them, but without an array or any boxing */
+        int dayHash = hash(date);
+        dayHash = 31 * dayHash + weatherId;
+        dayHash = 31 * dayHash + hash(high);
+        dayHash = 31 * dayHash + hash(low);
+        dayHash = 31 * dayHash + humidity;
+        dayHash = 31 * dayHash + hash(pressure);
+        dayHash = 31 * dayHash + hash(windSpeed);
+        dayHash = 31 * dayHash + hash(windDirection);
+        mForecastHash = 31 * mForecastHash + dayHash;
+
+        if (date == mNormalizedUtcToday) {
+            mHasToday = true;
+            mTodayWeatherId = weatherId;
+            mTodayHigh = high;
+            mTodayLow = low;
+        }
+    }
+
+    /**
+     * Makes the new forecast visible, and tells anyone observing the weather table that it
+     * changed. The writer can't be used afterwards.
+     */
+    public void commit() {
+        if (mFinished) {
+            throw new IllegalStateException("The writer has already been closed");
+        }
+        try {
+            WeatherProvider.updateSyncMetadata(mDb, true);
+
+            /* So that the next writer knows which location to archive these days under */
+            WeatherProvider.updateSyncedLocation(mDb, mLocation);
+
+            mDb.setTransactionSuccessful();
+            mCommitted = true;
+        } finally {
+            finish();
+        }
+        mResolver.notifyChange(WeatherEntry.CONTENT_URI, null);
+        if (mArchivedRowCount > 0) {
+            mResolver.notifyChange(ArchiveEntry.CONTENT_URI, null);
+        }
+    }
+
+    /**
+     * Rolls back everything written so far, unless {@link #commit()} has already been called, in
+     * which case it does nothing. It's always safe to call this in a finally block.
+     */
+    @Override
+    public void close() {
+        if (!mFinished) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        mFinished = true;
+        try {
+            mInsert.close();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    /**
+     * @return Whether {@link #commit()} made the new forecast visible. If not, once the writer is
+     * closed, the old forecast is still there as it was.
+     */
+    public boolean isCommitted() {
+        return mCommitted;
+    }
+
+    /**
+     * @return How many days have been written
+     */
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * @return How many past days of the old forecast were archived when the writer was opened
+     */
+    public int getArchivedRowCount() {
+        return mArchivedRowCount;
+    }
+
+    /**
+     * @return A hash of every day written so far. Equal forecasts have equal hashes.
+     */
+    public int getForecastHash() {
+        return mForecastHash;
+    }
+
+    /**
+     * @return Whether one of the days written was today
+     */
+    public boolean hasToday() {
+        return mHasToday;
+    }
+
+    public int getTodayWeatherId() {
+        return mTodayWeatherId;
+    }
+
+    public double getTodayHigh() {
+        return mTodayHigh;
+    }
+
+    public double getTodayLow() {
+        return mTodayLow;
+    }
+
+    private static int archivePastDays(SQLiteDatabase db, long normalizedUtcToday) {
+        SQLiteStatement archive = db.compileStatement(SQL_ARCHIVE_PAST_DAYS);
+        try {
+            archive.bindLong(1, normalizedUtcToday);
+            return archive.executeUpdateDelete();
+        } finally {
+            archive.close();
+        }
+    }
+
+    private static int hash(long value) {
+        return (int) (value ^ (value >>> 32));
+    }
+
+    private static int hash(double value) {
+        return hash(Double.doubleToLongBits(value));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+/**
+ * Decides how often Sunshine should sync. Rather than always syncing every few hours, the
+ * interval adapts to how often the forecast actually changes:
+ * <p>
+ *   - Every sync that brings back the same forecast as the previous one doubles the interval,
+ *     since syncing that often was evidently a waste of battery and data.
+ * <p>
+ *   - Every sync that brings back a different forecast halves the interval, since the weather is
+ *     evidently on the move.
+ * <p>
+ * The interval never leaves the bounds given to the constructor. A sync that fails, or that
+ * brings back nothing, tells us nothing about the forecast and leaves the interval alone.
+ * <p>
+ * This class deliberately has no Android dependencies. Time comes from a {@link Clock}, so the
+ * whole policy can be tested on the JVM against a fake clock, and its state is exposed as plain
+ * values so the caller can decide how to persist it.
+ */
+public class AdaptiveSyncPolicy {
+
+    /**
+     * The source of the current time. Production code uses {@link #SYSTEM}.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    public static final Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final Clock mClock;
+    private final long mMinIntervalSeconds;
+    private final long mMaxIntervalSeconds;
+
+    private long mIntervalSeconds;
+    private long mLastSyncTimeMillis;
+
+    /* Whether we've seen a forecast yet, and if so, its hash */
+    private boolean mHasForecastHash;
+    private int mForecastHash;
+
+    /**
+     * Creates a policy with no history, starting at the given interval.
+     *
+     * @param clock                  The source of the current time
+     * @param minIntervalSeconds     The shortest interval the policy will ever choose
+     * @param maxIntervalSeconds     The longest interval the policy will ever choose
+     * @param initialIntervalSeconds The interval to start from. It is clamped to the bounds.
+     */
+    public AdaptiveSyncPolicy(Clock clock, long minIntervalSeconds, long maxIntervalSeconds,
+                              long initialIntervalSeconds) {
+        if (minIntervalSeconds <= 0 || minIntervalSeconds > maxIntervalSeconds) {
+            throw new IllegalArgumentException("Invalid bounds: " + minIntervalSeconds
+                    + " to " + maxIntervalSeconds + " seconds");
+        }
+        mClock = clock;
+        mMinIntervalSeconds = minIntervalSeconds;
+        mMaxIntervalSeconds = maxIntervalSeconds;
+        mIntervalSeconds = clamp(initialIntervalSeconds);
+    }
+
+    /**
+     * Restores state previously read from {@link #getIntervalSeconds()},
+     * {@link #getLastSyncTimeMillis()} and {@link #getForecastHash()}. The interval is clamped to
+     * the current bounds, in case they changed since the state was saved.
+     *
+     * @param intervalSeconds    The interval the policy had chosen
+     * @param lastSyncTimeMillis When the last successful sync finished, or 0 if there was none
+     * @param hasForecastHash    Whether forecastHash holds a real hash
+     * @param forecastHash       The hash of the last forecast
+     */
+    public void restore(long intervalSeconds, long lastSyncTimeMillis,
+                        boolean hasForecastHash, int forecastHash) {
+        mIntervalSeconds = clamp(intervalSeconds);
+        mLastSyncTimeMillis = lastSyncTimeMillis;
+        mHasForecastHash = hasForecastHash;
+        mForecastHash = forecastHash;
+    }
+
+    /**
+     * Records a sync that brought back a forecast, and adapts the interval to it.
+     *
+     * @param forecastHash A hash of the forecast the sync brought back. Equal forecasts must
+     *                     have equal hashes.
+     * @return true if the interval changed, meaning the sync should be rescheduled
+     */
+    public boolean onForecastSynced(int forecastHash) {
+        long oldIntervalSeconds = mIntervalSeconds;
+
+        /* The very first forecast has nothing to be compared with */
+        if (mHasForecastHash) {
+            if (forecastHash == mForecastHash) {
+                mIntervalSeconds = clamp(mIntervalSeconds * 2);
+            } else {
+                mIntervalSeconds = clamp(mIntervalSeconds / 2);
+            }
+        }
+
+        mHasForecastHash = true;
+        mForecastHash = forecastHash;
+        mLastSyncTimeMillis = mClock.currentTimeMillis();
+
+        return mIntervalSeconds != oldIntervalSeconds;
+    }
+
+    /**
+     * @return The interval, in seconds, at which syncs should currently be scheduled
+     */
+    public long getIntervalSeconds() {
+        return mIntervalSeconds;
+    }
+
+    /**
+     * @return How late, in seconds, a sync may run. This is a third of the interval, which is the
+     * same proportion Sunshine has always used.
+     */
+    public long getFlexSeconds() {
+        return mIntervalSeconds / 3;
+    }
+
+    public long getLastSyncTimeMillis() {
+        return mLastSyncTimeMillis;
+    }
+
+    public boolean hasForecastHash() {
+        return mHasForecastHash;
+    }
+
+    public int getForecastHash() {
+        return mForecastHash;
+    }
+
+    /**
+     * @return Whether a full interval has passed since the last successful sync. This is always
+     * true before the first one.
+     */
+    public boolean isSyncDue() {
+        if (mLastSyncTimeMillis == 0) {
+            return true;
+        }
+        long elapsedMillis = mClock.currentTimeMillis() - mLastSyncTimeMillis;
+        return elapsedMillis >= mIntervalSeconds * 1000;
+    }
+
+    private long clamp(long intervalSeconds) {
+        return Math.max(mMinIntervalSeconds, Math.min(mMaxIntervalSeconds, intervalSeconds));
+    }
+}
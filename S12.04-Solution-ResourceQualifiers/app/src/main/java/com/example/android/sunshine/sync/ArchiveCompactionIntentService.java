@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherProvider;
+
+/**
+ * Enforces the retention policy of the weather archive on a background thread of its own, so that
+ * neither a sync nor the UI ever waits for it. A sync starts it through
+ * {@link SunshineSyncUtils#startArchiveCompactionIfDue}, at most once a day. See
+ * {@link com.example.android.sunshine.data.WeatherContract.ArchiveEntry}.
+ */
+public class ArchiveCompactionIntentService extends IntentService {
+
+    private static final String TAG = ArchiveCompactionIntentService.class.getSimpleName();
+
+    public ArchiveCompactionIntentService() {
+        super("ArchiveCompactionIntentService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        try {
+            int numRowsDeleted = WeatherProvider.compactArchive(this);
+            Log.d(TAG, "Compacted the archive, deleting " + numRowsDeleted + " days");
+        } catch (Exception e) {
+            /* Compaction is only housekeeping, and the next one will catch up */
+            Log.w(TAG, "Archive compaction failed", e);
+        }
+    }
+}
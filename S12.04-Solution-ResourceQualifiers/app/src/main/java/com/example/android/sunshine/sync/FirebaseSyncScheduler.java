@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+
+import com.firebase.jobdispatcher.Constraint;
+import com.firebase.jobdispatcher.Driver;
+import com.firebase.jobdispatcher.FirebaseJobDispatcher;
+import com.firebase.jobdispatcher.GooglePlayDriver;
+import com.firebase.jobdispatcher.Job;
+import com.firebase.jobdispatcher.Lifetime;
+import com.firebase.jobdispatcher.Trigger;
+
+/**
+ * A {@link SyncScheduler} that schedules Sunshine's sync with FirebaseJobDispatcher, which runs
+ * {@link SunshineFirebaseJobService}. This needs Google Play services on the device, and creating
+ * the GooglePlayDriver isn't free, so the dispatcher is only created the first time it's needed.
+ */
+public class FirebaseSyncScheduler implements SyncScheduler {
+
+    private static final String SUNSHINE_SYNC_TAG = "sunshine-sync";
+
+    private final Context mContext;
+    private FirebaseJobDispatcher mDispatcher;
+
+    /**
+     * @param context Context used to create the GooglePlayDriver that powers the
+     *                FirebaseJobDispatcher
+     */
+    public FirebaseSyncScheduler(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    private synchronized FirebaseJobDispatcher getDispatcher() {
+        if (mDispatcher == null) {
+            Driver driver = new GooglePlayDriver(mContext);
+            mDispatcher = new FirebaseJobDispatcher(driver);
+        }
+        return mDispatcher;
+    }
+
+    @Override
+    public void schedulePeriodicSync(long intervalSeconds, long flexSeconds) {
+        FirebaseJobDispatcher dispatcher = getDispatcher();
+
+        /* Create the Job to periodically sync Sunshine */
+        Job syncSunshineJob = dispatcher.newJobBuilder()
+                /* The Service that will be used to sync Sunshine's data */
+                .setService(SunshineFirebaseJobService.class)
+                /* Set the UNIQUE tag used to identify this Job */
+                .setTag(SUNSHINE_SYNC_TAG)
+                /*
+                 * Network constraints on which this Job should run. We choose to run on any
+                 * network, but you can also choose to run only on un-metered networks or when the
+                 * device is charging. It might be a good idea to include a preference for this,
+                 * as some users may not want to download any data on their mobile plan. ($$$)
+                 */
+                .setConstraints(Constraint.ON_ANY_NETWORK)
+                /*
+                 * setLifetime sets how long this job should persist. The options are to keep the
+                 * Job "forever" or to have it die the next time the device boots up.
+                 */
+                .setLifetime(Lifetime.FOREVER)
+                /*
+                 * We want Sunshine's weather data to stay up to date, so we tell this Job to recur.
+                 */
+                .setRecurring(true)
+                /*
+                 * We want the weather data to be synced every interval, give or take the flex.
+                 * The first argument for Trigger's static executionWindow method is the start of
+                 * the time frame when the sync should be performed. The second argument is the
+                 * latest point in time at which the data should be synced. Please note that this
+                 * end time is not guaranteed, but is more of a guideline for
+                 * FirebaseJobDispatcher to go off of.
+                 */
+                .setTrigger(Trigger.executionWindow(
+                        (int) intervalSeconds,
+                        (int) (intervalSeconds + flexSeconds)))
+                /*
+                 * If a Job with the tag with provided already exists, this new job will replace
+                 * the old one.
+                 */
+                .setReplaceCurrent(true)
+                /* Once the Job is ready, call the builder's build method to return the Job */
+                .build();
+
+        /* Schedule the Job with the dispatcher */
+        dispatcher.schedule(syncSunshineJob);
+    }
+
+    @Override
+    public void cancelPeriodicSync() {
+        getDispatcher().cancel(SUNSHINE_SYNC_TAG);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SyncScheduler} that schedules Sunshine's sync with the framework's JobScheduler, which
+ * runs {@link SunshineJobService}. JobScheduler is part of Android from Lollipop onwards, so
+ * unlike FirebaseJobDispatcher it needs neither Google Play services nor any setup of its own.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class JobSchedulerSyncScheduler implements SyncScheduler {
+
+    /* Identifies Sunshine's sync job. It only has to be unique within Sunshine. */
+    static final int SYNC_JOB_ID = 1001;
+
+    private final Context mContext;
+
+    public JobSchedulerSyncScheduler(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public void schedulePeriodicSync(long intervalSeconds, long flexSeconds) {
+        ComponentName service = new ComponentName(mContext, SunshineJobService.class);
+        long intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+
+        JobInfo.Builder builder = new JobInfo.Builder(SYNC_JOB_ID, service)
+                /* As with FirebaseJobDispatcher, we are happy to sync on any network */
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                /* Keep the job across reboots. This needs RECEIVE_BOOT_COMPLETED. */
+                .setPersisted(true);
+
+        /*
+         * Before Nougat, a periodic job can't be given a flex. It then runs at some point within
+         * each interval, which is as close as we can get.
+         */
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            builder.setPeriodic(intervalMillis, TimeUnit.SECONDS.toMillis(flexSeconds));
+        } else {
+            builder.setPeriodic(intervalMillis);
+        }
+
+        /* Scheduling a job with the same ID replaces the one that was scheduled before */
+        getJobScheduler().schedule(builder.build());
+    }
+
+    @Override
+    public void cancelPeriodicSync() {
+        getJobScheduler().cancel(SYNC_JOB_ID);
+    }
+
+    private JobScheduler getJobScheduler() {
+        return (JobScheduler) mContext.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+/**
+ * A {@link SyncScheduler} that never leaves the process. Nothing happens on its own: time only
+ * moves on the {@link AdaptiveSyncPolicy.Clock} it is given, and due syncs only run when
+ * {@link #runDueSyncs()} is called. That makes every run deterministic, so it can be used on the
+ * JVM in tests, or to simulate days of syncing in a fraction of a second.
+ * <p>
+ * Like the real schedulers, the next sync is due one interval after the previous one ran (not
+ * after it was due), and the flex only ever delays a sync. This scheduler runs syncs as soon as
+ * they are due, so it ignores the flex.
+ */
+public class LocalSyncScheduler implements SyncScheduler {
+
+    private final AdaptiveSyncPolicy.Clock mClock;
+    private final Runnable mSync;
+
+    private boolean mScheduled;
+    private long mIntervalMillis;
+    private long mNextSyncTimeMillis;
+    private int mSyncCount;
+
+    /**
+     * @param clock The clock that decides when syncs are due
+     * @param sync  What to run when a sync is due
+     */
+    public LocalSyncScheduler(AdaptiveSyncPolicy.Clock clock, Runnable sync) {
+        mClock = clock;
+        mSync = sync;
+    }
+
+    @Override
+    public synchronized void schedulePeriodicSync(long intervalSeconds, long flexSeconds) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalSeconds);
+        }
+        mScheduled = true;
+        mIntervalMillis = intervalSeconds * 1000;
+        mNextSyncTimeMillis = mClock.currentTimeMillis() + mIntervalMillis;
+    }
+
+    @Override
+    public synchronized void cancelPeriodicSync() {
+        mScheduled = false;
+    }
+
+    /**
+     * Runs the sync if it is due. The sync itself may reschedule (the adaptive policy does so
+     * when the interval changes), in which case the new schedule wins.
+     *
+     * @return Whether a sync ran
+     */
+    public boolean runDueSyncs() {
+        synchronized (this) {
+            if (!isSyncDue()) {
+                return false;
+            }
+            mNextSyncTimeMillis = mClock.currentTimeMillis() + mIntervalMillis;
+            mSyncCount++;
+        }
+
+        /* Run the sync outside the lock, so it can call back into this scheduler */
+        mSync.run();
+        return true;
+    }
+
+    public synchronized boolean isScheduled() {
+        return mScheduled;
+    }
+
+    public synchronized boolean isSyncDue() {
+        return mScheduled && mClock.currentTimeMillis() >= mNextSyncTimeMillis;
+    }
+
+    /**
+     * @return When the next sync is due, in milliseconds on the scheduler's clock
+     */
+    public synchronized long getNextSyncTimeMillis() {
+        return mNextSyncTimeMillis;
+    }
+
+    /**
+     * @return The number of syncs run so far
+     */
+    public synchronized int getSyncCount() {
+        return mSyncCount;
+    }
+}
@@ -15,30 +15,76 @@
  */
 package com.example.android.sunshine.sync;
 
-import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
 import android.text.format.DateUtils;
+import android.util.Log;
 
+import com.example.android.sunshine.core.net.BodyInputStream;
+import com.example.android.sunshine.core.net.FailureKind;
+import com.example.android.sunshine.core.net.HttpResponse;
+import com.example.android.sunshine.core.net.StreamingResponse;
+import com.example.android.sunshine.data.HourlyWriter;
 import com.example.android.sunshine.data.SunshinePreferences;
-import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.SyncLogEntry;
+import com.example.android.sunshine.data.WeatherProvider;
+import com.example.android.sunshine.data.WeatherWriter;
 import com.example.android.sunshine.utilities.NetworkUtils;
 import com.example.android.sunshine.utilities.NotificationUtils;
 import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
 
 public class SunshineSyncTask {
 
+    private static final String TAG = SunshineSyncTask.class.getSimpleName();
+
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
      * weather has been loaded if the user hasn't been notified of the weather within the last day
      * AND they haven't disabled notifications in the preferences screen.
+     * <p>
+     * Every run is recorded in the sync log, along with how long each of those steps took. See
+     * {@link SyncStats}.
+     * <p>
+     * Whenever the network allows it, the sync is pipelined: see
+     * {@link #syncWeather(Context, boolean)}.
      *
      * @param context Used to access utility methods and the ContentResolver
      */
-    synchronized public static void syncWeather(Context context) {
+    public static void syncWeather(Context context) {
+        syncWeather(context, NetworkUtils.canStream());
+    }
+
+    /**
+     * Same as {@link #syncWeather(Context)}, but decides whether the download, the parse and the
+     * writing of the rows happen one after the other, or all at once:
+     * <p>
+     *   - In sequence, the whole response is downloaded before parsing starts. The network stage
+     *     in the sync log is the whole download.
+     * <p>
+     *   - Pipelined, parsing starts as soon as the headers have arrived, and each day is written
+     *     the moment it has been parsed, while the rest of the response is still on its way. The
+     *     network stage is only the wait for the headers; the download of the body is part of
+     *     the parse stage.
+     * <p>
+     * Either way, the rows are written in a transaction that's only committed once the response
+     * has arrived in full, and a failure at any point rolls it back, leaving the old forecast as
+     * it was. A pipelined attempt that fails part way is retried from the start, in a new
+     * transaction. A pipelined request isn't hedged, but it still goes to whichever endpoint has
+     * been doing best, and is recorded against it. See {@link NetworkUtils#stream}.
+     *
+     * @param context   Used to access utility methods and the ContentResolver
+     * @param pipelined Whether to parse and write while downloading. This needs
+     *                  {@link NetworkUtils#canStream()}.
+     */
+    synchronized static void syncWeather(final Context context, boolean pipelined) {
+
+        final SyncStats stats = new SyncStats();
+        String outcome = SyncLogEntry.OUTCOME_ERROR;
 
         try {
             /*
@@ -48,34 +94,41 @@ public class SunshineSyncTask {
              */
             URL weatherRequestUrl = NetworkUtils.getUrl(context);
 
-            /* Use the URL to retrieve the JSON */
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+            WeatherWriter writer;
+            if (pipelined) {
+                writer = NetworkUtils.stream(weatherRequestUrl,
+                        new NetworkUtils.StreamHandler<WeatherWriter>() {
+                            @Override
+                            public WeatherWriter handle(StreamingResponse response)
+                                    throws IOException {
+                                stats.endStage(SyncLogEntry.COLUMN_NETWORK_MILLIS);
+                                BodyInputStream body = response.openBody();
+                                try {
+                                    return writeForecast(context, body, stats);
+                                } finally {
+                                    body.close();
+                                    stats.setPayload(response.getWireBytesRead(),
+                                            body.getDecodedBytes(), body.getDecodeNanos());
+                                }
+                            }
+                        });
+            } else {
+                /* Use the URL to retrieve the JSON, which usually arrives gzipped */
+                HttpResponse response = NetworkUtils.fetch(weatherRequestUrl);
+                stats.endStage(SyncLogEntry.COLUMN_NETWORK_MILLIS);
 
-            /* Parse the JSON into a list of weather values */
-            ContentValues[] weatherValues = OpenWeatherJsonUtils
-                    .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
-
-            /*
-             * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
-             * would have returned null. We need to check for those cases here to prevent any
-             * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
-             * there isn't any to insert.
-             */
-            if (weatherValues != null && weatherValues.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
-                ContentResolver sunshineContentResolver = context.getContentResolver();
-
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
-
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
+                BodyInputStream body = response.openBody();
+                try {
+                    writer = writeForecast(context, body, stats);
+                } finally {
+                    body.close();
+                    stats.setPayload(response.getWireLength(), body.getDecodedBytes(),
+                            body.getDecodeNanos());
+                }
+            }
+            boolean committed = writer.isCommitted();
 
+            if (committed) {
                 /*
                  * Finally, after we insert data into the ContentProvider, determine whether or not
                  * we should notify the user that the weather has been refreshed.
@@ -98,19 +151,146 @@ public class SunshineSyncTask {
 
                 /*
                  * We only want to show the notification if the user wants them shown and we
-                 * haven't shown a notification in the past day.
+                 * haven't shown a notification in the past day. Today's weather is among the days
+                 * we just wrote, and the writer kept it for us, so there's no need to query it
+                 * back out of the database.
                  */
-                if (notificationsEnabled && oneDayPassedSinceLastNotification) {
-                    NotificationUtils.notifyUserOfNewWeather(context);
+                if (notificationsEnabled && oneDayPassedSinceLastNotification
+                        && writer.hasToday()) {
+                    NotificationUtils.notifyUserOfNewWeather(context, writer.getTodayWeatherId(),
+                            writer.getTodayHigh(), writer.getTodayLow());
                 }
+                stats.endStage(SyncLogEntry.COLUMN_NOTIFY_MILLIS);
+
+                /*
+                 * Let the adaptive sync policy know whether the forecast changed, so it can
+                 * adjust how often we sync from now on.
+                 */
+                SunshineSyncUtils.onForecastSynced(context, writer.getForecastHash());
+
+                /*
+                 * The writer archived the past days of the old forecast. Once a day, that's also
+                 * the moment to drop whatever the archive's retention policy no longer keeps.
+                 */
+                SunshineSyncUtils.startArchiveCompactionIfDue(context);
 
             /* If the code reaches this point, we have successfully performed our sync */
+                outcome = SyncLogEntry.OUTCOME_SUCCESS;
+            } else {
+                outcome = SyncLogEntry.OUTCOME_NO_DATA;
+            }
+
+        } catch (Exception e) {
+            /*
+             * By now, NetworkUtils has already retried whatever was worth retrying, so all that's
+             * left to do is record why we failed. The sync log keeps count.
+             */
+            FailureKind failure = FailureKind.classify(e);
+            stats.setFailure(failure);
+            Log.w(TAG, "Sync failed: " + failure.getLogName(), e);
+        } finally {
+            stats.finish(context, outcome);
+        }
+
+        /*
+         * The hourly forecast comes after the daily one is safely stored and logged, so that
+         * nothing that goes wrong with it can hold up or spoil the daily forecast.
+         */
+        syncHourlyWeather(context);
+    }
+
+    /**
+     * Replaces the hourly forecast of the current location with a new one from the server, in a
+     * single transaction, written straight from the parser. The hours of other locations are
+     * left alone. Failing to get an hourly forecast only costs the hourly forecast, so it's
+     * logged and otherwise ignored, and whatever hours we already had are kept. Unless
+     * {@link NetworkUtils#isHourlyForecastEnabled()}, nothing is asked for at all.
+     *
+     * @param context Used to access utility methods and the ContentResolver
+     */
+    private static void syncHourlyWeather(Context context) {
+        if (!NetworkUtils.isHourlyForecastEnabled()) {
+            return;
+        }
 
+        long startNanos = System.nanoTime();
+        try {
+            URL hourlyRequestUrl = NetworkUtils.getHourlyUrl(context);
+            String location = SunshinePreferences.getPreferredWeatherLocation(context);
+
+            HttpResponse response = NetworkUtils.fetchHourly(hourlyRequestUrl);
+            BodyInputStream body = response.openBody();
+            HourlyWriter writer;
+            try {
+                /* Opening the writer can fail too, and the body must be closed all the same */
+                writer = WeatherProvider.openHourlyWriter(context, location);
+                try {
+                    if (OpenWeatherJsonUtils.parseHourlyForecast(body, writer)
+                            && writer.getRowCount() != 0) {
+                        drain(body);
+                        writer.commit();
+                    }
+                } finally {
+                    writer.close();
+                }
+            } finally {
+                body.close();
             }
 
+            Log.d(TAG, "Hourly sync: " + writer.getRowCount() + " hours, "
+                    + (writer.isCommitted() ? "committed" : "kept the old hours") + ", "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms");
         } catch (Exception e) {
-            /* Server probably invalid */
-            e.printStackTrace();
+            Log.w(TAG, "Hourly sync failed: " + FailureKind.classify(e).getLogName(), e);
+        }
+    }
+
+    /**
+     * Parses the JSON straight into the weather table. It's decompressed as the parser reads it,
+     * so the whole JSON never has to sit in memory, and the body stream keeps track of how long
+     * the decompressing took. Each day is written the moment it's parsed, through a precompiled
+     * INSERT, in a transaction that first deletes the old weather. Nobody sees any of it until
+     * it's committed, so the parse stage includes writing the rows, and the write stage is just
+     * the commit.
+     *
+     * @param body The response body, decoded. It isn't closed.
+     * @return The writer, committed if the response held a forecast, and closed either way
+     * @throws IOException If the body couldn't be read or parsed, in which case nothing is
+     *                     committed
+     */
+    private static WeatherWriter writeForecast(Context context, InputStream body, SyncStats stats)
+            throws IOException {
+        WeatherWriter writer = WeatherProvider.openWeatherWriter(context);
+        try {
+            boolean parsed = OpenWeatherJsonUtils.parseForecast(context, body, writer);
+
+            /*
+             * The parser stops at the end of the JSON, but the response only counts as complete
+             * once its stream has ended, and gzip only checks its checksum at the very end, so
+             * we read whatever is left before committing anything.
+             */
+            drain(body);
+            stats.endStage(SyncLogEntry.COLUMN_PARSE_MILLIS);
+
+            /*
+             * If our JSON contained an error code, or no weather at all, we keep the weather we
+             * already have. Closing the writer without committing rolls everything back.
+             */
+            if (parsed && writer.getRowCount() != 0) {
+                writer.commit();
+                stats.endStage(SyncLogEntry.COLUMN_WRITE_MILLIS);
+                stats.setRowsWritten(writer.getRowCount());
+            }
+        } finally {
+            writer.close();
+        }
+        return writer;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[256];
+        while (in.read(buffer) != -1) {
+            /* Nothing but whitespace should be left after the JSON */
         }
     }
-}
\ No newline at end of file
+}
@@ -17,91 +17,131 @@ package com.example.android.sunshine.sync;
 
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.Cursor;
-import android.net.Uri;
+import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
 
 import com.example.android.sunshine.data.WeatherContract;
-import com.firebase.jobdispatcher.Constraint;
-import com.firebase.jobdispatcher.Driver;
-import com.firebase.jobdispatcher.FirebaseJobDispatcher;
-import com.firebase.jobdispatcher.GooglePlayDriver;
-import com.firebase.jobdispatcher.Job;
-import com.firebase.jobdispatcher.Lifetime;
-import com.firebase.jobdispatcher.Trigger;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class SunshineSyncUtils {
 
+    private static final String TAG = SunshineSyncUtils.class.getSimpleName();
+
     /*
-     * Interval at which to sync with the weather. Use TimeUnit for convenience, rather than
-     * writing out a bunch of multiplication ourselves and risk making a silly mistake.
+     * Bounds of the interval at which to sync with the weather, and the interval we start from.
+     * Within these bounds, AdaptiveSyncPolicy picks the interval based on how often the forecast
+     * actually changes. Use TimeUnit for convenience, rather than writing out a bunch of
+     * multiplication ourselves and risk making a silly mistake.
      */
-    private static final int SYNC_INTERVAL_HOURS = 3;
-    private static final int SYNC_INTERVAL_SECONDS = (int) TimeUnit.HOURS.toSeconds(SYNC_INTERVAL_HOURS);
-    private static final int SYNC_FLEXTIME_SECONDS = SYNC_INTERVAL_SECONDS / 3;
+    private static final long MIN_SYNC_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final long MAX_SYNC_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(12);
+    private static final long INITIAL_SYNC_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(3);
+
+    /*
+     * The adaptive policy's state is kept in a SharedPreferences file of its own, so that saving
+     * it after every sync doesn't wake up the listeners on the user's preferences.
+     */
+    private static final String SYNC_POLICY_PREFERENCES = "sync_policy";
+    private static final String PREF_INTERVAL_SECONDS = "interval_seconds";
+    private static final String PREF_LAST_SYNC_TIME = "last_sync_time";
+    private static final String PREF_FORECAST_HASH = "forecast_hash";
+
+    /* Set once the FirebaseJobDispatcher job of earlier versions has been cancelled */
+    private static final String PREF_FIREBASE_SYNC_CANCELLED = "firebase_sync_cancelled";
+
+    private static AdaptiveSyncPolicy sSyncPolicy;
+
+    private static SyncScheduler sSyncScheduler;
 
     private static boolean sInitialized;
 
-    private static final String SUNSHINE_SYNC_TAG = "sunshine-sync";
+    /* Runs initialize's work in the background, one task at a time */
+    private static final Executor sInitializationExecutor = Executors.newSingleThreadExecutor();
 
     /**
-     * Schedules a repeating sync of Sunshine's weather data using FirebaseJobDispatcher.
-     * @param context Context used to create the GooglePlayDriver that powers the
-     *                FirebaseJobDispatcher
+     * Schedules a repeating sync of Sunshine's weather data, at the interval the adaptive sync
+     * policy currently asks for.
+     *
+     * @param context Context used to create the SyncScheduler, if it doesn't exist yet
      */
-    static void scheduleFirebaseJobDispatcherSync(@NonNull final Context context) {
+    static void scheduleSync(@NonNull final Context context) {
+        AdaptiveSyncPolicy policy = getSyncPolicy(context);
+        SyncScheduler scheduler = getSyncScheduler(context);
+        if (scheduler instanceof JobSchedulerSyncScheduler) {
+            cancelFirebaseSyncOnce(context);
+        }
+        scheduler.schedulePeriodicSync(
+                policy.getIntervalSeconds(),
+                policy.getFlexSeconds());
+    }
 
-        Driver driver = new GooglePlayDriver(context);
-        FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
+    /**
+     * Returns the SyncScheduler used to schedule Sunshine's periodic sync. Unless one was set
+     * with {@link #setSyncScheduler(SyncScheduler)}, we use the framework's JobScheduler where
+     * it's available, and only fall back to FirebaseJobDispatcher before Lollipop.
+     *
+     * @param context Context used to create the SyncScheduler
+     */
+    synchronized static SyncScheduler getSyncScheduler(@NonNull Context context) {
+        if (sSyncScheduler == null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                sSyncScheduler = new JobSchedulerSyncScheduler(context);
+            } else {
+                sSyncScheduler = new FirebaseSyncScheduler(context);
+            }
+        }
+        return sSyncScheduler;
+    }
 
-        /* Create the Job to periodically sync Sunshine */
-        Job syncSunshineJob = dispatcher.newJobBuilder()
-                /* The Service that will be used to sync Sunshine's data */
-                .setService(SunshineFirebaseJobService.class)
-                /* Set the UNIQUE tag used to identify this Job */
-                .setTag(SUNSHINE_SYNC_TAG)
-                /*
-                 * Network constraints on which this Job should run. We choose to run on any
-                 * network, but you can also choose to run only on un-metered networks or when the
-                 * device is charging. It might be a good idea to include a preference for this,
-                 * as some users may not want to download any data on their mobile plan. ($$$)
-                 */
-                .setConstraints(Constraint.ON_ANY_NETWORK)
-                /*
-                 * setLifetime sets how long this job should persist. The options are to keep the
-                 * Job "forever" or to have it die the next time the device boots up.
-                 */
-                .setLifetime(Lifetime.FOREVER)
-                /*
-                 * We want Sunshine's weather data to stay up to date, so we tell this Job to recur.
-                 */
-                .setRecurring(true)
-                /*
-                 * We want the weather data to be synced every 3 to 4 hours. The first argument for
-                 * Trigger's static executionWindow method is the start of the time frame when the
-                 * sync should be performed. The second argument is the latest point in time at
-                 * which the data should be synced. Please note that this end time is not
-                 * guaranteed, but is more of a guideline for FirebaseJobDispatcher to go off of.
-                 */
-                .setTrigger(Trigger.executionWindow(
-                        SYNC_INTERVAL_SECONDS,
-                        SYNC_INTERVAL_SECONDS + SYNC_FLEXTIME_SECONDS))
-                /*
-                 * If a Job with the tag with provided already exists, this new job will replace
-                 * the old one.
-                 */
-                .setReplaceCurrent(true)
-                /* Once the Job is ready, call the builder's build method to return the Job */
-                .build();
+    /**
+     * Before Sunshine scheduled its sync with JobScheduler, every version scheduled it with
+     * FirebaseJobDispatcher, as a job that lives forever. After an upgrade, that job would keep
+     * syncing at its old, fixed interval, alongside the adaptive JobScheduler job, so we cancel it
+     * the first time we schedule with JobScheduler. Without Google Play services there is no such
+     * job, and the dispatcher may not even work, which is fine: there's nothing to cancel.
+     *
+     * @param context Used to create the FirebaseSyncScheduler and to remember that it's done
+     */
+    private static void cancelFirebaseSyncOnce(Context context) {
+        SharedPreferences sp = context.getSharedPreferences(
+                SYNC_POLICY_PREFERENCES, Context.MODE_PRIVATE);
+        if (sp.getBoolean(PREF_FIREBASE_SYNC_CANCELLED, false)) {
+            return;
+        }
+        try {
+            new FirebaseSyncScheduler(context).cancelPeriodicSync();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Couldn't cancel the FirebaseJobDispatcher sync", e);
+        }
+        sp.edit().putBoolean(PREF_FIREBASE_SYNC_CANCELLED, true).apply();
+    }
 
-        /* Schedule the Job with the dispatcher */
-        dispatcher.schedule(syncSunshineJob);
+    /**
+     * Replaces the SyncScheduler, for example with a {@link LocalSyncScheduler} in tests. This
+     * must be called before {@link #initialize(Context)} to have any effect on the first sync.
+     *
+     * @param syncScheduler The SyncScheduler to use from now on
+     */
+    @VisibleForTesting
+    synchronized static void setSyncScheduler(SyncScheduler syncScheduler) {
+        sSyncScheduler = syncScheduler;
     }
+
     /**
      * Creates periodic sync tasks and checks to see if an immediate sync is required. If an
      * immediate sync is required, this method will take care of making sure that sync occurs.
+     * <p>
+     * None of this work is needed to draw Sunshine's first frame, so all of it, including
+     * creating the SyncScheduler, happens on a background thread. This method returns
+     * right away.
      *
      * @param context Context that will be passed to other methods and used to access the
      *                ContentResolver
@@ -117,66 +157,167 @@ public class SunshineSyncUtils {
         sInitialized = true;
 
         /*
-         * This method call triggers Sunshine to create its task to synchronize weather data
-         * periodically.
+         * The work below outlives the Activity that called us, so we make sure to only hold on
+         * to the application Context.
          */
-        scheduleFirebaseJobDispatcherSync(context);
+        final Context appContext = context.getApplicationContext();
 
-        /*
-         * We need to check to see if our ContentProvider has data to display in our forecast
-         * list. However, performing a query on the main thread is a bad idea as this may
-         * cause our UI to lag. Therefore, we create a thread in which we will run the query
-         * to check the contents of our ContentProvider.
-         */
-        Thread checkForEmpty = new Thread(new Runnable() {
+        sInitializationExecutor.execute(new Runnable() {
             @Override
             public void run() {
 
-                /* URI for every row of weather data in our weather table*/
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-
                 /*
-                 * Since this query is going to be used only as a check to see if we have any
-                 * data (rather than to display data), we just need to PROJECT the ID of each
-                 * row. In our queries where we display data, we need to PROJECT more columns
-                 * to determine what weather details need to be displayed.
+                 * This method call triggers Sunshine to create its task to synchronize weather
+                 * data periodically.
                  */
-                String[] projectionColumns = {WeatherContract.WeatherEntry._ID};
-                String selectionStatement = WeatherContract.WeatherEntry
-                        .getSqlSelectForTodayOnwards();
-
-                /* Here, we perform the query to check to see if we have any weather data */
-                Cursor cursor = context.getContentResolver().query(
-                        forecastQueryUri,
-                        projectionColumns,
-                        selectionStatement,
-                        null,
-                        null);
+                scheduleSync(appContext);
+
                 /*
-                 * A Cursor object can be null for various different reasons. A few are
-                 * listed below.
-                 *
-                 *   1) Invalid URI
-                 *   2) A certain ContentProvider's query method returns null
-                 *   3) A RemoteException was thrown.
-                 *
-                 * Bottom line, it is generally a good idea to check if a Cursor returned
-                 * from a ContentResolver is null.
-                 *
-                 * If the Cursor was null OR if it was empty, we need to sync immediately to
-                 * be able to display data to the user.
+                 * Besides having nothing to show, we also sync if the scheduled sync is overdue,
+                 * which happens when the system deferred it. The user is looking at the forecast
+                 * right now, so this is the moment it should be fresh.
                  */
-                if (null == cursor || cursor.getCount() == 0) {
-                    startImmediateSync(context);
+                if (isSyncNeeded(appContext) || getSyncPolicy(appContext).isSyncDue()) {
+                    startImmediateSync(appContext);
                 }
-
-                /* Make sure to close the Cursor to avoid memory leaks! */
-                cursor.close();
             }
         });
+    }
+
+    /**
+     * Checks whether we have weather to display from today onwards. Rather than querying the
+     * weather table itself, we read the single row of the sync metadata table, which
+     * WeatherProvider keeps up to date every time the weather table changes. That costs the same
+     * no matter how many days of weather are stored.
+     *
+     * @param context Used to access the ContentResolver
+     * @return true if Sunshine has nothing to show for today or later and should sync right away
+     */
+    private static boolean isSyncNeeded(Context context) {
+        String[] projection = {
+                WeatherContract.SyncMetadataEntry.COLUMN_ROW_COUNT,
+                WeatherContract.SyncMetadataEntry.COLUMN_MAX_DATE
+        };
+
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.SyncMetadataEntry.CONTENT_URI,
+                projection,
+                null,
+                null,
+                null);
+
+        /*
+         * A Cursor object can be null for various different reasons. A few are listed below.
+         *
+         *   1) Invalid URI
+         *   2) A certain ContentProvider's query method returns null
+         *   3) A RemoteException was thrown.
+         *
+         * If we can't tell what we have, we sync to be safe.
+         */
+        if (cursor == null) {
+            return true;
+        }
+
+        try {
+            if (!cursor.moveToFirst()) {
+                return true;
+            }
+
+            long rowCount = cursor.getLong(0);
+            long maxDate = cursor.getLong(1);
+            long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+            /* We need to sync if there is no weather at all, or if all of it is in the past */
+            return rowCount == 0 || maxDate < today;
+        } finally {
+            /* Make sure to close the Cursor to avoid memory leaks! */
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the adaptive sync policy, restoring its state the first time it is needed.
+     *
+     * @param context Used to access the policy's SharedPreferences
+     */
+    synchronized static AdaptiveSyncPolicy getSyncPolicy(@NonNull Context context) {
+        if (sSyncPolicy == null) {
+            sSyncPolicy = new AdaptiveSyncPolicy(AdaptiveSyncPolicy.SYSTEM,
+                    MIN_SYNC_INTERVAL_SECONDS,
+                    MAX_SYNC_INTERVAL_SECONDS,
+                    INITIAL_SYNC_INTERVAL_SECONDS);
+
+            SharedPreferences sp = context.getSharedPreferences(
+                    SYNC_POLICY_PREFERENCES, Context.MODE_PRIVATE);
+            sSyncPolicy.restore(
+                    sp.getLong(PREF_INTERVAL_SECONDS, INITIAL_SYNC_INTERVAL_SECONDS),
+                    sp.getLong(PREF_LAST_SYNC_TIME, 0),
+                    sp.contains(PREF_FORECAST_HASH),
+                    sp.getInt(PREF_FORECAST_HASH, 0));
+        }
+        return sSyncPolicy;
+    }
+
+    /**
+     * Tells the adaptive sync policy that a sync brought back a forecast. If that changes the
+     * interval at which we should sync, the periodic sync is rescheduled with the new interval.
+     *
+     * @param context      Used to persist the policy's state and to reschedule the sync
+     * @param forecastHash A hash of the forecast that was just synced, from
+     *                     {@link com.example.android.sunshine.data.WeatherWriter#getForecastHash()}
+     */
+    synchronized static void onForecastSynced(@NonNull Context context, int forecastHash) {
+        AdaptiveSyncPolicy policy = getSyncPolicy(context);
+
+        boolean intervalChanged = policy.onForecastSynced(forecastHash);
+
+        context.getSharedPreferences(SYNC_POLICY_PREFERENCES, Context.MODE_PRIVATE)
+                .edit()
+                .putLong(PREF_INTERVAL_SECONDS, policy.getIntervalSeconds())
+                .putLong(PREF_LAST_SYNC_TIME, policy.getLastSyncTimeMillis())
+                .putInt(PREF_FORECAST_HASH, policy.getForecastHash())
+                .apply();
+
+        if (intervalChanged) {
+            scheduleSync(context);
+        }
+    }
+
+    /**
+     * Starts {@link ArchiveCompactionIntentService} if the archive hasn't been compacted for
+     * ArchiveEntry#COMPACTION_INTERVAL_MILLIS. The time of the last compaction is in the sync
+     * metadata, so checking costs a single row, and most syncs start nothing at all.
+     *
+     * @param context Used to access the ContentResolver and to start the service
+     */
+    static void startArchiveCompactionIfDue(@NonNull Context context) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.SyncMetadataEntry.CONTENT_URI,
+                new String[]{WeatherContract.SyncMetadataEntry.COLUMN_LAST_COMPACTION},
+                null,
+                null,
+                null);
+
+        /* If we can't tell when it last ran, it's left for a later sync */
+        if (cursor == null) {
+            return;
+        }
+
+        long lastCompaction;
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            lastCompaction = cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
 
-        /* Finally, once the thread is prepared, fire it off to perform our checks. */
-        checkForEmpty.start();
+        long sinceLastCompaction = System.currentTimeMillis() - lastCompaction;
+        if (sinceLastCompaction >= WeatherContract.ArchiveEntry.COMPACTION_INTERVAL_MILLIS) {
+            context.startService(new Intent(context, ArchiveCompactionIntentService.class));
+        }
     }
 
     /**
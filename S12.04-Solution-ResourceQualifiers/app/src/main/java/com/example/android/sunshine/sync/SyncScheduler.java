@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+/**
+ * Schedules Sunshine's periodic weather sync. SunshineSyncUtils only ever talks to this
+ * interface, so the engine that actually wakes Sunshine up can be swapped:
+ * <p>
+ *   - {@link JobSchedulerSyncScheduler} uses the framework's JobScheduler, available from
+ *     Lollipop onwards without any extra dependencies.
+ * <p>
+ *   - {@link FirebaseSyncScheduler} uses FirebaseJobDispatcher, for older devices.
+ * <p>
+ *   - {@link LocalSyncScheduler} runs entirely in-process on a clock you control, for tests and
+ *     for simulating many sync periods quickly.
+ */
+public interface SyncScheduler {
+
+    /**
+     * Schedules a sync to run repeatedly, replacing any periodic sync scheduled before.
+     *
+     * @param intervalSeconds How long to wait between syncs
+     * @param flexSeconds     How much later than the interval a sync may run, so the system can
+     *                        batch it with other work
+     */
+    void schedulePeriodicSync(long intervalSeconds, long flexSeconds);
+
+    /**
+     * Cancels the periodic sync, if one is scheduled.
+     */
+    void cancelPeriodicSync();
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.core.net.FailureKind;
+import com.example.android.sunshine.data.WeatherContract.SyncLogEntry;
+
+/**
+ * Records what happened during a single run of {@link SunshineSyncTask}: how long each stage
+ * took, how many bytes were downloaded and what they decompressed to, how many rows were written
+ * and how the run ended, including why, if it failed. When the run is over, the record is written
+ * to the sync log through WeatherProvider, where {@link SyncLogEntry#STATS_URI} summarizes it
+ * together with earlier runs.
+ * <p>
+ * Stages are timed back to back. Each call to {@link #endStage(String)} records the time since
+ * the previous one (or since the run started), so the stages always add up to the whole run.
+ */
+class SyncStats {
+
+    private static final String TAG = SyncStats.class.getSimpleName();
+
+    private final long mStartTimeMillis;
+    private final long mStartRealtimeMillis;
+    private long mStageStartRealtimeMillis;
+
+    private final ContentValues mValues = new ContentValues();
+
+    SyncStats() {
+        mStartTimeMillis = System.currentTimeMillis();
+        mStartRealtimeMillis = SystemClock.elapsedRealtime();
+        mStageStartRealtimeMillis = mStartRealtimeMillis;
+    }
+
+    /**
+     * Records the duration of the stage that just finished. The next stage starts now.
+     *
+     * @param column The sync log column for the stage, for example
+     *               {@link SyncLogEntry#COLUMN_NETWORK_MILLIS}
+     */
+    void endStage(String column) {
+        long now = SystemClock.elapsedRealtime();
+        mValues.put(column, now - mStageStartRealtimeMillis);
+        mStageStartRealtimeMillis = now;
+    }
+
+    /**
+     * Records the size of the downloaded response, both as it came over the network and once
+     * decompressed, and how long decompressing it took. See
+     * {@link com.example.android.sunshine.core.net.BodyInputStream}.
+     *
+     * @param wireBytes    Bytes received over the network
+     * @param decodedBytes Bytes of JSON they decompressed to
+     * @param decodeNanos  Time spent decompressing, in nanoseconds
+     */
+    void setPayload(long wireBytes, long decodedBytes, long decodeNanos) {
+        mValues.put(SyncLogEntry.COLUMN_WIRE_BYTES, wireBytes);
+        mValues.put(SyncLogEntry.COLUMN_PAYLOAD_BYTES, decodedBytes);
+        mValues.put(SyncLogEntry.COLUMN_DECODE_MILLIS, decodeNanos / 1000000);
+    }
+
+    void setRowsWritten(int rowsWritten) {
+        mValues.put(SyncLogEntry.COLUMN_ROWS_WRITTEN, rowsWritten);
+    }
+
+    void setFailure(FailureKind failure) {
+        mValues.put(SyncLogEntry.COLUMN_FAILURE, failure.getLogName());
+    }
+
+    /**
+     * Ends the run and writes its record to the sync log. A failure to write the record is
+     * logged and otherwise ignored, as it must never affect the sync itself.
+     *
+     * @param context Used to access the ContentResolver
+     * @param outcome How the run ended, one of the SyncLogEntry OUTCOME_ constants
+     */
+    void finish(Context context, String outcome) {
+        mValues.put(SyncLogEntry.COLUMN_START_TIME, mStartTimeMillis);
+        mValues.put(SyncLogEntry.COLUMN_TOTAL_MILLIS,
+                SystemClock.elapsedRealtime() - mStartRealtimeMillis);
+        mValues.put(SyncLogEntry.COLUMN_OUTCOME, outcome);
+
+        Log.d(TAG, "Sync run: " + mValues);
+
+        try {
+            context.getContentResolver().insert(SyncLogEntry.CONTENT_URI, mValues);
+        } catch (Exception e) {
+            Log.w(TAG, "Couldn't record sync run", e);
+        }
+    }
+}
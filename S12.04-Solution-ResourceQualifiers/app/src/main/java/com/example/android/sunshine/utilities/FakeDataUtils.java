@@ -3,52 +3,43 @@ package com.example.android.sunshine.utilities;
 import android.content.ContentValues;
 import android.content.Context;
 
+import com.example.android.sunshine.core.DailyWeather;
+import com.example.android.sunshine.core.SyntheticWeather;
 import com.example.android.sunshine.data.WeatherContract;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-
-import static com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
 public class FakeDataUtils {
 
-    private static int [] weatherIDs = {200,300,500,711,900,962};
+    /* The fake data is the same every time, so what you see on one device you see on all */
+    private static final long SEED = 42;
+
+    private static final int DAYS_OF_FAKE_DATA = 7;
 
     /**
-     * Creates a single ContentValues object with random weather data for the provided date
-     * @param date a normalized date
-     * @return ContentValues object filled with random weather data
+     * Creates weather data for the given number of days starting today, at a single fake
+     * location. The data comes from {@link SyntheticWeather}, so it looks like real weather and
+     * is always the same for the same day.
+     * @param days how many days to create
+     * @return ContentValues objects filled with weather data, one per day
      */
-    private static ContentValues createTestWeatherContentValues(long date) {
-        ContentValues testWeatherValues = new ContentValues();
-        testWeatherValues.put(WeatherEntry.COLUMN_DATE, date);
-        testWeatherValues.put(WeatherEntry.COLUMN_DEGREES, Math.random()*2);
-        testWeatherValues.put(WeatherEntry.COLUMN_HUMIDITY, Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_PRESSURE, 870 + Math.random()*100);
-        int maxTemp = (int)(Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
-        testWeatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, maxTemp - (int) (Math.random()*10));
-        testWeatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, Math.random()*10);
-        testWeatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherIDs[(int)(Math.random()*10)%5]);
-        return testWeatherValues;
+    public static ContentValues[] createFakeWeatherContentValues(int days) {
+        //Get today's normalized date
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        List<DailyWeather> forecast = generator.generateForecast(location, today, days);
+        return OpenWeatherJsonUtils.getWeatherContentValues(forecast);
     }
 
     /**
-     * Creates random weather data for 7 days starting today
+     * Creates weather data for 7 days starting today
      * @param context
      */
     public static void insertFakeData(Context context) {
-        //Get today's normalized date
-        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-        List<ContentValues> fakeValues = new ArrayList<ContentValues>();
-        //loop over 7 days starting today onwards
-        for(int i=0; i<7; i++) {
-            fakeValues.add(FakeDataUtils.createTestWeatherContentValues(today + TimeUnit.DAYS.toMillis(i)));
-        }
         // Bulk Insert our new weather data into Sunshine's Database
         context.getContentResolver().bulkInsert(
                 WeatherContract.WeatherEntry.CONTENT_URI,
-                fakeValues.toArray(new ContentValues[7]));
+                createFakeWeatherContentValues(DAYS_OF_FAKE_DATA));
     }
-}
+}
\ No newline at end of file
@@ -19,22 +19,96 @@ import android.content.Context;
 import android.net.Uri;
 import android.util.Log;
 
+import com.example.android.sunshine.core.net.CircuitBreaker;
+import com.example.android.sunshine.core.net.CircuitOpenException;
+import com.example.android.sunshine.core.net.EndpointSelector;
+import com.example.android.sunshine.core.net.FailureKind;
+import com.example.android.sunshine.core.net.HedgingTransport;
+import com.example.android.sunshine.core.net.HttpResponse;
+import com.example.android.sunshine.core.net.HttpStatusException;
+import com.example.android.sunshine.core.net.HttpTransport;
+import com.example.android.sunshine.core.net.RetryPolicy;
+import com.example.android.sunshine.core.net.RetryingTransport;
+import com.example.android.sunshine.core.net.StreamingResponse;
+import com.example.android.sunshine.core.net.StreamingTransport;
+import com.example.android.sunshine.core.net.UrlConnectionTransport;
 import com.example.android.sunshine.data.SunshinePreferences;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * These utilities will be used to communicate with the weather servers.
+ * <p>
+ * Requests go through an {@link HttpTransport}, which is the real network unless it has been
+ * replaced with {@link #setTransport(HttpTransport)}. Whichever it is, requests that fail for
+ * reasons that might go away are retried with jittered, exponential backoff, and once the server
+ * has failed too often in a row, a circuit breaker refuses to ask it again for a while. See
+ * {@link RetryingTransport}. Each attempt goes to whichever of the two weather endpoints has
+ * lately been the faster and more reliable, and if it's unusually slow to answer, the other one
+ * is asked too. See {@link HedgingTransport}. Tests and benchmarks replace the transport to run a
+ * sync without a network:
+ * <pre>
+ *     // Record the weather server's real responses to files...
+ *     NetworkUtils.setTransport(new RecordingTransport(new UrlConnectionTransport(), recordings));
+ *
+ *     // ...and later play them back from a stand-in server, as slowly and unreliably as needed
+ *     StandInServer server = new StandInServer(recordings, conditions);
+ *     server.start();
+ *     NetworkUtils.setTransport(server.transport());
+ * </pre>
  */
 public final class NetworkUtils {
 
     private static final String TAG = NetworkUtils.class.getSimpleName();
 
+    /*
+     * No single attempt may take longer than 30 seconds, or go quiet for longer than 15, so a
+     * stalled server can't hold the sync thread forever.
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(15);
+    private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(15);
+    private static final long ATTEMPT_DEADLINE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /*
+     * Up to 3 attempts per request, waiting up to 1 and then up to 2 seconds in between. No
+     * attempt starts more than 45 seconds after the first, so a request as a whole is over
+     * within about a minute and a quarter, however badly the network behaves.
+     */
+    private static final RetryPolicy RETRY_POLICY = new RetryPolicy.Builder()
+            .setMaxAttempts(3)
+            .setBaseDelayMillis(TimeUnit.SECONDS.toMillis(1))
+            .setMaxDelayMillis(TimeUnit.SECONDS.toMillis(10))
+            .setDeadlineMillis(TimeUnit.SECONDS.toMillis(45))
+            .build();
+
+    /*
+     * After 5 failed attempts in a row (two syncs' worth, give or take) the server is left alone
+     * for 5 minutes. Refreshing in the meantime fails straight away instead of trying again.
+     */
+    private static final int CIRCUIT_BREAKER_FAILURES = 5;
+    private static final long CIRCUIT_BREAKER_OPEN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /*
+     * Set together by setTransport; the hedging transport sits underneath the retrying one. The
+     * streaming transport is the one underneath them both, or null if it can't stream. The
+     * hourly transport retries on its own, straight on top of the same network.
+     */
+    private static volatile HedgingTransport sHedgingTransport;
+    private static volatile StreamingTransport sStreamingTransport;
+    private static volatile RetryingTransport sHourlyTransport;
+    private static volatile RetryingTransport sTransport = createRetryingTransport(null);
+
+    /*
+     * The weather server isn't known to have an hourly forecast, so it isn't asked for one
+     * unless this is turned on, as tests and benchmarks do with setHourlyForecastEnabled.
+     * Asking a server that doesn't have one would cost a failed request every sync.
+     */
+    private static final boolean HOURLY_FORECAST_ENABLED = false;
+    private static volatile boolean sHourlyForecastEnabled = HOURLY_FORECAST_ENABLED;
+
     /*
      * Sunshine was originally built to use OpenWeatherMap's API. However, we wanted to provide
      * a way to much more easily test the app and provide more varied weather data. After all, in
@@ -47,6 +121,10 @@ public final class NetworkUtils {
      *
      * If you'd prefer to test with the weather data that you will see in the videos on Udacity,
      * you can do so by setting the FORECAST_BASE_URL to STATIC_WEATHER_URL below.
+     *
+     * Whichever one FORECAST_BASE_URL names, requests may be answered by the other one: the
+     * transport sends each request to the endpoint that has lately been answering fastest, and
+     * hedges slow requests to the other one. See HedgingTransport.
      */
     private static final String DYNAMIC_WEATHER_URL =
             "https://andfun-weather.udacity.com/weather";
@@ -69,6 +147,11 @@ public final class NetworkUtils {
     private static final String units = "metric";
     /* The number of days we want our API to return */
     private static final int numDays = 14;
+    /* The number of 3 hour steps we want the hourly forecast to return: 5 days' worth */
+    private static final int numHours = 40;
+
+    /* The hourly forecast is found under the forecast URL, like OpenWeatherMap's */
+    private static final String HOURLY_PATH = "hourly";
 
     /* The query parameter allows us to provide a location string to the API */
     private static final String QUERY_PARAM = "q";
@@ -109,6 +192,57 @@ public final class NetworkUtils {
         }
     }
 
+    /**
+     * @return Whether the sync should ask for the hourly forecast at all. See
+     * {@link #setHourlyForecastEnabled(boolean)}.
+     */
+    public static boolean isHourlyForecastEnabled() {
+        return sHourlyForecastEnabled;
+    }
+
+    /**
+     * Turns requests for the hourly forecast on or off. They're off unless the weather server is
+     * known to have one, which is the case for the stand-in servers tests and benchmarks use.
+     *
+     * @param enabled Whether the sync should ask for the hourly forecast
+     */
+    public static void setHourlyForecastEnabled(boolean enabled) {
+        sHourlyForecastEnabled = enabled;
+    }
+
+    /**
+     * Retrieves the URL to query for the hourly forecast of the same location as
+     * {@link #getUrl(Context)}, which has an entry every 3 hours.
+     *
+     * @param context used to access other Utility methods
+     * @return URL to query weather service for the hourly forecast
+     */
+    public static URL getHourlyUrl(Context context) {
+        URL dailyUrl = getUrl(context);
+        if (dailyUrl == null) {
+            return null;
+        }
+
+        /* Same location, units and format, but a different path and count */
+        Uri dailyUri = Uri.parse(dailyUrl.toString());
+        Uri.Builder hourlyUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+                .appendPath(HOURLY_PATH);
+        for (String name : dailyUri.getQueryParameterNames()) {
+            String value = name.equals(DAYS_PARAM)
+                    ? Integer.toString(numHours) : dailyUri.getQueryParameter(name);
+            hourlyUri.appendQueryParameter(name, value);
+        }
+
+        try {
+            URL hourlyUrl = new URL(hourlyUri.build().toString());
+            Log.v(TAG, "Hourly URL: " + hourlyUrl);
+            return hourlyUrl;
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "Couldn't build the hourly URL", e);
+            return null;
+        }
+    }
+
     /**
      * Builds the URL used to talk to the weather server using latitude and longitude of a
      * location.
@@ -162,29 +296,230 @@ public final class NetworkUtils {
     }
 
     /**
-     * This method returns the entire result from the HTTP response.
+     * Replaces the transport that requests go through. This is meant for tests and benchmarks.
+     * Requests are still retried, and the circuit breaker starts over, closed.
      *
-     * @param url The URL to fetch the HTTP response from.
-     * @return The contents of the HTTP response, null if no response
-     * @throws IOException Related to network and stream reading
+     * @param transport The new transport, or null to go back to the real network
      */
-    public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-        try {
-            InputStream in = urlConnection.getInputStream();
+    public static void setTransport(HttpTransport transport) {
+        sTransport = createRetryingTransport(transport);
+    }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+    /**
+     * @param kind A reason for failure
+     * @return How many attempts have failed for that reason since the transport was last set
+     */
+    public static int getFailureCount(FailureKind kind) {
+        return sTransport.getFailureCount(kind);
+    }
+
+    /**
+     * @return The latency and error rate of each weather endpoint, as seen since the transport
+     * was last set
+     */
+    public static EndpointSelector getEndpointSelector() {
+        return sHedgingTransport.getSelector();
+    }
 
-            boolean hasInput = scanner.hasNext();
-            String response = null;
-            if (hasInput) {
-                response = scanner.next();
+    /**
+     * @return How many requests were hedged to a second endpoint since the transport was last
+     * set
+     */
+    public static int getHedgeCount() {
+        return sHedgingTransport.getHedgeCount();
+    }
+
+    private static RetryingTransport createRetryingTransport(HttpTransport transport) {
+        CircuitBreaker breaker = new CircuitBreaker(CircuitBreaker.SYSTEM,
+                CIRCUIT_BREAKER_FAILURES, CIRCUIT_BREAKER_OPEN_MILLIS);
+        if (transport == null) {
+            /*
+             * One transport for every request, whose connections HttpURLConnection keeps alive
+             * and reuses, so later requests to the weather server skip the TLS handshake
+             */
+            transport = new UrlConnectionTransport(CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS,
+                    ATTEMPT_DEADLINE_MILLIS);
+        }
+        EndpointSelector selector = new EndpointSelector(STATIC_WEATHER_URL, DYNAMIC_WEATHER_URL);
+        sHedgingTransport = new HedgingTransport(transport, selector);
+
+        /*
+         * The hourly forecast gets a circuit breaker of its own and isn't hedged, so its failures
+         * can't lock out the daily forecast, and its latencies never count towards the
+         * endpoints the daily forecast is sent to.
+         */
+        sHourlyTransport = new RetryingTransport(transport, RETRY_POLICY,
+                new CircuitBreaker(CircuitBreaker.SYSTEM, CIRCUIT_BREAKER_FAILURES,
+                        CIRCUIT_BREAKER_OPEN_MILLIS));
+        sStreamingTransport = transport instanceof StreamingTransport
+                ? (StreamingTransport) transport : null;
+        return new RetryingTransport(sHedgingTransport, RETRY_POLICY, breaker);
+    }
+
+    /**
+     * Fetches a URL through the current transport. The body is left as it came over the
+     * network, possibly gzipped, so the caller can stream it into a parser with
+     * {@link HttpResponse#openBody()} and measure both sizes.
+     *
+     * @param url The URL to fetch
+     * @return The response, which is always successful
+     * @throws HttpStatusException  If the server responded with an error status, even after
+     *                              retrying
+     * @throws CircuitOpenException If the server has been failing, and wasn't asked at all
+     * @throws IOException          Related to network and stream reading
+     */
+    public static HttpResponse fetch(URL url) throws IOException {
+        return fetch(sTransport, url);
+    }
+
+    /**
+     * Fetches the hourly forecast, like {@link #fetch(URL)} does any other URL, except that it's
+     * neither hedged nor held against the daily forecast's circuit breaker. It has a breaker of
+     * its own instead.
+     *
+     * @param url The URL from {@link #getHourlyUrl(Context)}
+     * @return The response, which is always successful
+     * @throws HttpStatusException  If the server responded with an error status, even after
+     *                              retrying
+     * @throws CircuitOpenException If the hourly forecast has been failing, and wasn't asked for
+     * @throws IOException          Related to network and stream reading
+     */
+    public static HttpResponse fetchHourly(URL url) throws IOException {
+        return fetch(sHourlyTransport, url);
+    }
+
+    private static HttpResponse fetch(RetryingTransport transport, URL url) throws IOException {
+        HttpResponse response = transport.get(url);
+
+        /* HttpURLConnection refuses to hand out the body of an error, and so do we */
+        if (!response.isSuccessful()) {
+            throw new HttpStatusException(response.getStatusCode(),
+                    "HTTP " + response.getStatusCode() + " from " + url);
+        }
+        return response;
+    }
+
+    /**
+     * Something to do with the body of a response while it's still arriving, for
+     * {@link #stream(URL, StreamHandler)}.
+     */
+    public interface StreamHandler<T> {
+
+        /**
+         * @param response The response, which is always successful. It's closed once this
+         *                 returns.
+         * @return Whatever stream returns
+         * @throws IOException If the body couldn't be read, or didn't make sense. Either way, the
+         *                     whole request may be made again, and handle called again, with a
+         *                     new response.
+         */
+        T handle(StreamingResponse response) throws IOException;
+    }
+
+    /**
+     * @return Whether the current transport can hand out a response before all of it has
+     * arrived, through {@link #stream(URL, StreamHandler)}
+     */
+    public static boolean canStream() {
+        return sStreamingTransport != null;
+    }
+
+    /**
+     * Requests a URL, and hands the response to the handler as soon as its headers have arrived,
+     * so it can start on the body while the rest of it is still on its way. Unlike
+     * {@link #fetch(URL)}, this doesn't hedge the request to a second endpoint: once a handler
+     * has started on a body, there's no taking it back.
+     * <p>
+     * It does still choose the endpoint the way {@link HedgingTransport} does. Each attempt goes
+     * to whichever weather endpoint the selector says has been doing best lately, and how long it
+     * took, or that it failed, is recorded against that endpoint, so streamed requests and hedged
+     * ones learn from each other. An attempt that failed makes its endpoint look worse, so the
+     * retry that follows will usually go to the other one.
+     * <p>
+     * Failures are retried, and held against the circuit breaker, like any other request. A
+     * failed attempt runs the handler again from the start, so it must undo whatever it did with
+     * the body before failing.
+     *
+     * @param url     The URL to request
+     * @param handler What to do with the response
+     * @return Whatever the handler returned
+     * @throws HttpStatusException  If the server responded with an error status, even after
+     *                              retrying
+     * @throws CircuitOpenException If the server has been failing, and wasn't asked at all
+     * @throws IOException          Related to network and stream reading, or thrown by the
+     *                              handler
+     * @throws IllegalStateException If the current transport can't stream. See
+     *                               {@link #canStream()}.
+     */
+    public static <T> T stream(final URL url, final StreamHandler<T> handler)
+            throws IOException {
+        final StreamingTransport transport = sStreamingTransport;
+        if (transport == null) {
+            throw new IllegalStateException("The current transport can't stream");
+        }
+        final EndpointSelector selector = sHedgingTransport.getSelector();
+        return sTransport.execute(new RetryingTransport.Attempt<T>() {
+            @Override
+            public T run() throws IOException {
+                /* A URL that isn't for one of the weather endpoints is requested as it is */
+                if (selector.find(url) == null) {
+                    return streamOnce(transport, url, handler);
+                }
+
+                EndpointSelector.Endpoint endpoint = selector.getPrimary();
+                long startNanos = System.nanoTime();
+                try {
+                    T result = streamOnce(transport, selector.rewrite(url, endpoint), handler);
+
+                    /* Up to the last byte, like the hedged requests, and the handler with it */
+                    endpoint.recordSuccess(
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    return result;
+                } catch (HttpStatusException e) {
+                    /* As with hedged requests, only a server error counts against the endpoint */
+                    if (e.getStatusCode() >= 500) {
+                        endpoint.recordFailure();
+                    }
+                    throw e;
+                } catch (IOException e) {
+                    endpoint.recordFailure();
+                    throw e;
+                } catch (RuntimeException e) {
+                    endpoint.recordFailure();
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private static <T> T streamOnce(StreamingTransport transport, URL url,
+                                    StreamHandler<T> handler) throws IOException {
+        StreamingResponse response = transport.open(url);
+        try {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.getStatusCode(),
+                        "HTTP " + response.getStatusCode() + " from " + url);
             }
-            scanner.close();
-            return response;
+            return handler.handle(response);
         } finally {
-            urlConnection.disconnect();
+            /* Drops the connection, rather than reuse it, if the body wasn't read */
+            response.close();
+        }
+    }
+
+    /**
+     * This method returns the entire result from the HTTP response, decompressed.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return The contents of the HTTP response, null if no response
+     * @throws IOException Related to network and stream reading, or if the server responded
+     *                     with an error status
+     */
+    public static String getResponseFromHttpUrl(URL url) throws IOException {
+        HttpResponse response = fetch(url);
+        if (response.getWireLength() == 0) {
+            return null;
         }
+        return response.getBodyAsString();
     }
-}
\ No newline at end of file
+}
@@ -18,94 +18,143 @@ package com.example.android.sunshine.utilities;
 import android.content.ContentValues;
 import android.content.Context;
 
+import com.example.android.sunshine.core.DailyWeather;
+import com.example.android.sunshine.core.OwmForecastParser;
+import com.example.android.sunshine.core.OwmHourlyParser;
+import com.example.android.sunshine.core.ParsedForecast;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.List;
 
 /**
- * Utility functions to handle OpenWeatherMap JSON data.
+ * Utility functions to handle OpenWeatherMap JSON data. The parsing itself is done by
+ * {@link OwmForecastParser} in the core module, which knows nothing about Android. This class
+ * turns what it finds into the ContentValues and preferences the rest of the app uses, or hands
+ * the days straight on to a sink, such as a WeatherWriter, that writes them as they're parsed.
  */
 public final class OpenWeatherJsonUtils {
 
-    /* Location information */
-    private static final String OWM_CITY = "city";
-    private static final String OWM_COORD = "coord";
-
-    /* Location coordinate */
-    private static final String OWM_LATITUDE = "lat";
-    private static final String OWM_LONGITUDE = "lon";
-
-    /* Weather information. Each day's forecast info is an element of the "list" array */
-    private static final String OWM_LIST = "list";
-
-    private static final String OWM_PRESSURE = "pressure";
-    private static final String OWM_HUMIDITY = "humidity";
-    private static final String OWM_WINDSPEED = "speed";
-    private static final String OWM_WIND_DIRECTION = "deg";
-
-    /* All temperatures are children of the "temp" object */
-    private static final String OWM_TEMPERATURE = "temp";
-
-    /* Max temperature for the day */
-    private static final String OWM_MAX = "max";
-    private static final String OWM_MIN = "min";
-
-    private static final String OWM_WEATHER = "weather";
-    private static final String OWM_WEATHER_ID = "id";
-
-    private static final String OWM_MESSAGE_CODE = "cod";
+    /* OpenWeatherMap always sends its JSON as UTF-8 */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     /**
-     * This method parses JSON from a web response and returns an array of Strings
-     * describing the weather over various days from the forecast.
-     * <p/>
-     * Later on, we'll be parsing the JSON into structured data within the
-     * getFullWeatherDataFromJson function, leveraging the data we have stored in the JSON. For
-     * now, we just convert the JSON into human-readable strings.
+     * This method parses JSON from a web response and returns an array of ContentValues, one for
+     * each day of the forecast, ready to be inserted into the weather table.
      *
      * @param forecastJsonStr JSON response from server
      *
-     * @return Array of Strings describing weather data
+     * @return Array of ContentValues describing weather data, or null if the server reported
+     * an error
      *
-     * @throws JSONException If JSON data cannot be properly parsed
+     * @throws IOException If JSON data cannot be properly parsed
      */
     public static ContentValues[] getWeatherContentValuesFromJson(Context context, String forecastJsonStr)
-            throws JSONException {
-
-        JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-        /* Is there an error? */
-        if (forecastJson.has(OWM_MESSAGE_CODE)) {
-            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-            switch (errorCode) {
-                case HttpURLConnection.HTTP_OK:
-                    break;
-                case HttpURLConnection.HTTP_NOT_FOUND:
-                    /* Location invalid */
-                    return null;
-                default:
-                    /* Server probably down */
-                    return null;
-            }
-        }
+            throws IOException {
+        return getWeatherContentValuesFromJson(context, new StringReader(forecastJsonStr));
+    }
 
-        JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
+    /**
+     * Same as {@link #getWeatherContentValuesFromJson(Context, String)}, but parses the JSON
+     * straight from the stream it's downloaded or decompressed from, without ever holding all of
+     * it in memory as a String.
+     *
+     * @param forecastJson UTF-8 JSON response from server. It isn't closed.
+     *
+     * @return Array of ContentValues describing weather data, or null if the server reported
+     * an error
+     *
+     * @throws IOException If the stream can't be read, or JSON data cannot be properly parsed
+     */
+    public static ContentValues[] getWeatherContentValuesFromJson(Context context,
+                                                                  InputStream forecastJson)
+            throws IOException {
+        return getWeatherContentValuesFromJson(context,
+                new InputStreamReader(forecastJson, UTF_8));
+    }
 
-        JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
+    /**
+     * Parses JSON from a web response and passes each day of the forecast to a sink the moment
+     * it's been parsed, as plain values. Unlike
+     * {@link #getWeatherContentValuesFromJson(Context, InputStream)}, nothing is allocated per
+     * day, and nothing but the day being parsed is held in memory.
+     * <p>
+     * If the server reported an error, some days may already have been passed to the sink, so
+     * whatever the sink did with them should only be kept if this returns true.
+     *
+     * @param forecastJson UTF-8 JSON response from server. It isn't closed.
+     * @param days         Receives each day, in order
+     *
+     * @return true if the whole forecast was parsed, false if the server reported an error
+     *
+     * @throws IOException If the stream can't be read, or JSON data cannot be properly parsed
+     */
+    public static boolean parseForecast(Context context, InputStream forecastJson,
+                                        final OwmForecastParser.Sink days) throws IOException {
+        long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcDateForToday();
+        OwmForecastParser parser = new OwmForecastParser(normalizedUtcStartDay);
+
+        /* The location is only saved once we know the response wasn't an error */
+        final double[] location = new double[2];
+        final boolean[] hasLocation = new boolean[1];
+
+        int status = parser.parse(new InputStreamReader(forecastJson, UTF_8),
+                new OwmForecastParser.Sink() {
+                    @Override
+                    public void onLocation(double latitude, double longitude) {
+                        hasLocation[0] = true;
+                        location[0] = latitude;
+                        location[1] = longitude;
+                        days.onLocation(latitude, longitude);
+                    }
+
+                    @Override
+                    public void onDay(long date, int weatherId, double high, double low,
+                                      int humidity, double pressure, double windSpeed,
+                                      double windDirection) {
+                        days.onDay(date, weatherId, high, low, humidity,
+                                pressure, windSpeed, windDirection);
+                    }
+                });
+
+        if (status != HttpURLConnection.HTTP_OK) {
+            return false;
+        }
 
-        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-        double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-        double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+        if (hasLocation[0]) {
+            SunshinePreferences.setLocationDetails(context, location[0], location[1]);
+        }
+        return true;
+    }
 
-        SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
+    /**
+     * Parses the JSON of an hourly forecast and passes each entry to a sink the moment it's been
+     * parsed, the same way {@link #parseForecast(Context, InputStream, OwmForecastParser.Sink)}
+     * does for the daily forecast.
+     *
+     * @param hourlyJson UTF-8 JSON response from server. It isn't closed.
+     * @param hours      Receives each entry, in order
+     *
+     * @return true if the whole forecast was parsed, false if the server reported an error
+     *
+     * @throws IOException If the stream can't be read, or JSON data cannot be properly parsed
+     */
+    public static boolean parseHourlyForecast(InputStream hourlyJson, OwmHourlyParser.Sink hours)
+            throws IOException {
+        int status = new OwmHourlyParser().parse(new InputStreamReader(hourlyJson, UTF_8), hours);
+        return status == HttpURLConnection.HTTP_OK;
+    }
 
-        ContentValues[] weatherContentValues = new ContentValues[jsonWeatherArray.length()];
+    private static ContentValues[] getWeatherContentValuesFromJson(Context context,
+                                                                   Reader forecastJson)
+            throws IOException {
 
         /*
          * OWM returns daily forecasts based upon the local time of the city that is being asked
@@ -113,68 +162,48 @@ public final class OpenWeatherJsonUtils {
          * Since this data is also sent in-order and the first day is always the current day, we're
          * going to take advantage of that to get a nice normalized UTC date for all of our weather.
          */
-//        long now = System.currentTimeMillis();
-//        long normalizedUtcStartDay = SunshineDateUtils.normalizeDate(now);
-
         long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcDateForToday();
 
-        for (int i = 0; i < jsonWeatherArray.length(); i++) {
-
-            long dateTimeMillis;
-            double pressure;
-            int humidity;
-            double windSpeed;
-            double windDirection;
-
-            double high;
-            double low;
-
-            int weatherId;
-
-            /* Get the JSON object representing the day */
-            JSONObject dayForecast = jsonWeatherArray.getJSONObject(i);
-
-            /*
-             * We ignore all the datetime values embedded in the JSON and assume that
-             * the values are returned in-order by day (which is not guaranteed to be correct).
-             */
-            dateTimeMillis = normalizedUtcStartDay + SunshineDateUtils.DAY_IN_MILLIS * i;
-
-            pressure = dayForecast.getDouble(OWM_PRESSURE);
-            humidity = dayForecast.getInt(OWM_HUMIDITY);
-            windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-            windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-            /*
-             * Description is in a child array called "weather", which is 1 element long.
-             * That element also contains a weather code.
-             */
-            JSONObject weatherObject =
-                    dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-
-            weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-            /*
-             * Temperatures are sent by Open Weather Map in a child object called "temp".
-             *
-             * Editor's Note: Try not to name variables "temp" when working with temperature.
-             * It confuses everybody. Temp could easily mean any number of things, including
-             * temperature, temporary variable, temporary folder, temporary employee, or many
-             * others, and is just a bad variable name.
-             */
-            JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-            high = temperatureObject.getDouble(OWM_MAX);
-            low = temperatureObject.getDouble(OWM_MIN);
+        OwmForecastParser parser = new OwmForecastParser(normalizedUtcStartDay);
+        ParsedForecast forecast = new ParsedForecast();
+        int status = parser.parse(forecastJson, forecast);
+
+        /* Is there an error? Either the location is invalid or the server is probably down */
+        if (status != HttpURLConnection.HTTP_OK) {
+            return null;
+        }
+
+        if (forecast.hasLocation()) {
+            SunshinePreferences.setLocationDetails(context,
+                    forecast.getLatitude(), forecast.getLongitude());
+        }
+
+        return getWeatherContentValues(forecast.getDays());
+    }
+
+    /**
+     * Converts days of weather into ContentValues, one for each day, ready to be inserted into
+     * the weather table.
+     *
+     * @param days The days, as parsed or generated by the core module
+     *
+     * @return Array of ContentValues describing weather data
+     */
+    public static ContentValues[] getWeatherContentValues(List<DailyWeather> days) {
+        ContentValues[] weatherContentValues = new ContentValues[days.size()];
+
+        for (int i = 0; i < days.size(); i++) {
+            DailyWeather day = days.get(i);
 
             ContentValues weatherValues = new ContentValues();
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTimeMillis);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, day.getDate());
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, day.getHumidity());
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, day.getPressure());
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, day.getWindSpeed());
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, day.getWindDirection());
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, day.getHigh());
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, day.getLow());
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, day.getWeatherId());
 
             weatherContentValues[i] = weatherValues;
         }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+/**
+ * A process-wide cache of the weather art, already rasterized to the size it is displayed at.
+ * Sunshine only has a handful of weather drawables, but it draws them over and over again: in
+ * every row of the forecast list, on every detail page and in every notification. With this
+ * cache, each drawable is decoded once per size and the resulting Bitmap is shared.
+ * <p>
+ * The cache is bounded by the number of bytes its Bitmaps use, evicting the least recently used
+ * ones first, and it gives memory back when the system asks for it through onTrimMemory.
+ */
+public final class WeatherArtCache {
+
+    /* The fraction of the maximum heap that the cache may use */
+    private static final int HEAP_FRACTION = 32;
+
+    private static LruCache<String, Bitmap> sCache;
+
+    /* This class only has static methods and should never be instantiated */
+    private WeatherArtCache() {
+    }
+
+    /**
+     * Displays a piece of weather art in an ImageView, rasterized to the ImageView's size. The
+     * size is taken from the ImageView's layout parameters, so it should have a fixed width and
+     * height. If it doesn't, the art is rasterized at its intrinsic size.
+     *
+     * @param imageView The ImageView to display the art in
+     * @param resId     Resource ID of the weather art
+     */
+    public static void setWeatherArt(ImageView imageView, int resId) {
+        int width = 0;
+        int height = 0;
+
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (params != null) {
+            width = params.width;
+            height = params.height;
+        }
+
+        imageView.setImageBitmap(getBitmap(imageView.getContext(), resId, width, height));
+    }
+
+    /**
+     * Returns a piece of weather art rasterized to the given size, decoding it only if it isn't
+     * in the cache already.
+     *
+     * @param context Used to access resources
+     * @param resId   Resource ID of the weather art
+     * @param width   Width of the Bitmap in pixels, or 0 or less to use the intrinsic width
+     * @param height  Height of the Bitmap in pixels, or 0 or less to use the intrinsic height
+     * @return A Bitmap of the art at the requested size. It is shared, so don't modify it.
+     */
+    public static Bitmap getBitmap(Context context, int resId, int width, int height) {
+        LruCache<String, Bitmap> cache = getCache(context);
+
+        String key = resId + ":" + width + "x" + height;
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            /*
+             * Two threads could both miss and decode the same art at the same time. That costs
+             * one extra decode at worst, which is cheaper than holding a lock while decoding.
+             */
+            bitmap = decode(context, resId, width, height);
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private static synchronized LruCache<String, Bitmap> getCache(Context context) {
+        if (sCache == null) {
+            int maxBytes = (int) Math.min(Integer.MAX_VALUE,
+                    Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
+
+            sCache = new LruCache<String, Bitmap>(maxBytes) {
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return bitmap.getRowBytes() * bitmap.getHeight();
+                }
+            };
+
+            context.getApplicationContext().registerComponentCallbacks(new TrimCallbacks());
+        }
+        return sCache;
+    }
+
+    /**
+     * Decodes a piece of weather art at the requested size. Bitmap resources (the PNGs generated
+     * for older versions of Android) are subsampled while decoding, so we never allocate much
+     * more than the requested size. Vector drawables can't be decoded by BitmapFactory, so those
+     * are drawn into a Bitmap of the requested size instead.
+     */
+    private static Bitmap decode(Context context, int resId, int width, int height) {
+        Resources resources = context.getResources();
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resId, options);
+
+        if (options.outWidth > 0 && options.outHeight > 0) {
+            if (width <= 0) width = options.outWidth;
+            if (height <= 0) height = options.outHeight;
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = calculateInSampleSize(
+                    options.outWidth, options.outHeight, width, height);
+            Bitmap decoded = BitmapFactory.decodeResource(resources, resId, options);
+
+            if (decoded.getWidth() == width && decoded.getHeight() == height) {
+                return decoded;
+            }
+            Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+            if (scaled != decoded) {
+                decoded.recycle();
+            }
+            return scaled;
+        }
+
+        Drawable drawable = ContextCompat.getDrawable(context, resId);
+        if (width <= 0) width = drawable.getIntrinsicWidth();
+        if (height <= 0) height = drawable.getIntrinsicHeight();
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    /**
+     * Returns the largest power of two that subsamples the source while keeping both of its
+     * dimensions at least as large as the requested ones.
+     */
+    private static int calculateInSampleSize(int sourceWidth, int sourceHeight,
+                                             int requestedWidth, int requestedHeight) {
+        int inSampleSize = 1;
+        while (sourceWidth / (inSampleSize * 2) >= requestedWidth
+                && sourceHeight / (inSampleSize * 2) >= requestedHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Shrinks the cache when the system is low on memory. The art is cheap to decode again, so
+     * we halve the cache as soon as memory runs low, and drop all of it once Sunshine is in the
+     * background and the system needs memory back.
+     */
+    private static class TrimCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(int level) {
+            LruCache<String, Bitmap> cache = sCache;
+            if (level >= TRIM_MEMORY_MODERATE) {
+                cache.evictAll();
+            } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                cache.trimToSize(cache.maxSize() / 2);
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            sCache.evictAll();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link AdaptiveSyncPolicy} on the JVM. Time only moves when a test moves the fake clock.
+ */
+public class AdaptiveSyncPolicyTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toSeconds(1);
+
+    private static final long MIN = HOUR;
+    private static final long MAX = 12 * HOUR;
+    private static final long INITIAL = 3 * HOUR;
+
+    private static final int FORECAST_A = 1;
+    private static final int FORECAST_B = 2;
+
+    /* A clock that starts at an arbitrary time and only moves when told to */
+    private static class FakeClock implements AdaptiveSyncPolicy.Clock {
+        long mNowMillis = 1_000_000L;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+
+        void advanceSeconds(long seconds) {
+            mNowMillis += seconds * 1000;
+        }
+    }
+
+    private FakeClock mClock;
+    private AdaptiveSyncPolicy mPolicy;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mPolicy = new AdaptiveSyncPolicy(mClock, MIN, MAX, INITIAL);
+    }
+
+    @Test
+    public void firstForecastKeepsTheInitialInterval() {
+        assertFalse(mPolicy.onForecastSynced(FORECAST_A));
+        assertEquals(INITIAL, mPolicy.getIntervalSeconds());
+        assertEquals(INITIAL / 3, mPolicy.getFlexSeconds());
+    }
+
+    @Test
+    public void unchangedForecastsLengthenTheIntervalUpToTheMaximum() {
+        mPolicy.onForecastSynced(FORECAST_A);
+
+        assertTrue(mPolicy.onForecastSynced(FORECAST_A));
+        assertEquals(6 * HOUR, mPolicy.getIntervalSeconds());
+
+        assertTrue(mPolicy.onForecastSynced(FORECAST_A));
+        assertEquals(MAX, mPolicy.getIntervalSeconds());
+
+        /* Already at the maximum, so nothing changes and nothing needs rescheduling */
+        assertFalse(mPolicy.onForecastSynced(FORECAST_A));
+        assertEquals(MAX, mPolicy.getIntervalSeconds());
+    }
+
+    @Test
+    public void changedForecastsShortenTheIntervalDownToTheMinimum() {
+        mPolicy.onForecastSynced(FORECAST_A);
+
+        assertTrue(mPolicy.onForecastSynced(FORECAST_B));
+        assertEquals(INITIAL / 2, mPolicy.getIntervalSeconds());
+
+        assertTrue(mPolicy.onForecastSynced(FORECAST_A));
+        assertEquals(MIN, mPolicy.getIntervalSeconds());
+
+        assertFalse(mPolicy.onForecastSynced(FORECAST_B));
+        assertEquals(MIN, mPolicy.getIntervalSeconds());
+    }
+
+    @Test
+    public void syncIsDueOnceAFullIntervalHasPassed() {
+        assertTrue("A sync is always due before the first one", mPolicy.isSyncDue());
+
+        mPolicy.onForecastSynced(FORECAST_A);
+        assertFalse(mPolicy.isSyncDue());
+
+        mClock.advanceSeconds(INITIAL - 1);
+        assertFalse(mPolicy.isSyncDue());
+
+        mClock.advanceSeconds(1);
+        assertTrue(mPolicy.isSyncDue());
+    }
+
+    @Test
+    public void lengthenedIntervalPostponesTheNextDueSync() {
+        mPolicy.onForecastSynced(FORECAST_A);
+        mClock.advanceSeconds(INITIAL);
+        mPolicy.onForecastSynced(FORECAST_A);
+
+        /* The interval doubled, so the old interval is no longer enough */
+        mClock.advanceSeconds(INITIAL);
+        assertFalse(mPolicy.isSyncDue());
+
+        mClock.advanceSeconds(INITIAL);
+        assertTrue(mPolicy.isSyncDue());
+    }
+
+    @Test
+    public void restoredStateIsClampedAndRemembersTheForecast() {
+        mPolicy.restore(100 * HOUR, mClock.currentTimeMillis(), true, FORECAST_A);
+        assertEquals(MAX, mPolicy.getIntervalSeconds());
+        assertFalse(mPolicy.isSyncDue());
+
+        assertTrue(mPolicy.onForecastSynced(FORECAST_B));
+        assertEquals(MAX / 2, mPolicy.getIntervalSeconds());
+        assertEquals(FORECAST_B, mPolicy.getForecastHash());
+        assertEquals(mClock.currentTimeMillis(), mPolicy.getLastSyncTimeMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBoundsAreRejected() {
+        new AdaptiveSyncPolicy(mClock, MAX, MIN, INITIAL);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link LocalSyncScheduler} on the JVM, on its own and driving an
+ * {@link AdaptiveSyncPolicy} through a few simulated days.
+ */
+public class LocalSyncSchedulerTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toSeconds(1);
+
+    /* A clock that only moves when told to */
+    private static class FakeClock implements AdaptiveSyncPolicy.Clock {
+        long mNowMillis;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+
+        void advanceSeconds(long seconds) {
+            mNowMillis += seconds * 1000;
+        }
+    }
+
+    private FakeClock mClock;
+    private int mRuns;
+    private LocalSyncScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mRuns = 0;
+        mScheduler = new LocalSyncScheduler(mClock, new Runnable() {
+            @Override
+            public void run() {
+                mRuns++;
+            }
+        });
+    }
+
+    @Test
+    public void nothingRunsUntilScheduled() {
+        mClock.advanceSeconds(100 * HOUR);
+        assertFalse(mScheduler.runDueSyncs());
+        assertEquals(0, mRuns);
+    }
+
+    @Test
+    public void syncRunsOncePerIntervalAfterTheLastRun() {
+        mScheduler.schedulePeriodicSync(3 * HOUR, HOUR);
+
+        mClock.advanceSeconds(3 * HOUR - 1);
+        assertFalse(mScheduler.runDueSyncs());
+
+        mClock.advanceSeconds(1);
+        assertTrue(mScheduler.runDueSyncs());
+        assertFalse("A sync must only run once when it is due", mScheduler.runDueSyncs());
+
+        /* Running late pushes the next sync back by the same amount */
+        mClock.advanceSeconds(4 * HOUR);
+        assertTrue(mScheduler.runDueSyncs());
+        assertEquals(mClock.currentTimeMillis() + 3 * HOUR * 1000,
+                mScheduler.getNextSyncTimeMillis());
+
+        assertEquals(2, mRuns);
+        assertEquals(2, mScheduler.getSyncCount());
+    }
+
+    @Test
+    public void cancelledSyncNeverRuns() {
+        mScheduler.schedulePeriodicSync(HOUR, 0);
+        mScheduler.cancelPeriodicSync();
+
+        mClock.advanceSeconds(10 * HOUR);
+        assertFalse(mScheduler.runDueSyncs());
+        assertFalse(mScheduler.isScheduled());
+        assertEquals(0, mRuns);
+    }
+
+    /**
+     * Simulates three days of syncing a forecast that never changes, checking the policy stretches
+     * the interval from 3 to 6 to 12 hours, and the scheduler follows it.
+     */
+    @Test
+    public void unchangingForecastIsSyncedLessAndLessOften() {
+        final AdaptiveSyncPolicy policy = new AdaptiveSyncPolicy(mClock, HOUR, 12 * HOUR, 3 * HOUR);
+        final LocalSyncScheduler[] scheduler = new LocalSyncScheduler[1];
+        scheduler[0] = new LocalSyncScheduler(mClock, new Runnable() {
+            @Override
+            public void run() {
+                if (policy.onForecastSynced(42)) {
+                    scheduler[0].schedulePeriodicSync(
+                            policy.getIntervalSeconds(), policy.getFlexSeconds());
+                }
+            }
+        });
+        scheduler[0].schedulePeriodicSync(policy.getIntervalSeconds(), policy.getFlexSeconds());
+
+        /* Check every quarter of an hour, for three days */
+        for (int quarter = 0; quarter < 3 * 24 * 4; quarter++) {
+            mClock.advanceSeconds(HOUR / 4);
+            scheduler[0].runDueSyncs();
+        }
+
+        /* Syncs at 3, 6, 12, 24, 36, 48, 60 and 72 hours */
+        assertEquals(8, scheduler[0].getSyncCount());
+        assertEquals(12 * HOUR, policy.getIntervalSeconds());
+    }
+}
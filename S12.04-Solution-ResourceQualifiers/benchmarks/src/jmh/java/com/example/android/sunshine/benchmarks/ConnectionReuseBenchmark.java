@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.net.HttpResponse;
+import com.example.android.sunshine.core.net.HttpTransport;
+import com.example.android.sunshine.core.net.NetworkConditions;
+import com.example.android.sunshine.core.net.ResponseRecordings;
+import com.example.android.sunshine.core.net.StandInServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the forecasts of ten locations back to back from a {@link StandInServer} on localhost,
+ * where every new connection costs 100ms, about what the round trips of a TLS handshake take on
+ * a mobile network.
+ * <p>
+ * With keepAlive, the requests go through UrlConnectionTransport, which reuses one connection
+ * and pays for connecting once. Without it, they go through a client that asks for a new
+ * connection every time, which is what the sync did before it kept connections alive.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ConnectionReuseBenchmark {
+
+    private static final long CONNECT_LATENCY_MILLIS = 100;
+    private static final long LATENCY_MILLIS = 20;
+
+    private static final int LOCATIONS = 10;
+
+    @Param({"true", "false"})
+    public boolean keepAlive;
+
+    private final URL[] mUrls = new URL[LOCATIONS];
+
+    private StandInServer mServer;
+    private HttpTransport mTransport;
+
+    @Setup
+    public void setUp() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        if (!directory.delete()) {
+            throw new IOException("Couldn't replace " + directory + " with a directory");
+        }
+        directory.deleteOnExit();
+
+        ResponseRecordings recordings = new ResponseRecordings(directory);
+        Random random = new Random(42);
+        for (int i = 0; i < LOCATIONS; i++) {
+            mUrls[i] = new URL("https://andfun-weather.udacity.com/staticweather?q=" + i);
+            byte[] body = new byte[2000];
+            random.nextBytes(body);
+            recordings.save(ResponseRecordings.keyFor(mUrls[i]), new HttpResponse(200, body));
+        }
+
+        mServer = new StandInServer(recordings, new NetworkConditions.Builder()
+                .setConnectLatencyMillis(CONNECT_LATENCY_MILLIS)
+                .setLatencyMillis(LATENCY_MILLIS)
+                .build());
+        mServer.start();
+        mTransport = keepAlive ? mServer.transport() : mServer.transport(new HttpTransport() {
+            @Override
+            public HttpResponse get(URL url) throws IOException {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestProperty("Connection", "close");
+                try {
+                    return new HttpResponse(connection.getResponseCode(),
+                            readFully(connection.getInputStream()));
+                } finally {
+                    connection.disconnect();
+                }
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public int fetchAll() throws IOException {
+        int successes = 0;
+        for (URL url : mUrls) {
+            if (mTransport.get(url).isSuccessful()) {
+                successes++;
+            }
+        }
+        return successes;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.OwmForecastParser;
+import com.example.android.sunshine.core.ParsedForecast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses forecasts of 14 days (what Sunshine asks for), a year and 10,000 days. The streaming
+ * benchmark is the cost of the parser itself; the records benchmark adds building a DailyWeather
+ * for every day, which is what OpenWeatherJsonUtils does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ForecastParserBenchmark {
+
+    @Param({"14", "365", "10000"})
+    public int days;
+
+    private String mJson;
+
+    /* Hands every value to the Blackhole so none of the parsing can be optimized away */
+    private static final class BlackholeSink implements OwmForecastParser.Sink {
+        private final Blackhole mBlackhole;
+
+        BlackholeSink(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void onLocation(double latitude, double longitude) {
+            mBlackhole.consume(latitude);
+            mBlackhole.consume(longitude);
+        }
+
+        @Override
+        public void onDay(long date, int weatherId, double high, double low, int humidity,
+                          double pressure, double windSpeed, double windDirection) {
+            mBlackhole.consume(date);
+            mBlackhole.consume(weatherId);
+            mBlackhole.consume(high);
+            mBlackhole.consume(low);
+            mBlackhole.consume(humidity);
+            mBlackhole.consume(pressure);
+            mBlackhole.consume(windSpeed);
+            mBlackhole.consume(windDirection);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mJson = ForecastPayloads.forecast(days);
+    }
+
+    @Benchmark
+    public int parseStreaming(Blackhole blackhole) throws IOException {
+        return new OwmForecastParser(ForecastPayloads.START_DAY)
+                .parse(new StringReader(mJson), new BlackholeSink(blackhole));
+    }
+
+    @Benchmark
+    public ParsedForecast parseToRecords() throws IOException {
+        ParsedForecast forecast = new ParsedForecast();
+        new OwmForecastParser(ForecastPayloads.START_DAY).parse(new StringReader(mJson), forecast);
+        return forecast;
+    }
+}
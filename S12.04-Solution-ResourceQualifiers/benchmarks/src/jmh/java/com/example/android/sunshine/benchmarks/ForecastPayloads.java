@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.DailyWeather;
+import com.example.android.sunshine.core.SyntheticWeather;
+
+import java.util.List;
+
+/**
+ * Builds OpenWeatherMap daily forecast responses of any length for the benchmarks. They come from
+ * {@link SyntheticWeather} with a fixed seed, so every run parses exactly the same bytes, and the
+ * responses include the fields Sunshine ignores, since skipping them is part of the cost.
+ */
+final class ForecastPayloads {
+
+    /* September 20th, 2016 at midnight GMT */
+    static final long START_DAY = 1474329600000L;
+
+    private static final long SEED = 42;
+
+    /* This class only has static methods and should never be instantiated */
+    private ForecastPayloads() {
+    }
+
+    static String forecast(int days) {
+        SyntheticWeather generator = new SyntheticWeather(SEED);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        List<DailyWeather> forecast = generator.generateForecast(location, START_DAY, days);
+        return SyntheticWeather.toOwmJson(location, forecast);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.net.BodyInputStream;
+import com.example.android.sunshine.core.net.HttpResponse;
+import com.example.android.sunshine.core.net.HttpTransport;
+import com.example.android.sunshine.core.net.NetworkConditions;
+import com.example.android.sunshine.core.net.ResponseRecordings;
+import com.example.android.sunshine.core.net.StandInServer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a forecast of 14 days and of a year from a {@link StandInServer} on localhost, over a
+ * link about as fast as a 3G connection, and decompresses it the way a sync does.
+ * <p>
+ * Besides the downloads per second, the benchmark reports how many bytes per second crossed the
+ * network (wireBytes) and how many bytes of JSON they decoded to (decodedBytes). The server
+ * gzips the forecast, so the difference between the two is the bandwidth gzip saves.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class GzipDownloadBenchmark {
+
+    private static final long BYTES_PER_SECOND = 200000;
+
+    @Param({"14", "365"})
+    public int days;
+
+    private final byte[] mBuffer = new byte[8192];
+
+    private StandInServer mServer;
+    private HttpTransport mTransport;
+    private URL mUrl;
+
+    /* Counted for every download, and reported per second like the downloads themselves */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long wireBytes;
+        public long decodedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            wireBytes = 0;
+            decodedBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        if (!directory.delete()) {
+            throw new IOException("Couldn't replace " + directory + " with a directory");
+        }
+        directory.deleteOnExit();
+
+        ResponseRecordings recordings = new ResponseRecordings(directory);
+        mUrl = new URL("https://andfun-weather.udacity.com/staticweather?q=94043&cnt=" + days);
+        recordings.save(ResponseRecordings.keyFor(mUrl), new HttpResponse(200,
+                ForecastPayloads.forecast(days).getBytes("UTF-8")));
+
+        mServer = new StandInServer(recordings, new NetworkConditions.Builder()
+                .setBytesPerSecond(BYTES_PER_SECOND)
+                .build());
+        mServer.start();
+        mTransport = mServer.transport();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    @Benchmark
+    public long download(Bytes bytes) throws IOException {
+        HttpResponse response = mTransport.get(mUrl);
+        BodyInputStream body = response.openBody();
+        long decoded = 0;
+        try {
+            int count;
+            while ((count = body.read(mBuffer)) != -1) {
+                decoded += count;
+            }
+        } finally {
+            body.close();
+        }
+
+        bytes.wireBytes += response.getWireLength();
+        bytes.decodedBytes += decoded;
+        return decoded;
+    }
+}
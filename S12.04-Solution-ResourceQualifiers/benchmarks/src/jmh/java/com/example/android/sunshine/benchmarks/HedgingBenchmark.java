@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.net.EndpointSelector;
+import com.example.android.sunshine.core.net.HedgingTransport;
+import com.example.android.sunshine.core.net.HttpResponse;
+import com.example.android.sunshine.core.net.HttpTransport;
+import com.example.android.sunshine.core.net.NetworkConditions;
+import com.example.android.sunshine.core.net.ResponseRecordings;
+import com.example.android.sunshine.core.net.StandInServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches a forecast from a {@link StandInServer} on localhost that serves both weather endpoints.
+ * It's mostly fast, but one request in 30 stalls for 300ms, which is what the tail of a real
+ * server's latency tends to look like.
+ * <p>
+ * The benchmark samples the latency of every request, so JMH reports its percentiles. Without
+ * hedging, the p99 is the stall. With it, a stalled request is answered by the other endpoint,
+ * and the p99 drops to a small part of that.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class HedgingBenchmark {
+
+    private static final String HOST = "https://andfun-weather.udacity.com";
+    private static final String QUERY = "?q=94043&mode=json&units=metric&cnt=14";
+
+    /* Used until the primary endpoint has enough latencies for a p95 */
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 50;
+
+    @Param({"false", "true"})
+    public boolean hedged;
+
+    private StandInServer mServer;
+    private HttpTransport mTransport;
+    private URL mUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        if (!directory.delete()) {
+            throw new IOException("Couldn't replace " + directory + " with a directory");
+        }
+        directory.deleteOnExit();
+
+        ResponseRecordings recordings = new ResponseRecordings(directory);
+        EndpointSelector selector =
+                new EndpointSelector(HOST + "/staticweather", HOST + "/weather");
+        for (EndpointSelector.Endpoint endpoint : selector.getEndpoints()) {
+            recordings.save(ResponseRecordings.keyFor(new URL(endpoint.getBaseUrl() + QUERY)),
+                    new HttpResponse(200, "{}".getBytes("UTF-8")));
+        }
+        mUrl = new URL(HOST + "/staticweather" + QUERY);
+
+        mServer = new StandInServer(recordings, new NetworkConditions.Builder()
+                .setLatencyMillis(5)
+                .setLatencySpikes(1.0 / 30, 300)
+                .build());
+        mServer.start();
+        mTransport = hedged
+                ? new HedgingTransport(mServer.transport(), selector, DEFAULT_HEDGE_DELAY_MILLIS)
+                : mServer.transport();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    @Benchmark
+    public HttpResponse get() throws IOException {
+        return mTransport.get(mUrl);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.WeatherDates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date math that runs for every row Sunshine binds or inserts.
+ * <p>
+ * The friendly date benchmark follows the path SunshineDateUtils.getFriendlyDateString takes for
+ * a day later this week: find local midnight, compare whole days since the epoch with today, and
+ * format the name of the day with a new SimpleDateFormat. The rest of that method goes through
+ * android.text.format.DateUtils and string resources, which only exist on a device.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class WeatherDatesBenchmark {
+
+    /* September 20th, 2016 at 6:30 PM in California */
+    private static final long NOW = 1474421400000L;
+
+    private TimeZone mTimeZone;
+
+    /* Moves through the coming week, so no result can be constant folded */
+    private long mDate;
+
+    @Setup
+    public void setUp() {
+        mTimeZone = TimeZone.getTimeZone("America/Los_Angeles");
+        mDate = WeatherDates.normalizeDate(NOW);
+    }
+
+    private long nextDate() {
+        mDate += WeatherDates.DAY_IN_MILLIS;
+        if (mDate > NOW + 6 * WeatherDates.DAY_IN_MILLIS) {
+            mDate = WeatherDates.normalizeDate(NOW);
+        }
+        return mDate;
+    }
+
+    @Benchmark
+    public long normalizedDateForToday() {
+        return WeatherDates.getNormalizedUtcDateForToday(nextDate() + 1234, mTimeZone);
+    }
+
+    @Benchmark
+    public long normalizeDate() {
+        return WeatherDates.normalizeDate(nextDate() + 1234);
+    }
+
+    @Benchmark
+    public String friendlyDayName() {
+        long localDate = WeatherDates.getLocalMidnightFromNormalizedUtcDate(nextDate(), mTimeZone);
+
+        long daysFromEpochToProvidedDate = WeatherDates.elapsedDaysSinceEpoch(localDate);
+        long daysFromEpochToToday = WeatherDates.elapsedDaysSinceEpoch(NOW);
+
+        if (daysFromEpochToProvidedDate < daysFromEpochToToday + 7) {
+            return new SimpleDateFormat("EEEE").format(localDate);
+        }
+        return null;
+    }
+}
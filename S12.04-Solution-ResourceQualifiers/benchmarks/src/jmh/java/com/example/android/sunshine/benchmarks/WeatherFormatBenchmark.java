@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.WeatherCondition;
+import com.example.android.sunshine.core.WeatherFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Condition lookup and formatting, which run several times for every forecast row that's bound.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class WeatherFormatBenchmark {
+
+    /* The same format as R.string.format_temperature, without the xliff markup */
+    private static final String FORMAT_TEMPERATURE = "%1.0f°";
+
+    /* A power of two, so the index can wrap with a mask */
+    private static final int SAMPLES = 1024;
+
+    private final int[] mWeatherIds = new int[SAMPLES];
+    private final double[] mTemperatures = new double[SAMPLES];
+    private final float[] mDegrees = new float[SAMPLES];
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        /* Every ID OpenWeatherMap documents, plus a few it doesn't */
+        int[] ids = {200, 211, 232, 300, 321, 500, 504, 511, 520, 531, 600, 622, 701, 741, 761,
+                771, 781, 800, 801, 802, 804, 900, 906, 951, 957, 962, 199, 999};
+
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            mWeatherIds[i] = ids[random.nextInt(ids.length)];
+            mTemperatures[i] = random.nextDouble() * 50 - 15;
+            mDegrees[i] = random.nextFloat() * 360;
+        }
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) & (SAMPLES - 1);
+        return mIndex;
+    }
+
+    @Benchmark
+    public WeatherCondition conditionLookup() {
+        return WeatherCondition.forWeatherId(mWeatherIds[next()]);
+    }
+
+    @Benchmark
+    public String formatTemperatureMetric() {
+        double temperature = WeatherFormat.toPreferredTemperature(mTemperatures[next()], true);
+        return String.format(FORMAT_TEMPERATURE, temperature);
+    }
+
+    @Benchmark
+    public String formatTemperatureImperial() {
+        double temperature = WeatherFormat.toPreferredTemperature(mTemperatures[next()], false);
+        return String.format(FORMAT_TEMPERATURE, temperature);
+    }
+
+    @Benchmark
+    public String compassDirection() {
+        return WeatherFormat.getCompassDirection(mDegrees[next()]);
+    }
+}
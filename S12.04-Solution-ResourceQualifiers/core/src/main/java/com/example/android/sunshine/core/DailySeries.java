@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Arrays;
+
+/**
+ * A run of days of weather, in date order, kept as one array per field rather than as one
+ * {@link DailyWeather} per day. That is the shape {@link DailySeriesCodec} encodes and decodes,
+ * and reading a field of a day out of it costs an array access, with nothing allocated.
+ * <p>
+ * Days are added in date order, at most one per date. The fields and their units are the same
+ * as those of DailyWeather.
+ */
+public final class DailySeries {
+
+    private static final int DEFAULT_CAPACITY = 31;
+
+    private int mSize;
+    private long[] mDates;
+    private int[] mWeatherIds;
+    private double[] mHighs;
+    private double[] mLows;
+    private int[] mHumidities;
+    private double[] mPressures;
+    private double[] mWindSpeeds;
+    private double[] mWindDirections;
+
+    public DailySeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of days the series can hold before it has to grow
+     */
+    public DailySeries(int capacity) {
+        mDates = new long[capacity];
+        mWeatherIds = new int[capacity];
+        mHighs = new double[capacity];
+        mLows = new double[capacity];
+        mHumidities = new int[capacity];
+        mPressures = new double[capacity];
+        mWindSpeeds = new double[capacity];
+        mWindDirections = new double[capacity];
+    }
+
+    /**
+     * Adds a day after the last one.
+     *
+     * @throws IllegalArgumentException If the date isn't after the date of the last day
+     */
+    public void add(long date, int weatherId, double high, double low, int humidity,
+                    double pressure, double windSpeed, double windDirection) {
+        if (mSize > 0 && date <= mDates[mSize - 1]) {
+            throw new IllegalArgumentException("Days must be added in date order, but " + date
+                    + " came after " + mDates[mSize - 1]);
+        }
+        if (mSize == mDates.length) {
+            grow();
+        }
+        mDates[mSize] = date;
+        mWeatherIds[mSize] = weatherId;
+        mHighs[mSize] = high;
+        mLows[mSize] = low;
+        mHumidities[mSize] = humidity;
+        mPressures[mSize] = pressure;
+        mWindSpeeds[mSize] = windSpeed;
+        mWindDirections[mSize] = windDirection;
+        mSize++;
+    }
+
+    /**
+     * Adds day i of another series after the last one.
+     */
+    public void add(DailySeries other, int i) {
+        add(other.mDates[i], other.mWeatherIds[i], other.mHighs[i], other.mLows[i],
+                other.mHumidities[i], other.mPressures[i], other.mWindSpeeds[i],
+                other.mWindDirections[i]);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getDate(int i) {
+        return mDates[i];
+    }
+
+    public int getWeatherId(int i) {
+        return mWeatherIds[i];
+    }
+
+    public double getHigh(int i) {
+        return mHighs[i];
+    }
+
+    public double getLow(int i) {
+        return mLows[i];
+    }
+
+    public int getHumidity(int i) {
+        return mHumidities[i];
+    }
+
+    public double getPressure(int i) {
+        return mPressures[i];
+    }
+
+    public double getWindSpeed(int i) {
+        return mWindSpeeds[i];
+    }
+
+    public double getWindDirection(int i) {
+        return mWindDirections[i];
+    }
+
+    /**
+     * @return The days from startDate, included, to endDate, not included. This series is
+     * returned as it is if all of its days are in the range.
+     */
+    public DailySeries slice(long startDate, long endDate) {
+        int from = indexOf(startDate);
+        int to = indexOf(endDate);
+        if (from == 0 && to == mSize) {
+            return this;
+        }
+        DailySeries slice = new DailySeries(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            slice.add(this, i);
+        }
+        return slice;
+    }
+
+    /**
+     * Combines two series into one, in date order. Where both have a day with the same date, the
+     * one from newer is kept.
+     *
+     * @param older The series whose days give way on equal dates
+     * @param newer The series whose days win on equal dates
+     * @return A new series with every date of both
+     */
+    public static DailySeries merge(DailySeries older, DailySeries newer) {
+        DailySeries merged = new DailySeries(older.mSize + newer.mSize);
+        int i = 0;
+        int j = 0;
+        while (i < older.mSize || j < newer.mSize) {
+            if (j == newer.mSize
+                    || (i < older.mSize && older.mDates[i] < newer.mDates[j])) {
+                merged.add(older, i++);
+            } else {
+                if (i < older.mSize && older.mDates[i] == newer.mDates[j]) {
+                    i++;
+                }
+                merged.add(newer, j++);
+            }
+        }
+        return merged;
+    }
+
+    /* The index of the first day on or after the date, which is size() if there is none */
+    private int indexOf(long date) {
+        int index = Arrays.binarySearch(mDates, 0, mSize, date);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void grow() {
+        int capacity = Math.max(DEFAULT_CAPACITY, mDates.length * 2);
+        mDates = Arrays.copyOf(mDates, capacity);
+        mWeatherIds = Arrays.copyOf(mWeatherIds, capacity);
+        mHighs = Arrays.copyOf(mHighs, capacity);
+        mLows = Arrays.copyOf(mLows, capacity);
+        mHumidities = Arrays.copyOf(mHumidities, capacity);
+        mPressures = Arrays.copyOf(mPressures, capacity);
+        mWindSpeeds = Arrays.copyOf(mWindSpeeds, capacity);
+        mWindDirections = Arrays.copyOf(mWindDirections, capacity);
+    }
+}
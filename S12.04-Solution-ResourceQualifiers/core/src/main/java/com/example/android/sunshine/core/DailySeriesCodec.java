@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Packs a {@link DailySeries}, typically a month of one location, into a compact blob, and
+ * unpacks it again. Stored as a row of the archive table, a day costs SQLite upwards of 60
+ * bytes, plus its entries in the indexes. Packed, a month of ordinary weather costs around a
+ * dozen bytes a day, because consecutive days of weather are so much alike:
+ * <p>
+ *   - Every field is stored as a scaled integer: temperatures, pressure and wind speed in
+ *     hundredths, humidity in whole percent and wind direction in whole degrees. That's exactly
+ *     the precision OpenWeatherMap sends, so nothing it sent is lost.
+ * <p>
+ *   - Each field is stored one column after another, and each value as the difference from the
+ *     same field the day before. The first day's value is stored as a difference from zero.
+ * <p>
+ *   - Each difference is zigzag encoded, so small negative numbers become small positive ones,
+ *     and then written as a varint: seven bits a byte, with the top bit set on every byte but
+ *     the last. A pressure that changed by 1.27 hPa takes two bytes, not eight.
+ * <p>
+ * Dates are stored as a day number followed by the gap to each next day, which is almost always
+ * a single byte of 1. The first byte of a blob is the format version, so that the format can
+ * change without misreading blobs written before.
+ */
+public final class DailySeriesCodec {
+
+    /* The version of the format written by encode, and the only one decode reads */
+    public static final int VERSION = 1;
+
+    /* The number each field is multiplied by before it's rounded to an integer */
+    private static final double TEMPERATURE_SCALE = 100;
+    private static final double PRESSURE_SCALE = 100;
+    private static final double WIND_SPEED_SCALE = 100;
+    private static final double WIND_DIRECTION_SCALE = 1;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /* This class only has static methods and should never be instantiated */
+    private DailySeriesCodec() {
+    }
+
+    /**
+     * @param series The days to pack. Their dates must be normalized.
+     * @return The packed days
+     */
+    public static byte[] encode(DailySeries series) {
+        int size = series.size();
+
+        /* Most values take one or two bytes, so this rarely has to grow */
+        Output out = new Output(16 + size * 16);
+        out.writeByte(VERSION);
+        out.writeVarint(size);
+        if (size == 0) {
+            return out.toByteArray();
+        }
+
+        long previousDay = 0;
+        for (int i = 0; i < size; i++) {
+            long day = WeatherDates.elapsedDaysSinceEpoch(series.getDate(i));
+            if (i == 0) {
+                out.writeSignedVarint(day);
+            } else {
+                out.writeVarint(day - previousDay);
+            }
+            previousDay = day;
+        }
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous = out.writeDelta(series.getWeatherId(i), previous);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous = out.writeDelta(scale(series.getHigh(i), TEMPERATURE_SCALE), previous);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous = out.writeDelta(scale(series.getLow(i), TEMPERATURE_SCALE), previous);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous = out.writeDelta(series.getHumidity(i), previous);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous = out.writeDelta(scale(series.getPressure(i), PRESSURE_SCALE), previous);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous = out.writeDelta(scale(series.getWindSpeed(i), WIND_SPEED_SCALE), previous);
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous = out.writeDelta(
+                    scale(series.getWindDirection(i), WIND_DIRECTION_SCALE), previous);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param blob Days packed by {@link #encode(DailySeries)}
+     * @return The days, with every field at the precision it was packed with
+     * @throws IllegalArgumentException If the blob isn't in a format this version can read, or
+     *                                  is cut short
+     */
+    public static DailySeries decode(byte[] blob) {
+        Input in = new Input(blob);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown packed weather version " + version);
+        }
+        int size = (int) in.readVarint();
+
+        long[] dates = new long[size];
+        long day = 0;
+        for (int i = 0; i < size; i++) {
+            day = i == 0 ? in.readSignedVarint() : day + in.readVarint();
+            dates[i] = day * WeatherDates.DAY_IN_MILLIS;
+        }
+
+        /* The columns follow one another, in the order encode wrote them */
+        long[] weatherIds = in.readDeltas(size);
+        long[] highs = in.readDeltas(size);
+        long[] lows = in.readDeltas(size);
+        long[] humidities = in.readDeltas(size);
+        long[] pressures = in.readDeltas(size);
+        long[] windSpeeds = in.readDeltas(size);
+        long[] windDirections = in.readDeltas(size);
+
+        DailySeries series = new DailySeries(size);
+        for (int i = 0; i < size; i++) {
+            series.add(dates[i],
+                    (int) weatherIds[i],
+                    highs[i] / TEMPERATURE_SCALE,
+                    lows[i] / TEMPERATURE_SCALE,
+                    (int) humidities[i],
+                    pressures[i] / PRESSURE_SCALE,
+                    windSpeeds[i] / WIND_SPEED_SCALE,
+                    windDirections[i] / WIND_DIRECTION_SCALE);
+        }
+        return series;
+    }
+
+    /**
+     * @param normalizedDate A normalized UTC date
+     * @return The normalized date of the first day of its month, in UTC. This is what blobs are
+     * keyed by.
+     */
+    public static long getMonthStart(long normalizedDate) {
+        Calendar calendar = Calendar.getInstance(UTC, Locale.US);
+        calendar.setTimeInMillis(WeatherDates.normalizeDate(normalizedDate));
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @param normalizedDate A normalized UTC date
+     * @return The normalized date of the first day of the following month, in UTC
+     */
+    public static long getNextMonthStart(long normalizedDate) {
+        Calendar calendar = Calendar.getInstance(UTC, Locale.US);
+        calendar.setTimeInMillis(getMonthStart(normalizedDate));
+        calendar.add(Calendar.MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long scale(double value, double scale) {
+        return Math.round(value * scale);
+    }
+
+    /* Zigzag encoding maps 0, -1, 1, -2, 2... to 0, 1, 2, 3, 4... */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /* A growable byte array, without the synchronization of ByteArrayOutputStream */
+    private static final class Output {
+        private byte[] mBytes;
+        private int mLength;
+
+        Output(int capacity) {
+            mBytes = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            if (mLength == mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, mBytes.length * 2);
+            }
+            mBytes[mLength++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeSignedVarint(long value) {
+            writeVarint(zigzag(value));
+        }
+
+        /* Writes the difference from the previous value, and returns the value for the next */
+        long writeDelta(long value, long previous) {
+            writeSignedVarint(value - previous);
+            return value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBytes, mLength);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] mBytes;
+        private int mPosition;
+
+        Input(byte[] bytes) {
+            mBytes = bytes;
+        }
+
+        int readByte() {
+            if (mPosition == mBytes.length) {
+                throw new IllegalArgumentException("Packed weather ends too soon");
+            }
+            return mBytes[mPosition++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in packed weather");
+        }
+
+        long readSignedVarint() {
+            return unzigzag(readVarint());
+        }
+
+        long[] readDeltas(int count) {
+            long[] values = new long[count];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += readSignedVarint();
+                values[i] = previous;
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * One day of weather, as parsed from OpenWeatherMap. This is a plain, immutable value, with the
+ * same fields as a row of Sunshine's weather table. Temperatures are in degrees Celsius, the
+ * pressure in hPa, the wind speed in km/h and the wind direction in compass degrees.
+ */
+public final class DailyWeather {
+
+    private final long mDate;
+    private final int mWeatherId;
+    private final double mHigh;
+    private final double mLow;
+    private final int mHumidity;
+    private final double mPressure;
+    private final double mWindSpeed;
+    private final double mWindDirection;
+
+    /**
+     * @param date          The normalized UTC date of the day
+     * @param weatherId     OpenWeatherMap's condition ID
+     * @param high          High temperature
+     * @param low           Low temperature
+     * @param humidity      Humidity, in percent
+     * @param pressure      Pressure
+     * @param windSpeed     Wind speed
+     * @param windDirection Wind direction
+     */
+    public DailyWeather(long date, int weatherId, double high, double low, int humidity,
+                        double pressure, double windSpeed, double windDirection) {
+        mDate = date;
+        mWeatherId = weatherId;
+        mHigh = high;
+        mLow = low;
+        mHumidity = humidity;
+        mPressure = pressure;
+        mWindSpeed = windSpeed;
+        mWindDirection = windDirection;
+    }
+
+    public long getDate() {
+        return mDate;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public double getHigh() {
+        return mHigh;
+    }
+
+    public double getLow() {
+        return mLow;
+    }
+
+    public int getHumidity() {
+        return mHumidity;
+    }
+
+    public double getPressure() {
+        return mPressure;
+    }
+
+    public double getWindSpeed() {
+        return mWindSpeed;
+    }
+
+    public double getWindDirection() {
+        return mWindDirection;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DailyWeather)) return false;
+
+        DailyWeather that = (DailyWeather) o;
+        return mDate == that.mDate
+                && mWeatherId == that.mWeatherId
+                && Double.compare(mHigh, that.mHigh) == 0
+                && Double.compare(mLow, that.mLow) == 0
+                && mHumidity == that.mHumidity
+                && Double.compare(mPressure, that.mPressure) == 0
+                && Double.compare(mWindSpeed, that.mWindSpeed) == 0
+                && Double.compare(mWindDirection, that.mWindDirection) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (mDate ^ (mDate >>> 32));
+        result = 31 * result + mWeatherId;
+        result = 31 * result + hashDouble(mHigh);
+        result = 31 * result + hashDouble(mLow);
+        result = 31 * result + mHumidity;
+        result = 31 * result + hashDouble(mPressure);
+        result = 31 * result + hashDouble(mWindSpeed);
+        result = 31 * result + hashDouble(mWindDirection);
+        return result;
+    }
+
+    private static int hashDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "DailyWeather{date=" + mDate
+                + ", weatherId=" + mWeatherId
+                + ", high=" + mHigh
+                + ", low=" + mLow
+                + ", humidity=" + mHumidity
+                + ", pressure=" + mPressure
+                + ", windSpeed=" + mWindSpeed
+                + ", windDirection=" + mWindDirection
+                + "}";
+    }
+}
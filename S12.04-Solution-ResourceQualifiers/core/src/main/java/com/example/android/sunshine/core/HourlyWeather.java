@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * The weather at one moment of the hourly forecast, as parsed from OpenWeatherMap. Like
+ * {@link DailyWeather}, this is a plain, immutable value, with the same fields as a row of
+ * Sunshine's hourly table and the same units.
+ */
+public final class HourlyWeather {
+
+    private final long mTime;
+    private final int mWeatherId;
+    private final double mTemperature;
+    private final int mHumidity;
+    private final double mPressure;
+    private final double mWindSpeed;
+    private final double mWindDirection;
+
+    /**
+     * @param time          The UTC time the forecast is for, in milliseconds since the epoch
+     * @param weatherId     OpenWeatherMap's condition ID
+     * @param temperature   Temperature
+     * @param humidity      Humidity, in percent
+     * @param pressure      Pressure
+     * @param windSpeed     Wind speed
+     * @param windDirection Wind direction
+     */
+    public HourlyWeather(long time, int weatherId, double temperature, int humidity,
+                         double pressure, double windSpeed, double windDirection) {
+        mTime = time;
+        mWeatherId = weatherId;
+        mTemperature = temperature;
+        mHumidity = humidity;
+        mPressure = pressure;
+        mWindSpeed = windSpeed;
+        mWindDirection = windDirection;
+    }
+
+    public long getTime() {
+        return mTime;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public double getTemperature() {
+        return mTemperature;
+    }
+
+    public int getHumidity() {
+        return mHumidity;
+    }
+
+    public double getPressure() {
+        return mPressure;
+    }
+
+    public double getWindSpeed() {
+        return mWindSpeed;
+    }
+
+    public double getWindDirection() {
+        return mWindDirection;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HourlyWeather)) return false;
+
+        HourlyWeather that = (HourlyWeather) o;
+        return mTime == that.mTime
+                && mWeatherId == that.mWeatherId
+                && Double.compare(mTemperature, that.mTemperature) == 0
+                && mHumidity == that.mHumidity
+                && Double.compare(mPressure, that.mPressure) == 0
+                && Double.compare(mWindSpeed, that.mWindSpeed) == 0
+                && Double.compare(mWindDirection, that.mWindDirection) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (mTime ^ (mTime >>> 32));
+        result = 31 * result + mWeatherId;
+        result = 31 * result + hashDouble(mTemperature);
+        result = 31 * result + mHumidity;
+        result = 31 * result + hashDouble(mPressure);
+        result = 31 * result + hashDouble(mWindSpeed);
+        result = 31 * result + hashDouble(mWindDirection);
+        return result;
+    }
+
+    private static int hashDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "HourlyWeather{time=" + mTime
+                + ", weatherId=" + mWeatherId
+                + ", temperature=" + mTemperature
+                + ", humidity=" + mHumidity
+                + ", pressure=" + mPressure
+                + ", windSpeed=" + mWindSpeed
+                + ", windDirection=" + mWindDirection
+                + "}";
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A small pull parser for JSON, reading one token at a time from a Reader. It has the same
+ * shape as android.util.JsonReader, which we can't use outside of Android, but only what
+ * Sunshine's parsers need.
+ * <p>
+ * Nothing is buffered beyond a fixed window of characters, so a response can be parsed while it
+ * is still being downloaded, and parsing it never holds more than one value in memory at once.
+ * Object names that the caller compares against constants can be read with
+ * {@link #consumeName()} and {@link #nameEquals(String)}, which don't allocate a String at all.
+ */
+final class JsonTokenizer {
+
+    enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    /* What we're in the middle of. Kept on a stack, one entry per open array or object. */
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[1024];
+    private int mPosition;
+    private int mLimit;
+
+    private int[] mStack = new int[16];
+    private int mStackSize;
+
+    /* The token peek() has looked at but nobody has consumed yet, or null */
+    private Token mPeeked;
+
+    /* The text of a peeked name, string or number lives here until it's consumed */
+    private final StringBuilder mText = new StringBuilder();
+
+    JsonTokenizer(Reader reader) {
+        mReader = reader;
+        mStack[mStackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     */
+    Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+
+        int top = mStack[mStackSize - 1];
+        switch (top) {
+            case EMPTY_ARRAY:
+                mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+                break;
+
+            case NONEMPTY_ARRAY: {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                break;
+            }
+
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                mStack[mStackSize - 1] = DANGLING_NAME;
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (top == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                readString();
+                return mPeeked = Token.NAME;
+            }
+
+            case DANGLING_NAME: {
+                mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                break;
+            }
+
+            case EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+
+            case NONEMPTY_DOCUMENT:
+                if (nextNonWhitespace() == -1) {
+                    return mPeeked = Token.END_DOCUMENT;
+                }
+                throw syntaxError("Expected the end of the document");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return mPeeked = Token.BEGIN_OBJECT;
+            case '[':
+                return mPeeked = Token.BEGIN_ARRAY;
+            case ']':
+                if (top == EMPTY_ARRAY) {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                throw syntaxError("Expected a value");
+            case '"':
+                readString();
+                return mPeeked = Token.STRING;
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                mPosition--;
+                return mPeeked = readLiteral();
+        }
+    }
+
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    /**
+     * @return Whether the current array or object has another element
+     */
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        return mText.toString();
+    }
+
+    /**
+     * Consumes the next name without creating a String for it. Compare it against the names
+     * you're interested in with {@link #nameEquals(String)}.
+     */
+    void consumeName() throws IOException {
+        expect(Token.NAME);
+    }
+
+    /**
+     * Compares the name just consumed by {@link #consumeName()} to the given name. This only
+     * works until the next token is peeked at.
+     */
+    boolean nameEquals(String name) {
+        return textEquals(name);
+    }
+
+    /**
+     * Returns the next string or number as a String.
+     */
+    String nextString() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw syntaxError("Expected a string but was " + token);
+        }
+        mPeeked = null;
+        return mText.toString();
+    }
+
+    /**
+     * Returns the next number, or string containing a number, as a double.
+     */
+    double nextDouble() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw syntaxError("Expected a number but was " + token);
+        }
+        mPeeked = null;
+        return parseDouble();
+    }
+
+    /**
+     * Returns the next number, or string containing a number, as an int. Numbers with a fraction
+     * are truncated, the same way org.json's getInt does.
+     */
+    int nextInt() throws IOException {
+        return (int) nextLong();
+    }
+
+    /**
+     * Returns the next number, or string containing a number, as a long. Plain integers are
+     * parsed without going through a double, so they don't lose precision.
+     */
+    long nextLong() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw syntaxError("Expected a number but was " + token);
+        }
+        mPeeked = null;
+
+        int length = mText.length();
+        boolean negative = length > 0 && mText.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (length > start && length - start <= 18) {
+            long value = 0;
+            int i = start;
+            for (; i < length; i++) {
+                char c = mText.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == length) {
+                return negative ? -value : value;
+            }
+        }
+        return (long) parseDouble();
+    }
+
+    boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return mText.charAt(0) == 't';
+    }
+
+    void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Skips the next value, along with everything nested inside of it.
+     */
+    void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of input");
+                default:
+                    mPeeked = null;
+            }
+        } while (depth > 0);
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    private void push(int context) {
+        if (mStackSize == mStack.length) {
+            int[] stack = new int[mStack.length * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = context;
+    }
+
+    private double parseDouble() throws IOException {
+        try {
+            return Double.parseDouble(mText.toString());
+        } catch (NumberFormatException e) {
+            throw new ForecastParseException("Not a number: " + mText, e);
+        }
+    }
+
+    /**
+     * Reads the characters of a string, after its opening quote, into mText.
+     */
+    private void readString() throws IOException {
+        mText.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                mText.append(readEscape());
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else {
+                mText.append((char) c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u': {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit == -1) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            }
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            default:
+                throw syntaxError("Invalid escape");
+        }
+    }
+
+    /**
+     * Reads an unquoted literal (a number, true, false or null) into mText.
+     */
+    private Token readLiteral() throws IOException {
+        mText.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                break;
+            }
+            if (c == ',' || c == '}' || c == ']' || c == ':' || isWhitespace(c)) {
+                mPosition--;
+                break;
+            }
+            mText.append((char) c);
+        }
+
+        if (mText.length() == 0) {
+            throw syntaxError("Expected a value");
+        }
+        if (textEquals("true") || textEquals("false")) {
+            return Token.BOOLEAN;
+        }
+        if (textEquals("null")) {
+            return Token.NULL;
+        }
+        char first = mText.charAt(0);
+        if (first != '-' && (first < '0' || first > '9')) {
+            throw syntaxError("Expected a value");
+        }
+        return Token.NUMBER;
+    }
+
+    private boolean textEquals(String text) {
+        if (mText.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (mText.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (isWhitespace(c));
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * Returns the next character, refilling the buffer from the Reader when it runs out, or -1
+     * at the end of the input. Stepping back with mPosition-- is safe right after a character
+     * was returned, even one that was just refilled, as it is always still in the buffer.
+     */
+    private int read() throws IOException {
+        if (mPosition == mLimit) {
+            int count = mReader.read(mBuffer, 0, mBuffer.length);
+            if (count <= 0) {
+                return -1;
+            }
+            mPosition = 0;
+            mLimit = count;
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private ForecastParseException syntaxError(String message) {
+        return new ForecastParseException(message + " at stack depth " + mStackSize);
+    }
+}
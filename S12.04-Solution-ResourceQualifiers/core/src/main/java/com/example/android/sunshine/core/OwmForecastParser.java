@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parses OpenWeatherMap's daily forecast response as a stream. Each day is handed to a
+ * {@link Sink} as soon as its JSON object has been read, as plain values, so the caller decides
+ * what to build from it. Nothing but the current day is ever held in memory, and no objects are
+ * created per day, which makes the parser cheap enough to run while the response is still
+ * downloading.
+ * <p>
+ * The response looks like this (with the fields we ignore left out):
+ * <pre>
+ * {
+ *   "city": {"coord": {"lat": 37.4, "lon": -122.1}},
+ *   "cod": "200",
+ *   "list": [
+ *     {"temp": {"min": 11.6, "max": 22.3}, "pressure": 1011.3, "humidity": 64,
+ *      "weather": [{"id": 800}], "speed": 1.9, "deg": 305},
+ *     ...
+ *   ]
+ * }
+ * </pre>
+ * We ignore the datetime values embedded in the JSON and assume that the days are returned
+ * in order, starting with today (which is not guaranteed to be correct, but is what OWM does).
+ */
+public final class OwmForecastParser {
+
+    /**
+     * Receives what the parser finds, in the order it finds it.
+     */
+    public interface Sink {
+
+        /**
+         * Called with the coordinates of the city the forecast is for, if the response has them.
+         */
+        void onLocation(double latitude, double longitude);
+
+        /**
+         * Called once for each day of the forecast, in order.
+         *
+         * @param date          The normalized UTC date of the day
+         * @param weatherId     OpenWeatherMap's condition ID
+         * @param high          High temperature
+         * @param low           Low temperature
+         * @param humidity      Humidity, in percent
+         * @param pressure      Pressure
+         * @param windSpeed     Wind speed
+         * @param windDirection Wind direction
+         */
+        void onDay(long date, int weatherId, double high, double low, int humidity,
+                   double pressure, double windSpeed, double windDirection);
+    }
+
+    /* The status of a successful response. Anything else means the server reported an error. */
+    public static final int STATUS_OK = 200;
+
+    /* Location information */
+    private static final String OWM_CITY = "city";
+    private static final String OWM_COORD = "coord";
+
+    /* Location coordinate */
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    /* Weather information. Each day's forecast info is an element of the "list" array */
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    /* All temperatures are children of the "temp" object */
+    private static final String OWM_TEMPERATURE = "temp";
+
+    /* Max temperature for the day */
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    /* Bits for the fields of a day we've seen, so we can tell when one is missing */
+    private static final int FIELD_PRESSURE = 1;
+    private static final int FIELD_HUMIDITY = 1 << 1;
+    private static final int FIELD_WIND_SPEED = 1 << 2;
+    private static final int FIELD_WIND_DIRECTION = 1 << 3;
+    private static final int FIELD_WEATHER_ID = 1 << 4;
+    private static final int FIELD_MAX = 1 << 5;
+    private static final int FIELD_MIN = 1 << 6;
+    private static final int ALL_FIELDS = (1 << 7) - 1;
+
+    private final long mNormalizedUtcStartDay;
+
+    /* The values of the day currently being parsed */
+    private int mFields;
+    private double mPressure;
+    private int mHumidity;
+    private double mWindSpeed;
+    private double mWindDirection;
+    private int mWeatherId;
+    private double mHigh;
+    private double mLow;
+
+    /**
+     * @param normalizedUtcStartDay The normalized date of the first day in the response, which
+     *                              is today in the user's time zone
+     */
+    public OwmForecastParser(long normalizedUtcStartDay) {
+        mNormalizedUtcStartDay = normalizedUtcStartDay;
+    }
+
+    /**
+     * Parses a whole response. If the server reported an error, parsing stops as soon as we see
+     * it. Days that came before the error have already been passed to the sink, so callers
+     * should only trust what they received if this returns {@link #STATUS_OK}.
+     *
+     * @param json The response
+     * @param sink Receives the location and each day
+     * @return The status the server reported, or STATUS_OK if it didn't report one
+     * @throws ForecastParseException If the response isn't valid JSON, or a day is incomplete
+     * @throws IOException            If reading the response fails
+     */
+    public int parse(Reader json, Sink sink) throws IOException {
+        JsonTokenizer reader = new JsonTokenizer(json);
+        int status = STATUS_OK;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_MESSAGE_CODE)) {
+                status = reader.nextInt();
+                if (status != STATUS_OK) {
+                    return status;
+                }
+            } else if (reader.nameEquals(OWM_CITY)) {
+                parseCity(reader, sink);
+            } else if (reader.nameEquals(OWM_LIST)) {
+                parseDays(reader, sink);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return status;
+    }
+
+    private void parseCity(JsonTokenizer reader, Sink sink) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_COORD)) {
+                double latitude = Double.NaN;
+                double longitude = Double.NaN;
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.consumeName();
+                    if (reader.nameEquals(OWM_LATITUDE)) {
+                        latitude = reader.nextDouble();
+                    } else if (reader.nameEquals(OWM_LONGITUDE)) {
+                        longitude = reader.nextDouble();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                    sink.onLocation(latitude, longitude);
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void parseDays(JsonTokenizer reader, Sink sink) throws IOException {
+        int dayIndex = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            parseDay(reader);
+
+            if (mFields != ALL_FIELDS) {
+                throw new ForecastParseException("Day " + dayIndex + " is missing fields");
+            }
+
+            long date = mNormalizedUtcStartDay + WeatherDates.DAY_IN_MILLIS * dayIndex;
+            sink.onDay(date, mWeatherId, mHigh, mLow, mHumidity,
+                    mPressure, mWindSpeed, mWindDirection);
+            dayIndex++;
+        }
+        reader.endArray();
+    }
+
+    private void parseDay(JsonTokenizer reader) throws IOException {
+        mFields = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_PRESSURE)) {
+                mPressure = reader.nextDouble();
+                mFields |= FIELD_PRESSURE;
+            } else if (reader.nameEquals(OWM_HUMIDITY)) {
+                mHumidity = reader.nextInt();
+                mFields |= FIELD_HUMIDITY;
+            } else if (reader.nameEquals(OWM_WINDSPEED)) {
+                mWindSpeed = reader.nextDouble();
+                mFields |= FIELD_WIND_SPEED;
+            } else if (reader.nameEquals(OWM_WIND_DIRECTION)) {
+                mWindDirection = reader.nextDouble();
+                mFields |= FIELD_WIND_DIRECTION;
+            } else if (reader.nameEquals(OWM_TEMPERATURE)) {
+                parseTemperatures(reader);
+            } else if (reader.nameEquals(OWM_WEATHER)) {
+                parseWeather(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /*
+     * Temperatures are sent by Open Weather Map in a child object called "temp".
+     *
+     * Editor's Note: Try not to name variables "temp" when working with temperature. It confuses
+     * everybody.
+     */
+    private void parseTemperatures(JsonTokenizer reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_MAX)) {
+                mHigh = reader.nextDouble();
+                mFields |= FIELD_MAX;
+            } else if (reader.nameEquals(OWM_MIN)) {
+                mLow = reader.nextDouble();
+                mFields |= FIELD_MIN;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /*
+     * The condition is in a child array called "weather", which is 1 element long. We only use
+     * the weather code of its first element.
+     */
+    private void parseWeather(JsonTokenizer reader) throws IOException {
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            if (!first) {
+                reader.skipValue();
+                continue;
+            }
+            first = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.consumeName();
+                if (reader.nameEquals(OWM_WEATHER_ID)) {
+                    mWeatherId = reader.nextInt();
+                    mFields |= FIELD_WEATHER_ID;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+}
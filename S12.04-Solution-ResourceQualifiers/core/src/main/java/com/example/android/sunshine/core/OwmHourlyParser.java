@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses OpenWeatherMap's hourly forecast response, which has one entry every 3 hours, as a
+ * stream. It works just like {@link OwmForecastParser}: each entry is handed to a {@link Sink} as
+ * plain values as soon as it has been read, and nothing is created per entry.
+ * <p>
+ * The response looks like this (with the fields we ignore left out):
+ * <pre>
+ * {
+ *   "cod": "200",
+ *   "list": [
+ *     {"dt": 1474405200,
+ *      "main": {"temp": 18.2, "pressure": 1011.3, "humidity": 64},
+ *      "weather": [{"id": 800}],
+ *      "wind": {"speed": 1.9, "deg": 305}},
+ *     ...
+ *   ]
+ * }
+ * </pre>
+ * Unlike the daily forecast, every entry says what time it's for, in seconds since the epoch, so
+ * we use that rather than assume the entries are evenly spaced.
+ */
+public final class OwmHourlyParser {
+
+    /**
+     * Receives each entry the parser finds, in the order it finds them.
+     */
+    public interface Sink {
+
+        /**
+         * @param time          The UTC time of the entry, in milliseconds since the epoch
+         * @param weatherId     OpenWeatherMap's condition ID
+         * @param temperature   Temperature
+         * @param humidity      Humidity, in percent
+         * @param pressure      Pressure
+         * @param windSpeed     Wind speed
+         * @param windDirection Wind direction
+         */
+        void onHour(long time, int weatherId, double temperature, int humidity,
+                    double pressure, double windSpeed, double windDirection);
+    }
+
+    /* The time between entries. OpenWeatherMap's hourly forecast has one every 3 hours. */
+    public static final long STEP_MILLIS = TimeUnit.HOURS.toMillis(3);
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+    private static final String OWM_LIST = "list";
+    private static final String OWM_TIME = "dt";
+
+    /* Temperature, pressure and humidity are children of the "main" object */
+    private static final String OWM_MAIN = "main";
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+
+    /* The wind has an object of its own */
+    private static final String OWM_WIND = "wind";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_WEATHER_ID = "id";
+
+    /* Bits for the fields of an entry we've seen, so we can tell when one is missing */
+    private static final int FIELD_TIME = 1;
+    private static final int FIELD_TEMPERATURE = 1 << 1;
+    private static final int FIELD_PRESSURE = 1 << 2;
+    private static final int FIELD_HUMIDITY = 1 << 3;
+    private static final int FIELD_WIND_SPEED = 1 << 4;
+    private static final int FIELD_WIND_DIRECTION = 1 << 5;
+    private static final int FIELD_WEATHER_ID = 1 << 6;
+    private static final int ALL_FIELDS = (1 << 7) - 1;
+
+    /* The values of the entry currently being parsed */
+    private int mFields;
+    private long mTime;
+    private double mTemperature;
+    private double mPressure;
+    private int mHumidity;
+    private double mWindSpeed;
+    private double mWindDirection;
+    private int mWeatherId;
+
+    /**
+     * Parses a whole response. As with {@link OwmForecastParser#parse(Reader,
+     * OwmForecastParser.Sink)}, parsing stops at an error status, and callers should only trust
+     * what the sink received if this returns {@link OwmForecastParser#STATUS_OK}.
+     *
+     * @param json The response
+     * @param sink Receives each entry
+     * @return The status the server reported, or STATUS_OK if it didn't report one
+     * @throws ForecastParseException If the response isn't valid JSON, or an entry is incomplete
+     * @throws IOException            If reading the response fails
+     */
+    public int parse(Reader json, Sink sink) throws IOException {
+        JsonTokenizer reader = new JsonTokenizer(json);
+        int status = OwmForecastParser.STATUS_OK;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_MESSAGE_CODE)) {
+                status = reader.nextInt();
+                if (status != OwmForecastParser.STATUS_OK) {
+                    return status;
+                }
+            } else if (reader.nameEquals(OWM_LIST)) {
+                parseHours(reader, sink);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return status;
+    }
+
+    private void parseHours(JsonTokenizer reader, Sink sink) throws IOException {
+        int index = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            parseHour(reader);
+
+            if (mFields != ALL_FIELDS) {
+                throw new ForecastParseException("Entry " + index + " is missing fields");
+            }
+
+            sink.onHour(mTime, mWeatherId, mTemperature, mHumidity,
+                    mPressure, mWindSpeed, mWindDirection);
+            index++;
+        }
+        reader.endArray();
+    }
+
+    private void parseHour(JsonTokenizer reader) throws IOException {
+        mFields = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_TIME)) {
+                mTime = reader.nextLong() * 1000;
+                mFields |= FIELD_TIME;
+            } else if (reader.nameEquals(OWM_MAIN)) {
+                parseMain(reader);
+            } else if (reader.nameEquals(OWM_WIND)) {
+                parseWind(reader);
+            } else if (reader.nameEquals(OWM_WEATHER)) {
+                parseWeather(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void parseMain(JsonTokenizer reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_TEMPERATURE)) {
+                mTemperature = reader.nextDouble();
+                mFields |= FIELD_TEMPERATURE;
+            } else if (reader.nameEquals(OWM_PRESSURE)) {
+                mPressure = reader.nextDouble();
+                mFields |= FIELD_PRESSURE;
+            } else if (reader.nameEquals(OWM_HUMIDITY)) {
+                mHumidity = reader.nextInt();
+                mFields |= FIELD_HUMIDITY;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void parseWind(JsonTokenizer reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.consumeName();
+            if (reader.nameEquals(OWM_WINDSPEED)) {
+                mWindSpeed = reader.nextDouble();
+                mFields |= FIELD_WIND_SPEED;
+            } else if (reader.nameEquals(OWM_WIND_DIRECTION)) {
+                mWindDirection = reader.nextDouble();
+                mFields |= FIELD_WIND_DIRECTION;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /* As in the daily forecast, we only use the first element of the "weather" array */
+    private void parseWeather(JsonTokenizer reader) throws IOException {
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            if (!first) {
+                reader.skipValue();
+                continue;
+            }
+            first = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.consumeName();
+                if (reader.nameEquals(OWM_WEATHER_ID)) {
+                    mWeatherId = reader.nextInt();
+                    mFields |= FIELD_WEATHER_ID;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An {@link OwmForecastParser.Sink} that simply collects everything it's given: the location, if
+ * there was one, and a {@link DailyWeather} for every day. This is the easy way to use the parser
+ * when the whole forecast is needed at once.
+ */
+public class ParsedForecast implements OwmForecastParser.Sink {
+
+    private final List<DailyWeather> mDays = new ArrayList<>();
+
+    private boolean mHasLocation;
+    private double mLatitude;
+    private double mLongitude;
+
+    @Override
+    public void onLocation(double latitude, double longitude) {
+        mHasLocation = true;
+        mLatitude = latitude;
+        mLongitude = longitude;
+    }
+
+    @Override
+    public void onDay(long date, int weatherId, double high, double low, int humidity,
+                      double pressure, double windSpeed, double windDirection) {
+        mDays.add(new DailyWeather(date, weatherId, high, low, humidity,
+                pressure, windSpeed, windDirection));
+    }
+
+    /**
+     * @return The days of the forecast, in order
+     */
+    public List<DailyWeather> getDays() {
+        return Collections.unmodifiableList(mDays);
+    }
+
+    public boolean hasLocation() {
+        return mHasLocation;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+}
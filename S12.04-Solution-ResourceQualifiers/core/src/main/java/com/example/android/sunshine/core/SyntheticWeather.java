@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates believable weather for any number of days and locations, for tests, benchmarks and
+ * the app's fake data. Everything comes from a seed: the same seed always produces the same
+ * locations and the same forecasts, on any device or JVM, so a slow benchmark or a failing load
+ * test can be run again against exactly the same data.
+ * <p>
+ * The weather is not random noise. Temperatures follow the seasons for the location's latitude
+ * and drift from day to day instead of jumping around, pressure and humidity wander around
+ * typical values, the wind is usually light and occasionally strong, and the condition is one of
+ * the IDs OpenWeatherMap actually uses, chosen to fit the humidity. Values are rounded the way
+ * OpenWeatherMap rounds them.
+ * <p>
+ * {@link #toOwmJson(Location, List)} writes a forecast out as an OpenWeatherMap response, so the
+ * same data can be fed to the parser, inserted into the provider or shown in the UI.
+ * {@link #generateHourlyForecast(Location, long, int)} and
+ * {@link #toOwmHourlyJson(Location, List)} do the same for the hourly forecast.
+ */
+public final class SyntheticWeather {
+
+    /**
+     * A place to generate weather for. Each location carries its own seed, so its forecast
+     * doesn't depend on which other locations were generated, or in what order.
+     */
+    public static final class Location {
+        private final String mName;
+        private final double mLatitude;
+        private final double mLongitude;
+        private final long mSeed;
+
+        Location(String name, double latitude, double longitude, long seed) {
+            mName = name;
+            mLatitude = latitude;
+            mLongitude = longitude;
+            mSeed = seed;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public double getLatitude() {
+            return mLatitude;
+        }
+
+        public double getLongitude() {
+            return mLongitude;
+        }
+    }
+
+    /*
+     * Condition IDs for dry, average and humid days, each listed roughly as often as it occurs.
+     * Every one of them is an ID OpenWeatherMap documents.
+     */
+    private static final int[] DRY_WEATHER_IDS = {800, 800, 800, 800, 801, 801, 802, 951};
+    private static final int[] AVERAGE_WEATHER_IDS = {800, 801, 802, 802, 803, 803, 804, 701, 741};
+    private static final int[] HUMID_WEATHER_IDS = {500, 500, 501, 502, 300, 301, 520, 804, 211,
+            200, 600, 601, 511};
+
+    /* Below this, precipitation is snow rather than rain */
+    private static final double FREEZING = 0.5;
+
+    /* How much of yesterday's temperature anomaly carries over into today */
+    private static final double PERSISTENCE = 0.7;
+
+    private final long mSeed;
+
+    /**
+     * @param seed Decides everything this generator produces
+     */
+    public SyntheticWeather(long seed) {
+        mSeed = seed;
+    }
+
+    /**
+     * Generates locations spread over the inhabited latitudes.
+     *
+     * @param count How many locations to generate
+     * @return The locations, always the same ones for the same seed
+     */
+    public List<Location> generateLocations(int count) {
+        Random random = new Random(mSeed);
+        List<Location> locations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double latitude = round(random.nextDouble() * 120 - 55, 4);
+            double longitude = round(random.nextDouble() * 360 - 180, 4);
+            locations.add(new Location("Location " + (i + 1), latitude, longitude,
+                    random.nextLong()));
+        }
+        return locations;
+    }
+
+    /**
+     * Generates a forecast for one location.
+     *
+     * @param location              Where the forecast is for
+     * @param normalizedUtcStartDay The normalized date of the first day
+     * @param days                  How many days to generate
+     * @return One DailyWeather per day, in order, always the same for the same location and
+     * start day
+     */
+    public List<DailyWeather> generateForecast(Location location, long normalizedUtcStartDay,
+                                               int days) {
+        Random random = new Random(location.mSeed ^ normalizedUtcStartDay);
+        List<DailyWeather> forecast = new ArrayList<>(days);
+
+        /* Closer to the poles is colder and has bigger seasons; the south has them backwards */
+        double absoluteLatitude = Math.abs(location.getLatitude());
+        double yearlyMean = 28 - 0.45 * absoluteLatitude;
+        double seasonalSwing = 0.25 * absoluteLatitude;
+        double hemisphere = location.getLatitude() >= 0 ? 1 : -1;
+
+        double anomaly = random.nextGaussian() * 3;
+        double pressure = 1013 + random.nextGaussian() * 6;
+        double humidity = 40 + random.nextDouble() * 40;
+
+        for (int i = 0; i < days; i++) {
+            long date = normalizedUtcStartDay + i * WeatherDates.DAY_IN_MILLIS;
+
+            /* Day of the year, with the coldest day in mid January up north */
+            double dayOfYear = (WeatherDates.elapsedDaysSinceEpoch(date) % 365.25) / 365.25;
+            double season = -Math.cos(2 * Math.PI * (dayOfYear - 15 / 365.25));
+
+            anomaly = PERSISTENCE * anomaly + random.nextGaussian() * 2;
+            double mean = yearlyMean + hemisphere * seasonalSwing * season + anomaly;
+            double range = 4 + random.nextDouble() * 8;
+
+            pressure = clamp(1013 + 0.8 * (pressure - 1013) + random.nextGaussian() * 4, 950, 1060);
+            humidity = clamp(humidity + random.nextGaussian() * 12, 5, 100);
+
+            /* Light winds most days, with the occasional gale */
+            double windSpeed = Math.abs(random.nextGaussian()) * 4;
+            if (random.nextInt(20) == 0) {
+                windSpeed += 10 + random.nextDouble() * 15;
+            }
+
+            int weatherId = pickWeatherId(random, humidity, mean);
+
+            forecast.add(new DailyWeather(date,
+                    weatherId,
+                    round(mean + range / 2, 2),
+                    round(mean - range / 2, 2),
+                    (int) Math.round(humidity),
+                    round(pressure, 2),
+                    round(windSpeed, 2),
+                    random.nextInt(360)));
+        }
+
+        return forecast;
+    }
+
+    /**
+     * Generates an hourly forecast for one location, with an entry every
+     * {@link OwmHourlyParser#STEP_MILLIS}. It follows the daily forecast
+     * {@link #generateForecast(Location, long, int)} generates for the same days: the temperature
+     * swings between each day's low, a little before sunrise, and its high, in the afternoon,
+     * in the location's solar time, and everything else wanders a little around the day's value.
+     *
+     * @param location        Where the forecast is for
+     * @param startTimeMillis The UTC time of the first entry, in whole seconds
+     * @param count           How many entries to generate
+     * @return One HourlyWeather per entry, in order, always the same for the same location and
+     * start time
+     */
+    public List<HourlyWeather> generateHourlyForecast(Location location, long startTimeMillis,
+                                                     int count) {
+        long firstDay = WeatherDates.normalizeDate(startTimeMillis);
+        long lastTime = startTimeMillis + (count - 1) * OwmHourlyParser.STEP_MILLIS;
+        int days = (int) ((lastTime - firstDay) / WeatherDates.DAY_IN_MILLIS) + 1;
+        List<DailyWeather> daily = generateForecast(location, firstDay, Math.max(days, 1));
+
+        Random random = new Random(location.mSeed ^ Long.reverse(startTimeMillis));
+        List<HourlyWeather> forecast = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            long time = startTimeMillis + i * OwmHourlyParser.STEP_MILLIS;
+            DailyWeather day = daily.get((int) ((time - firstDay) / WeatherDates.DAY_IN_MILLIS));
+
+            /* Coldest at 5 in the morning and warmest at 5 in the afternoon, solar time */
+            double utcHour = (double) (time - WeatherDates.normalizeDate(time))
+                    / TimeUnit.HOURS.toMillis(1);
+            double solarHour = utcHour + location.getLongitude() / 15;
+            double warmth = 0.5 - 0.5 * Math.cos(2 * Math.PI * (solarHour - 5) / 24);
+            double temperature = day.getLow() + (day.getHigh() - day.getLow()) * warmth;
+
+            forecast.add(new HourlyWeather(time,
+                    day.getWeatherId(),
+                    round(temperature + random.nextGaussian() * 0.3, 2),
+                    (int) Math.round(clamp(day.getHumidity() + random.nextGaussian() * 4,
+                            0, 100)),
+                    round(day.getPressure() + random.nextGaussian() * 0.8, 2),
+                    round(Math.abs(day.getWindSpeed() + random.nextGaussian()), 2),
+                    (int) (day.getWindDirection() + 360 + random.nextGaussian() * 20) % 360));
+        }
+
+        return forecast;
+    }
+
+    /**
+     * Writes a forecast out the way OpenWeatherMap's daily forecast API would return it,
+     * including fields Sunshine doesn't use. Parsing the result with {@link OwmForecastParser},
+     * starting from the date of the first day, gives back exactly the same DailyWeather values.
+     *
+     * @param location Where the forecast is for
+     * @param forecast The days, in order, one day apart
+     * @return A JSON response
+     */
+    public static String toOwmJson(Location location, List<DailyWeather> forecast) {
+        StringBuilder json = new StringBuilder(forecast.size() * 320 + 256);
+
+        json.append("{\"city\":{\"id\":").append(Math.abs(location.mSeed % 10000000))
+                .append(",\"name\":\"").append(location.getName()).append('"')
+                .append(",\"coord\":{\"lon\":").append(location.getLongitude())
+                .append(",\"lat\":").append(location.getLatitude())
+                .append("},\"country\":\"XX\",\"population\":0},")
+                .append("\"cod\":\"200\",\"message\":0.0123,\"cnt\":").append(forecast.size())
+                .append(",\"list\":[");
+
+        for (int i = 0; i < forecast.size(); i++) {
+            DailyWeather day = forecast.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+
+            /* OpenWeatherMap's timestamps are in seconds, at noon */
+            long dt = (day.getDate() + WeatherDates.DAY_IN_MILLIS / 2) / 1000;
+            double dayTemperature = round((day.getHigh() + day.getLow()) / 2, 2);
+
+            json.append("{\"dt\":").append(dt)
+                    .append(",\"temp\":{\"day\":").append(dayTemperature)
+                    .append(",\"min\":").append(day.getLow())
+                    .append(",\"max\":").append(day.getHigh())
+                    .append(",\"night\":").append(day.getLow())
+                    .append(",\"eve\":").append(dayTemperature)
+                    .append(",\"morn\":").append(day.getLow())
+                    .append("},\"pressure\":").append(day.getPressure())
+                    .append(",\"humidity\":").append(day.getHumidity())
+                    .append(",\"weather\":[{\"id\":").append(day.getWeatherId())
+                    .append(",\"main\":\"").append(WeatherCondition.forWeatherId(
+                            day.getWeatherId()).name().toLowerCase(Locale.US))
+                    .append("\",\"description\":\"synthetic\",\"icon\":\"01d\"}]")
+                    .append(",\"speed\":").append(day.getWindSpeed())
+                    .append(",\"deg\":").append(day.getWindDirection())
+                    .append(",\"clouds\":").append(day.getHumidity() / 2)
+                    .append('}');
+        }
+        json.append("]}");
+
+        return json.toString();
+    }
+
+    /**
+     * Writes an hourly forecast out the way OpenWeatherMap's 3 hour forecast API would return it,
+     * including fields Sunshine doesn't use. Parsing the result with {@link OwmHourlyParser}
+     * gives back exactly the same HourlyWeather values.
+     *
+     * @param location Where the forecast is for
+     * @param forecast The entries, in order, with times in whole seconds
+     * @return A JSON response
+     */
+    public static String toOwmHourlyJson(Location location, List<HourlyWeather> forecast) {
+        StringBuilder json = new StringBuilder(forecast.size() * 360 + 256);
+
+        json.append("{\"cod\":\"200\",\"message\":0.0123,\"cnt\":").append(forecast.size())
+                .append(",\"list\":[");
+
+        for (int i = 0; i < forecast.size(); i++) {
+            HourlyWeather hour = forecast.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+
+            json.append("{\"dt\":").append(hour.getTime() / 1000)
+                    .append(",\"main\":{\"temp\":").append(hour.getTemperature())
+                    .append(",\"temp_min\":").append(hour.getTemperature())
+                    .append(",\"temp_max\":").append(hour.getTemperature())
+                    .append(",\"pressure\":").append(hour.getPressure())
+                    .append(",\"sea_level\":").append(hour.getPressure())
+                    .append(",\"humidity\":").append(hour.getHumidity())
+                    .append(",\"temp_kf\":0}")
+                    .append(",\"weather\":[{\"id\":").append(hour.getWeatherId())
+                    .append(",\"main\":\"").append(WeatherCondition.forWeatherId(
+                            hour.getWeatherId()).name().toLowerCase(Locale.US))
+                    .append("\",\"description\":\"synthetic\",\"icon\":\"01d\"}]")
+                    .append(",\"clouds\":{\"all\":").append(hour.getHumidity() / 2)
+                    .append("},\"wind\":{\"speed\":").append(hour.getWindSpeed())
+                    .append(",\"deg\":").append(hour.getWindDirection())
+                    .append("}}");
+        }
+
+        json.append("],\"city\":{\"id\":").append(Math.abs(location.mSeed % 10000000))
+                .append(",\"name\":\"").append(location.getName()).append('"')
+                .append(",\"coord\":{\"lon\":").append(location.getLongitude())
+                .append(",\"lat\":").append(location.getLatitude())
+                .append("},\"country\":\"XX\"}}");
+
+        return json.toString();
+    }
+
+    private static int pickWeatherId(Random random, double humidity, double temperature) {
+        int[] candidates;
+        if (humidity < 45) {
+            candidates = DRY_WEATHER_IDS;
+        } else if (humidity < 80) {
+            candidates = AVERAGE_WEATHER_IDS;
+        } else {
+            candidates = HUMID_WEATHER_IDS;
+        }
+        int weatherId = candidates[random.nextInt(candidates.length)];
+
+        /*
+         * Rain and drizzle fall as snow when it's cold enough, and snow needs the cold. Freezing
+         * rain (511) counts as snow here, since it needs the cold just as much.
+         */
+        boolean isSnow = (weatherId >= 600 && weatherId < 700) || weatherId == 511;
+        boolean isRain = weatherId >= 300 && weatherId < 600 && !isSnow;
+        if (isRain && temperature < FREEZING) {
+            weatherId = 600;
+        } else if (isSnow && temperature >= FREEZING) {
+            weatherId = 500;
+        }
+        return weatherId;
+    }
+
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * The kinds of weather Sunshine has art for, and the mapping from OpenWeatherMap's condition IDs
+ * to them. See http://openweathermap.org/weather-conditions for a list of all IDs.
+ */
+public enum WeatherCondition {
+    STORM,
+    LIGHT_RAIN,
+    RAIN,
+    SNOW,
+    FOG,
+    CLEAR,
+    LIGHT_CLOUDS,
+    CLOUDS;
+
+    /**
+     * Finds the kind of weather for an OpenWeatherMap condition ID. IDs we don't know about are
+     * shown as a storm, which is the safest thing to warn the user about.
+     *
+     * @param weatherId from OpenWeatherMap API response
+     * @return The kind of weather, never null
+     */
+    public static WeatherCondition forWeatherId(int weatherId) {
+        WeatherCondition condition = forKnownWeatherId(weatherId);
+        return condition != null ? condition : STORM;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return true if the ID is one we have a mapping for
+     */
+    public static boolean isKnownWeatherId(int weatherId) {
+        return forKnownWeatherId(weatherId) != null;
+    }
+
+    private static WeatherCondition forKnownWeatherId(int weatherId) {
+        /*
+         * Based on weather code data for Open Weather Map. Note that 761 falls in the fog range,
+         * which is checked first, so dust is shown as fog.
+         */
+        if (weatherId >= 200 && weatherId <= 232) {
+            return STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return RAIN;
+        } else if (weatherId == 511) {
+            return SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return FOG;
+        } else if (weatherId == 771 || weatherId == 781) {
+            return STORM;
+        } else if (weatherId == 800) {
+            return CLEAR;
+        } else if (weatherId == 801) {
+            return LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return CLEAR;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date math for Sunshine's normalized dates. Sunshine stores every day of weather under the UTC
+ * midnight that starts it, which we call the normalized date. None of these methods read the
+ * system clock or the default time zone themselves: the current time and time zone are passed
+ * in, so the results are the same on every machine.
+ */
+public final class WeatherDates {
+
+    /* Milliseconds in a day */
+    public static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /* This class only has static methods and should never be instantiated */
+    private WeatherDates() {
+    }
+
+    /**
+     * Returns the normalized date of "today" in the given time zone. For example, if you live in
+     * California and it is 6:30 PM on September 20th, 2016, this returns 1474329600000, which is
+     * September 20th, 2016 at midnight GMT. It's the GMT date we care about, and that date always
+     * matches the local date, even though the local time at that instant is still September 19th.
+     *
+     * @param utcNowMillis The current time, in milliseconds since the epoch
+     * @param timeZone     The time zone that decides which day it is
+     * @return The number of milliseconds (UTC / GMT) for today's date at midnight in the given
+     * time zone
+     */
+    public static long getNormalizedUtcDateForToday(long utcNowMillis, TimeZone timeZone) {
+
+        /*
+         * The getOffset method returns the number of milliseconds to add to UTC time to get the
+         * elapsed time since the epoch for the time zone. We pass the current UTC time into this
+         * method so it can determine changes to account for daylight savings time.
+         */
+        long gmtOffsetMillis = timeZone.getOffset(utcNowMillis);
+
+        /* The time since the epoch, as a clock on the wall in that time zone would show it */
+        long timeSinceEpochLocalTimeMillis = utcNowMillis + gmtOffsetMillis;
+
+        /* Dropping the fractional day leaves us with the local date, at midnight GMT */
+        return normalizeDate(timeSinceEpochLocalTimeMillis);
+    }
+
+    /**
+     * Returns the number of whole days since the epoch (January 01, 1970, 12:00 Midnight UTC).
+     *
+     * @param utcDate A date in milliseconds in UTC time.
+     * @return The number of days from the epoch to the date argument.
+     */
+    public static long elapsedDaysSinceEpoch(long utcDate) {
+        return TimeUnit.MILLISECONDS.toDays(utcDate);
+    }
+
+    /**
+     * Normalizes a date (in milliseconds), converting it to the very beginning of its day in UTC
+     * time. For example, given Friday, 9/16/2016, 17:45:15 GMT-4:00 DST (1474062315000), this
+     * returns Friday, 9/16/2016, 00:00:00 GMT (1473984000000).
+     *
+     * @param date The date (in milliseconds) to normalize
+     * @return The UTC date at 12 midnight of the date
+     */
+    public static long normalizeDate(long date) {
+        return elapsedDaysSinceEpoch(date) * DAY_IN_MILLIS;
+    }
+
+    /**
+     * @param millisSinceEpoch Milliseconds since January 1, 1970 at midnight
+     * @return true if the date represents the beginning of a day in Unix time, false otherwise
+     */
+    public static boolean isDateNormalized(long millisSinceEpoch) {
+        return millisSinceEpoch % DAY_IN_MILLIS == 0;
+    }
+
+    /**
+     * Returns the instant of local midnight, in the given time zone, for a normalized date.
+     *
+     * @param normalizedUtcDate UTC time at midnight for a given date, as stored in the database
+     * @param timeZone          The time zone whose midnight we want
+     * @return The local date corresponding to the given normalized UTC date
+     */
+    public static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate,
+                                                             TimeZone timeZone) {
+        return normalizedUtcDate - timeZone.getOffset(normalizedUtcDate);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Unit conversions and the bits of weather formatting that don't depend on the user's locale or
+ * on Android's resources. Sunshine stores temperatures in degrees Celsius and wind speeds in
+ * kilometers per hour, and converts them for display.
+ */
+public final class WeatherFormat {
+
+    /* Miles in a kilometer */
+    private static final float MILES_PER_KILOMETER = .621371192237334f;
+
+    /* The eight principal points of the compass, starting from north and going clockwise */
+    private static final String[] COMPASS_DIRECTIONS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    /* This class only has static methods and should never be instantiated */
+    private WeatherFormat() {
+    }
+
+    /**
+     * @param temperatureInCelsius Temperature in degrees Celsius(°C)
+     * @return Temperature in degrees Fahrenheit (°F)
+     */
+    public static double celsiusToFahrenheit(double temperatureInCelsius) {
+        return (temperatureInCelsius * 1.8) + 32;
+    }
+
+    /**
+     * Converts a temperature in degrees Celsius to the units the user prefers.
+     *
+     * @param temperatureInCelsius Temperature in degrees Celsius(°C)
+     * @param isMetric             Whether the user prefers metric units
+     * @return The temperature in degrees Celsius if isMetric is true, in Fahrenheit otherwise
+     */
+    public static double toPreferredTemperature(double temperatureInCelsius, boolean isMetric) {
+        return isMetric ? temperatureInCelsius : celsiusToFahrenheit(temperatureInCelsius);
+    }
+
+    /**
+     * Converts a wind speed in kilometers per hour to the units the user prefers.
+     *
+     * @param windSpeedKmh Wind speed in kilometers / hour
+     * @param isMetric     Whether the user prefers metric units
+     * @return The wind speed in km/h if isMetric is true, in mph otherwise
+     */
+    public static float toPreferredWindSpeed(float windSpeedKmh, boolean isMetric) {
+        return isMetric ? windSpeedKmh : MILES_PER_KILOMETER * windSpeedKmh;
+    }
+
+    /**
+     * Converts a compass bearing into one of the eight principal compass directions, (eg NW).
+     * Each direction covers the 45 degrees centered on it. Anything from 337.5 degrees up, or
+     * below 22.5 degrees, counts as north.
+     *
+     * @param degrees Degrees as measured on a compass, NOT temperature degrees!
+     *                See https://www.mathsisfun.com/geometry/degrees.html
+     * @return The direction, or "Unknown" if degrees is not a number
+     */
+    public static String getCompassDirection(float degrees) {
+        if (Float.isNaN(degrees)) {
+            return "Unknown";
+        }
+        if (degrees >= 337.5f || degrees < 22.5f) {
+            return COMPASS_DIRECTIONS[0];
+        }
+        /* Between 22.5 and 337.5 degrees, this is always 1 to 7 */
+        int sector = (int) ((degrees + 22.5f) / 45f);
+        return COMPASS_DIRECTIONS[sector];
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The decoded body of an {@link HttpResponse}, see {@link HttpResponse#openBody()}.
+ * <p>
+ * Decoding happens inside {@link #read(byte[], int, int)}, as the parser asks for more, so the
+ * time this stream spends in read is the time spent decoding and copying the body. It's counted
+ * separately from whatever the parser does with the bytes in between reads.
+ */
+public final class BodyInputStream extends FilterInputStream {
+
+    private long mDecodedBytes;
+    private long mDecodeNanos;
+
+    BodyInputStream(InputStream wireBody, String contentEncoding) throws IOException {
+        super(HttpResponse.ENCODING_GZIP.equals(contentEncoding)
+                ? new GZIPInputStream(wireBody, 8192)
+                : wireBody);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = super.read();
+        mDecodeNanos += System.nanoTime() - start;
+        if (b != -1) {
+            mDecodedBytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        int count = super.read(buffer, offset, length);
+        mDecodeNanos += System.nanoTime() - start;
+        if (count > 0) {
+            mDecodedBytes += count;
+        }
+        return count;
+    }
+
+    /*
+     * Skipping would decode bytes we don't count, and nobody needs it, so it isn't supported.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return How many decoded bytes have been read so far
+     */
+    public long getDecodedBytes() {
+        return mDecodedBytes;
+    }
+
+    /**
+     * @return How long has been spent inside read, in nanoseconds
+     */
+    public long getDecodeNanos() {
+        return mDecodeNanos;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+/**
+ * Stops requests from being made to a server that keeps failing, so that a server that's down
+ * isn't asked again and again, by every retry and every refresh, while it can't answer anyway.
+ * <p>
+ * The breaker starts closed, letting every request through. After a number of failures in a row
+ * it opens, and for a while every request is refused straight away. Once that while is over, a
+ * single request is let through to see whether the server is back. If it succeeds, the breaker
+ * closes again. If it fails, the breaker opens for another while.
+ * <p>
+ * Like {@link RetryPolicy}, it only concerns itself with failures of the server: a 4xx means the
+ * server is up and answering, so it counts as a success here.
+ */
+public final class CircuitBreaker {
+
+    /**
+     * The source of the current time. It must not jump when the wall clock is changed.
+     */
+    public interface Clock {
+        long elapsedRealtimeMillis();
+    }
+
+    public static final Clock SYSTEM = new Clock() {
+        @Override
+        public long elapsedRealtimeMillis() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    public enum State {
+        /* Requests go through */
+        CLOSED,
+        /* Requests are refused */
+        OPEN,
+        /* A single request has been let through to test the server, the rest are refused */
+        HALF_OPEN
+    }
+
+    private final Clock mClock;
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+
+    private State mState = State.CLOSED;
+    private int mConsecutiveFailures;
+    private long mOpenedAtMillis;
+    private Throwable mLastFailure;
+
+    /**
+     * @param clock            The source of the current time
+     * @param failureThreshold How many failures in a row open the breaker
+     * @param openMillis       How long the breaker stays open before it tries the server again
+     */
+    public CircuitBreaker(Clock clock, int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker: " + failureThreshold
+                    + " failures, " + openMillis + "ms");
+        }
+        mClock = clock;
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+    }
+
+    /**
+     * Asks to make a request. Every request that's allowed must be followed by a call to either
+     * {@link #onSuccess()} or {@link #onFailure(Throwable)}.
+     *
+     * @throws CircuitOpenException If the request must not be made
+     */
+    public synchronized void acquire() throws CircuitOpenException {
+        switch (mState) {
+            case OPEN:
+                long openForMillis = mOpenedAtMillis + mOpenMillis - mClock.elapsedRealtimeMillis();
+                if (openForMillis > 0) {
+                    throw new CircuitOpenException(openForMillis, mLastFailure);
+                }
+                mState = State.HALF_OPEN;
+                return;
+
+            case HALF_OPEN:
+                /* The test request hasn't come back yet */
+                throw new CircuitOpenException(0, mLastFailure);
+
+            default:
+                return;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        mState = State.CLOSED;
+        mConsecutiveFailures = 0;
+        mLastFailure = null;
+    }
+
+    /**
+     * @param failure What went wrong, which is handed on to whoever is refused next
+     */
+    public synchronized void onFailure(Throwable failure) {
+        mLastFailure = failure;
+        mConsecutiveFailures++;
+        if (mState == State.HALF_OPEN || mConsecutiveFailures >= mFailureThreshold) {
+            mState = State.OPEN;
+            mOpenedAtMillis = mClock.elapsedRealtimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of making a request while a {@link CircuitBreaker} is open, because the server
+ * has failed too often recently to be worth asking again yet.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long mRetryAfterMillis;
+
+    public CircuitOpenException(long retryAfterMillis, Throwable lastFailure) {
+        super("Failing fast for another " + retryAfterMillis + "ms", lastFailure);
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return How long until the breaker lets a request through again, in milliseconds
+     */
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+}
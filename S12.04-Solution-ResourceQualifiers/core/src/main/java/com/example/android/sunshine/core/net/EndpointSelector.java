@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chooses between several endpoints that serve the same kind of response, for example the
+ * weather server's dynamic and static forecasts, based on how each has been doing lately.
+ * <p>
+ * Every endpoint keeps the latency of its last {@link #WINDOW} successful requests and the
+ * outcome of its last {@link #WINDOW} requests. The primary endpoint is the one with the lowest
+ * error rate; endpoints whose error rates are within {@link #ERROR_RATE_MARGIN} of each other
+ * are ranked by their median latency instead, if one is at least 20% faster. Until there is any
+ * data, the endpoints keep the order they were given in.
+ * <p>
+ * Endpoints are identified by a base URL. A request for one endpoint is turned into the same
+ * request for another by swapping the base URL, see {@link #rewrite(URL, Endpoint)}.
+ */
+public final class EndpointSelector {
+
+    /* How many recent requests each endpoint remembers */
+    static final int WINDOW = 100;
+
+    /* Error rates closer than this are considered the same */
+    static final double ERROR_RATE_MARGIN = 0.05;
+
+    /**
+     * One endpoint and its recent history. All methods are thread safe.
+     */
+    public static final class Endpoint {
+        private final String mBaseUrl;
+
+        /* Ring buffers of the last WINDOW latencies and outcomes */
+        private final long[] mLatencies = new long[WINDOW];
+        private int mLatencyCount;
+        private int mNextLatency;
+
+        private final boolean[] mFailures = new boolean[WINDOW];
+        private int mOutcomeCount;
+        private int mNextOutcome;
+        private int mFailureCount;
+
+        Endpoint(String baseUrl) {
+            mBaseUrl = baseUrl;
+        }
+
+        public String getBaseUrl() {
+            return mBaseUrl;
+        }
+
+        /**
+         * @param latencyMillis How long the request took, from asking to the last byte
+         */
+        public synchronized void recordSuccess(long latencyMillis) {
+            mLatencies[mNextLatency] = latencyMillis;
+            mNextLatency = (mNextLatency + 1) % WINDOW;
+            mLatencyCount = Math.min(mLatencyCount + 1, WINDOW);
+            recordOutcome(false);
+        }
+
+        public synchronized void recordFailure() {
+            recordOutcome(true);
+        }
+
+        private void recordOutcome(boolean failed) {
+            if (mOutcomeCount == WINDOW && mFailures[mNextOutcome]) {
+                mFailureCount--;
+            }
+            mFailures[mNextOutcome] = failed;
+            if (failed) {
+                mFailureCount++;
+            }
+            mNextOutcome = (mNextOutcome + 1) % WINDOW;
+            mOutcomeCount = Math.min(mOutcomeCount + 1, WINDOW);
+        }
+
+        /**
+         * @return How many successful requests the latency percentiles are based on
+         */
+        public synchronized int getLatencySampleCount() {
+            return mLatencyCount;
+        }
+
+        /**
+         * @param percentile From 0 to 100, for example 95
+         * @return The latency below which that percentage of recent successful requests
+         * finished, or -1 if there haven't been any
+         */
+        public synchronized long getLatencyPercentileMillis(double percentile) {
+            if (mLatencyCount == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(mLatencies, mLatencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * mLatencyCount) - 1;
+            return sorted[Math.max(0, Math.min(mLatencyCount - 1, index))];
+        }
+
+        /**
+         * @return The fraction of recent requests that failed, or 0 if there haven't been any
+         */
+        public synchronized double getErrorRate() {
+            return mOutcomeCount == 0 ? 0 : (double) mFailureCount / mOutcomeCount;
+        }
+
+        @Override
+        public String toString() {
+            return mBaseUrl;
+        }
+    }
+
+    private final List<Endpoint> mEndpoints;
+
+    /**
+     * @param baseUrls The base URL of each endpoint, in order of preference
+     */
+    public EndpointSelector(String... baseUrls) {
+        if (baseUrls.length == 0) {
+            throw new IllegalArgumentException("No endpoints");
+        }
+        List<Endpoint> endpoints = new ArrayList<Endpoint>(baseUrls.length);
+        for (String baseUrl : baseUrls) {
+            endpoints.add(new Endpoint(baseUrl));
+        }
+        mEndpoints = Collections.unmodifiableList(endpoints);
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return mEndpoints;
+    }
+
+    /**
+     * @return The endpoint that has been doing best lately
+     */
+    public Endpoint getPrimary() {
+        return best(null);
+    }
+
+    /**
+     * @param primary The endpoint already being asked
+     * @return The best of the other endpoints, or null if there are no others
+     */
+    public Endpoint getSecondary(Endpoint primary) {
+        return best(primary);
+    }
+
+    /**
+     * @return The endpoint whose base URL the given URL starts with, or null if there is none
+     */
+    public Endpoint find(URL url) {
+        String string = url.toString();
+        for (Endpoint endpoint : mEndpoints) {
+            String base = endpoint.getBaseUrl();
+            if (string.startsWith(base) && (string.length() == base.length()
+                    || string.charAt(base.length()) == '?'
+                    || string.charAt(base.length()) == '/')) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Turns a request for one endpoint into the same request for another, for example
+     * .../staticweather?q=94043 into .../weather?q=94043.
+     *
+     * @param url A URL that starts with the base URL of one of the endpoints
+     * @param to  The endpoint the request should go to instead
+     */
+    public URL rewrite(URL url, Endpoint to) throws MalformedURLException {
+        Endpoint from = find(url);
+        if (from == null) {
+            throw new IllegalArgumentException(url + " isn't for any of the endpoints");
+        }
+        if (from == to) {
+            return url;
+        }
+        return new URL(to.getBaseUrl() + url.toString().substring(from.getBaseUrl().length()));
+    }
+
+    private Endpoint best(Endpoint excluded) {
+        Endpoint best = null;
+        for (Endpoint endpoint : mEndpoints) {
+            if (endpoint != excluded && (best == null || isBetter(endpoint, best))) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBetter(Endpoint candidate, Endpoint current) {
+        double candidateErrors = candidate.getErrorRate();
+        double currentErrors = current.getErrorRate();
+        if (Math.abs(candidateErrors - currentErrors) > ERROR_RATE_MARGIN) {
+            return candidateErrors < currentErrors;
+        }
+
+        long candidateMedian = candidate.getLatencyPercentileMillis(50);
+        long currentMedian = current.getLatencyPercentileMillis(50);
+        /*
+         * Without latencies for both, there's nothing to compare, so the order decides. So it
+         * does when the medians are close, or noise would have us switching back and forth.
+         */
+        return candidateMedian >= 0 && currentMedian >= 0
+                && candidateMedian * 5 < currentMedian * 4;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import com.example.android.sunshine.core.ForecastParseException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Locale;
+
+/**
+ * Why a request or a sync failed. Each kind calls for a different reaction: a timeout or a server
+ * error is likely to go away if we wait a little and try again, but a 4xx or a response we can't
+ * parse will come back exactly the same, so retrying it only wastes battery and data.
+ */
+public enum FailureKind {
+
+    /* The connection or the response took too long, including 408 Request Timeout */
+    TIMEOUT(true),
+
+    /* The connection couldn't be made or broke off, for example because there's no network */
+    CONNECTION(true),
+
+    /* The server said our request was wrong, with a 4xx status */
+    CLIENT_ERROR(false),
+
+    /* The server failed, with a 5xx status */
+    SERVER_ERROR(true),
+
+    /* The server answered, but not with a forecast we understand */
+    PARSE_ERROR(false),
+
+    /* We didn't even ask, because a CircuitBreaker is open */
+    CIRCUIT_OPEN(false),
+
+    /* Anything else, which means a bug rather than a network problem */
+    OTHER(false);
+
+    private final boolean mRetryable;
+
+    FailureKind(boolean retryable) {
+        mRetryable = retryable;
+    }
+
+    /**
+     * @return Whether trying again shortly has a chance of succeeding
+     */
+    public boolean isRetryable() {
+        return mRetryable;
+    }
+
+    /**
+     * @return The name used for this kind in logs and in the database, for example "timeout"
+     */
+    public String getLogName() {
+        return name().toLowerCase(Locale.US);
+    }
+
+    /**
+     * @param statusCode An HTTP status code of 400 or more
+     * @return What kind of failure the status stands for
+     */
+    public static FailureKind forStatusCode(int statusCode) {
+        if (statusCode == 408) {
+            return TIMEOUT;
+        }
+        return statusCode >= 500 ? SERVER_ERROR : CLIENT_ERROR;
+    }
+
+    /**
+     * @param failure What was thrown
+     * @return What kind of failure it stands for
+     */
+    public static FailureKind classify(Throwable failure) {
+        if (failure instanceof CircuitOpenException) {
+            return CIRCUIT_OPEN;
+        } else if (failure instanceof HttpStatusException) {
+            return forStatusCode(((HttpStatusException) failure).getStatusCode());
+        } else if (failure instanceof ForecastParseException) {
+            return PARSE_ERROR;
+        } else if (failure instanceof InterruptedIOException) {
+            /* This includes SocketTimeoutException, which is what HttpURLConnection throws */
+            return TIMEOUT;
+        } else if (failure instanceof IOException) {
+            return CONNECTION;
+        }
+        return OTHER;
+    }
+}
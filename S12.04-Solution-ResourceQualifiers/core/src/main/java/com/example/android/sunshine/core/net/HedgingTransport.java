@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends each request to the best endpoint an {@link EndpointSelector} knows of and, if it's slow
+ * to answer, sends a "hedged" copy of the request to the second best, then takes whichever
+ * answer comes first.
+ * <p>
+ * Slow is anything slower than the primary endpoint's own p95 latency, so about one request in
+ * twenty is hedged: the extra load on the servers stays small, but the slowest requests, the ones
+ * that make up the tail of the latency distribution, get a second chance. A request that fails
+ * outright is hedged straight away. The answer that loses the race is still read to the end in
+ * the background, so both endpoints' latencies and error rates keep being tracked.
+ * <p>
+ * URLs that don't belong to any of the endpoints are passed straight on.
+ */
+public class HedgingTransport implements HttpTransport {
+
+    /* Until an endpoint has this many latencies, its p95 is a guess, and the default is used */
+    private static final int MIN_SAMPLES = 20;
+
+    /* The hedge delay until there are enough samples */
+    public static final long DEFAULT_HEDGE_DELAY_MILLIS = 1000;
+
+    private static final AtomicInteger sThreadCount = new AtomicInteger();
+
+    /* Requests run on their own threads, so the caller can stop waiting for a slow one */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "HedgingTransport " + sThreadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final HttpTransport mDelegate;
+    private final EndpointSelector mSelector;
+    private final long mDefaultHedgeDelayMillis;
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mHedgeCount = new AtomicInteger();
+    private final AtomicInteger mHedgeWinCount = new AtomicInteger();
+
+    public HedgingTransport(HttpTransport delegate, EndpointSelector selector) {
+        this(delegate, selector, DEFAULT_HEDGE_DELAY_MILLIS);
+    }
+
+    /**
+     * @param delegate                The transport requests are actually made through
+     * @param selector                The endpoints, and how they've been doing
+     * @param defaultHedgeDelayMillis How long to wait before hedging, until the primary endpoint
+     *                                has enough history for a p95
+     */
+    public HedgingTransport(HttpTransport delegate, EndpointSelector selector,
+                            long defaultHedgeDelayMillis) {
+        mDelegate = delegate;
+        mSelector = selector;
+        mDefaultHedgeDelayMillis = defaultHedgeDelayMillis;
+    }
+
+    @Override
+    public HttpResponse get(URL url) throws IOException {
+        if (mSelector.find(url) == null) {
+            return mDelegate.get(url);
+        }
+        mRequestCount.incrementAndGet();
+
+        EndpointSelector.Endpoint primary = mSelector.getPrimary();
+        EndpointSelector.Endpoint secondary = mSelector.getSecondary(primary);
+
+        CompletionService<HttpResponse> race =
+                new ExecutorCompletionService<HttpResponse>(EXECUTOR);
+        race.submit(request(url, primary));
+        Future<HttpResponse> hedge = null;
+        int pending = 1;
+
+        HttpResponse failedResponse = null;
+        IOException failure = null;
+        try {
+            Future<HttpResponse> done =
+                    race.poll(hedgeDelayMillis(primary), TimeUnit.MILLISECONDS);
+            while (true) {
+                if (done == null) {
+                    /* The primary is slower than it usually is: ask the secondary too */
+                    if (secondary != null && hedge == null) {
+                        hedge = race.submit(request(url, secondary));
+                        pending++;
+                        mHedgeCount.incrementAndGet();
+                    }
+                    done = race.take();
+                    continue;
+                }
+                pending--;
+
+                HttpResponse response = null;
+                try {
+                    response = done.get();
+                } catch (ExecutionException e) {
+                    failure = unwrap(e);
+                }
+                if (response != null && response.getStatusCode() < 500) {
+                    if (done == hedge) {
+                        mHedgeWinCount.incrementAndGet();
+                    }
+                    return response;
+                }
+                if (response != null) {
+                    failedResponse = response;
+                }
+
+                /* The primary failed outright, so there's no point waiting to hedge */
+                if (secondary != null && hedge == null) {
+                    hedge = race.submit(request(url, secondary));
+                    pending++;
+                    mHedgeCount.incrementAndGet();
+                }
+                if (pending == 0) {
+                    break;
+                }
+                done = race.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        }
+
+        /* Everything failed. A response says more about what went wrong than an exception. */
+        if (failedResponse != null) {
+            return failedResponse;
+        }
+        throw failure;
+    }
+
+    public EndpointSelector getSelector() {
+        return mSelector;
+    }
+
+    /**
+     * @return How many requests for one of the endpoints have been made
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return How many of those requests were hedged
+     */
+    public int getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    /**
+     * @return How many hedged requests were answered by the secondary endpoint first
+     */
+    public int getHedgeWinCount() {
+        return mHedgeWinCount.get();
+    }
+
+    private long hedgeDelayMillis(EndpointSelector.Endpoint primary) {
+        if (primary.getLatencySampleCount() < MIN_SAMPLES) {
+            return mDefaultHedgeDelayMillis;
+        }
+        return primary.getLatencyPercentileMillis(95);
+    }
+
+    private Callable<HttpResponse> request(final URL url,
+                                           final EndpointSelector.Endpoint endpoint) {
+        return new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws IOException {
+                long start = System.nanoTime();
+                HttpResponse response;
+                try {
+                    response = mDelegate.get(mSelector.rewrite(url, endpoint));
+                } catch (IOException e) {
+                    endpoint.recordFailure();
+                    throw e;
+                } catch (RuntimeException e) {
+                    endpoint.recordFailure();
+                    throw e;
+                }
+                if (response.getStatusCode() >= 500) {
+                    endpoint.recordFailure();
+                } else {
+                    endpoint.recordSuccess(
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                return response;
+            }
+        };
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * A complete HTTP response: its status code and the bytes of its body.
+ * <p>
+ * The body is kept exactly as it came over the wire, which may be compressed. Use
+ * {@link #openBody()} to stream it, decoded, into a parser without ever holding the decoded body
+ * in memory, or {@link #getBody()} when the whole decoded body is needed at once.
+ */
+public final class HttpResponse {
+
+    /* Both the weather server and OpenWeatherMap send their JSON as UTF-8 */
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The only Content-Encoding, besides none at all, that Sunshine asks for */
+    public static final String ENCODING_GZIP = "gzip";
+
+    private final int mStatusCode;
+    private final String mContentEncoding;
+    private final byte[] mWireBody;
+
+    /* The decoded body, only created if somebody asks for all of it at once */
+    private byte[] mBody;
+
+    /**
+     * @param statusCode The HTTP status code, for example 200
+     * @param body       The body. The response takes ownership of the array, so it must not be
+     *                   changed afterwards.
+     */
+    public HttpResponse(int statusCode, byte[] body) {
+        this(statusCode, null, body);
+    }
+
+    /**
+     * @param statusCode      The HTTP status code, for example 200
+     * @param contentEncoding The Content-Encoding of the body, {@link #ENCODING_GZIP} or null if
+     *                        it isn't encoded
+     * @param wireBody        The body as it was received. The response takes ownership of the
+     *                        array, so it must not be changed afterwards.
+     * @throws IllegalArgumentException If the encoding isn't one we can decode
+     */
+    public HttpResponse(int statusCode, String contentEncoding, byte[] wireBody) {
+        mStatusCode = statusCode;
+        mContentEncoding = normalizeEncoding(contentEncoding);
+        mWireBody = wireBody;
+        if (mContentEncoding == null) {
+            mBody = wireBody;
+        }
+    }
+
+    /**
+     * @return {@link #ENCODING_GZIP} for gzip, or null for no encoding at all
+     * @throws IllegalArgumentException If the encoding isn't one we can decode
+     */
+    static String normalizeEncoding(String contentEncoding) {
+        if (contentEncoding == null || contentEncoding.equalsIgnoreCase("identity")) {
+            return null;
+        }
+        if (!contentEncoding.equalsIgnoreCase(ENCODING_GZIP)) {
+            throw new IllegalArgumentException("Unsupported encoding: " + contentEncoding);
+        }
+        return ENCODING_GZIP;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * @return true for status codes below 400, the ones HttpURLConnection returns a body for
+     */
+    public boolean isSuccessful() {
+        return mStatusCode < 400;
+    }
+
+    /**
+     * @return {@link #ENCODING_GZIP}, or null if the body wasn't encoded
+     */
+    public String getContentEncoding() {
+        return mContentEncoding;
+    }
+
+    /**
+     * @return How many bytes the body took up on the wire, before it was decoded
+     */
+    public int getWireLength() {
+        return mWireBody.length;
+    }
+
+    /**
+     * Opens the body for reading, decoding it on the fly. Each call starts again from the
+     * beginning. The returned stream counts the decoded bytes and the time spent decoding them.
+     */
+    public BodyInputStream openBody() throws IOException {
+        return new BodyInputStream(new ByteArrayInputStream(mWireBody), mContentEncoding);
+    }
+
+    /**
+     * @return The decoded body. It must not be changed.
+     * @throws IOException If the body claims to be compressed, but isn't
+     */
+    public byte[] getBody() throws IOException {
+        if (mBody == null) {
+            mBody = UrlConnectionTransport.readFully(openBody());
+        }
+        return mBody;
+    }
+
+    public String getBodyAsString() throws IOException {
+        return new String(getBody(), UTF_8);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Fetches a URL. Sunshine only ever makes GET requests for small responses, so that's all a
+ * transport has to do. The real network is {@link UrlConnectionTransport}; the others record its
+ * responses and play them back, so a sync can be run without a network.
+ */
+public interface HttpTransport {
+
+    /**
+     * Makes a GET request and reads the whole response.
+     *
+     * @param url The URL to fetch
+     * @return The response, whatever its status code
+     * @throws IOException If no response could be read at all
+     */
+    HttpResponse get(URL url) throws IOException;
+}
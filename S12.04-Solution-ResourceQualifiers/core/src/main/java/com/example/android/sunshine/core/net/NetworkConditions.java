@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.util.Random;
+
+/**
+ * How a replayed network should behave: how long it takes to connect and to respond, how fast it
+ * delivers the body, and how often it fails. Failures are decided by a Random with a fixed seed,
+ * so the same conditions fail the same requests on every run.
+ * <p>
+ * Conditions are built with a {@link Builder}:
+ * <pre>
+ *     NetworkConditions slow3g = new NetworkConditions.Builder()
+ *             .setLatencyMillis(400)
+ *             .setBytesPerSecond(50 * 1024)
+ *             .setFailureRate(0.05)
+ *             .build();
+ * </pre>
+ */
+public final class NetworkConditions {
+
+    /**
+     * What happens to a single request.
+     */
+    public enum Outcome {
+        /* The response is delivered */
+        RESPONSE,
+        /* The connection fails and no response is read */
+        CONNECTION_FAILURE,
+        /* The server answers with 503 Service Unavailable */
+        SERVER_ERROR
+    }
+
+    /**
+     * A network that responds instantly and never fails.
+     */
+    public static final NetworkConditions PERFECT = new Builder().build();
+
+    private final long mConnectLatencyMillis;
+    private final long mLatencyMillis;
+    private final long mBytesPerSecond;
+    private final double mFailureRate;
+    private final double mServerErrorRate;
+    private final double mLatencySpikeRate;
+    private final long mLatencySpikeMillis;
+    private final Random mRandom;
+    private final Random mLatencyRandom;
+
+    private NetworkConditions(Builder builder) {
+        mConnectLatencyMillis = builder.mConnectLatencyMillis;
+        mLatencyMillis = builder.mLatencyMillis;
+        mBytesPerSecond = builder.mBytesPerSecond;
+        mFailureRate = builder.mFailureRate;
+        mServerErrorRate = builder.mServerErrorRate;
+        mLatencySpikeRate = builder.mLatencySpikeRate;
+        mLatencySpikeMillis = builder.mLatencySpikeMillis;
+        mRandom = new Random(builder.mSeed);
+        /* Separate, so that adding spikes doesn't change which requests fail */
+        mLatencyRandom = new Random(builder.mSeed + 1);
+    }
+
+    /**
+     * @return How long setting up a new connection takes, on top of the latency of its first
+     * request. Only a {@link StandInServer} has connections, so only it applies this.
+     */
+    public long getConnectLatencyMillis() {
+        return mConnectLatencyMillis;
+    }
+
+    public long getLatencyMillis() {
+        return mLatencyMillis;
+    }
+
+    /**
+     * Decides how long the next response takes to start arriving: usually the latency, but now
+     * and then a latency spike on top of it. Like {@link #nextOutcome()}, each call moves on to
+     * the next request.
+     */
+    public synchronized long nextLatencyMillis() {
+        if (mLatencySpikeRate > 0 && mLatencyRandom.nextDouble() < mLatencySpikeRate) {
+            return mLatencyMillis + mLatencySpikeMillis;
+        }
+        return mLatencyMillis;
+    }
+
+    /**
+     * @return The bandwidth, or 0 if it's unlimited
+     */
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * Decides what happens to the next request. Each call moves on to the next request, so
+     * requests must be made in the same order for a run to be reproduced.
+     */
+    public synchronized Outcome nextOutcome() {
+        double roll = mRandom.nextDouble();
+        if (roll < mFailureRate) {
+            return Outcome.CONNECTION_FAILURE;
+        } else if (roll < mFailureRate + mServerErrorRate) {
+            return Outcome.SERVER_ERROR;
+        }
+        return Outcome.RESPONSE;
+    }
+
+    /**
+     * @param bytes The size of a body
+     * @return How long delivering it takes at this bandwidth, in milliseconds
+     */
+    public long transferMillis(long bytes) {
+        return mBytesPerSecond == 0 ? 0 : bytes * 1000 / mBytesPerSecond;
+    }
+
+    public static final class Builder {
+        private long mConnectLatencyMillis;
+        private long mLatencyMillis;
+        private long mBytesPerSecond;
+        private double mFailureRate;
+        private double mServerErrorRate;
+        private double mLatencySpikeRate;
+        private long mLatencySpikeMillis;
+        private long mSeed = 42;
+
+        /**
+         * @param connectLatencyMillis How long a new connection takes to set up, for example
+         *                             for the round trips of a TLS handshake
+         */
+        public Builder setConnectLatencyMillis(long connectLatencyMillis) {
+            mConnectLatencyMillis = connectLatencyMillis;
+            return this;
+        }
+
+        /**
+         * @param latencyMillis How long before the first byte of the response arrives
+         */
+        public Builder setLatencyMillis(long latencyMillis) {
+            mLatencyMillis = latencyMillis;
+            return this;
+        }
+
+        /**
+         * @param bytesPerSecond How fast the body is delivered, or 0 for no limit
+         */
+        public Builder setBytesPerSecond(long bytesPerSecond) {
+            mBytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param failureRate The fraction of requests, from 0 to 1, whose connection fails
+         */
+        public Builder setFailureRate(double failureRate) {
+            mFailureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * @param serverErrorRate The fraction of requests, from 0 to 1, that get a 503
+         */
+        public Builder setServerErrorRate(double serverErrorRate) {
+            mServerErrorRate = serverErrorRate;
+            return this;
+        }
+
+        /**
+         * @param rate   The fraction of requests, from 0 to 1, that hit a latency spike, the
+         *               long tail that makes a server's p99 so much worse than its median
+         * @param millis How much a spike adds to the latency
+         */
+        public Builder setLatencySpikes(double rate, long millis) {
+            mLatencySpikeRate = rate;
+            mLatencySpikeMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param seed Decides which requests fail, and which hit a latency spike
+         */
+        public Builder setSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        public NetworkConditions build() {
+            if (mFailureRate < 0 || mServerErrorRate < 0 || mFailureRate + mServerErrorRate > 1) {
+                throw new IllegalArgumentException("Invalid failure rates: " + mFailureRate
+                        + " and " + mServerErrorRate);
+            }
+            return new NetworkConditions(this);
+        }
+    }
+}
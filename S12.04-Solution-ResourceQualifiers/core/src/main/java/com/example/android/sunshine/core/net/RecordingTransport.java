@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Passes every request on to another transport, usually the real network, and records each
+ * response it gets back so it can be replayed later.
+ */
+public class RecordingTransport implements HttpTransport {
+
+    private final HttpTransport mDelegate;
+    private final ResponseRecordings mRecordings;
+
+    public RecordingTransport(HttpTransport delegate, ResponseRecordings recordings) {
+        mDelegate = delegate;
+        mRecordings = recordings;
+    }
+
+    @Override
+    public HttpResponse get(URL url) throws IOException {
+        HttpResponse response = mDelegate.get(url);
+        mRecordings.save(ResponseRecordings.keyFor(url), response);
+        return response;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+
+/**
+ * Answers requests with recorded responses, within the same process, under the given network
+ * conditions. The calling thread sleeps for as long as the conditions say the response would
+ * take, so timings measured around a replayed request include it.
+ * <p>
+ * Use this when only the app's own code should be measured. A {@link StandInServer} also goes
+ * through HttpURLConnection and a real socket.
+ */
+public class ReplayTransport implements HttpTransport {
+
+    private final ResponseRecordings mRecordings;
+    private final NetworkConditions mConditions;
+
+    public ReplayTransport(ResponseRecordings recordings, NetworkConditions conditions) {
+        mRecordings = recordings;
+        mConditions = conditions;
+    }
+
+    /**
+     * @throws FileNotFoundException If the request was never recorded
+     * @throws IOException           If the conditions decided this request's connection fails
+     */
+    @Override
+    public HttpResponse get(URL url) throws IOException {
+        String key = ResponseRecordings.keyFor(url);
+        HttpResponse response = mRecordings.load(key);
+        if (response == null) {
+            throw new FileNotFoundException("No recording for " + key);
+        }
+
+        NetworkConditions.Outcome outcome = mConditions.nextOutcome();
+        sleep(mConditions.nextLatencyMillis());
+
+        switch (outcome) {
+            case CONNECTION_FAILURE:
+                throw new IOException("Injected connection failure for " + key);
+
+            case SERVER_ERROR:
+                return new HttpResponse(503, new byte[0]);
+
+            default:
+                sleep(mConditions.transferMillis(response.getWireLength()));
+                return response;
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replaying a response");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A directory of recorded responses, one file per request.
+ * <p>
+ * Requests are identified by the path and query of their URL, without the scheme, host or port.
+ * A response recorded from the real weather server can therefore be played back to a request
+ * for the same forecast that's addressed to a {@link StandInServer} on localhost.
+ * <p>
+ * Each file holds the status code on its first line, followed by the decoded body, so a
+ * recording can be checked or edited by hand. A response that arrived gzipped is recorded
+ * decompressed, and whoever replays it decides whether to compress it again.
+ */
+public class ResponseRecordings {
+
+    private static final String EXTENSION = ".http";
+
+    private final File mDirectory;
+
+    /**
+     * @param directory Where the recordings are kept. It's created if it doesn't exist.
+     */
+    public ResponseRecordings(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * @return What identifies the request for a URL: its path and query
+     */
+    public static String keyFor(URL url) {
+        String query = url.getQuery();
+        return query == null ? url.getPath() : url.getPath() + "?" + query;
+    }
+
+    /**
+     * Records a response, replacing any earlier recording for the same request.
+     *
+     * @param key      The request, see {@link #keyFor(URL)}
+     * @param response The response to record
+     */
+    public void save(String key, HttpResponse response) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Couldn't create " + mDirectory);
+        }
+
+        OutputStream out = new FileOutputStream(fileFor(key));
+        try {
+            out.write((response.getStatusCode() + "\n").getBytes(HttpResponse.UTF_8));
+            out.write(response.getBody());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param key The request, see {@link #keyFor(URL)}
+     * @return The recorded response, or null if the request was never recorded
+     */
+    public HttpResponse load(String key) throws IOException {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            int statusCode = 0;
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < '0' || c > '9') {
+                    throw new IOException("Not a recording: " + file);
+                }
+                statusCode = statusCode * 10 + (c - '0');
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                body.write(buffer, 0, count);
+            }
+            return new HttpResponse(statusCode, body.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * Paths and queries can contain characters that aren't allowed in file names, and can be
+     * longer than a file name may be, so files are named after a hash of the key instead.
+     */
+    private File fileFor(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(HttpResponse.UTF_8));
+
+            StringBuilder name = new StringBuilder(hash.length * 2 + EXTENSION.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(mDirectory, name.append(EXTENSION).toString());
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform, Android included, is required to support SHA-1 */
+            throw new AssertionError(e);
+        }
+    }
+}
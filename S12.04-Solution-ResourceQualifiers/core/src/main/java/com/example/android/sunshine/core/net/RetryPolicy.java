@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.util.Random;
+
+/**
+ * Decides whether a failed request should be tried again, and how long to wait first.
+ * <p>
+ * The wait grows exponentially with each retry, up to a maximum, and is "fully jittered": rather
+ * than waiting exactly 1, 2, 4... seconds, each wait is a random time between zero and that
+ * amount. When the weather server has a bad moment, every phone that synced at the same time
+ * fails at the same time, and jitter keeps them from all coming back at the same time too.
+ * <p>
+ * Only failures that might go away are retried, see {@link FailureKind#isRetryable()}. If the
+ * policy has a deadline, no retry is started that couldn't begin before the deadline, so the
+ * attempts and the waits in between can't take longer, in all, than the deadline plus one attempt.
+ * <pre>
+ *     RetryPolicy policy = new RetryPolicy.Builder()
+ *             .setMaxAttempts(3)
+ *             .setBaseDelayMillis(1000)
+ *             .setMaxDelayMillis(10000)
+ *             .setDeadlineMillis(30000)
+ *             .build();
+ * </pre>
+ */
+public final class RetryPolicy {
+
+    /**
+     * Never retries, so every failure is reported straight away.
+     */
+    public static final RetryPolicy NEVER = new Builder().setMaxAttempts(1).build();
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final long mDeadlineMillis;
+    private final Random mRandom;
+
+    private RetryPolicy(Builder builder) {
+        mMaxAttempts = builder.mMaxAttempts;
+        mBaseDelayMillis = builder.mBaseDelayMillis;
+        mMaxDelayMillis = builder.mMaxDelayMillis;
+        mDeadlineMillis = builder.mDeadlineMillis;
+        mRandom = builder.mHasSeed ? new Random(builder.mSeed) : new Random();
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * @param failure  Why the last attempt failed
+     * @param attempts How many attempts have been made so far, including the one that failed
+     * @return Whether another attempt should be made
+     */
+    public boolean shouldRetry(FailureKind failure, int attempts) {
+        return failure.isRetryable() && attempts < mMaxAttempts;
+    }
+
+    /**
+     * @param elapsedMillis How long has passed since the first attempt started
+     * @param delayMillis   How long we're about to wait before the next attempt
+     * @return Whether the next attempt would still start before the deadline
+     */
+    public boolean isWithinDeadline(long elapsedMillis, long delayMillis) {
+        return mDeadlineMillis == 0 || elapsedMillis + delayMillis < mDeadlineMillis;
+    }
+
+    /**
+     * @return The time by which the last attempt must have started, or 0 if there is none
+     */
+    public long getDeadlineMillis() {
+        return mDeadlineMillis;
+    }
+
+    /**
+     * @param retry Which retry is about to be made, starting from 1
+     * @return How long to wait before making it, in milliseconds. This is random, between zero
+     * and the base delay doubled for every earlier retry, but never more than the maximum.
+     */
+    public synchronized long delayBeforeRetryMillis(int retry) {
+        return (long) (mRandom.nextDouble() * (maxDelayBeforeRetryMillis(retry) + 1));
+    }
+
+    /**
+     * @param retry Which retry is about to be made, starting from 1
+     * @return The longest {@link #delayBeforeRetryMillis(int)} can be for that retry
+     */
+    public long maxDelayBeforeRetryMillis(int retry) {
+        /* Stop doubling before the shift overflows, the maximum has long been reached by then */
+        int doublings = Math.min(Math.max(retry - 1, 0), 30);
+        return Math.min(mMaxDelayMillis, mBaseDelayMillis << doublings);
+    }
+
+    public static final class Builder {
+        private int mMaxAttempts = 3;
+        private long mBaseDelayMillis = 1000;
+        private long mMaxDelayMillis = 30000;
+        private long mDeadlineMillis;
+        private boolean mHasSeed;
+        private long mSeed;
+
+        /**
+         * @param maxAttempts How many attempts to make in all, counting the first one
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            mMaxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param baseDelayMillis The longest wait before the first retry
+         */
+        public Builder setBaseDelayMillis(long baseDelayMillis) {
+            mBaseDelayMillis = baseDelayMillis;
+            return this;
+        }
+
+        /**
+         * @param maxDelayMillis The longest wait before any retry
+         */
+        public Builder setMaxDelayMillis(long maxDelayMillis) {
+            mMaxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * @param deadlineMillis How long after the first attempt the last one may start, or 0
+         *                       for no limit
+         */
+        public Builder setDeadlineMillis(long deadlineMillis) {
+            mDeadlineMillis = deadlineMillis;
+            return this;
+        }
+
+        /**
+         * @param seed Makes the jitter the same on every run, for tests. Without a seed, every
+         *             policy jitters differently, which is the point of jitter.
+         */
+        public Builder setSeed(long seed) {
+            mHasSeed = true;
+            mSeed = seed;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            if (mMaxAttempts < 1 || mBaseDelayMillis < 0 || mMaxDelayMillis < mBaseDelayMillis
+                    || mDeadlineMillis < 0) {
+                throw new IllegalArgumentException("Invalid retry policy: " + mMaxAttempts
+                        + " attempts, " + mBaseDelayMillis + " to " + mMaxDelayMillis + "ms");
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Passes every request on to another transport, retrying the ones that fail for reasons that
+ * might go away, as a {@link RetryPolicy} says, and refusing to make any while a
+ * {@link CircuitBreaker} says the server is down. Retrying stops at the policy's deadline, so a
+ * request can't take much longer in all than the deadline plus the delegate's own timeouts.
+ * <p>
+ * A response with a 5xx status is retried like a connection failure. If it's still an error
+ * after the last attempt, it's returned like any other response, so the caller sees the status.
+ * Every failed attempt is counted by its {@link FailureKind}.
+ * <p>
+ * Work that can't be expressed as a single {@link #get(URL)}, like streaming a response into the
+ * database while it downloads, can be retried with the same policy and breaker through
+ * {@link #execute(Attempt)}.
+ */
+public class RetryingTransport implements HttpTransport {
+
+    /**
+     * One attempt at some work that talks to the server, for {@link #execute(Attempt)}.
+     */
+    public interface Attempt<T> {
+
+        /**
+         * Does the work. If it fails, it must undo whatever it did, since it may be run again
+         * from the start. A response with an error status should be thrown as an
+         * {@link HttpStatusException}, so a 5xx is retried like it is by {@link #get(URL)}.
+         *
+         * @return The result of the work
+         * @throws IOException If the attempt failed
+         */
+        T run() throws IOException;
+    }
+
+    private final HttpTransport mDelegate;
+    private final RetryPolicy mPolicy;
+    private final CircuitBreaker mBreaker;
+
+    private final AtomicIntegerArray mFailureCounts =
+            new AtomicIntegerArray(FailureKind.values().length);
+
+    public RetryingTransport(HttpTransport delegate, RetryPolicy policy, CircuitBreaker breaker) {
+        mDelegate = delegate;
+        mPolicy = policy;
+        mBreaker = breaker;
+    }
+
+    /**
+     * @throws CircuitOpenException If the circuit breaker refused the request
+     * @throws IOException          If the last attempt failed without a response
+     */
+    @Override
+    public HttpResponse get(URL url) throws IOException {
+        long startNanos = System.nanoTime();
+        for (int attempts = 1; ; attempts++) {
+            try {
+                mBreaker.acquire();
+            } catch (CircuitOpenException e) {
+                countFailure(FailureKind.CIRCUIT_OPEN);
+                throw e;
+            }
+
+            FailureKind failure;
+            HttpResponse response = null;
+            IOException exception = null;
+            try {
+                response = mDelegate.get(url);
+                if (response.getStatusCode() < 500) {
+                    /* The server is up, even if it didn't like our request */
+                    mBreaker.onSuccess();
+                    return response;
+                }
+                failure = FailureKind.forStatusCode(response.getStatusCode());
+                mBreaker.onFailure(new HttpStatusException(response.getStatusCode(),
+                        "HTTP " + response.getStatusCode() + " from " + url));
+            } catch (IOException e) {
+                failure = FailureKind.classify(e);
+                exception = e;
+                mBreaker.onFailure(e);
+            } catch (RuntimeException e) {
+                /* Not a network problem, but the breaker must still hear how the request ended */
+                mBreaker.onFailure(e);
+                throw e;
+            }
+            countFailure(failure);
+
+            long delayMillis = mPolicy.delayBeforeRetryMillis(attempts);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if (!mPolicy.shouldRetry(failure, attempts)
+                    || !mPolicy.isWithinDeadline(elapsedMillis, delayMillis)) {
+                if (exception != null) {
+                    throw exception;
+                }
+                return response;
+            }
+            sleep(delayMillis);
+        }
+    }
+
+    /**
+     * Runs an attempt, and runs it again for as long as it fails for reasons that might go away
+     * and the policy allows. The breaker is told how each attempt ended. A failure that shows
+     * the server is up, like a 4xx or a response that can't be parsed, isn't held against it.
+     *
+     * @param attempt The work to do
+     * @return The result of the first attempt to succeed
+     * @throws CircuitOpenException If the circuit breaker refused the attempt
+     * @throws IOException          The failure of the last attempt, once no more are allowed
+     */
+    public <T> T execute(Attempt<T> attempt) throws IOException {
+        long startNanos = System.nanoTime();
+        for (int attempts = 1; ; attempts++) {
+            try {
+                mBreaker.acquire();
+            } catch (CircuitOpenException e) {
+                countFailure(FailureKind.CIRCUIT_OPEN);
+                throw e;
+            }
+
+            try {
+                T result = attempt.run();
+                mBreaker.onSuccess();
+                return result;
+            } catch (IOException e) {
+                FailureKind failure = FailureKind.classify(e);
+                if (failure == FailureKind.CLIENT_ERROR || failure == FailureKind.PARSE_ERROR) {
+                    mBreaker.onSuccess();
+                } else {
+                    mBreaker.onFailure(e);
+                }
+                countFailure(failure);
+
+                long delayMillis = mPolicy.delayBeforeRetryMillis(attempts);
+                long elapsedMillis =
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                if (!mPolicy.shouldRetry(failure, attempts)
+                        || !mPolicy.isWithinDeadline(elapsedMillis, delayMillis)) {
+                    throw e;
+                }
+                sleep(delayMillis);
+            } catch (RuntimeException e) {
+                mBreaker.onFailure(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return How many attempts have failed for the given reason since this transport was
+     * created
+     */
+    public int getFailureCount(FailureKind kind) {
+        return mFailureCounts.get(kind.ordinal());
+    }
+
+    private void countFailure(FailureKind kind) {
+        mFailureCounts.incrementAndGet(kind.ordinal());
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A minimal HTTP server on localhost that stands in for the weather server. It answers GET
+ * requests with recorded responses, under the given network conditions, over a real socket. That
+ * way a sync can be run from start to finish, HttpURLConnection included, on a machine with no
+ * network at all, and take the same time on every run.
+ * <p>
+ * The server understands just enough HTTP/1.1 for HttpURLConnection: it reads the request line
+ * and headers and answers, then keeps the connection open for the next request, unless the
+ * client asked it not to. Requests that were never recorded get a 404. Every new connection
+ * costs the connect latency of the conditions, so reusing connections pays off just like it
+ * does on a real network, and {@link #getConnectionCount()} shows whether it happened.
+ * Like the real server, it gzips the body when the request's Accept-Encoding allows it, and the
+ * bandwidth limit applies to the compressed bytes, which are what would cross a real network.
+ * <pre>
+ *     StandInServer server = new StandInServer(recordings, conditions);
+ *     server.start();
+ *     HttpResponse response = server.transport().get(forecastUrl);
+ *     server.close();
+ * </pre>
+ */
+public class StandInServer implements Closeable {
+
+    /* The body is written in slices this big, so bandwidth limits are applied smoothly */
+    private static final int SLICE_BYTES = 1024;
+
+    private final ResponseRecordings mRecordings;
+    private final NetworkConditions mConditions;
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final Set<Socket> mOpenSockets = new HashSet<Socket>();
+    private final AtomicLong mBodyBytesSent = new AtomicLong();
+
+    private ServerSocket mServerSocket;
+    private volatile boolean mClosed;
+
+    public StandInServer(ResponseRecordings recordings, NetworkConditions conditions) {
+        mRecordings = recordings;
+        mConditions = conditions;
+    }
+
+    /**
+     * Starts listening on a free port on the loopback interface.
+     */
+    public synchronized void start() throws IOException {
+        if (mServerSocket != null) {
+            throw new IllegalStateException("Already started");
+        }
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "StandInServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return The URL of the server's root, for example http://127.0.0.1:41234/
+     */
+    public URL getBaseUrl() throws IOException {
+        return new URL("http", "127.0.0.1", mServerSocket.getLocalPort(), "/");
+    }
+
+    /**
+     * Returns a transport that sends every request to this server instead of the host in its
+     * URL, through the real HttpURLConnection. The path and query are kept, so the request still
+     * matches its recording.
+     */
+    public HttpTransport transport() {
+        return transport(new UrlConnectionTransport());
+    }
+
+    /**
+     * Same as {@link #transport()}, but through the given transport, for example one with
+     * different timeouts. If that transport is also a {@link StreamingTransport}, so is the one
+     * returned.
+     */
+    public HttpTransport transport(HttpTransport network) {
+        if (network instanceof StreamingTransport) {
+            return new LocalStreamingTransport(network);
+        }
+        return new LocalTransport(network);
+    }
+
+    /* Sends requests to this server instead of the host in their URL */
+    private class LocalTransport implements HttpTransport {
+
+        final HttpTransport mNetwork;
+
+        LocalTransport(HttpTransport network) {
+            mNetwork = network;
+        }
+
+        @Override
+        public HttpResponse get(URL url) throws IOException {
+            return mNetwork.get(local(url));
+        }
+
+        URL local(URL url) throws IOException {
+            return new URL("http", "127.0.0.1", mServerSocket.getLocalPort(),
+                    ResponseRecordings.keyFor(url));
+        }
+    }
+
+    /* The same, for a network that can also stream */
+    private final class LocalStreamingTransport extends LocalTransport
+            implements StreamingTransport {
+
+        LocalStreamingTransport(HttpTransport network) {
+            super(network);
+        }
+
+        @Override
+        public StreamingResponse open(URL url) throws IOException {
+            return ((StreamingTransport) mNetwork).open(local(url));
+        }
+    }
+
+    /**
+     * @return How many connections the server has accepted since it started
+     */
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    /**
+     * @return How many requests the server has read since it started
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return How many bytes of response bodies the server has sent since it started, after
+     * compression. Headers aren't counted.
+     */
+    public long getBodyBytesSent() {
+        return mBodyBytesSent.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mClosed = true;
+        if (mServerSocket != null) {
+            mServerSocket.close();
+        }
+
+        /* Connections kept alive for the next request would otherwise stay open forever */
+        synchronized (mOpenSockets) {
+            for (Socket socket : mOpenSockets) {
+                closeQuietly(socket);
+            }
+            mOpenSockets.clear();
+        }
+    }
+
+    private void acceptConnections() {
+        while (!mClosed) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                /* Closing the server socket is how we're told to stop */
+                return;
+            }
+
+            mConnectionCount.incrementAndGet();
+            try {
+                /*
+                 * Headers and body slices are written separately. Without this, Nagle's algorithm
+                 * holds each write back until the client acknowledges the previous one, which
+                 * adds delays that have nothing to do with the conditions we're simulating.
+                 */
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                /* Slower, but still correct */
+            }
+            synchronized (mOpenSockets) {
+                mOpenSockets.add(socket);
+            }
+
+            Thread connectionThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sleep(mConditions.getConnectLatencyMillis());
+                        InputStream in = new BufferedInputStream(socket.getInputStream());
+                        OutputStream out = socket.getOutputStream();
+                        while (serve(in, out)) {
+                            /* Keep answering requests on this connection */
+                        }
+                    } catch (IOException e) {
+                        /* The client went away, there's nobody left to tell */
+                    } finally {
+                        synchronized (mOpenSockets) {
+                            mOpenSockets.remove(socket);
+                        }
+                        closeQuietly(socket);
+                    }
+                }
+            }, "StandInServer connection");
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    /**
+     * Reads one request from a connection and answers it.
+     *
+     * @return Whether the connection should be kept open for another request
+     */
+    private boolean serve(InputStream in, OutputStream out) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            return false;
+        }
+
+        /* Accept-Encoding and Connection are the only headers we need */
+        boolean acceptsGzip = false;
+        boolean keepAlive = true;
+        String header;
+        while ((header = readLine(in)) != null && !header.isEmpty()) {
+            String lowerCase = header.toLowerCase(Locale.US);
+            if (lowerCase.startsWith("accept-encoding:")
+                    && lowerCase.contains(HttpResponse.ENCODING_GZIP)) {
+                acceptsGzip = true;
+            } else if (lowerCase.startsWith("connection:") && lowerCase.contains("close")) {
+                keepAlive = false;
+            }
+        }
+
+        mRequestCount.incrementAndGet();
+
+        String[] parts = requestLine.split(" ");
+        if (parts.length != 3 || !parts[0].equals("GET")) {
+            writeResponse(out, new HttpResponse(405, new byte[0]), false, false);
+            return false;
+        }
+
+        HttpResponse response = mRecordings.load(parts[1]);
+        NetworkConditions.Outcome outcome = mConditions.nextOutcome();
+        sleep(mConditions.nextLatencyMillis());
+
+        if (outcome == NetworkConditions.Outcome.CONNECTION_FAILURE) {
+            /* Hanging up without a word looks like a dropped connection to the client */
+            return false;
+        } else if (outcome == NetworkConditions.Outcome.SERVER_ERROR) {
+            response = new HttpResponse(503, new byte[0]);
+        } else if (response == null) {
+            response = new HttpResponse(404, ("No recording for " + parts[1])
+                    .getBytes(HttpResponse.UTF_8));
+        }
+
+        writeResponse(out, response, acceptsGzip, keepAlive);
+        return keepAlive;
+    }
+
+    private void writeResponse(OutputStream out, HttpResponse response, boolean compress,
+                               boolean keepAlive) throws IOException {
+        byte[] body = response.getBody();
+        String contentEncoding = "";
+        if (compress && body.length > 0) {
+            body = gzip(body);
+            contentEncoding = "Content-Encoding: " + HttpResponse.ENCODING_GZIP + "\r\n";
+        }
+
+        String headers = "HTTP/1.1 " + response.getStatusCode() + " "
+                + reasonPhrase(response.getStatusCode()) + "\r\n"
+                + "Content-Type: application/json; charset=utf-8\r\n"
+                + contentEncoding
+                + "Content-Length: " + body.length + "\r\n"
+                + (keepAlive ? "" : "Connection: close\r\n")
+                + "\r\n";
+        out.write(headers.getBytes(HttpResponse.UTF_8));
+
+        out.flush();
+
+        /*
+         * Pace the body so that each slice is only sent once the bandwidth would have delivered
+         * its last byte. The client can't finish reading any sooner than it would on a real
+         * network of that speed.
+         */
+        long start = System.currentTimeMillis();
+        for (int offset = 0; offset < body.length; offset += SLICE_BYTES) {
+            int count = Math.min(SLICE_BYTES, body.length - offset);
+            sleep(start + mConditions.transferMillis(offset + count) - System.currentTimeMillis());
+            /* Counted first, so the client never sees bytes that haven't been counted yet */
+            mBodyBytesSent.addAndGet(count);
+            out.write(body, offset, count);
+            out.flush();
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String reasonPhrase(int statusCode) {
+        switch (statusCode) {
+            case 200:
+                return "OK";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Unknown";
+        }
+    }
+
+    /**
+     * Reads a line of the request, which ends with CRLF, or null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r'
+                        ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, HttpResponse.UTF_8);
+            }
+            line.write(c);
+        }
+        return null;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while serving a response");
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            /* Nothing more we can do */
+        }
+    }
+}
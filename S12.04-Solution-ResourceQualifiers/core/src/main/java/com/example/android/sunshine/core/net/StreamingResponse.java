@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * A response whose body is read straight from the network, as it arrives, from a
+ * {@link StreamingTransport}. Unlike {@link HttpResponse}, the body can only be read once.
+ * <p>
+ * The request's deadline still applies while the body is being read: a read that finishes after
+ * it throws a SocketTimeoutException, however slowly the caller itself is reading.
+ * <p>
+ * Closing the response after reading the body to the end lets its connection be reused. Closing
+ * it before then, because parsing failed for example, drops the connection, since whatever is
+ * left of the body would otherwise have to be read first.
+ */
+public final class StreamingResponse implements Closeable {
+
+    /* nanoTime can be any value at all, so there's no deadline so late it's the same as none */
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private final int mStatusCode;
+    private final String mContentEncoding;
+    private final WireInputStream mWireBody;
+    private final Closeable mConnection;
+
+    private boolean mBodyOpened;
+
+    /**
+     * @param statusCode      The HTTP status code, for example 200
+     * @param contentEncoding The Content-Encoding of the body, {@link HttpResponse#ENCODING_GZIP}
+     *                        or null if it isn't encoded
+     * @param wireBody        The body, as it arrives. The response closes it.
+     * @throws IllegalArgumentException If the encoding isn't one we can decode
+     */
+    public StreamingResponse(int statusCode, String contentEncoding, InputStream wireBody) {
+        this(statusCode, contentEncoding, wireBody, -1, NO_DEADLINE, null);
+    }
+
+    /**
+     * @param contentLength The length of the body on the wire, or -1 if it isn't known
+     * @param deadlineNanos The System.nanoTime() by which the body must have been read, or
+     *                      {@link #NO_DEADLINE}
+     * @param connection    Closed instead of the body if the body isn't read to the end, to drop
+     *                      the connection, or null if there's nothing to drop
+     */
+    StreamingResponse(int statusCode, String contentEncoding, InputStream wireBody,
+                      long contentLength, long deadlineNanos, Closeable connection) {
+        mStatusCode = statusCode;
+        mContentEncoding = HttpResponse.normalizeEncoding(contentEncoding);
+        mWireBody = new WireInputStream(wireBody, contentLength, deadlineNanos);
+        mConnection = connection;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * @return true for status codes below 400, like {@link HttpResponse#isSuccessful()}
+     */
+    public boolean isSuccessful() {
+        return mStatusCode < 400;
+    }
+
+    /**
+     * @return {@link HttpResponse#ENCODING_GZIP}, or null if the body isn't encoded
+     */
+    public String getContentEncoding() {
+        return mContentEncoding;
+    }
+
+    /**
+     * Opens the body for reading, decoding it on the fly as it arrives. This can only be called
+     * once. A gzipped body starts with a header, which is read straight away.
+     *
+     * @throws IOException If the header of a gzipped body can't be read
+     */
+    public BodyInputStream openBody() throws IOException {
+        if (mBodyOpened) {
+            throw new IllegalStateException("A streaming body can only be read once");
+        }
+        mBodyOpened = true;
+        return new BodyInputStream(mWireBody, mContentEncoding);
+    }
+
+    /**
+     * @return How many bytes of the body have arrived over the network so far
+     */
+    public long getWireBytesRead() {
+        return mWireBody.mBytesRead;
+    }
+
+    /**
+     * @return Whether the whole body has been read
+     */
+    public boolean isBodyComplete() {
+        return mWireBody.mComplete;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mWireBody.mComplete || mConnection == null) {
+            mWireBody.close();
+            return;
+        }
+        try {
+            mConnection.close();
+        } finally {
+            mWireBody.closeQuietly();
+        }
+    }
+
+    /**
+     * Counts the bytes of the body as they arrive, notices when the last one has, and enforces
+     * the deadline.
+     * <p>
+     * A GZIPInputStream stops reading once it has read the gzip trailer, without ever seeing the
+     * end of the stream underneath, so when the length of the body is known, having read that
+     * many bytes counts as having read it all.
+     */
+    private static final class WireInputStream extends FilterInputStream {
+
+        private final long mContentLength;
+        private final long mDeadlineNanos;
+        private long mBytesRead;
+        private boolean mComplete;
+
+        WireInputStream(InputStream in, long contentLength, long deadlineNanos) {
+            super(in);
+            mContentLength = contentLength;
+            mDeadlineNanos = deadlineNanos;
+            mComplete = contentLength == 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            onRead(b == -1 ? -1 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            onRead(count);
+            return count;
+        }
+
+        private void onRead(int count) throws IOException {
+            if (count == -1) {
+                mComplete = true;
+                return;
+            }
+            mBytesRead += count;
+            if (mBytesRead == mContentLength) {
+                mComplete = true;
+            }
+            if (mDeadlineNanos != NO_DEADLINE && System.nanoTime() - mDeadlineNanos > 0) {
+                throw new SocketTimeoutException("Deadline exceeded");
+            }
+        }
+
+        /* Skipping isn't needed by anybody, and would make the count wrong */
+        @Override
+        public long skip(long n) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException ignored) {
+                /* The connection has already been dropped, so there's nothing left to release */
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * A transport that can hand over a response before its body has finished arriving, so the body
+ * can be parsed, and what's parsed put to use, while the rest of it is still on its way. Only
+ * the real network, {@link UrlConnectionTransport}, and the {@link StandInServer} in front of
+ * it can do this; recordings are already in memory, so there's nothing to gain from streaming
+ * them.
+ */
+public interface StreamingTransport {
+
+    /**
+     * Makes a GET request, and returns as soon as the status and headers have arrived.
+     *
+     * @param url The URL to fetch
+     * @return The response, whatever its status code. It must be closed.
+     * @throws IOException If no response could be read at all
+     */
+    StreamingResponse open(URL url) throws IOException;
+}
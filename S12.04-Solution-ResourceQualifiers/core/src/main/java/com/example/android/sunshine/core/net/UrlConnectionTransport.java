@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The real network, through HttpURLConnection.
+ * <p>
+ * Every request asks for a gzipped response. HttpURLConnection on Android would do that by
+ * itself, but it then also decompresses the response by itself and hides how big it really was.
+ * Asking explicitly turns that off, so the body arrives exactly as it was sent, its size on the
+ * wire can be measured, and it's only decompressed as it's parsed. See
+ * {@link HttpResponse#openBody()}.
+ * <p>
+ * No request can take forever. Connecting and each read have their own timeout, and the whole
+ * request, from connecting to the last byte of the body, has a deadline. Reads can't be
+ * interrupted, so a request can overrun its deadline by up to one read timeout.
+ * <p>
+ * Connections are kept alive. Once a body has been read to the end, its connection goes back to
+ * HttpURLConnection's pool, and the next request to the same server skips connecting (and on
+ * HTTPS, the TLS handshake) altogether. Only a connection that failed part way is disconnected.
+ * <p>
+ * {@link #open(URL)} returns as soon as the headers have arrived, and hands over the body as it
+ * arrives, with the same deadline.
+ */
+public class UrlConnectionTransport implements HttpTransport, StreamingTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 15000;
+    public static final long DEFAULT_DEADLINE_MILLIS = 30000;
+
+    private static final long NO_DEADLINE = StreamingResponse.NO_DEADLINE;
+
+    private final int mConnectTimeoutMillis;
+    private final int mReadTimeoutMillis;
+    private final long mDeadlineMillis;
+
+    public UrlConnectionTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS, DEFAULT_DEADLINE_MILLIS);
+    }
+
+    /**
+     * @param connectTimeoutMillis How long connecting may take
+     * @param readTimeoutMillis    How long the server may go quiet while we wait for the
+     *                             response or its body
+     * @param deadlineMillis       How long the whole request may take
+     */
+    public UrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis,
+                                  long deadlineMillis) {
+        if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0 || deadlineMillis <= 0) {
+            throw new IllegalArgumentException("Timeouts must be positive");
+        }
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+        mDeadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * @throws SocketTimeoutException If connecting or a read timed out, or the request didn't
+     *                                finish before its deadline
+     */
+    @Override
+    public HttpResponse get(URL url) throws IOException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mDeadlineMillis);
+        HttpURLConnection urlConnection = openConnection(url);
+
+        boolean reusable = false;
+        try {
+            int statusCode = urlConnection.getResponseCode();
+
+            /* Error responses have their body in a different stream, which may not exist */
+            InputStream in = statusCode < 400
+                    ? urlConnection.getInputStream()
+                    : urlConnection.getErrorStream();
+
+            byte[] body = in == null ? new byte[0] : readFully(in, deadlineNanos);
+            reusable = true;
+
+            /* An empty body can't be decompressed, whatever the headers say */
+            String contentEncoding = body.length == 0 ? null : urlConnection.getContentEncoding();
+            try {
+                return new HttpResponse(statusCode, contentEncoding, body);
+            } catch (IllegalArgumentException e) {
+                /* We only asked for gzip, so the server shouldn't send anything else */
+                throw new IOException("Unexpected response from " + url, e);
+            }
+        } finally {
+            /*
+             * A body that was read to the end and closed has already handed its connection back
+             * to the pool. Disconnecting would close it instead, so we only do that when the
+             * connection is in an unknown state.
+             */
+            if (!reusable) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * @throws SocketTimeoutException If connecting or a read timed out, or reading the body
+     *                                didn't finish before the deadline
+     */
+    @Override
+    public StreamingResponse open(URL url) throws IOException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mDeadlineMillis);
+        final HttpURLConnection urlConnection = openConnection(url);
+
+        boolean opened = false;
+        try {
+            int statusCode = urlConnection.getResponseCode();
+            InputStream in = statusCode < 400
+                    ? urlConnection.getInputStream()
+                    : urlConnection.getErrorStream();
+            if (in == null) {
+                in = new ByteArrayInputStream(new byte[0]);
+            }
+
+            int contentLength = urlConnection.getContentLength();
+            String contentEncoding = contentLength == 0 ? null : urlConnection.getContentEncoding();
+
+            StreamingResponse response;
+            try {
+                response = new StreamingResponse(statusCode, contentEncoding, in, contentLength,
+                        deadlineNanos, new Closeable() {
+                            @Override
+                            public void close() {
+                                urlConnection.disconnect();
+                            }
+                        });
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unexpected response from " + url, e);
+            }
+            opened = true;
+            return response;
+        } finally {
+            if (!opened) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setRequestProperty("Accept-Encoding", HttpResponse.ENCODING_GZIP);
+        urlConnection.setConnectTimeout(mConnectTimeoutMillis);
+        urlConnection.setReadTimeout(mReadTimeoutMillis);
+        return urlConnection;
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        return readFully(in, NO_DEADLINE);
+    }
+
+    /**
+     * Reads a stream to the end and closes it.
+     *
+     * @param deadlineNanos The System.nanoTime() by which the stream must have been read, or
+     *                      {@link #NO_DEADLINE}
+     */
+    static byte[] readFully(InputStream in, long deadlineNanos) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+                if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos > 0) {
+                    throw new SocketTimeoutException("Deadline exceeded");
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link DailySeriesCodec} gives back exactly the weather it packed, at the precision
+ * of its scaled integers, in far fewer bytes than it started with.
+ */
+public class DailySeriesCodecTest {
+
+    private static final long DAY = WeatherDates.DAY_IN_MILLIS;
+
+    /* September 20th, 2016 at midnight GMT */
+    private static final long START_DAY = 1474329600000L;
+
+    /* October 1st and November 1st, 2016 at midnight GMT */
+    private static final long OCTOBER_1 = 1475280000000L;
+    private static final long NOVEMBER_1 = 1477958400000L;
+
+    @Test
+    public void syntheticWeatherSurvivesTheRoundTripExactly() {
+        SyntheticWeather generator = new SyntheticWeather(42);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        List<DailyWeather> days = generator.generateForecast(location, START_DAY, 365);
+
+        DailySeries series = new DailySeries();
+        for (DailyWeather day : days) {
+            series.add(day.getDate(), day.getWeatherId(), day.getHigh(), day.getLow(),
+                    day.getHumidity(), day.getPressure(), day.getWindSpeed(),
+                    day.getWindDirection());
+        }
+
+        byte[] blob = DailySeriesCodec.encode(series);
+        DailySeries decoded = DailySeriesCodec.decode(blob);
+
+        assertEquals(days.size(), decoded.size());
+        for (int i = 0; i < decoded.size(); i++) {
+            assertEquals(days.get(i), new DailyWeather(decoded.getDate(i),
+                    decoded.getWeatherId(i), decoded.getHigh(i), decoded.getLow(i),
+                    decoded.getHumidity(i), decoded.getPressure(i), decoded.getWindSpeed(i),
+                    decoded.getWindDirection(i)));
+        }
+
+        /* Eight fields of 8 bytes would be 64 bytes a day */
+        double bytesPerDay = (double) blob.length / days.size();
+        assertTrue("Packed weather took " + bytesPerDay + " bytes a day", bytesPerDay < 16);
+    }
+
+    @Test
+    public void gapsNegativeValuesAndDatesBeforeTheEpochSurvive() {
+        DailySeries series = new DailySeries();
+        series.add(-3 * DAY, 200, -12.5, -30.01, 0, 870.55, 0, 359);
+        series.add(-2 * DAY, 900, 40.75, -3, 100, 1085.1, 113.2, 0);
+        series.add(400 * DAY, 800, 0, 0, 45, 1013, 2.25, 90);
+
+        DailySeries decoded = DailySeriesCodec.decode(DailySeriesCodec.encode(series));
+
+        assertEquals(3, decoded.size());
+        assertEquals(-3 * DAY, decoded.getDate(0));
+        assertEquals(400 * DAY, decoded.getDate(2));
+        assertEquals(-30.01, decoded.getLow(0), 0);
+        assertEquals(870.55, decoded.getPressure(0), 0);
+        assertEquals(900, decoded.getWeatherId(1));
+        assertEquals(113.2, decoded.getWindSpeed(1), 0);
+        assertEquals(2.25, decoded.getWindSpeed(2), 0);
+    }
+
+    @Test
+    public void valuesAreRoundedToTheirScale() {
+        DailySeries series = new DailySeries();
+        series.add(START_DAY, 800, 21.456, 9.994, 50, 1013.255, 3.333, 271.6);
+
+        DailySeries decoded = DailySeriesCodec.decode(DailySeriesCodec.encode(series));
+
+        assertEquals(21.46, decoded.getHigh(0), 0);
+        assertEquals(9.99, decoded.getLow(0), 0);
+        assertEquals(3.33, decoded.getWindSpeed(0), 0);
+        assertEquals(272.0, decoded.getWindDirection(0), 0);
+    }
+
+    @Test
+    public void emptySeriesSurvives() {
+        byte[] blob = DailySeriesCodec.encode(new DailySeries());
+        assertEquals(2, blob.length);
+        assertEquals(0, DailySeriesCodec.decode(blob).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownVersionIsRejected() {
+        byte[] blob = DailySeriesCodec.encode(new DailySeries());
+        blob[0] = (byte) (DailySeriesCodec.VERSION + 1);
+        DailySeriesCodec.decode(blob);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedBlobIsRejected() {
+        DailySeries series = new DailySeries();
+        series.add(START_DAY, 800, 20, 10, 50, 1013, 3, 180);
+        byte[] blob = DailySeriesCodec.encode(series);
+        byte[] truncated = new byte[blob.length - 1];
+        System.arraycopy(blob, 0, truncated, 0, truncated.length);
+        DailySeriesCodec.decode(truncated);
+    }
+
+    @Test
+    public void monthsStartOnTheFirstInUtc() {
+        assertEquals(OCTOBER_1 - 30 * DAY, DailySeriesCodec.getMonthStart(START_DAY));
+        assertEquals(OCTOBER_1, DailySeriesCodec.getNextMonthStart(START_DAY));
+        assertEquals(OCTOBER_1, DailySeriesCodec.getMonthStart(OCTOBER_1));
+        assertEquals(OCTOBER_1, DailySeriesCodec.getMonthStart(NOVEMBER_1 - DAY));
+        assertEquals(NOVEMBER_1, DailySeriesCodec.getNextMonthStart(OCTOBER_1));
+    }
+}
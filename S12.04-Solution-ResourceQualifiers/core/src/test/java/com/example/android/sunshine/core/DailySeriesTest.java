@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that {@link DailySeries} keeps its days in order, and slices and merges them by date.
+ */
+public class DailySeriesTest {
+
+    private static final long DAY = WeatherDates.DAY_IN_MILLIS;
+
+    /* September 20th, 2016 at midnight GMT */
+    private static final long START_DAY = 1474329600000L;
+
+    @Test
+    public void daysAreKeptInOrderAndGrowPastTheCapacity() {
+        DailySeries series = new DailySeries(2);
+        for (int i = 0; i < 40; i++) {
+            series.add(START_DAY + i * DAY, 800 + i, 20 + i, 10 + i, 50, 1013.25, 3.5, i);
+        }
+        assertEquals(40, series.size());
+        assertEquals(START_DAY + 39 * DAY, series.getDate(39));
+        assertEquals(839, series.getWeatherId(39));
+        assertEquals(49.0, series.getLow(39), 0);
+        assertEquals(1013.25, series.getPressure(39), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void daysOutOfOrderAreRejected() {
+        DailySeries series = new DailySeries();
+        series.add(START_DAY + DAY, 800, 20, 10, 50, 1013, 3, 0);
+        series.add(START_DAY, 800, 20, 10, 50, 1013, 3, 0);
+    }
+
+    @Test
+    public void sliceIncludesTheStartButNotTheEnd() {
+        DailySeries series = days(0, 10, 800);
+
+        DailySeries slice = series.slice(START_DAY + 2 * DAY, START_DAY + 5 * DAY);
+        assertEquals(3, slice.size());
+        assertEquals(START_DAY + 2 * DAY, slice.getDate(0));
+        assertEquals(START_DAY + 4 * DAY, slice.getDate(2));
+
+        /* Dates between days, and ranges that cover everything or nothing */
+        assertEquals(10, series.slice(START_DAY - 1, START_DAY + 9 * DAY + 1).size());
+        assertSame(series, series.slice(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(0, series.slice(START_DAY + 20 * DAY, START_DAY + 30 * DAY).size());
+    }
+
+    @Test
+    public void mergeKeepsTheNewerDayOnEqualDates() {
+        DailySeries older = days(0, 5, 800);
+        DailySeries newer = days(3, 8, 500);
+
+        DailySeries merged = DailySeries.merge(older, newer);
+        assertEquals(8, merged.size());
+        for (int i = 0; i < merged.size(); i++) {
+            assertEquals(START_DAY + i * DAY, merged.getDate(i));
+            assertEquals(i < 3 ? 800 : 500, merged.getWeatherId(i));
+        }
+    }
+
+    /* Days from START_DAY + from days up to START_DAY + to days, all with the same weather ID */
+    private static DailySeries days(int from, int to, int weatherId) {
+        DailySeries series = new DailySeries();
+        for (int i = from; i < to; i++) {
+            series.add(START_DAY + i * DAY, weatherId, 20, 10, 50, 1013, 3, 180);
+        }
+        return series;
+    }
+}
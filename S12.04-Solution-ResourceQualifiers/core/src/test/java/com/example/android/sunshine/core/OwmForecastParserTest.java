@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link OwmForecastParser} against responses shaped like OpenWeatherMap's, including the
+ * fields we don't use, which the parser has to skip.
+ */
+public class OwmForecastParserTest {
+
+    /* Some normalized date, September 20th, 2016 */
+    private static final long START_DAY = 1474329600000L;
+
+    private static final String RESPONSE = "{"
+            + "\"city\":{\"id\":5375480,\"name\":\"Mountain View\","
+            + "\"coord\":{\"lon\":-122.0838,\"lat\":37.3861},\"country\":\"US\",\"population\":0},"
+            + "\"cod\":\"200\",\"message\":0.0123,\"cnt\":2,"
+            + "\"list\":["
+            + "{\"dt\":1474398000,"
+            + "\"temp\":{\"day\":20.5,\"min\":11.6,\"max\":22.39,\"night\":11.6,\"eve\":18.1},"
+            + "\"pressure\":1011.31,\"humidity\":64,"
+            + "\"weather\":[{\"id\":800,\"main\":\"Clear\","
+            + "\"description\":\"sky is \\\"clear\\\"\","
+            + "\"icon\":\"01d\"},{\"id\":500}],"
+            + "\"speed\":1.91,\"deg\":305,\"clouds\":0,\"rain\":null,\"snow\":false},"
+            + "{\"dt\":1474484400,"
+            + "\"temp\":{\"min\":-2.5e0,\"max\":10},"
+            + "\"pressure\":1000,\"humidity\":100,"
+            + "\"weather\":[{\"id\":511,\"description\":\"freezing rain \\u2744\"}],"
+            + "\"speed\":0,\"deg\":0}"
+            + "]}";
+
+    private static ParsedForecast parse(String json, int expectedStatus) throws IOException {
+        ParsedForecast forecast = new ParsedForecast();
+        int status = new OwmForecastParser(START_DAY).parse(new StringReader(json), forecast);
+        assertEquals(expectedStatus, status);
+        return forecast;
+    }
+
+    @Test
+    public void parsesLocationAndEveryDay() throws IOException {
+        ParsedForecast forecast = parse(RESPONSE, OwmForecastParser.STATUS_OK);
+
+        assertTrue(forecast.hasLocation());
+        assertEquals(37.3861, forecast.getLatitude(), 0);
+        assertEquals(-122.0838, forecast.getLongitude(), 0);
+
+        List<DailyWeather> days = forecast.getDays();
+        assertEquals(2, days.size());
+
+        assertEquals(new DailyWeather(START_DAY, 800, 22.39, 11.6, 64, 1011.31, 1.91, 305),
+                days.get(0));
+        assertEquals(new DailyWeather(START_DAY + WeatherDates.DAY_IN_MILLIS,
+                511, 10, -2.5, 100, 1000, 0, 0), days.get(1));
+    }
+
+    @Test
+    public void stopsAtAnErrorStatus() throws IOException {
+        String json = "{\"cod\":\"404\",\"message\":\"city not found\",\"list\":[{\"oops\"";
+        ParsedForecast forecast = parse(json, 404);
+
+        assertFalse(forecast.hasLocation());
+        assertTrue(forecast.getDays().isEmpty());
+    }
+
+    @Test
+    public void missingStatusMeansSuccess() throws IOException {
+        ParsedForecast forecast = parse("{\"list\":[]}", OwmForecastParser.STATUS_OK);
+
+        assertFalse(forecast.hasLocation());
+        assertTrue(forecast.getDays().isEmpty());
+    }
+
+    @Test(expected = ForecastParseException.class)
+    public void incompleteDayIsRejected() throws IOException {
+        parse("{\"list\":[{\"temp\":{\"min\":1,\"max\":2},\"pressure\":1000}]}",
+                OwmForecastParser.STATUS_OK);
+    }
+
+    @Test(expected = ForecastParseException.class)
+    public void malformedJsonIsRejected() throws IOException {
+        parse("{\"list\":[{\"pressure\":1000,}]}", OwmForecastParser.STATUS_OK);
+    }
+}
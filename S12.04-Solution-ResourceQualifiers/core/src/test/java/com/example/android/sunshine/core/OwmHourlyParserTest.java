@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link OwmHourlyParser} against responses shaped like OpenWeatherMap's 3 hour forecast,
+ * including the fields we don't use, which the parser has to skip.
+ */
+public class OwmHourlyParserTest {
+
+    /* September 20th, 2016 at 9:00 GMT, in seconds */
+    private static final long START_SECONDS = 1474362000L;
+
+    private static final String RESPONSE = "{"
+            + "\"cod\":\"200\",\"message\":0.0123,\"cnt\":2,"
+            + "\"list\":["
+            + "{\"dt\":1474362000,"
+            + "\"main\":{\"temp\":18.25,\"temp_min\":17.1,\"temp_max\":18.25,"
+            + "\"pressure\":1011.31,\"humidity\":64,\"temp_kf\":1.15},"
+            + "\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\","
+            + "\"icon\":\"01d\"},{\"id\":500}],"
+            + "\"clouds\":{\"all\":0},\"wind\":{\"speed\":1.91,\"deg\":305.5},"
+            + "\"rain\":{},\"dt_txt\":\"2016-09-20 09:00:00\"},"
+            + "{\"wind\":{\"deg\":0,\"speed\":0},"
+            + "\"weather\":[{\"id\":511}],"
+            + "\"main\":{\"humidity\":100,\"pressure\":1000,\"temp\":-2.5e0},"
+            + "\"dt\":1474372800}"
+            + "],"
+            + "\"city\":{\"id\":5375480,\"name\":\"Mountain View\","
+            + "\"coord\":{\"lat\":37.3861,\"lon\":-122.0838},\"country\":\"US\"}}";
+
+    private static List<HourlyWeather> parse(String json, int expectedStatus)
+            throws IOException {
+        final List<HourlyWeather> hours = new ArrayList<>();
+        int status = new OwmHourlyParser().parse(new StringReader(json),
+                new OwmHourlyParser.Sink() {
+                    @Override
+                    public void onHour(long time, int weatherId, double temperature,
+                                       int humidity, double pressure, double windSpeed,
+                                       double windDirection) {
+                        hours.add(new HourlyWeather(time, weatherId, temperature, humidity,
+                                pressure, windSpeed, windDirection));
+                    }
+                });
+        assertEquals(expectedStatus, status);
+        return hours;
+    }
+
+    @Test
+    public void parsesEveryEntryAtItsOwnTime() throws IOException {
+        List<HourlyWeather> hours = parse(RESPONSE, OwmForecastParser.STATUS_OK);
+
+        assertEquals(2, hours.size());
+        assertEquals(new HourlyWeather(START_SECONDS * 1000, 800, 18.25, 64, 1011.31, 1.91,
+                305.5), hours.get(0));
+        assertEquals(new HourlyWeather(START_SECONDS * 1000 + OwmHourlyParser.STEP_MILLIS,
+                511, -2.5, 100, 1000, 0, 0), hours.get(1));
+    }
+
+    @Test
+    public void stopsAtAnErrorStatus() throws IOException {
+        String json = "{\"cod\":\"404\",\"message\":\"city not found\",\"list\":[{\"oops\"";
+        assertTrue(parse(json, 404).isEmpty());
+    }
+
+    @Test(expected = ForecastParseException.class)
+    public void incompleteEntryIsRejected() throws IOException {
+        parse("{\"list\":[{\"dt\":1474362000,\"main\":{\"temp\":1,\"humidity\":2}}]}",
+                OwmForecastParser.STATUS_OK);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link SyntheticWeather} is reproducible, stays within believable bounds and writes
+ * JSON that parses back to the same forecast.
+ */
+public class SyntheticWeatherTest {
+
+    /* September 20th, 2016 at midnight GMT */
+    private static final long START_DAY = 1474329600000L;
+
+    @Test
+    public void sameSeedGivesTheSameWeather() {
+        SyntheticWeather first = new SyntheticWeather(7);
+        SyntheticWeather second = new SyntheticWeather(7);
+
+        List<SyntheticWeather.Location> firstLocations = first.generateLocations(5);
+        List<SyntheticWeather.Location> secondLocations = second.generateLocations(5);
+
+        /* Generate in a different order, to check locations don't depend on each other */
+        for (int i = firstLocations.size() - 1; i >= 0; i--) {
+            assertEquals(firstLocations.get(i).getLatitude(),
+                    secondLocations.get(i).getLatitude(), 0);
+            assertEquals(first.generateForecast(firstLocations.get(i), START_DAY, 30),
+                    second.generateForecast(secondLocations.get(i), START_DAY, 30));
+        }
+
+        List<DailyWeather> other = new SyntheticWeather(8)
+                .generateForecast(new SyntheticWeather(8).generateLocations(1).get(0),
+                        START_DAY, 30);
+        assertFalse(other.equals(first.generateForecast(firstLocations.get(0), START_DAY, 30)));
+    }
+
+    @Test
+    public void weatherIsBelievable() {
+        SyntheticWeather generator = new SyntheticWeather(42);
+        for (SyntheticWeather.Location location : generator.generateLocations(20)) {
+            List<DailyWeather> forecast = generator.generateForecast(location, START_DAY, 365);
+            assertEquals(365, forecast.size());
+
+            for (int i = 0; i < forecast.size(); i++) {
+                DailyWeather day = forecast.get(i);
+                String where = location.getName() + ", day " + i;
+
+                assertEquals(START_DAY + i * WeatherDates.DAY_IN_MILLIS, day.getDate());
+                assertTrue(where, WeatherCondition.isKnownWeatherId(day.getWeatherId()));
+                assertTrue(where, day.getHigh() > day.getLow());
+                assertTrue(where, day.getHigh() < 60 && day.getLow() > -70);
+                assertTrue(where, day.getHumidity() >= 0 && day.getHumidity() <= 100);
+                assertTrue(where, day.getPressure() >= 950 && day.getPressure() <= 1060);
+                assertTrue(where, day.getWindSpeed() >= 0);
+                assertTrue(where, day.getWindDirection() >= 0 && day.getWindDirection() < 360);
+            }
+        }
+    }
+
+    @Test
+    public void jsonParsesBackToTheSameForecast() throws IOException {
+        SyntheticWeather generator = new SyntheticWeather(42);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        List<DailyWeather> forecast = generator.generateForecast(location, START_DAY, 14);
+
+        ParsedForecast parsed = new ParsedForecast();
+        int status = new OwmForecastParser(START_DAY)
+                .parse(new StringReader(SyntheticWeather.toOwmJson(location, forecast)), parsed);
+
+        assertEquals(OwmForecastParser.STATUS_OK, status);
+        assertEquals(location.getLatitude(), parsed.getLatitude(), 0);
+        assertEquals(location.getLongitude(), parsed.getLongitude(), 0);
+        assertEquals(forecast, parsed.getDays());
+    }
+
+    @Test
+    public void hourlyWeatherFollowsTheDailyForecast() {
+        SyntheticWeather generator = new SyntheticWeather(42);
+        for (SyntheticWeather.Location location : generator.generateLocations(20)) {
+            List<DailyWeather> days = generator.generateForecast(location, START_DAY, 5);
+            List<HourlyWeather> hours = generator.generateHourlyForecast(location, START_DAY, 40);
+            assertEquals(40, hours.size());
+
+            for (int i = 0; i < hours.size(); i++) {
+                HourlyWeather hour = hours.get(i);
+                DailyWeather day = days.get(i / 8);
+                String where = location.getName() + ", entry " + i;
+
+                assertEquals(START_DAY + i * OwmHourlyParser.STEP_MILLIS, hour.getTime());
+                assertEquals(where, day.getWeatherId(), hour.getWeatherId());
+
+                /* A little noise may take it just past the day's extremes, but no further */
+                assertTrue(where, hour.getTemperature() > day.getLow() - 2);
+                assertTrue(where, hour.getTemperature() < day.getHigh() + 2);
+                assertTrue(where, hour.getHumidity() >= 0 && hour.getHumidity() <= 100);
+                assertTrue(where, hour.getWindSpeed() >= 0);
+                assertTrue(where, hour.getWindDirection() >= 0 && hour.getWindDirection() < 360);
+            }
+        }
+    }
+
+    @Test
+    public void hourlyJsonParsesBackToTheSameForecast() throws IOException {
+        SyntheticWeather generator = new SyntheticWeather(42);
+        SyntheticWeather.Location location = generator.generateLocations(1).get(0);
+        final List<HourlyWeather> forecast =
+                generator.generateHourlyForecast(location, START_DAY, 40);
+
+        final List<HourlyWeather> parsed = new ArrayList<>();
+        int status = new OwmHourlyParser().parse(
+                new StringReader(SyntheticWeather.toOwmHourlyJson(location, forecast)),
+                new OwmHourlyParser.Sink() {
+                    @Override
+                    public void onHour(long time, int weatherId, double temperature,
+                                       int humidity, double pressure, double windSpeed,
+                                       double windDirection) {
+                        parsed.add(new HourlyWeather(time, weatherId, temperature, humidity,
+                                pressure, windSpeed, windDirection));
+                    }
+                });
+
+        assertEquals(OwmForecastParser.STATUS_OK, status);
+        assertEquals(forecast, parsed);
+    }
+}
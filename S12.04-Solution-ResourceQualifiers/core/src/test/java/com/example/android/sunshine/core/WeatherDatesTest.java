@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link WeatherDates} in fixed time zones, so the results don't depend on where the tests
+ * happen to run.
+ */
+public class WeatherDatesTest {
+
+    /* Tuesday, September 20th, 2016 at midnight GMT */
+    private static final long SEPTEMBER_20 = 1474329600000L;
+
+    private static final TimeZone LOS_ANGELES = TimeZone.getTimeZone("America/Los_Angeles");
+    private static final TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+
+    @Test
+    public void todayFollowsTheLocalDate() {
+        /* 6:30 PM on September 20th in California is already September 21st in GMT */
+        long evening = SEPTEMBER_20 + WeatherDates.DAY_IN_MILLIS + 90 * 60 * 1000;
+        assertEquals(SEPTEMBER_20, WeatherDates.getNormalizedUtcDateForToday(evening, LOS_ANGELES));
+
+        /* 1:00 AM on September 21st in Tokyo is still September 20th in GMT */
+        long night = SEPTEMBER_20 + 16 * 60 * 60 * 1000;
+        assertEquals(SEPTEMBER_20 + WeatherDates.DAY_IN_MILLIS,
+                WeatherDates.getNormalizedUtcDateForToday(night, TOKYO));
+    }
+
+    @Test
+    public void normalizingDropsTheTimeOfDay() {
+        assertEquals(1473984000000L, WeatherDates.normalizeDate(1474062315000L));
+        assertTrue(WeatherDates.isDateNormalized(SEPTEMBER_20));
+        assertFalse(WeatherDates.isDateNormalized(SEPTEMBER_20 + 1));
+        assertEquals(17064, WeatherDates.elapsedDaysSinceEpoch(SEPTEMBER_20));
+    }
+
+    @Test
+    public void localMidnightIsShiftedByTheZoneOffset() {
+        /* California is seven hours behind GMT in September */
+        assertEquals(SEPTEMBER_20 + 7 * 60 * 60 * 1000,
+                WeatherDates.getLocalMidnightFromNormalizedUtcDate(SEPTEMBER_20, LOS_ANGELES));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the unit conversions and compass directions of {@link WeatherFormat}, and the condition
+ * lookup of {@link WeatherCondition}.
+ */
+public class WeatherFormatTest {
+
+    @Test
+    public void temperaturesAreConvertedOnlyForImperialUnits() {
+        assertEquals(21.0, WeatherFormat.toPreferredTemperature(21, true), 0);
+        assertEquals(69.8, WeatherFormat.toPreferredTemperature(21, false), 1e-9);
+        assertEquals(-40.0, WeatherFormat.celsiusToFahrenheit(-40), 1e-9);
+    }
+
+    @Test
+    public void windSpeedsAreConvertedOnlyForImperialUnits() {
+        assertEquals(10f, WeatherFormat.toPreferredWindSpeed(10f, true), 0);
+        assertEquals(6.2137f, WeatherFormat.toPreferredWindSpeed(10f, false), 1e-4f);
+    }
+
+    @Test
+    public void compassDirectionsCoverTheWholeCircle() {
+        assertEquals("N", WeatherFormat.getCompassDirection(0f));
+        assertEquals("N", WeatherFormat.getCompassDirection(22.4f));
+        assertEquals("NE", WeatherFormat.getCompassDirection(22.5f));
+        assertEquals("E", WeatherFormat.getCompassDirection(90f));
+        assertEquals("SE", WeatherFormat.getCompassDirection(157.4f));
+        assertEquals("S", WeatherFormat.getCompassDirection(180f));
+        assertEquals("SW", WeatherFormat.getCompassDirection(225f));
+        assertEquals("W", WeatherFormat.getCompassDirection(270f));
+        assertEquals("NW", WeatherFormat.getCompassDirection(337.4f));
+        assertEquals("N", WeatherFormat.getCompassDirection(337.5f));
+        assertEquals("Unknown", WeatherFormat.getCompassDirection(Float.NaN));
+    }
+
+    @Test
+    public void conditionsMatchOpenWeatherMapCodes() {
+        assertEquals(WeatherCondition.STORM, WeatherCondition.forWeatherId(211));
+        assertEquals(WeatherCondition.LIGHT_RAIN, WeatherCondition.forWeatherId(301));
+        assertEquals(WeatherCondition.RAIN, WeatherCondition.forWeatherId(520));
+        assertEquals(WeatherCondition.SNOW, WeatherCondition.forWeatherId(511));
+        assertEquals(WeatherCondition.FOG, WeatherCondition.forWeatherId(761));
+        assertEquals(WeatherCondition.STORM, WeatherCondition.forWeatherId(781));
+        assertEquals(WeatherCondition.CLEAR, WeatherCondition.forWeatherId(800));
+        assertEquals(WeatherCondition.LIGHT_CLOUDS, WeatherCondition.forWeatherId(801));
+        assertEquals(WeatherCondition.CLOUDS, WeatherCondition.forWeatherId(804));
+        assertEquals(WeatherCondition.CLEAR, WeatherCondition.forWeatherId(955));
+
+        assertTrue(WeatherCondition.isKnownWeatherId(962));
+        assertFalse(WeatherCondition.isKnownWeatherId(999));
+        assertEquals(WeatherCondition.STORM, WeatherCondition.forWeatherId(999));
+    }
+}
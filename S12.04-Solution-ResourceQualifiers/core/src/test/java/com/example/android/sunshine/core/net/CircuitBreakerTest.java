@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link CircuitBreaker} against a fake clock.
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 60000;
+
+    /* A clock that only moves when told to */
+    private static class FakeClock implements CircuitBreaker.Clock {
+        long mNowMillis = 1000000;
+
+        @Override
+        public long elapsedRealtimeMillis() {
+            return mNowMillis;
+        }
+    }
+
+    private FakeClock mClock;
+    private CircuitBreaker mBreaker;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mBreaker = new CircuitBreaker(mClock, 3, OPEN_MILLIS);
+    }
+
+    private void fails() throws CircuitOpenException {
+        mBreaker.acquire();
+        mBreaker.onFailure(new IOException("Down"));
+    }
+
+    private void assertRefused(long retryAfterMillis) {
+        try {
+            mBreaker.acquire();
+            fail("The breaker let a request through");
+        } catch (CircuitOpenException e) {
+            assertEquals(retryAfterMillis, e.getRetryAfterMillis());
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void opensAfterEnoughFailuresInARow() throws CircuitOpenException {
+        fails();
+        fails();
+
+        /* A success in between starts the count again */
+        mBreaker.acquire();
+        mBreaker.onSuccess();
+        fails();
+        fails();
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+
+        fails();
+        assertEquals(CircuitBreaker.State.OPEN, mBreaker.getState());
+        assertRefused(OPEN_MILLIS);
+
+        mClock.mNowMillis += 1000;
+        assertRefused(OPEN_MILLIS - 1000);
+    }
+
+    @Test
+    public void letsOneRequestTestTheServerOnceTheWhileIsOver() throws CircuitOpenException {
+        fails();
+        fails();
+        fails();
+
+        mClock.mNowMillis += OPEN_MILLIS;
+        mBreaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, mBreaker.getState());
+
+        /* Only one request at a time tests the server */
+        assertRefused(0);
+
+        mBreaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+        mBreaker.acquire();
+    }
+
+    @Test
+    public void failedTestOpensTheBreakerAgain() throws CircuitOpenException {
+        fails();
+        fails();
+        fails();
+
+        mClock.mNowMillis += OPEN_MILLIS;
+        fails();
+        assertEquals(CircuitBreaker.State.OPEN, mBreaker.getState());
+        assertRefused(OPEN_MILLIS);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests how {@link EndpointSelector} ranks endpoints and rewrites requests between them.
+ */
+public class EndpointSelectorTest {
+
+    private static final String STATIC = "https://andfun-weather.udacity.com/staticweather";
+    private static final String DYNAMIC = "https://andfun-weather.udacity.com/weather";
+
+    private final EndpointSelector mSelector = new EndpointSelector(STATIC, DYNAMIC);
+    private final EndpointSelector.Endpoint mStatic = mSelector.getEndpoints().get(0);
+    private final EndpointSelector.Endpoint mDynamic = mSelector.getEndpoints().get(1);
+
+    @Test
+    public void orderDecidesUntilThereIsData() {
+        assertSame(mStatic, mSelector.getPrimary());
+        assertSame(mDynamic, mSelector.getSecondary(mStatic));
+    }
+
+    @Test
+    public void failingEndpointIsDemoted() {
+        for (int i = 0; i < 10; i++) {
+            mStatic.recordSuccess(10);
+            mDynamic.recordSuccess(50);
+        }
+        mStatic.recordFailure();
+        mStatic.recordFailure();
+        assertEquals(2.0 / 12, mStatic.getErrorRate(), 1e-9);
+
+        assertSame(mDynamic, mSelector.getPrimary());
+        assertSame(mStatic, mSelector.getSecondary(mDynamic));
+    }
+
+    @Test
+    public void muchFasterEndpointIsPromoted() {
+        for (int i = 0; i < 10; i++) {
+            mStatic.recordSuccess(100);
+            mDynamic.recordSuccess(90);
+        }
+        /* 10% faster isn't enough to switch */
+        assertSame(mStatic, mSelector.getPrimary());
+
+        for (int i = 0; i < 20; i++) {
+            mDynamic.recordSuccess(50);
+        }
+        assertSame(mDynamic, mSelector.getPrimary());
+    }
+
+    @Test
+    public void percentilesComeFromTheMostRecentWindow() {
+        for (int i = 1; i <= 100; i++) {
+            mStatic.recordSuccess(i);
+        }
+        assertEquals(50, mStatic.getLatencyPercentileMillis(50));
+        assertEquals(95, mStatic.getLatencyPercentileMillis(95));
+        assertEquals(100, mStatic.getLatencyPercentileMillis(100));
+
+        /* The oldest half drops out of the window */
+        for (int i = 0; i < EndpointSelector.WINDOW / 2; i++) {
+            mStatic.recordSuccess(1000);
+        }
+        assertEquals(100, mStatic.getLatencyPercentileMillis(50));
+        assertEquals(1000, mStatic.getLatencyPercentileMillis(95));
+        assertEquals(-1, mDynamic.getLatencyPercentileMillis(95));
+    }
+
+    @Test
+    public void requestsAreRewrittenBetweenEndpoints() throws IOException {
+        URL url = new URL(STATIC + "?q=94043&mode=json&units=metric&cnt=14");
+
+        assertSame(mStatic, mSelector.find(url));
+        assertEquals(new URL(DYNAMIC + "?q=94043&mode=json&units=metric&cnt=14"),
+                mSelector.rewrite(url, mDynamic));
+        assertSame(url, mSelector.rewrite(url, mStatic));
+
+        /* A longer path that merely starts the same is a different endpoint */
+        assertNull(mSelector.find(new URL(DYNAMIC + "report?q=94043")));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests when {@link HedgingTransport} hedges and which answer it takes. What hedging does to the
+ * tail latency is measured by HedgingBenchmark in the benchmarks module.
+ */
+public class HedgingTransportTest {
+
+    private static final String HOST = "https://andfun-weather.udacity.com";
+    private static final String QUERY = "?q=94043&mode=json&units=metric&cnt=14";
+
+    private static final int REQUESTS = 10;
+
+    private ResponseRecordings mRecordings;
+    private EndpointSelector mSelector;
+    private URL mUrl;
+    private StandInServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        assertTrue(directory.delete());
+        directory.deleteOnExit();
+        mRecordings = new ResponseRecordings(directory);
+
+        mSelector = new EndpointSelector(HOST + "/staticweather", HOST + "/weather");
+        mUrl = new URL(HOST + "/staticweather" + QUERY);
+        for (EndpointSelector.Endpoint endpoint : mSelector.getEndpoints()) {
+            mRecordings.save(ResponseRecordings.keyFor(new URL(endpoint.getBaseUrl() + QUERY)),
+                    new HttpResponse(200, "{}".getBytes(HttpResponse.UTF_8)));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mServer != null) {
+            mServer.close();
+        }
+    }
+
+    private HttpTransport start(NetworkConditions conditions) throws IOException {
+        mServer = new StandInServer(mRecordings, conditions);
+        mServer.start();
+        return mServer.transport();
+    }
+
+    /**
+     * A primary that takes longer than the hedge delay gets a hedged copy of its request, and
+     * the faster answer wins. The primary's answer is still read when it finally comes.
+     */
+    @Test
+    public void slowPrimaryIsHedged() throws IOException, InterruptedException {
+        final CountDownLatch primaryReleased = new CountDownLatch(1);
+        final CountDownLatch primaryAnswered = new CountDownLatch(1);
+        final AtomicInteger requestCount = new AtomicInteger();
+        HttpTransport server = new HttpTransport() {
+            @Override
+            public HttpResponse get(URL url) throws IOException {
+                requestCount.incrementAndGet();
+                if (url.getPath().equals("/staticweather")) {
+                    try {
+                        primaryReleased.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    primaryAnswered.countDown();
+                    return new HttpResponse(200, "static".getBytes(HttpResponse.UTF_8));
+                }
+                return new HttpResponse(200, "dynamic".getBytes(HttpResponse.UTF_8));
+            }
+        };
+        HedgingTransport hedging = new HedgingTransport(server, mSelector, 50);
+
+        assertEquals("dynamic", hedging.get(mUrl).getBodyAsString());
+        assertEquals(1, hedging.getRequestCount());
+        assertEquals(1, hedging.getHedgeCount());
+        assertEquals(1, hedging.getHedgeWinCount());
+
+        primaryReleased.countDown();
+        assertTrue(primaryAnswered.await(10, TimeUnit.SECONDS));
+        assertEquals(2, requestCount.get());
+    }
+
+    /**
+     * Requests that are answered within the hedge delay are never hedged. There are fewer of them
+     * than the primary needs for a p95, so the hedge delay stays the one given.
+     */
+    @Test
+    public void fastPrimaryIsNotHedged() throws IOException {
+        final AtomicInteger requestCount = new AtomicInteger();
+        HttpTransport server = new HttpTransport() {
+            @Override
+            public HttpResponse get(URL url) throws IOException {
+                requestCount.incrementAndGet();
+                return new HttpResponse(200, new byte[0]);
+            }
+        };
+        HedgingTransport hedging = new HedgingTransport(server, mSelector, 60000);
+
+        for (int i = 0; i < REQUESTS; i++) {
+            assertEquals(200, hedging.get(mUrl).getStatusCode());
+        }
+        assertEquals(REQUESTS, hedging.getRequestCount());
+        assertEquals(0, hedging.getHedgeCount());
+        assertEquals(REQUESTS, requestCount.get());
+    }
+
+    @Test
+    public void failedPrimaryIsHedgedStraightAway() throws IOException {
+        /* The static endpoint is down */
+        HttpTransport server = new HttpTransport() {
+            @Override
+            public HttpResponse get(URL url) throws IOException {
+                if (url.getPath().equals("/staticweather")) {
+                    return new HttpResponse(503, new byte[0]);
+                }
+                return new HttpResponse(200, new byte[0]);
+            }
+        };
+        HedgingTransport hedging = new HedgingTransport(server, mSelector, 60000);
+
+        long start = System.nanoTime();
+        assertEquals(200, hedging.get(mUrl).getStatusCode());
+        assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+        assertEquals(1, hedging.getHedgeWinCount());
+
+        /* After a few of those, the dynamic endpoint takes over */
+        for (int i = 0; i < 5; i++) {
+            hedging.get(mUrl);
+        }
+        assertEquals(HOST + "/weather", mSelector.getPrimary().getBaseUrl());
+    }
+
+    @Test
+    public void otherUrlsArePassedStraightOn() throws IOException {
+        HedgingTransport hedging = new HedgingTransport(start(NetworkConditions.PERFECT),
+                mSelector);
+        assertEquals(404, hedging.get(new URL(HOST + "/elsewhere")).getStatusCode());
+        assertEquals(0, hedging.getRequestCount());
+    }
+}
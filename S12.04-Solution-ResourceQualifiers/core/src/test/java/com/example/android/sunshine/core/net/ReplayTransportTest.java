@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records responses from a fake network and checks they're replayed as recorded, under the
+ * requested conditions.
+ */
+public class ReplayTransportTest {
+
+    private static final String FORECAST = "{\"cod\":\"200\",\"list\":[],\"city\":\"Zürich\"}";
+
+    private ResponseRecordings mRecordings;
+    private URL mUrl;
+
+    /* Answers every request with the forecast, and counts the requests */
+    private static class FakeNetwork implements HttpTransport {
+        int mRequests;
+
+        @Override
+        public HttpResponse get(URL url) {
+            mRequests++;
+            return new HttpResponse(200, FORECAST.getBytes(HttpResponse.UTF_8));
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        assertTrue(directory.delete());
+        directory.deleteOnExit();
+
+        mRecordings = new ResponseRecordings(directory);
+        mUrl = new URL("https://andfun-weather.udacity.com/staticweather?q=94043&cnt=14");
+    }
+
+    @Test
+    public void recordedResponsesAreReplayedWithoutTheNetwork() throws IOException {
+        FakeNetwork network = new FakeNetwork();
+        HttpResponse recorded = new RecordingTransport(network, mRecordings).get(mUrl);
+        assertEquals(1, network.mRequests);
+
+        /* The host doesn't matter, only the path and query */
+        URL elsewhere = new URL("http://127.0.0.1:8080/staticweather?q=94043&cnt=14");
+        HttpResponse replayed = new ReplayTransport(mRecordings, NetworkConditions.PERFECT)
+                .get(elsewhere);
+
+        assertEquals(1, network.mRequests);
+        assertEquals(200, replayed.getStatusCode());
+        assertArrayEquals(recorded.getBody(), replayed.getBody());
+        assertEquals(FORECAST, replayed.getBodyAsString());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void unrecordedRequestsFail() throws IOException {
+        new ReplayTransport(mRecordings, NetworkConditions.PERFECT).get(mUrl);
+    }
+
+    @Test
+    public void latencyAndBandwidthAreApplied() throws IOException {
+        mRecordings.save(ResponseRecordings.keyFor(mUrl),
+                new HttpResponse(200, new byte[2000]));
+
+        NetworkConditions conditions = new NetworkConditions.Builder()
+                .setLatencyMillis(50)
+                .setBytesPerSecond(20000)
+                .build();
+
+        long start = System.nanoTime();
+        new ReplayTransport(mRecordings, conditions).get(mUrl);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        /* 50ms to the first byte, then 2000 bytes at 20000 bytes per second */
+        assertTrue("Took only " + elapsedMillis + "ms", elapsedMillis >= 150);
+    }
+
+    @Test
+    public void failuresAreTheSameOnEveryRun() throws IOException {
+        mRecordings.save(ResponseRecordings.keyFor(mUrl), new FakeNetwork().get(mUrl));
+
+        List<String> firstRun = replayMany(100);
+        List<String> secondRun = replayMany(100);
+        assertEquals(firstRun, secondRun);
+
+        int failures = 0;
+        int serverErrors = 0;
+        for (String outcome : firstRun) {
+            if (outcome.equals("failure")) {
+                failures++;
+            } else if (outcome.equals("503")) {
+                serverErrors++;
+            }
+        }
+        assertTrue("Expected some failures, got " + failures, failures > 5 && failures < 40);
+        assertTrue("Expected some 503s, got " + serverErrors,
+                serverErrors > 5 && serverErrors < 40);
+    }
+
+    private List<String> replayMany(int requests) {
+        NetworkConditions conditions = new NetworkConditions.Builder()
+                .setFailureRate(0.2)
+                .setServerErrorRate(0.2)
+                .setSeed(7)
+                .build();
+        ReplayTransport transport = new ReplayTransport(mRecordings, conditions);
+
+        List<String> outcomes = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            try {
+                outcomes.add(String.valueOf(transport.get(mUrl).getStatusCode()));
+            } catch (IOException e) {
+                outcomes.add("failure");
+            }
+        }
+        return outcomes;
+    }
+}
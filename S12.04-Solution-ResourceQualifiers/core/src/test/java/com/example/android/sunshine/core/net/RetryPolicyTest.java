@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import com.example.android.sunshine.core.ForecastParseException;
+
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link RetryPolicy} and the {@link FailureKind}s it decides on.
+ */
+public class RetryPolicyTest {
+
+    private final RetryPolicy mPolicy = new RetryPolicy.Builder()
+            .setMaxAttempts(4)
+            .setBaseDelayMillis(100)
+            .setMaxDelayMillis(1000)
+            .setSeed(42)
+            .build();
+
+    @Test
+    public void onlyTransientFailuresAreRetried() {
+        assertTrue(mPolicy.shouldRetry(FailureKind.TIMEOUT, 1));
+        assertTrue(mPolicy.shouldRetry(FailureKind.CONNECTION, 1));
+        assertTrue(mPolicy.shouldRetry(FailureKind.SERVER_ERROR, 1));
+
+        assertFalse(mPolicy.shouldRetry(FailureKind.CLIENT_ERROR, 1));
+        assertFalse(mPolicy.shouldRetry(FailureKind.PARSE_ERROR, 1));
+        assertFalse(mPolicy.shouldRetry(FailureKind.CIRCUIT_OPEN, 1));
+    }
+
+    @Test
+    public void attemptsAreLimited() {
+        assertTrue(mPolicy.shouldRetry(FailureKind.SERVER_ERROR, 3));
+        assertFalse(mPolicy.shouldRetry(FailureKind.SERVER_ERROR, 4));
+        assertFalse(RetryPolicy.NEVER.shouldRetry(FailureKind.SERVER_ERROR, 1));
+    }
+
+    @Test
+    public void noAttemptStartsAfterTheDeadline() {
+        RetryPolicy policy = new RetryPolicy.Builder().setDeadlineMillis(5000).build();
+        assertTrue(policy.isWithinDeadline(3000, 1999));
+        assertFalse(policy.isWithinDeadline(3000, 2000));
+        assertTrue("No deadline, no limit", mPolicy.isWithinDeadline(Long.MAX_VALUE / 2, 1000));
+    }
+
+    @Test
+    public void delaysDoubleUpToTheMaximum() {
+        assertEquals(100, mPolicy.maxDelayBeforeRetryMillis(1));
+        assertEquals(200, mPolicy.maxDelayBeforeRetryMillis(2));
+        assertEquals(400, mPolicy.maxDelayBeforeRetryMillis(3));
+        assertEquals(800, mPolicy.maxDelayBeforeRetryMillis(4));
+        assertEquals(1000, mPolicy.maxDelayBeforeRetryMillis(5));
+        assertEquals(1000, mPolicy.maxDelayBeforeRetryMillis(1000));
+    }
+
+    /**
+     * Full jitter spreads the delays over the whole range, instead of bunching them at the top.
+     */
+    @Test
+    public void delaysAreJitteredOverTheWholeRange() {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long sum = 0;
+        int samples = 10000;
+        for (int i = 0; i < samples; i++) {
+            long delay = mPolicy.delayBeforeRetryMillis(3);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+            sum += delay;
+        }
+        assertTrue("Shortest delay was " + min, min >= 0 && min < 20);
+        assertTrue("Longest delay was " + max, max <= 400 && max > 380);
+        long mean = sum / samples;
+        assertTrue("Mean delay was " + mean, mean > 180 && mean < 220);
+    }
+
+    @Test
+    public void failuresAreClassified() {
+        assertEquals(FailureKind.TIMEOUT,
+                FailureKind.classify(new SocketTimeoutException()));
+        assertEquals(FailureKind.CONNECTION,
+                FailureKind.classify(new ConnectException()));
+        assertEquals(FailureKind.CLIENT_ERROR,
+                FailureKind.classify(new HttpStatusException(404, "Not Found")));
+        assertEquals(FailureKind.TIMEOUT,
+                FailureKind.classify(new HttpStatusException(408, "Request Timeout")));
+        assertEquals(FailureKind.SERVER_ERROR,
+                FailureKind.classify(new HttpStatusException(503, "Service Unavailable")));
+        assertEquals(FailureKind.PARSE_ERROR,
+                FailureKind.classify(new ForecastParseException("Not JSON")));
+        assertEquals(FailureKind.CIRCUIT_OPEN,
+                FailureKind.classify(new CircuitOpenException(1000, null)));
+        assertEquals(FailureKind.OTHER, FailureKind.classify(new NullPointerException()));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import com.example.android.sunshine.core.ForecastParseException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link RetryingTransport} against a scripted transport, and against a
+ * {@link StandInServer} on an unreliable network.
+ */
+public class RetryingTransportTest {
+
+    /* Answers each request with the next response or exception in its script */
+    private static class ScriptedTransport implements HttpTransport {
+        final Queue<Object> mScript = new ArrayDeque<Object>();
+        int mRequests;
+
+        ScriptedTransport then(Object responseOrException) {
+            mScript.add(responseOrException);
+            return this;
+        }
+
+        @Override
+        public HttpResponse get(URL url) throws IOException {
+            mRequests++;
+            Object next = mScript.remove();
+            if (next instanceof IOException) {
+                throw (IOException) next;
+            }
+            return (HttpResponse) next;
+        }
+    }
+
+    /* Short delays keep the tests fast, the delays themselves are tested in RetryPolicyTest */
+    private static final RetryPolicy POLICY = new RetryPolicy.Builder()
+            .setMaxAttempts(3)
+            .setBaseDelayMillis(1)
+            .setMaxDelayMillis(5)
+            .setSeed(42)
+            .build();
+
+    private URL mUrl;
+    private ScriptedTransport mServer;
+    private CircuitBreaker mBreaker;
+    private RetryingTransport mTransport;
+
+    @Before
+    public void setUp() throws IOException {
+        mUrl = new URL("https://andfun-weather.udacity.com/staticweather?q=94043&cnt=14");
+        mServer = new ScriptedTransport();
+        mBreaker = new CircuitBreaker(CircuitBreaker.SYSTEM, 3, 60000);
+        mTransport = new RetryingTransport(mServer, POLICY, mBreaker);
+    }
+
+    private static HttpResponse status(int statusCode) {
+        return new HttpResponse(statusCode, new byte[0]);
+    }
+
+    @Test
+    public void serverErrorsAreRetriedUntilTheyStop() throws IOException {
+        mServer.then(status(503)).then(new SocketTimeoutException()).then(status(200));
+
+        assertEquals(200, mTransport.get(mUrl).getStatusCode());
+        assertEquals(3, mServer.mRequests);
+        assertEquals(1, mTransport.getFailureCount(FailureKind.SERVER_ERROR));
+        assertEquals(1, mTransport.getFailureCount(FailureKind.TIMEOUT));
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void clientErrorsAreReturnedWithoutRetrying() throws IOException {
+        mServer.then(status(404));
+
+        assertEquals(404, mTransport.get(mUrl).getStatusCode());
+        assertEquals(1, mServer.mRequests);
+    }
+
+    @Test
+    public void lastFailureIsReportedOnceAttemptsRunOut() throws IOException {
+        mServer.then(status(500)).then(status(502)).then(status(503));
+
+        assertEquals(503, mTransport.get(mUrl).getStatusCode());
+        assertEquals(3, mServer.mRequests);
+        assertEquals(3, mTransport.getFailureCount(FailureKind.SERVER_ERROR));
+    }
+
+    @Test
+    public void downServerIsNotAskedAgainUntilTheBreakerCloses() throws IOException {
+        mServer.then(new SocketTimeoutException())
+                .then(new SocketTimeoutException())
+                .then(new SocketTimeoutException());
+        try {
+            mTransport.get(mUrl);
+            fail("The last timeout should have been thrown");
+        } catch (SocketTimeoutException expected) {
+            assertEquals(3, mTransport.getFailureCount(FailureKind.TIMEOUT));
+        }
+
+        /* Every refresh from now on fails fast, without a request */
+        for (int i = 0; i < 10; i++) {
+            try {
+                mTransport.get(mUrl);
+                fail("The breaker should be open");
+            } catch (CircuitOpenException expected) {
+                assertTrue(expected.getCause() instanceof SocketTimeoutException);
+            }
+        }
+        assertEquals(3, mServer.mRequests);
+        assertEquals(10, mTransport.getFailureCount(FailureKind.CIRCUIT_OPEN));
+    }
+
+    @Test
+    public void failedAttemptsAreRunAgainFromTheStart() throws IOException {
+        final int[] runs = new int[1];
+        String result = mTransport.execute(new RetryingTransport.Attempt<String>() {
+            @Override
+            public String run() throws IOException {
+                runs[0]++;
+                if (runs[0] == 1) {
+                    throw new SocketTimeoutException();
+                } else if (runs[0] == 2) {
+                    throw new HttpStatusException(503, "HTTP 503");
+                }
+                return "forecast";
+            }
+        });
+
+        assertEquals("forecast", result);
+        assertEquals(3, runs[0]);
+        assertEquals(1, mTransport.getFailureCount(FailureKind.TIMEOUT));
+        assertEquals(1, mTransport.getFailureCount(FailureKind.SERVER_ERROR));
+    }
+
+    @Test
+    public void unparseableAttemptsAreNotRetriedOrHeldAgainstTheServer() throws IOException {
+        final int[] runs = new int[1];
+        RetryingTransport.Attempt<String> attempt = new RetryingTransport.Attempt<String>() {
+            @Override
+            public String run() throws IOException {
+                runs[0]++;
+                throw new ForecastParseException("Day 3 is missing fields");
+            }
+        };
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                mTransport.execute(attempt);
+                fail("The parse error should have been thrown");
+            } catch (ForecastParseException expected) {
+                assertEquals(FailureKind.PARSE_ERROR, FailureKind.classify(expected));
+            }
+        }
+        assertEquals(5, runs[0]);
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    /**
+     * On a network where almost half of all requests fail, retrying turns most failed downloads
+     * into successful ones.
+     */
+    @Test
+    public void retriesRecoverFromAnUnreliableNetwork() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        assertTrue(directory.delete());
+        directory.deleteOnExit();
+        ResponseRecordings recordings = new ResponseRecordings(directory);
+        recordings.save(ResponseRecordings.keyFor(mUrl),
+                new HttpResponse(200, "{}".getBytes(HttpResponse.UTF_8)));
+
+        int withoutRetries = countSuccesses(recordings, RetryPolicy.NEVER);
+        int withRetries = countSuccesses(recordings, POLICY);
+
+        assertTrue(withoutRetries + " of 50 succeeded without retries", withoutRetries < 40);
+        assertTrue(withRetries + " of 50 succeeded with retries", withRetries >= 45);
+    }
+
+    private static int countSuccesses(ResponseRecordings recordings, RetryPolicy policy)
+            throws IOException {
+        NetworkConditions unreliable = new NetworkConditions.Builder()
+                .setFailureRate(0.2)
+                .setServerErrorRate(0.2)
+                .build();
+        StandInServer server = new StandInServer(recordings, unreliable);
+        server.start();
+        try {
+            /* A breaker that never opens, so that every download gets its full set of attempts */
+            HttpTransport transport = new RetryingTransport(server.transport(), policy,
+                    new CircuitBreaker(CircuitBreaker.SYSTEM, Integer.MAX_VALUE, 0));
+            int successes = 0;
+            for (int i = 0; i < 50; i++) {
+                try {
+                    if (transport.get(new URL("https://andfun-weather.udacity.com"
+                            + "/staticweather?q=94043&cnt=14")).isSuccessful()) {
+                        successes++;
+                    }
+                } catch (IOException e) {
+                    /* A failed download, which is what we're counting */
+                }
+            }
+            return successes;
+        } finally {
+            server.close();
+        }
+    }
+}
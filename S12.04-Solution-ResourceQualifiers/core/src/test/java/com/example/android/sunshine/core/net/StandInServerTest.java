@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import com.example.android.sunshine.core.SyntheticWeather;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Talks to a {@link StandInServer} on localhost through the real HttpURLConnection.
+ */
+public class StandInServerTest {
+
+    private ResponseRecordings mRecordings;
+    private URL mUrl;
+    private byte[] mBody;
+    private StandInServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        assertTrue(directory.delete());
+        directory.deleteOnExit();
+
+        mRecordings = new ResponseRecordings(directory);
+        mUrl = new URL("https://andfun-weather.udacity.com/staticweather?q=94043&cnt=14");
+
+        /*
+         * Big enough to be written in several slices, and random, so gzip can't make it any
+         * smaller and the bandwidth test measures the size we chose
+         */
+        mBody = new byte[5000];
+        new Random(42).nextBytes(mBody);
+        mRecordings.save(ResponseRecordings.keyFor(mUrl), new HttpResponse(200, mBody));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mServer != null) {
+            mServer.close();
+        }
+    }
+
+    private HttpTransport start(NetworkConditions conditions) throws IOException {
+        mServer = new StandInServer(mRecordings, conditions);
+        mServer.start();
+        return mServer.transport();
+    }
+
+    @Test
+    public void servesRecordedResponses() throws IOException {
+        HttpTransport transport = start(NetworkConditions.PERFECT);
+
+        HttpResponse response = transport.get(mUrl);
+        assertEquals(200, response.getStatusCode());
+        assertArrayEquals(mBody, response.getBody());
+
+        HttpResponse missing = transport.get(new URL("https://example.com/nothing?here"));
+        assertEquals(404, missing.getStatusCode());
+
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void bandwidthIsApplied() throws IOException {
+        HttpTransport transport = start(new NetworkConditions.Builder()
+                .setBytesPerSecond(25000)
+                .build());
+
+        long start = System.nanoTime();
+        assertArrayEquals(mBody, transport.get(mUrl).getBody());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("Took only " + elapsedMillis + "ms", elapsedMillis >= 200);
+    }
+
+    @Test
+    public void injectedFailuresReachTheClient() throws IOException {
+        HttpTransport transport = start(new NetworkConditions.Builder()
+                .setFailureRate(0.5)
+                .setServerErrorRate(0.5)
+                .build());
+
+        int failures = 0;
+        int serverErrors = 0;
+        for (int i = 0; i < 20; i++) {
+            try {
+                assertEquals(503, transport.get(mUrl).getStatusCode());
+                serverErrors++;
+            } catch (IOException e) {
+                failures++;
+            }
+        }
+        assertTrue(failures > 0);
+        assertTrue(serverErrors > 0);
+    }
+
+    @Test
+    public void responsesAreOnlyCompressedWhenTheClientAsks() throws IOException {
+        start(NetworkConditions.PERFECT);
+
+        /* Straight through HttpURLConnection, without an Accept-Encoding header */
+        URL url = new URL(mServer.getBaseUrl(), ResponseRecordings.keyFor(mUrl));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        HttpResponse plain;
+        try {
+            plain = new HttpResponse(connection.getResponseCode(),
+                    connection.getContentEncoding(),
+                    UrlConnectionTransport.readFully(connection.getInputStream()));
+        } finally {
+            connection.disconnect();
+        }
+
+        assertNull(plain.getContentEncoding());
+        assertArrayEquals(mBody, plain.getBody());
+    }
+
+    @Test
+    public void gzipSavesBandwidthFor14DayForecasts() throws IOException {
+        assertGzipSavesBandwidth(14);
+    }
+
+    @Test
+    public void gzipSavesBandwidthFor16DayForecasts() throws IOException {
+        assertGzipSavesBandwidth(16);
+    }
+
+    /**
+     * Downloads a synthetic forecast of the given length through the real HttpURLConnection,
+     * checks it arrives gzipped and intact, and that it was at most half as big on the wire.
+     * GzipDownloadBenchmark in the benchmarks module reports the bandwidth it saves.
+     */
+    private void assertGzipSavesBandwidth(int days) throws IOException {
+        SyntheticWeather weather = new SyntheticWeather(42);
+        SyntheticWeather.Location location = weather.generateLocations(1).get(0);
+        String json = SyntheticWeather.toOwmJson(location,
+                weather.generateForecast(location, 1474329600000L, days));
+        URL url = new URL("https://andfun-weather.udacity.com/staticweather?q=94043&cnt=" + days);
+        mRecordings.save(ResponseRecordings.keyFor(url),
+                new HttpResponse(200, json.getBytes(HttpResponse.UTF_8)));
+
+        HttpResponse response = start(NetworkConditions.PERFECT).get(url);
+        assertEquals(HttpResponse.ENCODING_GZIP, response.getContentEncoding());
+        assertEquals(mServer.getBodyBytesSent(), response.getWireLength());
+
+        /* Stream the body the way a sync does, and make sure nothing was lost on the way */
+        BodyInputStream body = response.openBody();
+        Reader reader = new InputStreamReader(body, HttpResponse.UTF_8);
+        StringBuilder decoded = new StringBuilder(json.length());
+        try {
+            char[] buffer = new char[1024];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                decoded.append(buffer, 0, count);
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(json, decoded.toString());
+
+        long decodedBytes = body.getDecodedBytes();
+        assertEquals(json.getBytes(HttpResponse.UTF_8).length, decodedBytes);
+        long savedPercent = 100 - 100 * response.getWireLength() / decodedBytes;
+
+        /* JSON weather is very repetitive, so gzip should at least halve it */
+        assertTrue(days + " days only saved " + savedPercent + "%", savedPercent >= 50);
+    }
+}
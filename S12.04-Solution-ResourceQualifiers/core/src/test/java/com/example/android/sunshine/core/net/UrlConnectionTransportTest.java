@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core.net;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the timeouts, connection reuse and streaming of {@link UrlConnectionTransport}, against a
+ * {@link StandInServer} with injected latency.
+ */
+public class UrlConnectionTransportTest {
+
+    private static final int REQUESTS = 10;
+
+    private ResponseRecordings mRecordings;
+    private URL[] mUrls;
+    private StandInServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = File.createTempFile("recordings", "");
+        assertTrue(directory.delete());
+        directory.deleteOnExit();
+        mRecordings = new ResponseRecordings(directory);
+
+        /* One forecast for each of several locations, fetched back to back */
+        mUrls = new URL[REQUESTS];
+        Random random = new Random(42);
+        for (int i = 0; i < REQUESTS; i++) {
+            mUrls[i] = new URL("https://andfun-weather.udacity.com/staticweather?q=" + i);
+            byte[] body = new byte[2000];
+            random.nextBytes(body);
+            mRecordings.save(ResponseRecordings.keyFor(mUrls[i]), new HttpResponse(200, body));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mServer != null) {
+            mServer.close();
+        }
+    }
+
+    private HttpTransport start(NetworkConditions conditions, HttpTransport network)
+            throws IOException {
+        mServer = new StandInServer(mRecordings, conditions);
+        mServer.start();
+        return mServer.transport(network);
+    }
+
+    /**
+     * Fetching several forecasts in a row only opens one connection. The same requests through a
+     * client that never reuses a connection open one each. What that costs in time, on a network
+     * where connecting is slow, is measured by ConnectionReuseBenchmark in the benchmarks module.
+     */
+    @Test
+    public void connectionsAreReusedForBackToBackRequests() throws IOException {
+        fetchAll(start(NetworkConditions.PERFECT, new UrlConnectionTransport()));
+        assertEquals(REQUESTS, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+        mServer.close();
+
+        fetchAll(start(NetworkConditions.PERFECT, new HttpTransport() {
+            @Override
+            public HttpResponse get(URL url) throws IOException {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestProperty("Connection", "close");
+                try {
+                    return new HttpResponse(connection.getResponseCode(),
+                            UrlConnectionTransport.readFully(connection.getInputStream()));
+                } finally {
+                    connection.disconnect();
+                }
+            }
+        }));
+        assertEquals(REQUESTS, mServer.getRequestCount());
+        assertEquals(REQUESTS, mServer.getConnectionCount());
+    }
+
+    private void fetchAll(HttpTransport transport) throws IOException {
+        for (URL url : mUrls) {
+            assertEquals(200, transport.get(url).getStatusCode());
+        }
+    }
+
+    @Test
+    public void stalledServerTimesOut() throws IOException {
+        HttpTransport transport = start(new NetworkConditions.Builder()
+                .setLatencyMillis(2000)
+                .build(), new UrlConnectionTransport(1000, 200, 5000));
+
+        long start = System.nanoTime();
+        try {
+            transport.get(mUrls[0]);
+            fail("The read should have timed out");
+        } catch (SocketTimeoutException expected) {
+            assertEquals(FailureKind.TIMEOUT, FailureKind.classify(expected));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("Took " + elapsedMillis + "ms", elapsedMillis < 1500);
+    }
+
+    /**
+     * A server that trickles the body out never goes quiet for long enough to trip the read
+     * timeout, but the deadline still ends the request.
+     */
+    @Test
+    public void tricklingServerMissesTheDeadline() throws IOException {
+        HttpTransport transport = start(new NetworkConditions.Builder()
+                .setBytesPerSecond(4000)
+                .build(), new UrlConnectionTransport(1000, 1000, 200));
+
+        long start = System.nanoTime();
+        try {
+            transport.get(mUrls[0]);
+            fail("The deadline should have passed");
+        } catch (SocketTimeoutException expected) {
+            assertEquals("Deadline exceeded", expected.getMessage());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("Took " + elapsedMillis + "ms", elapsedMillis < 450);
+    }
+
+    /**
+     * A streamed body can be read from as soon as its first bytes arrive, long before the slow
+     * network has delivered all of it.
+     */
+    @Test
+    public void streamedBodyCanBeReadBeforeItHasAllArrived() throws IOException {
+        URL url = saveLargeForecast(16000);
+        StreamingTransport transport = (StreamingTransport) start(new NetworkConditions.Builder()
+                .setBytesPerSecond(16000)
+                .build(), new UrlConnectionTransport());
+
+        StreamingResponse response = transport.open(url);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        long sentAtFirstByte;
+        try {
+            BodyInputStream in = response.openBody();
+            body.write(in.read());
+            sentAtFirstByte = mServer.getBodyBytesSent();
+
+            byte[] buffer = new byte[256];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                body.write(buffer, 0, count);
+            }
+            assertTrue(response.isBodyComplete());
+        } finally {
+            response.close();
+        }
+
+        /* It takes the server a second to send it all, so most of it can't have been sent yet */
+        assertTrue(sentAtFirstByte + " bytes had been sent",
+                sentAtFirstByte < mServer.getBodyBytesSent() / 2);
+        assertArrayEquals(mRecordings.load(ResponseRecordings.keyFor(url)).getBody(),
+                body.toByteArray());
+        assertEquals(mServer.getBodyBytesSent(), response.getWireBytesRead());
+    }
+
+    /**
+     * A stream that's read to the end gives its connection back for the next request. One that's
+     * abandoned half way, because parsing it failed for example, doesn't.
+     */
+    @Test
+    public void abandonedStreamDropsItsConnection() throws IOException {
+        /* Big enough that reading the first few bytes doesn't read all of it */
+        URL url = saveLargeForecast(64000);
+        StreamingTransport transport = (StreamingTransport) start(NetworkConditions.PERFECT,
+                new UrlConnectionTransport());
+
+        for (int i = 0; i < 2; i++) {
+            StreamingResponse response = transport.open(mUrls[i]);
+            try {
+                UrlConnectionTransport.readFully(response.openBody());
+            } finally {
+                response.close();
+            }
+        }
+        assertEquals(1, mServer.getConnectionCount());
+
+        StreamingResponse abandoned = transport.open(url);
+        try {
+            abandoned.openBody().read(new byte[10]);
+            assertFalse(abandoned.isBodyComplete());
+        } finally {
+            abandoned.close();
+        }
+
+        StreamingResponse next = transport.open(mUrls[3]);
+        try {
+            UrlConnectionTransport.readFully(next.openBody());
+        } finally {
+            next.close();
+        }
+        assertEquals(2, mServer.getConnectionCount());
+    }
+
+    private URL saveLargeForecast(int size) throws IOException {
+        URL url = new URL("https://andfun-weather.udacity.com/staticweather?q=large");
+        byte[] body = new byte[size];
+        new Random(size).nextBytes(body);
+        mRecordings.save(ResponseRecordings.keyFor(url), new HttpResponse(200, body));
+        return url;
+    }
+
+    /**
+     * The deadline still applies once a streamed response has been handed over, however long the
+     * caller takes to read it.
+     */
+    @Test
+    public void streamedBodyMissesTheDeadline() throws IOException {
+        StreamingTransport transport = (StreamingTransport) start(new NetworkConditions.Builder()
+                .setBytesPerSecond(4000)
+                .build(), new UrlConnectionTransport(1000, 1000, 200));
+
+        StreamingResponse response = transport.open(mUrls[0]);
+        try {
+            UrlConnectionTransport.readFully(response.openBody());
+            fail("The deadline should have passed");
+        } catch (SocketTimeoutException expected) {
+            assertEquals("Deadline exceeded", expected.getMessage());
+        } finally {
+            response.close();
+        }
+    }
+}